@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.benchmarks;
+
+import com.appunite.detector.ChangesDetector;
+import com.appunite.detector.SimpleDetector;
+import com.appunite.detector.SimpleKeyedDetector;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Measures {@link ChangesDetector#newData(ChangesDetector.ChangesAdapter, List, boolean)}
+ * when list alternates between two versions that differ by appended, removed, changed and
+ * moved items
+ *
+ * keyed=false uses linear scan of {@link SimpleDetector}, keyed=true uses hashing of
+ * {@link SimpleKeyedDetector}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChangesDetectorBenchmark {
+
+    @Param({"100", "1000", "5000"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean keyed;
+
+    private ChangesDetector<Item, Item> detector;
+    private List<Item> first;
+    private List<Item> second;
+    private boolean odd;
+    private final CountingAdapter adapter = new CountingAdapter();
+
+    @Setup
+    public void setUp() {
+        detector = new ChangesDetector<>(keyed ? new SimpleKeyedDetector<Item>() : new SimpleDetector<Item>());
+        first = new ArrayList<>(size);
+        second = new ArrayList<>(size);
+        final List<Item> moved = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            first.add(new Item(i, "item " + i));
+            if (i % 10 == 0) {
+                // removed in second version
+                continue;
+            }
+            final Item item = new Item(i, i % 7 == 0 ? "changed " + i : "item " + i);
+            if (i % 50 == 1) {
+                // moved to the end in second version
+                moved.add(item);
+            } else {
+                second.add(item);
+            }
+        }
+        second.addAll(moved);
+        for (int i = size; i < size + size / 10; i++) {
+            second.add(new Item(i, "item " + i));
+        }
+    }
+
+    @Benchmark
+    public int newData() {
+        odd = !odd;
+        detector.newData(adapter, odd ? first : second, false);
+        return adapter.notifications;
+    }
+
+    static class Item implements SimpleDetector.KeyedDetectable<Item> {
+        private final int id;
+        @Nonnull
+        private final String name;
+
+        Item(int id, @Nonnull String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        @Override
+        public boolean matches(@Nonnull Item item) {
+            return id == item.id;
+        }
+
+        @Override
+        public boolean same(@Nonnull Item item) {
+            return id == item.id && name.equals(item.name);
+        }
+
+        @Nonnull
+        @Override
+        public Object key() {
+            return id;
+        }
+    }
+
+    private static class CountingAdapter implements ChangesDetector.MoveChangesAdapter {
+        int notifications = 0;
+
+        @Override
+        public void notifyItemRangeInserted(int start, int count) {
+            notifications += 1;
+        }
+
+        @Override
+        public void notifyItemRangeChanged(int start, int count) {
+            notifications += 1;
+        }
+
+        @Override
+        public void notifyItemRangeRemoved(int start, int count) {
+            notifications += 1;
+        }
+
+        @Override
+        public void notifyItemMoved(int fromPosition, int toPosition) {
+            notifications += 1;
+        }
+    }
+}
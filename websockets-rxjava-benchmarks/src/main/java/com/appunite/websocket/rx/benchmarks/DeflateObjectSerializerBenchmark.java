@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.benchmarks;
+
+import com.appunite.websocket.rx.object.DeflateObjectSerializer;
+import com.appunite.websocket.rx.object.GsonObjectSerializer;
+import com.appunite.websocket.rx.object.ObjectParseException;
+import com.example.model.Message;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures CPU cost of {@link DeflateObjectSerializer} on top of {@link GsonObjectSerializer}
+ *
+ * Bytes saved are printed once per parameter set, compare time with
+ * {@link GsonObjectSerializerBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DeflateObjectSerializerBenchmark {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Param({"1", "6"})
+    public int level;
+
+    @Param({"true", "false"})
+    public boolean contextTakeover;
+
+    @Param({"false", "true"})
+    public boolean dictionary;
+
+    private DeflateObjectSerializer sender;
+    private DeflateObjectSerializer receiver;
+    private List<Message> messages;
+    private List<byte[]> frames;
+
+    @Setup
+    public void setUp() throws ObjectParseException {
+        final GsonObjectSerializer gson = Fixtures.serializer();
+        final byte[] preset = dictionary ? dictionary() : null;
+        sender = new DeflateObjectSerializer(gson, level, contextTakeover, 0, preset);
+        receiver = new DeflateObjectSerializer(gson, level, contextTakeover, 0, preset);
+        messages = Fixtures.messages(Fixtures.MESSAGES);
+
+        long plainBytes = 0;
+        long compressedBytes = 0;
+        frames = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            plainBytes += gson.deserializeString(message).getBytes(UTF_8).length;
+            final byte[] frame = sender.deserializeBinary(message);
+            compressedBytes += frame.length;
+            frames.add(frame);
+        }
+        System.out.println(String.format("level=%d contextTakeover=%b dictionary=%b: %d -> %d bytes (%.1f%%)",
+                level, contextTakeover, dictionary, plainBytes, compressedBytes,
+                100.0 * compressedBytes / plainBytes));
+    }
+
+    /**
+     * One message of every type, so dictionary contains all keys
+     */
+    private static byte[] dictionary() {
+        final StringBuilder builder = new StringBuilder();
+        for (String json : Fixtures.json(3)) {
+            builder.append(json);
+        }
+        return builder.toString().getBytes(UTF_8);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Fixtures.MESSAGES)
+    public void compress(Blackhole blackhole) throws ObjectParseException {
+        sender.reset();
+        for (Message message : messages) {
+            blackhole.consume(sender.deserializeBinary(message));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Fixtures.MESSAGES)
+    public void decompress(Blackhole blackhole) throws ObjectParseException {
+        receiver.reset();
+        for (byte[] frame : frames) {
+            blackhole.consume(receiver.serialize(frame));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.benchmarks;
+
+import com.appunite.websocket.rx.RxWebSockets;
+import com.appunite.websocket.rx.messages.RxEvent;
+
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import rx.Observable;
+
+/**
+ * {@link RxWebSockets} that replays prepared events instead of connecting to server
+ */
+class FakeRxWebSockets extends RxWebSockets {
+
+    @Nonnull
+    private final List<RxEvent> events;
+
+    FakeRxWebSockets(@Nonnull List<RxEvent> events) {
+        super(new OkHttpClient(), new Request.Builder()
+                .get()
+                .url("http://localhost/ws")
+                .build());
+        this.events = events;
+    }
+
+    @Nonnull
+    @Override
+    public Observable<RxEvent> webSocketObservable() {
+        return Observable.from(events);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.benchmarks;
+
+import javax.annotation.Nonnull;
+
+import okhttp3.Request;
+import okhttp3.WebSocket;
+import okio.ByteString;
+
+/**
+ * In-memory {@link WebSocket} that never touches network
+ *
+ * Sent frames are only counted so benchmarks measure library code and not I/O.
+ */
+class FakeWebSocket implements WebSocket {
+
+    @Nonnull
+    private final Request request = new Request.Builder()
+            .get()
+            .url("http://localhost/ws")
+            .build();
+    private long sentFrames = 0;
+    private long sentBytes = 0;
+
+    @Override
+    public Request request() {
+        return request;
+    }
+
+    @Override
+    public long queueSize() {
+        return 0;
+    }
+
+    @Override
+    public boolean send(String text) {
+        sentFrames += 1;
+        sentBytes += text.length();
+        return true;
+    }
+
+    @Override
+    public boolean send(ByteString bytes) {
+        sentFrames += 1;
+        sentBytes += bytes.size();
+        return true;
+    }
+
+    @Override
+    public boolean close(int code, String reason) {
+        return true;
+    }
+
+    @Override
+    public void cancel() {
+    }
+
+    long sentFrames() {
+        return sentFrames;
+    }
+
+    long sentBytes() {
+        return sentBytes;
+    }
+}
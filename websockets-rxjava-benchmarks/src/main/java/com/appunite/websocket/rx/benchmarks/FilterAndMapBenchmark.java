@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.benchmarks;
+
+import com.appunite.websocket.rx.object.ObjectMessageDispatcher;
+import com.appunite.websocket.rx.object.ObjectParseException;
+import com.appunite.websocket.rx.object.ObjectWebSocketSender;
+import com.appunite.websocket.rx.object.messages.RxObjectEventMessage;
+import com.example.model.ChatMessage;
+import com.example.model.DataMessage;
+import com.example.model.ErrorMessage;
+import com.example.model.Message;
+import com.example.model.PongMessage;
+import com.example.model.RegisteredMessage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import rx.Observer;
+import rx.subjects.PublishSubject;
+import rx.subscriptions.CompositeSubscription;
+
+/**
+ * Compares delivering every message to subscriber of each message type with
+ * {@link RxObjectEventMessage#filterAndMap(Class)} against {@link ObjectMessageDispatcher}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FilterAndMapBenchmark {
+
+    private static final List<Class<? extends Message>> TYPES = new ArrayList<>();
+    static {
+        TYPES.add(DataMessage.class);
+        TYPES.add(ChatMessage.class);
+        TYPES.add(PongMessage.class);
+        TYPES.add(ErrorMessage.class);
+        TYPES.add(RegisteredMessage.class);
+    }
+
+    private final CompositeSubscription subscriptions = new CompositeSubscription();
+    private final PublishSubject<RxObjectEventMessage> subject = PublishSubject.create();
+    private final ObjectMessageDispatcher dispatcher = new ObjectMessageDispatcher();
+    private List<RxObjectEventMessage> events;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        final ObjectWebSocketSender sender = new NoOpSender();
+        events = new ArrayList<>();
+        for (Message message : Fixtures.messages(Fixtures.MESSAGES)) {
+            events.add(new RxObjectEventMessage(sender, message));
+        }
+        for (Class<? extends Message> type : TYPES) {
+            subscriptions.add(subject
+                    .compose(RxObjectEventMessage.filterAndMap(type))
+                    .subscribe(new ConsumingObserver(blackhole)));
+            subscriptions.add(dispatcher.messages(type)
+                    .subscribe(new ConsumingObserver(blackhole)));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        subscriptions.clear();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Fixtures.MESSAGES)
+    public void filterAndMap() {
+        for (RxObjectEventMessage event : events) {
+            subject.onNext(event);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Fixtures.MESSAGES)
+    public void dispatcher() {
+        for (RxObjectEventMessage event : events) {
+            dispatcher.dispatch(event);
+        }
+    }
+
+    private static class ConsumingObserver implements Observer<Object> {
+
+        @Nonnull
+        private final Blackhole blackhole;
+
+        ConsumingObserver(@Nonnull Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            throw new RuntimeException(e);
+        }
+
+        @Override
+        public void onNext(Object o) {
+            blackhole.consume(o);
+        }
+    }
+
+    private static class NoOpSender implements ObjectWebSocketSender {
+
+        @Override
+        public boolean sendObjectMessage(@Nonnull Object message) throws ObjectParseException {
+            return true;
+        }
+    }
+}
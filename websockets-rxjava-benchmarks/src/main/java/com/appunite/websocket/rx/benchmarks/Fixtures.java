@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.benchmarks;
+
+import com.appunite.websocket.rx.object.GsonObjectSerializer;
+import com.example.model.ChatMessage;
+import com.example.model.DataMessage;
+import com.example.model.Message;
+import com.example.model.MessageType;
+import com.example.model.PongMessage;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Deterministic fixtures shared by benchmarks
+ */
+class Fixtures {
+
+    static final int MESSAGES = 1000;
+
+    private Fixtures() {
+    }
+
+    @Nonnull
+    static Gson gson() {
+        return new GsonBuilder()
+                .registerTypeAdapter(Message.class, new Message.Deserializer())
+                .registerTypeAdapter(MessageType.class, new MessageType.SerializerDeserializer())
+                .create();
+    }
+
+    @Nonnull
+    static GsonObjectSerializer serializer() {
+        return new GsonObjectSerializer(gson(), Message.class);
+    }
+
+    /**
+     * Mix of message types similar to what example chat server sends
+     */
+    @Nonnull
+    static List<Message> messages(int count) {
+        final List<Message> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            switch (i % 3) {
+                case 0:
+                    messages.add(new DataMessage("id" + i, "data message number " + i));
+                    break;
+                case 1:
+                    messages.add(new ChatMessage("chat message number " + i, "user" + (i % 10)));
+                    break;
+                default:
+                    messages.add(new PongMessage("pong " + i));
+                    break;
+            }
+        }
+        return messages;
+    }
+
+    @Nonnull
+    static List<String> json(int count) {
+        final Gson gson = gson();
+        final List<String> json = new ArrayList<>(count);
+        for (Message message : messages(count)) {
+            json.add(gson.toJson(message));
+        }
+        return json;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.benchmarks;
+
+import com.appunite.websocket.rx.object.GsonObjectSerializer;
+import com.appunite.websocket.rx.object.ObjectParseException;
+import com.example.model.Message;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link GsonObjectSerializer} in both directions
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GsonObjectSerializerBenchmark {
+
+    private GsonObjectSerializer serializer;
+    private List<String> json;
+    private List<Message> messages;
+
+    @Setup
+    public void setUp() {
+        serializer = Fixtures.serializer();
+        json = Fixtures.json(Fixtures.MESSAGES);
+        messages = Fixtures.messages(Fixtures.MESSAGES);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Fixtures.MESSAGES)
+    public void parse(Blackhole blackhole) throws ObjectParseException {
+        for (String message : json) {
+            blackhole.consume(serializer.serialize(message));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Fixtures.MESSAGES)
+    public void serialize(Blackhole blackhole) throws ObjectParseException {
+        for (Message message : messages) {
+            blackhole.consume(serializer.deserializeString(message));
+        }
+    }
+}
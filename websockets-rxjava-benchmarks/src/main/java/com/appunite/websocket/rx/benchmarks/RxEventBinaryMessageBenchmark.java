@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.benchmarks;
+
+import com.appunite.websocket.rx.messages.RxEventBinaryMessage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import okio.ByteString;
+
+/**
+ * Measures cost of wrapping received binary frame into {@link RxEventBinaryMessage}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RxEventBinaryMessageBenchmark {
+
+    @Param({"64", "4096", "65536"})
+    public int size;
+
+    private FakeWebSocket webSocket;
+    private byte[] bytes;
+    private ByteString byteString;
+
+    @Setup
+    public void setUp() {
+        webSocket = new FakeWebSocket();
+        bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        byteString = ByteString.of(bytes);
+    }
+
+    @Benchmark
+    public RxEventBinaryMessage fromByteArray() {
+        return new RxEventBinaryMessage(webSocket, bytes);
+    }
+
+    @Benchmark
+    public RxEventBinaryMessage fromByteString() {
+        return new RxEventBinaryMessage(webSocket, byteString);
+    }
+
+    @Benchmark
+    public byte[] fromByteStringAndReadArray() {
+        return new RxEventBinaryMessage(webSocket, byteString).message();
+    }
+}
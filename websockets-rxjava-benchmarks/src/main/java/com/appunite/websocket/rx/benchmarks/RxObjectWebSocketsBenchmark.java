@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.benchmarks;
+
+import com.appunite.websocket.rx.messages.RxEvent;
+import com.appunite.websocket.rx.messages.RxEventConnected;
+import com.appunite.websocket.rx.messages.RxEventStringMessage;
+import com.appunite.websocket.rx.object.RxObjectWebSockets;
+import com.appunite.websocket.rx.object.messages.RxObjectEvent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import rx.Subscriber;
+
+/**
+ * Measures {@link RxObjectWebSockets} operator that turns raw frames into parsed objects
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RxObjectWebSocketsBenchmark {
+
+    private RxObjectWebSockets objectWebSockets;
+
+    @Setup
+    public void setUp() {
+        final FakeWebSocket webSocket = new FakeWebSocket();
+        final List<RxEvent> events = new ArrayList<>();
+        events.add(new RxEventConnected(webSocket));
+        for (String json : Fixtures.json(Fixtures.MESSAGES)) {
+            events.add(new RxEventStringMessage(webSocket, json));
+        }
+        objectWebSockets = new RxObjectWebSockets(new FakeRxWebSockets(events), Fixtures.serializer());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Fixtures.MESSAGES)
+    public void parseMessages(final Blackhole blackhole) {
+        objectWebSockets.webSocketObservable()
+                .subscribe(new Subscriber<RxObjectEvent>() {
+                    @Override
+                    public void onCompleted() {
+                    }
+
+                    @Override
+                    public void onError(Throwable e) {
+                        throw new RuntimeException(e);
+                    }
+
+                    @Override
+                    public void onNext(RxObjectEvent event) {
+                        blackhole.consume(event);
+                    }
+                });
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.appunite.detector;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Immutable list of items that supports appending in O(1) and keeps at most maxSize newest
+ * items
+ *
+ * Items are stored in chunks shared by all versions of the log, appending to the newest
+ * version writes into the same chunk. Appending to older version copies only the last chunk.
+ * Every version is a snapshot that can be read from any thread.
+ *
+ * {@link ChangesDetector} notifies only appended and evicted items when new version of the
+ * same log is passed.
+ */
+public class AppendLog<T> extends AbstractList<T> implements RandomAccess {
+
+    private static final int CHUNK_SHIFT = 6;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /**
+     * Chunks shared by versions of the log
+     */
+    private static class Storage {
+        @Nonnull
+        final Object[][] chunks;
+        // Number of the first chunk counted from the beginning of the log
+        final long firstChunk;
+        // Number of items ever appended, -1 if storage was replaced by newer one
+        long end;
+
+        Storage(@Nonnull Object[][] chunks, long firstChunk, long end) {
+            this.chunks = chunks;
+            this.firstChunk = firstChunk;
+            this.end = end;
+        }
+    }
+
+    @Nonnull
+    private final Storage storage;
+    // Versions with the same lineage are appended one after another
+    @Nonnull
+    private final Object lineage;
+    private final long start;
+    private final long end;
+    private final int maxSize;
+
+    private AppendLog(@Nonnull Storage storage, @Nonnull Object lineage, long start, long end, int maxSize) {
+        this.storage = storage;
+        this.lineage = lineage;
+        this.start = start;
+        this.end = end;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param maxSize max number of items, when exceeded the oldest items are evicted
+     * @param <T> type of items
+     * @return empty log
+     */
+    @Nonnull
+    public static <T> AppendLog<T> empty(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize should be greater than 0");
+        }
+        return new AppendLog<>(new Storage(new Object[4][], 0, 0), new Object(), 0, 0, maxSize);
+    }
+
+    /**
+     * @param item item to append
+     * @return new version of the log with item at the end
+     */
+    @Nonnull
+    public AppendLog<T> append(@Nonnull T item) {
+        Storage storage = this.storage;
+        Object lineage = this.lineage;
+        if (storage.end != end) {
+            // Newer version already used next slot
+            storage = copy();
+            lineage = new Object();
+        }
+        int chunk = (int) ((end >>> CHUNK_SHIFT) - storage.firstChunk);
+        if (chunk == storage.chunks.length) {
+            storage = grow(storage);
+            chunk = (int) ((end >>> CHUNK_SHIFT) - storage.firstChunk);
+        }
+        if (storage.chunks[chunk] == null) {
+            storage.chunks[chunk] = new Object[CHUNK_SIZE];
+        }
+        storage.chunks[chunk][(int) (end & CHUNK_MASK)] = item;
+        final long end = this.end + 1;
+        storage.end = end;
+        final long start = Math.max(this.start, end - maxSize);
+        return new AppendLog<>(storage, lineage, start, end, maxSize);
+    }
+
+    /**
+     * @return storage with chunks of this version, the last one is copied
+     */
+    @Nonnull
+    private Storage copy() {
+        final long firstChunk = start >>> CHUNK_SHIFT;
+        final int chunks = (int) ((end >>> CHUNK_SHIFT) - firstChunk) + 1;
+        final Object[][] copy = new Object[Math.max(4, chunks * 2)][];
+        System.arraycopy(storage.chunks, (int) (firstChunk - storage.firstChunk), copy, 0, chunks - 1);
+        final Object[] last = chunk(end);
+        if (last != null) {
+            copy[chunks - 1] = Arrays.copyOf(last, CHUNK_SIZE);
+        }
+        return new Storage(copy, firstChunk, end);
+    }
+
+    /**
+     * @return storage without evicted chunks and with space for new ones
+     */
+    @Nonnull
+    private Storage grow(@Nonnull Storage storage) {
+        final long firstChunk = start >>> CHUNK_SHIFT;
+        final int live = (int) ((end >>> CHUNK_SHIFT) - firstChunk);
+        final Object[][] chunks = new Object[Math.max(4, live * 2)][];
+        System.arraycopy(storage.chunks, (int) (firstChunk - storage.firstChunk), chunks, 0, live);
+        // Older versions have to copy before appending
+        storage.end = -1;
+        return new Storage(chunks, firstChunk, end);
+    }
+
+    private Object[] chunk(long index) {
+        final int chunk = (int) ((index >>> CHUNK_SHIFT) - storage.firstChunk);
+        return chunk < storage.chunks.length ? storage.chunks[chunk] : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T get(int location) {
+        if (location < 0 || location >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + location + ", Size: " + size());
+        }
+        final long index = start + location;
+        return (T) chunk(index)[(int) (index & CHUNK_MASK)];
+    }
+
+    @Override
+    public int size() {
+        return (int) (end - start);
+    }
+
+    /**
+     * @return max number of items
+     */
+    public int maxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return number of items evicted since the log was created
+     */
+    public long evicted() {
+        return start;
+    }
+
+    /**
+     * @param previous older version of the log
+     * @return true if this version was created from previous one by appending items
+     */
+    boolean appendsTo(@Nonnull AppendLog<?> previous) {
+        return lineage == previous.lineage && start >= previous.start && end >= previous.end;
+    }
+}
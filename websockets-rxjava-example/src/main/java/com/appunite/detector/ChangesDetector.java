@@ -19,11 +19,31 @@ package com.appunite.detector;
 import com.google.common.base.Function;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Futures;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.functions.Action1;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -38,13 +58,64 @@ public class ChangesDetector<T, H> {
         void notifyItemRangeRemoved(int start, int count);
     }
 
+    /**
+     * {@link ChangesAdapter} that is notified about moved items
+     *
+     * If adapter doesn't implement this interface moved items are notified as removed and
+     * inserted. Moves are detected only with {@link KeyedDetector}.
+     */
+    public static interface MoveChangesAdapter extends ChangesAdapter {
+
+        void notifyItemMoved(int fromPosition, int toPosition);
+    }
+
+    // Read by diffOn subscriber on subscription
     @Nonnull
-    public List<H> mItems = new ArrayList<>();
+    public volatile List<H> mItems = new ArrayList<>();
     @Nonnull
     public final Detector<T, H> mDetector;
+    @Nullable
+    private final ExecutorService mExecutor;
+    private final int mParallelThreshold;
+    private final boolean mMemoize;
+    // Results of detector for items of the previous data, guarded by itself
+    @Nonnull
+    private final IdentityHashMap<T, Memo<H>> mMemo = new IdentityHashMap<>();
+    // Incremented on every memoized transformation, marks entries that are still used
+    private long mGeneration;
 
     public ChangesDetector(@Nonnull Detector<T, H> detector) {
         mDetector = checkNotNull(detector);
+        mExecutor = null;
+        mParallelThreshold = Integer.MAX_VALUE;
+        mMemoize = false;
+    }
+
+    /**
+     * Creates detector for expensive {@link Detector#apply(Object)}
+     *
+     * Lists with at least parallelThreshold items are transformed in chunks on executor, at
+     * most one chunk per executor thread, so detector has to be thread safe. If memoize is
+     * true, items that are the same instances as in previous data are not transformed again,
+     * so detector has to return the same result for the same instance.
+     *
+     * @param detector detector
+     * @param executor executor on which chunks are transformed or null to transform on
+     *                 calling thread
+     * @param parallelThreshold minimal size of list that is transformed on executor
+     * @param memoize true if results should be reused for the same instances of items
+     */
+    public ChangesDetector(@Nonnull Detector<T, H> detector,
+                           @Nullable ExecutorService executor,
+                           int parallelThreshold,
+                           boolean memoize) {
+        if (parallelThreshold <= 0) {
+            throw new IllegalArgumentException("parallelThreshold should be greater than 0");
+        }
+        mDetector = checkNotNull(detector);
+        mExecutor = executor;
+        mParallelThreshold = parallelThreshold;
+        mMemoize = memoize;
     }
 
     public static interface Detector<T, H> extends Function<T, H> {
@@ -58,6 +129,19 @@ public class ChangesDetector<T, H> {
         boolean same(@Nonnull H item, @Nonnull H newOne);
     }
 
+    /**
+     * {@link Detector} that returns stable key of item, so changes are detected by hashing in
+     * O(n log n) instead of O(n * m)
+     *
+     * Keys of items that {@link #matches(Object, Object)} have to be equal, and keys of other
+     * items have to be different.
+     */
+    public static interface KeyedDetector<T, H> extends Detector<T, H> {
+
+        @Nonnull
+        Object key(@Nonnull H item);
+    }
+
     private int indexOf(@Nonnull List<H> list,
                         int start,
                         @Nonnull H item) {
@@ -76,9 +160,579 @@ public class ChangesDetector<T, H> {
         checkNotNull(adapter);
         checkNotNull(values);
 
-        final ImmutableList<H> list = FluentIterable.from(values)
-                .transform(mDetector)
-                .toList();
+        final List<H> list = transform(values);
+        notifyChanges(adapter, mItems, list, force);
+        mItems = list;
+    }
+
+    /**
+     * Changes computed by {@link #diffOn(ChangesAdapter, Scheduler)} that are waiting to be
+     * applied by {@link #apply(ChangesAdapter, Changes)}
+     */
+    public static class Changes<T, H> {
+        private static final int INSERTED = 0;
+        private static final int CHANGED = 1;
+        private static final int REMOVED = 2;
+        private static final int MOVED = 3;
+
+        @Nonnull
+        private final List<H> oldItems;
+        @Nonnull
+        private final List<T> values;
+        @Nonnull
+        private final List<H> items;
+        private final boolean force;
+        // Stream that computed changes or null
+        @Nullable
+        private Rebase<H> source;
+        // Operation followed by two arguments
+        private int[] operations = new int[3 * 4];
+        private int size = 0;
+
+        Changes(@Nonnull List<H> oldItems, @Nonnull List<T> values, @Nonnull List<H> items, boolean force) {
+            this.oldItems = oldItems;
+            this.values = values;
+            this.items = items;
+            this.force = force;
+        }
+
+        /**
+         * @return new data that changes were computed for
+         */
+        @Nonnull
+        public List<T> values() {
+            return values;
+        }
+
+        private void add(int operation, int first, int second) {
+            if (size + 3 > operations.length) {
+                operations = Arrays.copyOf(operations, operations.length * 2);
+            }
+            operations[size++] = operation;
+            operations[size++] = first;
+            operations[size++] = second;
+        }
+
+        private void notify(@Nonnull ChangesAdapter adapter) {
+            for (int i = 0; i < size; i += 3) {
+                final int first = operations[i + 1];
+                final int second = operations[i + 2];
+                switch (operations[i]) {
+                    case INSERTED:
+                        adapter.notifyItemRangeInserted(first, second);
+                        break;
+                    case CHANGED:
+                        adapter.notifyItemRangeChanged(first, second);
+                        break;
+                    case REMOVED:
+                        adapter.notifyItemRangeRemoved(first, second);
+                        break;
+                    case MOVED:
+                        ((MoveChangesAdapter) adapter).notifyItemMoved(first, second);
+                        break;
+                    default:
+                        throw new IllegalStateException("Unknown operation " + operations[i]);
+                }
+            }
+        }
+
+        @Nonnull
+        private ChangesAdapter recorder(boolean moves) {
+            final ChangesAdapter adapter = new MoveChangesAdapter() {
+                @Override
+                public void notifyItemMoved(int fromPosition, int toPosition) {
+                    add(MOVED, fromPosition, toPosition);
+                }
+
+                @Override
+                public void notifyItemRangeInserted(int start, int count) {
+                    add(INSERTED, start, count);
+                }
+
+                @Override
+                public void notifyItemRangeChanged(int start, int count) {
+                    add(CHANGED, start, count);
+                }
+
+                @Override
+                public void notifyItemRangeRemoved(int start, int count) {
+                    add(REMOVED, start, count);
+                }
+            };
+            if (moves) {
+                return adapter;
+            }
+            // Hide notifyItemMoved, so moves are recorded as removed and inserted items
+            return new ChangesAdapter() {
+                @Override
+                public void notifyItemRangeInserted(int start, int count) {
+                    adapter.notifyItemRangeInserted(start, count);
+                }
+
+                @Override
+                public void notifyItemRangeChanged(int start, int count) {
+                    adapter.notifyItemRangeChanged(start, count);
+                }
+
+                @Override
+                public void notifyItemRangeRemoved(int start, int count) {
+                    adapter.notifyItemRangeRemoved(start, count);
+                }
+            };
+        }
+    }
+
+    /**
+     * Stream of changes that can be restarted from other items
+     */
+    private interface Rebase<H> {
+
+        /**
+         * @param items items that next changes should be computed from
+         * @return false if stream is finished and won't compute changes anymore
+         */
+        boolean rebase(@Nonnull List<H> items);
+    }
+
+    /**
+     * Computes changes without touching adapter and current items, so it can be called on any
+     * thread as long as detector is thread safe
+     */
+    @Nonnull
+    Changes<T, H> changes(@Nonnull List<H> oldItems,
+                          @Nonnull List<T> values,
+                          boolean force,
+                          boolean moves) {
+        final Changes<T, H> changes = new Changes<>(oldItems, values, transform(values), force);
+        notifyChanges(changes.recorder(moves), oldItems, changes.items, force);
+        return changes;
+    }
+
+    /**
+     * Notifies adapter about changes computed in background and replaces current items
+     *
+     * Have to be called on the same thread as {@link #newData(ChangesAdapter, List, boolean)}.
+     * If current items are not the ones that changes were computed for, i.e. because
+     * {@link #newData(ChangesAdapter, List, boolean)} was called in the meantime, changes are
+     * skipped and the latest data is compared again with current items on scheduler. If
+     * stream of changes is already finished, changes are computed again on calling thread.
+     *
+     * @param adapter adapter to notify
+     * @param changes changes returned by {@link #diffOn(ChangesAdapter, Scheduler)}
+     * @return true if adapter was notified about {@link Changes#values()}, false if changes
+     * were skipped
+     */
+    public boolean apply(@Nonnull ChangesAdapter adapter, @Nonnull Changes<T, H> changes) {
+        checkNotNull(adapter);
+        checkNotNull(changes);
+        if (changes.oldItems != mItems) {
+            if (changes.source != null && changes.source.rebase(mItems)) {
+                return false;
+            }
+            newData(adapter, changes.values, changes.force);
+            return true;
+        }
+        mItems = changes.items;
+        changes.notify(adapter);
+        return true;
+    }
+
+    /**
+     * Computes changes of new data on scheduler
+     *
+     * Every list is compared with the previous one, starting from current items. If new data
+     * arrives while changes are computed only the latest one is compared next. Returned changes
+     * have to be applied in order by {@link #apply(ChangesAdapter, Changes)}:
+     * <pre>
+     * items
+     *     .compose(detector.diffOn(adapter, Schedulers.computation()))
+     *     .observeOn(AndroidSchedulers.mainThread())
+     *     .subscribe(detector.applyTo(adapter));
+     * </pre>
+     * Detector is called on scheduler, so it has to be thread safe.
+     *
+     * @param adapter adapter that changes will be applied to, it is not touched on scheduler
+     * @param scheduler scheduler on which changes are computed
+     * @return transformer of new data to changes
+     */
+    @Nonnull
+    public Observable.Transformer<List<T>, Changes<T, H>> diffOn(@Nonnull ChangesAdapter adapter,
+                                                                 @Nonnull final Scheduler scheduler) {
+        final boolean moves = adapter instanceof MoveChangesAdapter;
+        return new Observable.Transformer<List<T>, Changes<T, H>>() {
+            @Override
+            public Observable<Changes<T, H>> call(Observable<List<T>> observable) {
+                return observable.lift(new Observable.Operator<Changes<T, H>, List<T>>() {
+                    @Override
+                    public Subscriber<? super List<T>> call(Subscriber<? super Changes<T, H>> child) {
+                        final DiffSubscriber parent = new DiffSubscriber(child, scheduler.createWorker(), moves);
+                        child.add(parent);
+                        return parent;
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * @param adapter adapter to notify
+     * @return action that calls {@link #apply(ChangesAdapter, Changes)}
+     */
+    @Nonnull
+    public Action1<Changes<T, H>> applyTo(@Nonnull final ChangesAdapter adapter) {
+        return new Action1<Changes<T, H>>() {
+            @Override
+            public void call(Changes<T, H> changes) {
+                apply(adapter, changes);
+            }
+        };
+    }
+
+    private class DiffSubscriber extends Subscriber<List<T>> implements Rebase<H> {
+
+        @Nonnull
+        private final Subscriber<? super Changes<T, H>> child;
+        @Nonnull
+        private final Scheduler.Worker worker;
+        private final boolean moves;
+
+        private final Object lock = new Object();
+        @Nullable
+        private List<T> pending;
+        @Nullable
+        private List<T> latest;
+        private boolean running = false;
+        private boolean done = false;
+        private boolean finished = false;
+        @Nullable
+        private Throwable error;
+        @Nonnull
+        private List<H> base;
+
+        private final Action0 drain = new Action0() {
+            @Override
+            public void call() {
+                drain();
+            }
+        };
+
+        DiffSubscriber(@Nonnull Subscriber<? super Changes<T, H>> child,
+                       @Nonnull Scheduler.Worker worker,
+                       boolean moves) {
+            this.child = child;
+            this.worker = worker;
+            this.moves = moves;
+            this.base = mItems;
+            add(worker);
+        }
+
+        @Override
+        public void onNext(List<T> values) {
+            synchronized (lock) {
+                // Older data that wasn't compared yet is skipped
+                pending = values;
+                latest = values;
+                if (running) {
+                    return;
+                }
+                running = true;
+            }
+            worker.schedule(drain);
+        }
+
+        @Override
+        public boolean rebase(@Nonnull List<H> items) {
+            synchronized (lock) {
+                if (finished || isUnsubscribed()) {
+                    return false;
+                }
+                base = items;
+                if (pending == null) {
+                    pending = latest;
+                }
+                if (running) {
+                    return true;
+                }
+                running = true;
+            }
+            worker.schedule(drain);
+            return true;
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            synchronized (lock) {
+                error = e;
+                done = true;
+                if (running) {
+                    return;
+                }
+                running = true;
+            }
+            worker.schedule(drain);
+        }
+
+        @Override
+        public void onCompleted() {
+            synchronized (lock) {
+                done = true;
+                if (running) {
+                    return;
+                }
+                running = true;
+            }
+            worker.schedule(drain);
+        }
+
+        private void drain() {
+            for (;;) {
+                final List<T> values;
+                final List<H> base;
+                final boolean done;
+                final Throwable error;
+                synchronized (lock) {
+                    values = pending;
+                    pending = null;
+                    base = this.base;
+                    done = this.done;
+                    error = this.error;
+                    if (values == null && !done) {
+                        running = false;
+                        return;
+                    }
+                    if (values == null) {
+                        finished = true;
+                    }
+                }
+                if (child.isUnsubscribed()) {
+                    return;
+                }
+                if (values == null) {
+                    if (error != null) {
+                        child.onError(error);
+                    } else {
+                        child.onCompleted();
+                    }
+                    return;
+                }
+                final Changes<T, H> changes;
+                try {
+                    changes = changes(base, values, false, moves);
+                } catch (Throwable e) {
+                    child.onError(e);
+                    unsubscribe();
+                    return;
+                }
+                changes.source = this;
+                synchronized (lock) {
+                    // Unless stream was rebased in the meantime
+                    if (this.base == base) {
+                        this.base = changes.items;
+                    }
+                }
+                child.onNext(changes);
+            }
+        }
+    }
+
+    @Nonnull
+    private List<H> transform(@Nonnull List<T> values) {
+        if (values instanceof AppendLog) {
+            return new LogItems<>((AppendLog<T>) values, this);
+        }
+        return transformList(values);
+    }
+
+    @Nonnull
+    private List<H> transformList(@Nonnull List<T> values) {
+        if (mExecutor == null && !mMemoize) {
+            return FluentIterable.from(values)
+                    .transform(mDetector)
+                    .toList();
+        }
+        if (!mMemoize) {
+            return transformArray(values, null);
+        }
+        synchronized (mMemo) {
+            final List<H> items = transformArray(values, mMemo);
+            updateMemo(values, items);
+            return items;
+        }
+    }
+
+    @Nonnull
+    private List<H> transformArray(@Nonnull List<T> values, @Nullable IdentityHashMap<T, Memo<H>> memo) {
+        @SuppressWarnings("unchecked")
+        final H[] items = (H[]) new Object[values.size()];
+        if (mExecutor != null && items.length >= mParallelThreshold) {
+            transformParallel(mExecutor, values, memo, items);
+        } else {
+            transform(values, memo, items, 0, items.length);
+        }
+        return ImmutableList.copyOf(items);
+    }
+
+    private void updateMemo(@Nonnull List<T> values, @Nonnull List<H> items) {
+        final long generation = ++mGeneration;
+        int used = 0;
+        for (int i = 0, size = values.size(); i < size; i++) {
+            final T value = values.get(i);
+            final Memo<H> entry = mMemo.get(value);
+            if (entry == null) {
+                mMemo.put(value, new Memo<>(items.get(i), generation));
+                used += 1;
+            } else if (entry.generation != generation) {
+                entry.generation = generation;
+                used += 1;
+            }
+        }
+        if (mMemo.size() > used) {
+            // Evict items that are not in the new data
+            for (Iterator<Memo<H>> iterator = mMemo.values().iterator(); iterator.hasNext(); ) {
+                if (iterator.next().generation != generation) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    private void transformParallel(@Nonnull ExecutorService executor,
+                                   @Nonnull final List<T> values,
+                                   @Nullable final IdentityHashMap<T, Memo<H>> memo,
+                                   @Nonnull final H[] items) {
+        // Calling thread transforms one chunk too, every chunk has at least half of threshold
+        final long maxChunks = (2L * items.length + mParallelThreshold - 1) / mParallelThreshold;
+        final int chunks = (int) Math.max(1, Math.min(parallelism(executor) + 1, maxChunks));
+        final int chunkSize = (items.length + chunks - 1) / chunks;
+        final List<Future<?>> futures = new ArrayList<>(chunks - 1);
+        boolean finished = false;
+        try {
+            // The last chunk is transformed on calling thread
+            for (int start = 0; start < items.length - chunkSize; start += chunkSize) {
+                final int from = start;
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        transform(values, memo, items, from, from + chunkSize);
+                        return null;
+                    }
+                }));
+            }
+            transform(values, memo, items, futures.size() * chunkSize, items.length);
+            for (Future<?> future : futures) {
+                Futures.getUnchecked(future);
+            }
+            finished = true;
+        } finally {
+            if (!finished) {
+                // Result is discarded, so don't waste executor on the remaining chunks
+                for (Future<?> future : futures) {
+                    future.cancel(true);
+                }
+            }
+        }
+    }
+
+    private static int parallelism(@Nonnull ExecutorService executor) {
+        if (executor instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) executor).getMaximumPoolSize();
+        }
+        if (executor instanceof ForkJoinPool) {
+            return ((ForkJoinPool) executor).getParallelism();
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    private void transform(@Nonnull List<T> values,
+                           @Nullable IdentityHashMap<T, Memo<H>> memo,
+                           @Nonnull H[] items,
+                           int from,
+                           int to) {
+        for (int i = from; i < to; i++) {
+            final T value = values.get(i);
+            final Memo<H> entry = memo == null ? null : memo.get(value);
+            items[i] = entry != null ? entry.item : mDetector.apply(value);
+        }
+    }
+
+    private static class Memo<H> {
+        @Nonnull
+        final H item;
+        long generation;
+
+        Memo(@Nonnull H item, long generation) {
+            this.item = item;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * Items of {@link AppendLog} that are transformed only when they are accessed, so version
+     * of the log appended to the previous one is not transformed at all
+     */
+    private static class LogItems<T, H> extends AbstractList<H> implements RandomAccess {
+        @Nonnull
+        private final AppendLog<T> log;
+        @Nonnull
+        private final ChangesDetector<T, H> changesDetector;
+        // Transformed once per version, the same result can be computed by two threads
+        @Nullable
+        private volatile List<H> items;
+
+        LogItems(@Nonnull AppendLog<T> log, @Nonnull ChangesDetector<T, H> changesDetector) {
+            this.log = log;
+            this.changesDetector = changesDetector;
+        }
+
+        @Nonnull
+        private List<H> items() {
+            List<H> items = this.items;
+            if (items == null) {
+                items = changesDetector.transformList(log);
+                this.items = items;
+            }
+            return items;
+        }
+
+        @Override
+        public H get(int location) {
+            return items().get(location);
+        }
+
+        @Override
+        public int size() {
+            return log.size();
+        }
+    }
+
+    private void notifyChanges(@Nonnull ChangesAdapter adapter,
+                               @Nonnull List<H> oldItems,
+                               @Nonnull List<H> list,
+                               boolean force) {
+        if (oldItems instanceof LogItems && list instanceof LogItems) {
+            final AppendLog<?> oldLog = ((LogItems<?, ?>) oldItems).log;
+            final AppendLog<?> log = ((LogItems<?, ?>) list).log;
+            if (log.appendsTo(oldLog)) {
+                notifyAppended(adapter, oldLog, log, force);
+                return;
+            }
+        }
+        final int[] matches = mDetector instanceof KeyedDetector
+                ? keyedMatches((KeyedDetector<T, H>) mDetector, oldItems, list)
+                : null;
+        if (matches != null && adapter instanceof MoveChangesAdapter) {
+            notifyWithMoves((MoveChangesAdapter) adapter, oldItems, list, matches, force);
+            return;
+        }
+        if (matches != null) {
+            // Moved items are removed and inserted
+            final boolean[] stable = stable(matches);
+            for (int i = 0; i < matches.length; i++) {
+                if (!stable[i]) {
+                    matches[i] = -1;
+                }
+            }
+        }
 
         int firstListPosition = 0;
         int secondListPosition = 0;
@@ -86,9 +740,11 @@ public class ChangesDetector<T, H> {
         int counter = 0;
         int toRemove = 0;
 
-        for (;firstListPosition < mItems.size(); ++firstListPosition) {
-            final H first = mItems.get(firstListPosition);
-            final int indexOf = indexOf(list, secondListPosition, first);
+        for (;firstListPosition < oldItems.size(); ++firstListPosition) {
+            final H first = oldItems.get(firstListPosition);
+            final int indexOf = matches != null
+                    ? matches[firstListPosition]
+                    : indexOf(list, secondListPosition, first);
             if (indexOf >= 0) {
                 int itemsInserted = indexOf - secondListPosition;
                 counter = notify(adapter, counter, toRemove, itemsInserted);
@@ -105,9 +761,229 @@ public class ChangesDetector<T, H> {
             }
         }
 
-        int itemsInserted = values.size() - secondListPosition;
+        int itemsInserted = list.size() - secondListPosition;
         notify(adapter, counter, toRemove, itemsInserted);
-        mItems = list;
+    }
+
+    /**
+     * Notifies only evicted items from the beginning and appended items at the end in O(1)
+     */
+    private static void notifyAppended(@Nonnull ChangesAdapter adapter,
+                                       @Nonnull AppendLog<?> oldLog,
+                                       @Nonnull AppendLog<?> log,
+                                       boolean force) {
+        final int removed = (int) Math.min(log.evicted() - oldLog.evicted(), oldLog.size());
+        final int kept = oldLog.size() - removed;
+        if (removed > 0) {
+            adapter.notifyItemRangeRemoved(0, removed);
+        }
+        if (force && kept > 0) {
+            adapter.notifyItemRangeChanged(0, kept);
+        }
+        final int inserted = log.size() - kept;
+        if (inserted > 0) {
+            adapter.notifyItemRangeInserted(kept, inserted);
+        }
+    }
+
+    /**
+     * @return index in new list of every old item or -1 if item was removed
+     */
+    @Nonnull
+    private int[] keyedMatches(@Nonnull KeyedDetector<T, H> detector,
+                               @Nonnull List<H> oldItems,
+                               @Nonnull List<H> list) {
+        final Map<Object, Integer> newIndexes = new HashMap<>(list.size() * 2);
+        // Iterate from the end so first of duplicated keys wins
+        for (int i = list.size() - 1; i >= 0; i--) {
+            newIndexes.put(detector.key(list.get(i)), i);
+        }
+        final int[] matches = new int[oldItems.size()];
+        for (int i = 0; i < matches.length; i++) {
+            final Integer index = newIndexes.remove(detector.key(oldItems.get(i)));
+            matches[i] = index == null ? -1 : index;
+        }
+        return matches;
+    }
+
+    /**
+     * Finds longest increasing subsequence of matched indexes in O(n log n)
+     *
+     * @return true for items that keep their relative order, other matched items are moved
+     */
+    @Nonnull
+    private static boolean[] stable(@Nonnull int[] matches) {
+        // tails[k] is position of the smallest tail of increasing subsequence of length k + 1
+        final int[] tails = new int[matches.length];
+        final int[] previous = new int[matches.length];
+        int length = 0;
+        for (int i = 0; i < matches.length; i++) {
+            final int value = matches[i];
+            if (value < 0) {
+                continue;
+            }
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                final int middle = (low + high) >>> 1;
+                if (matches[tails[middle]] < value) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            previous[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length) {
+                length += 1;
+            }
+        }
+        final boolean[] stable = new boolean[matches.length];
+        for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = previous[i]) {
+            stable[i] = true;
+        }
+        return stable;
+    }
+
+    private void notifyWithMoves(@Nonnull MoveChangesAdapter adapter,
+                                 @Nonnull List<H> oldItems,
+                                 @Nonnull List<H> list,
+                                 @Nonnull int[] matches,
+                                 boolean force) {
+        // Removed items
+        int kept = 0;
+        int toRemove = 0;
+        for (int match : matches) {
+            if (match < 0) {
+                toRemove += 1;
+                continue;
+            }
+            if (toRemove > 0) {
+                adapter.notifyItemRangeRemoved(kept, toRemove);
+                toRemove = 0;
+            }
+            kept += 1;
+        }
+        if (toRemove > 0) {
+            adapter.notifyItemRangeRemoved(kept, toRemove);
+        }
+
+        final boolean[] stable = stable(matches);
+        final int[] oldIndexes = new int[list.size()];
+        Arrays.fill(oldIndexes, -1);
+        for (int i = 0; i < matches.length; i++) {
+            if (matches[i] >= 0) {
+                oldIndexes[matches[i]] = i;
+            }
+        }
+        notifyMoves(adapter, matches.length, oldIndexes, stable);
+
+        // Inserted and changed items
+        int toInsert = 0;
+        int changedStart = -1;
+        for (int newIndex = 0; newIndex <= oldIndexes.length; newIndex++) {
+            final int oldIndex = newIndex < oldIndexes.length ? oldIndexes[newIndex] : -1;
+            final boolean changed = oldIndex >= 0
+                    && (force || !mDetector.same(oldItems.get(oldIndex), list.get(newIndex)));
+            if (!changed && changedStart >= 0) {
+                adapter.notifyItemRangeChanged(changedStart, newIndex - changedStart);
+                changedStart = -1;
+            }
+            if (oldIndex >= 0 || newIndex == oldIndexes.length) {
+                if (toInsert > 0) {
+                    adapter.notifyItemRangeInserted(newIndex - toInsert, toInsert);
+                    toInsert = 0;
+                }
+            } else {
+                toInsert += 1;
+            }
+            if (changed && changedStart < 0) {
+                changedStart = newIndex;
+            }
+        }
+    }
+
+    /**
+     * Moves items, in order of new positions, each one right after its predecessor
+     *
+     * Every moved item ends up after the nearest preceding stable item (anchor), so order of
+     * the list at any time is known in advance: anchor, items moved after it and next
+     * anchor. Positions are counted with Fenwick tree over these slots in O(log n).
+     */
+    private static void notifyMoves(@Nonnull MoveChangesAdapter adapter,
+                                    int oldSize,
+                                    @Nonnull int[] oldIndexes,
+                                    @Nonnull boolean[] stable) {
+        // Number of items moved after every anchor, index 0 is for beginning of the list
+        final int[] movedAfter = new int[oldSize + 1];
+        int anchor = -1;
+        int moves = 0;
+        for (int oldIndex : oldIndexes) {
+            if (oldIndex < 0) {
+                continue;
+            }
+            if (stable[oldIndex]) {
+                anchor = oldIndex;
+            } else {
+                movedAfter[anchor + 1] += 1;
+                moves += 1;
+            }
+        }
+        if (moves == 0) {
+            return;
+        }
+        // Slot of anchor, moved items follow it
+        final int[] anchorSlots = new int[oldSize + 1];
+        int slots = 0;
+        for (int i = 0; i <= oldSize; i++) {
+            anchorSlots[i] = slots;
+            slots += 1 + movedAfter[i];
+        }
+        final int[] tree = new int[slots + 1];
+        for (int oldIndex : oldIndexes) {
+            if (oldIndex >= 0) {
+                add(tree, anchorSlots[oldIndex + 1], 1);
+            }
+        }
+        anchor = -1;
+        int run = 0;
+        for (int oldIndex : oldIndexes) {
+            if (oldIndex < 0) {
+                continue;
+            }
+            if (stable[oldIndex]) {
+                anchor = oldIndex;
+                run = 0;
+                continue;
+            }
+            run += 1;
+            final int oldSlot = anchorSlots[oldIndex + 1];
+            final int newSlot = anchorSlots[anchor + 1] + run;
+            final int from = count(tree, oldSlot);
+            add(tree, oldSlot, -1);
+            final int to = count(tree, newSlot);
+            add(tree, newSlot, 1);
+            if (from != to) {
+                adapter.notifyItemMoved(from, to);
+            }
+        }
+    }
+
+    private static void add(@Nonnull int[] tree, int slot, int value) {
+        for (int i = slot + 1; i < tree.length; i += i & -i) {
+            tree[i] += value;
+        }
+    }
+
+    /**
+     * @return number of items in slots before given slot
+     */
+    private static int count(@Nonnull int[] tree, int slot) {
+        int sum = 0;
+        for (int i = slot; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
     }
 
     private int notify(@Nonnull ChangesAdapter adapter,
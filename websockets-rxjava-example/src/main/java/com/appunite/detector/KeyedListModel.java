@@ -0,0 +1,491 @@
+/*
+ * Copyright 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.appunite.detector;
+
+import com.appunite.websocket.rx.object.messages.RxObjectEvent;
+import com.appunite.websocket.rx.object.messages.RxObjectEventMessage;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import rx.functions.Action1;
+import rx.functions.Func1;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * List of keyed items modified by operations sent by server
+ *
+ * Instead of comparing whole lists by {@link ChangesDetector}, every operation is applied in
+ * O(log n) and adapter is notified directly. Notifications of operations from one frame are
+ * coalesced, i.e. items inserted one after another are notified as one range.
+ * <pre>
+ * rxObjectWebSockets.webSocketObservable()
+ *     .observeOn(AndroidSchedulers.mainThread())
+ *     .subscribe(model.applyTo(adapter, operationsOfMessage));
+ * </pre>
+ * Model has to be used on one thread, the same that adapter reads items on.
+ */
+public class KeyedListModel<K, T> {
+
+    /**
+     * Single change of the list
+     */
+    public static class Operation<K, T> {
+        private static final int INSERT = 0;
+        private static final int APPEND = 1;
+        private static final int UPDATE = 2;
+        private static final int REMOVE = 3;
+
+        private final int type;
+        @Nonnull
+        private final K key;
+        @Nullable
+        private final T item;
+        @Nullable
+        private final K after;
+
+        private Operation(int type, @Nonnull K key, @Nullable T item, @Nullable K after) {
+            this.type = type;
+            this.key = checkNotNull(key);
+            this.item = item;
+            this.after = after;
+        }
+
+        /**
+         * Inserts item after item with given key, if there is no such item, item is appended.
+         * If item with the same key exists it is updated.
+         *
+         * @param key key of item
+         * @param item item to insert
+         * @param after key of item after which item is inserted or null to insert at beginning
+         * @return operation
+         */
+        @Nonnull
+        public static <K, T> Operation<K, T> insert(@Nonnull K key, @Nonnull T item, @Nullable K after) {
+            return new Operation<>(INSERT, key, checkNotNull(item), after);
+        }
+
+        /**
+         * Inserts item at the end, if item with the same key exists it is updated.
+         *
+         * @param key key of item
+         * @param item item to insert
+         * @return operation
+         */
+        @Nonnull
+        public static <K, T> Operation<K, T> append(@Nonnull K key, @Nonnull T item) {
+            return new Operation<>(APPEND, key, checkNotNull(item), null);
+        }
+
+        /**
+         * Replaces item with given key, if there is no such item operation is ignored
+         *
+         * @param key key of item
+         * @param item new item
+         * @return operation
+         */
+        @Nonnull
+        public static <K, T> Operation<K, T> update(@Nonnull K key, @Nonnull T item) {
+            return new Operation<>(UPDATE, key, checkNotNull(item), null);
+        }
+
+        /**
+         * Removes item with given key, if there is no such item operation is ignored
+         *
+         * @param key key of item
+         * @return operation
+         */
+        @Nonnull
+        public static <K, T> Operation<K, T> remove(@Nonnull K key) {
+            return new Operation<>(REMOVE, key, null, null);
+        }
+
+        @Override
+        public String toString() {
+            return "Operation{" +
+                    "type=" + type +
+                    ", key=" + key +
+                    ", item=" + item +
+                    ", after=" + after +
+                    '}';
+        }
+    }
+
+    /**
+     * Node of treap ordered by position, priority keeps it balanced
+     */
+    private static class Node<K, T> {
+        @Nonnull
+        final K key;
+        @Nonnull
+        T item;
+        final int priority;
+        int size = 1;
+        @Nullable
+        Node<K, T> left;
+        @Nullable
+        Node<K, T> right;
+        @Nullable
+        Node<K, T> parent;
+
+        Node(@Nonnull K key, @Nonnull T item, int priority) {
+            this.key = key;
+            this.item = item;
+            this.priority = priority;
+        }
+    }
+
+    @Nonnull
+    private final Map<K, Node<K, T>> nodes = new HashMap<>();
+    @Nonnull
+    private final Random random = new Random();
+    @Nullable
+    private Node<K, T> root;
+    // Second result of splitLeft
+    @Nullable
+    private Node<K, T> splitRight;
+
+    // Range that is not notified yet
+    private int pendingType = -1;
+    private int pendingStart;
+    private int pendingCount;
+
+    /**
+     * @return number of items
+     */
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * @param position position of item
+     * @return item at position in O(log n)
+     */
+    @Nonnull
+    public T get(int position) {
+        if (position < 0 || position >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + position + ", Size: " + size());
+        }
+        Node<K, T> node = root;
+        for (;;) {
+            assert node != null;
+            final int leftSize = size(node.left);
+            if (position < leftSize) {
+                node = node.left;
+            } else if (position == leftSize) {
+                return node.item;
+            } else {
+                position -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * @param key key of item
+     * @return position of item in O(log n) or -1 if there is no such item
+     */
+    public int indexOf(@Nonnull K key) {
+        final Node<K, T> node = nodes.get(key);
+        return node == null ? -1 : position(node);
+    }
+
+    /**
+     * Applies operations and notifies adapter, adjacent changes are notified together
+     *
+     * @param adapter adapter to notify
+     * @param operations operations received in one frame
+     */
+    public void apply(@Nonnull ChangesDetector.ChangesAdapter adapter, @Nonnull List<Operation<K, T>> operations) {
+        checkNotNull(adapter);
+        for (Operation<K, T> operation : operations) {
+            apply(adapter, operation);
+        }
+        flush(adapter);
+    }
+
+    /**
+     * Removes all items
+     *
+     * @param adapter adapter to notify
+     */
+    public void clear(@Nonnull ChangesDetector.ChangesAdapter adapter) {
+        final int size = size();
+        root = null;
+        nodes.clear();
+        if (size > 0) {
+            adapter.notifyItemRangeRemoved(0, size);
+        }
+    }
+
+    /**
+     * @param adapter adapter to notify
+     * @param operations returns operations sent in message or null if message doesn't
+     *                   contain operations
+     * @return action that applies operations from every {@link RxObjectEventMessage}
+     */
+    @Nonnull
+    public Action1<RxObjectEvent> applyTo(@Nonnull final ChangesDetector.ChangesAdapter adapter,
+                                          @Nonnull final Func1<Object, List<Operation<K, T>>> operations) {
+        return new Action1<RxObjectEvent>() {
+            @Override
+            public void call(RxObjectEvent event) {
+                if (event instanceof RxObjectEventMessage) {
+                    final List<Operation<K, T>> list = operations.call(((RxObjectEventMessage) event).message());
+                    if (list != null) {
+                        apply(adapter, list);
+                    }
+                }
+            }
+        };
+    }
+
+    private void apply(@Nonnull ChangesDetector.ChangesAdapter adapter, @Nonnull Operation<K, T> operation) {
+        final Node<K, T> existing = nodes.get(operation.key);
+        switch (operation.type) {
+            case Operation.INSERT:
+            case Operation.APPEND:
+                assert operation.item != null;
+                if (existing != null) {
+                    update(adapter, existing, operation.item);
+                    return;
+                }
+                final int position = insertPosition(operation);
+                final Node<K, T> node = new Node<>(operation.key, operation.item, random.nextInt());
+                nodes.put(operation.key, node);
+                final Node<K, T> left = splitLeft(root, position);
+                final Node<K, T> right = splitRight;
+                root = merge(merge(left, node), right);
+                assert root != null;
+                root.parent = null;
+                inserted(adapter, position);
+                break;
+            case Operation.UPDATE:
+                assert operation.item != null;
+                if (existing != null) {
+                    update(adapter, existing, operation.item);
+                }
+                break;
+            case Operation.REMOVE:
+                if (existing != null) {
+                    final int removedPosition = position(existing);
+                    nodes.remove(operation.key);
+                    replace(existing, merge(existing.left, existing.right));
+                    removed(adapter, removedPosition);
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown operation " + operation.type);
+        }
+    }
+
+    private int insertPosition(@Nonnull Operation<K, T> operation) {
+        if (operation.type == Operation.APPEND) {
+            return size();
+        }
+        if (operation.after == null) {
+            return 0;
+        }
+        final Node<K, T> after = nodes.get(operation.after);
+        return after == null ? size() : position(after) + 1;
+    }
+
+    private void update(@Nonnull ChangesDetector.ChangesAdapter adapter, @Nonnull Node<K, T> node, @Nonnull T item) {
+        if (node.item.equals(item)) {
+            return;
+        }
+        node.item = item;
+        changed(adapter, position(node));
+    }
+
+    // Positions
+
+    private static int size(@Nullable Node<?, ?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static int position(@Nonnull Node<?, ?> node) {
+        int position = size(node.left);
+        for (Node<?, ?> child = node, parent = node.parent; parent != null; child = parent, parent = parent.parent) {
+            if (parent.right == child) {
+                position += size(parent.left) + 1;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Replaces removed node by merged subtrees of its children
+     */
+    private void replace(@Nonnull Node<K, T> removed, @Nullable Node<K, T> subtree) {
+        final Node<K, T> parent = removed.parent;
+        if (subtree != null) {
+            subtree.parent = parent;
+        }
+        if (parent == null) {
+            root = subtree;
+            return;
+        }
+        if (parent.left == removed) {
+            parent.left = subtree;
+        } else {
+            parent.right = subtree;
+        }
+        for (Node<K, T> node = parent; node != null; node = node.parent) {
+            node.size -= 1;
+        }
+    }
+
+    // Treap
+
+    /**
+     * Splits tree into first count items that are returned and the rest that is stored in
+     * {@link #splitRight}
+     */
+    @Nullable
+    private Node<K, T> splitLeft(@Nullable Node<K, T> node, int count) {
+        if (node == null) {
+            splitRight = null;
+            return null;
+        }
+        final int leftSize = size(node.left);
+        if (count <= leftSize) {
+            final Node<K, T> left = splitLeft(node.left, count);
+            setLeft(node, splitRight);
+            splitRight = node;
+            return left;
+        } else {
+            final Node<K, T> left = splitLeft(node.right, count - leftSize - 1);
+            final Node<K, T> right = splitRight;
+            setRight(node, left);
+            splitRight = right;
+            return node;
+        }
+    }
+
+    @Nullable
+    private Node<K, T> merge(@Nullable Node<K, T> left, @Nullable Node<K, T> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            setRight(left, merge(left.right, right));
+            return left;
+        } else {
+            setLeft(right, merge(left, right.left));
+            return right;
+        }
+    }
+
+    private static <K, T> void setLeft(@Nonnull Node<K, T> node, @Nullable Node<K, T> left) {
+        node.left = left;
+        if (left != null) {
+            left.parent = node;
+        }
+        node.size = size(node.left) + size(node.right) + 1;
+    }
+
+    private static <K, T> void setRight(@Nonnull Node<K, T> node, @Nullable Node<K, T> right) {
+        node.right = right;
+        if (right != null) {
+            right.parent = node;
+        }
+        node.size = size(node.left) + size(node.right) + 1;
+    }
+
+    // Notifications
+
+    private void inserted(@Nonnull ChangesDetector.ChangesAdapter adapter, int position) {
+        if (pendingType == Operation.INSERT
+                && position >= pendingStart && position <= pendingStart + pendingCount) {
+            pendingCount += 1;
+            return;
+        }
+        flush(adapter);
+        pending(Operation.INSERT, position);
+    }
+
+    private void changed(@Nonnull ChangesDetector.ChangesAdapter adapter, int position) {
+        if (pendingType == Operation.INSERT
+                && position >= pendingStart && position < pendingStart + pendingCount) {
+            // Inserted item is not displayed yet
+            return;
+        }
+        if (pendingType == Operation.UPDATE
+                && position >= pendingStart - 1 && position <= pendingStart + pendingCount) {
+            if (position == pendingStart - 1) {
+                pendingStart -= 1;
+                pendingCount += 1;
+            } else if (position == pendingStart + pendingCount) {
+                pendingCount += 1;
+            }
+            return;
+        }
+        flush(adapter);
+        pending(Operation.UPDATE, position);
+    }
+
+    private void removed(@Nonnull ChangesDetector.ChangesAdapter adapter, int position) {
+        if (pendingType == Operation.INSERT
+                && position >= pendingStart && position < pendingStart + pendingCount) {
+            // Inserted item is not displayed yet
+            pendingCount -= 1;
+            if (pendingCount == 0) {
+                pendingType = -1;
+            }
+            return;
+        }
+        if (pendingType == Operation.REMOVE
+                && (position == pendingStart || position == pendingStart - 1)) {
+            pendingStart = position;
+            pendingCount += 1;
+            return;
+        }
+        flush(adapter);
+        pending(Operation.REMOVE, position);
+    }
+
+    private void pending(int type, int position) {
+        pendingType = type;
+        pendingStart = position;
+        pendingCount = 1;
+    }
+
+    private void flush(@Nonnull ChangesDetector.ChangesAdapter adapter) {
+        switch (pendingType) {
+            case Operation.INSERT:
+                adapter.notifyItemRangeInserted(pendingStart, pendingCount);
+                break;
+            case Operation.UPDATE:
+                adapter.notifyItemRangeChanged(pendingStart, pendingCount);
+                break;
+            case Operation.REMOVE:
+                adapter.notifyItemRangeRemoved(pendingStart, pendingCount);
+                break;
+        }
+        pendingType = -1;
+    }
+}
@@ -25,6 +25,14 @@ public class SimpleDetector<T extends SimpleDetector.Detectable<T>> implements C
         public boolean same(@Nonnull T item);
     }
 
+    public static interface KeyedDetectable<T> extends Detectable<T> {
+        /**
+         * @return key that is equal for items that {@link #matches(Object)}
+         */
+        @Nonnull
+        public Object key();
+    }
+
     @Nonnull
     @Override
     public T apply(@Nonnull T item) {
@@ -0,0 +1,29 @@
+/*
+ * Copyright 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.appunite.detector;
+
+import javax.annotation.Nonnull;
+
+public class SimpleKeyedDetector<T extends SimpleDetector.KeyedDetectable<T>> extends SimpleDetector<T>
+        implements ChangesDetector.KeyedDetector<T, T> {
+
+    @Nonnull
+    @Override
+    public Object key(@Nonnull T item) {
+        return item.key();
+    }
+}
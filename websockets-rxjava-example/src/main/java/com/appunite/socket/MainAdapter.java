@@ -7,16 +7,19 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import com.appunite.detector.ChangesDetector;
-import com.appunite.detector.SimpleDetector;
-import com.google.common.collect.ImmutableList;
-
+import com.appunite.detector.SimpleKeyedDetector;
 import java.text.DateFormat;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 
 import javax.annotation.Nonnull;
 
+import rx.android.schedulers.AndroidSchedulers;
 import rx.android.view.ViewObservable;
 import rx.functions.Action1;
+import rx.schedulers.Schedulers;
+import rx.subjects.PublishSubject;
 import rx.subscriptions.CompositeSubscription;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -33,7 +36,7 @@ abstract class BaseViewHolder extends RecyclerView.ViewHolder {
 }
 
 public class MainAdapter extends RecyclerView.Adapter<BaseViewHolder> implements
-        Action1<ImmutableList<MainPresenter.AdapterItem>>, ChangesDetector.ChangesAdapter {
+        Action1<List<MainPresenter.AdapterItem>>, ChangesDetector.MoveChangesAdapter {
 
 
     private DateFormat timeInstance = DateFormat.getTimeInstance(DateFormat.MEDIUM);
@@ -41,10 +44,28 @@ public class MainAdapter extends RecyclerView.Adapter<BaseViewHolder> implements
     @Nonnull
     private final ChangesDetector<MainPresenter.AdapterItem, MainPresenter.AdapterItem> changesDetector;
     @Nonnull
-    private ImmutableList<MainPresenter.AdapterItem> items = ImmutableList.of();
+    private List<MainPresenter.AdapterItem> items = Collections.emptyList();
+    @Nonnull
+    private final PublishSubject<List<MainPresenter.AdapterItem>> newItems = PublishSubject.create();
 
     public MainAdapter() {
-        this.changesDetector = new ChangesDetector<>(new SimpleDetector<MainPresenter.AdapterItem>());
+        this.changesDetector = new ChangesDetector<>(new SimpleKeyedDetector<MainPresenter.AdapterItem>());
+        // Changes are computed in background, items and notifications are replaced together
+        newItems
+                .compose(changesDetector.diffOn(this, Schedulers.computation()))
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Action1<ChangesDetector.Changes<MainPresenter.AdapterItem, MainPresenter.AdapterItem>>() {
+                    @Override
+                    public void call(ChangesDetector.Changes<MainPresenter.AdapterItem, MainPresenter.AdapterItem> changes) {
+                        // Lists passed to adapter are immutable snapshots, i.e. AppendLog
+                        final List<MainPresenter.AdapterItem> previous = items;
+                        items = changes.values();
+                        if (!changesDetector.apply(MainAdapter.this, changes)) {
+                            // Outdated changes are computed again
+                            items = previous;
+                        }
+                    }
+                });
     }
 
     @Override
@@ -71,9 +92,8 @@ public class MainAdapter extends RecyclerView.Adapter<BaseViewHolder> implements
     }
 
     @Override
-    public void call(@Nonnull ImmutableList<MainPresenter.AdapterItem> items) {
-        this.items = items;
-        changesDetector.newData(this, items, false);
+    public void call(@Nonnull List<MainPresenter.AdapterItem> items) {
+        newItems.onNext(items);
     }
 
     private class MainViewHolder extends BaseViewHolder {
@@ -25,9 +25,9 @@ import com.appunite.websocket.rx.object.messages.RxObjectEventDisconnected;
 import com.appunite.websocket.rx.object.messages.RxObjectEventMessage;
 import com.appunite.websocket.rx.object.messages.RxObjectEventWrongMessageFormat;
 import com.appunite.websocket.rx.object.messages.RxObjectEventWrongStringMessageFormat;
+import com.appunite.detector.AppendLog;
 import com.example.Socket;
 import com.example.model.DataMessage;
-import com.google.common.collect.ImmutableList;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -46,7 +46,12 @@ import rx.subjects.PublishSubject;
 
 public class MainPresenter {
 
-    private final BehaviorSubject<ImmutableList<AdapterItem>> items;
+    /**
+     * Number of newest items that are displayed
+     */
+    public static final int MAX_ITEMS = 1000;
+
+    private final BehaviorSubject<AppendLog<AdapterItem>> items;
     private final Observable<Boolean> connected;
     private final BehaviorSubject<Boolean> requestConnection = BehaviorSubject.create();
     private final PublishSubject<Object> connectClick = PublishSubject.create();
@@ -58,6 +63,16 @@ public class MainPresenter {
     public MainPresenter(@Nonnull final Socket socket,
                          @Nonnull final Scheduler networkScheduler,
                          @Nonnull final Scheduler uiScheduler) {
+        this(socket, networkScheduler, uiScheduler, MAX_ITEMS);
+    }
+
+    /**
+     * @param maxItems number of newest items that are displayed, older are evicted
+     */
+    public MainPresenter(@Nonnull final Socket socket,
+                         @Nonnull final Scheduler networkScheduler,
+                         @Nonnull final Scheduler uiScheduler,
+                         int maxItems) {
         items = BehaviorSubject.create();
 
         Observable.merge(connectClick.map(funcTrue()), disconnectClick.map(funcFalse()))
@@ -102,10 +117,10 @@ public class MainPresenter {
                 .subscribe(addItem);
 
         addItem
-                .scan(ImmutableList.<AdapterItem>of(), new Func2<ImmutableList<AdapterItem>, AdapterItem, ImmutableList<AdapterItem>>() {
+                .scan(AppendLog.<AdapterItem>empty(maxItems), new Func2<AppendLog<AdapterItem>, AdapterItem, AppendLog<AdapterItem>>() {
                     @Override
-                    public ImmutableList<AdapterItem> call(ImmutableList<AdapterItem> adapterItems, AdapterItem adapterItem) {
-                        return ImmutableList.<AdapterItem>builder().addAll(adapterItems).add(adapterItem).build();
+                    public AppendLog<AdapterItem> call(AppendLog<AdapterItem> adapterItems, AdapterItem adapterItem) {
+                        return adapterItems.append(adapterItem);
                     }
                 })
                 .subscribe(items);
@@ -136,9 +151,9 @@ public class MainPresenter {
 
     @Nonnull
     public Observable<ItemsWithScroll> itemsWithScrollObservable() {
-        return Observable.combineLatest(items, lastItemInView, new Func2<ImmutableList<MainPresenter.AdapterItem>, Boolean, ItemsWithScroll>() {
+        return Observable.combineLatest(items, lastItemInView, new Func2<AppendLog<MainPresenter.AdapterItem>, Boolean, ItemsWithScroll>() {
             @Override
-            public ItemsWithScroll call(ImmutableList<MainPresenter.AdapterItem> adapterItems, Boolean isLastItemInList) {
+            public ItemsWithScroll call(AppendLog<MainPresenter.AdapterItem> adapterItems, Boolean isLastItemInList) {
                 final int lastItemPosition = adapterItems.size() - 1;
                 final boolean shouldScroll = isLastItemInList && lastItemPosition >= 0;
                 return new ItemsWithScroll(adapterItems, shouldScroll, lastItemPosition);
@@ -345,7 +360,7 @@ public class MainPresenter {
         };
     }
 
-    public class AdapterItem implements SimpleDetector.Detectable<AdapterItem> {
+    public class AdapterItem implements SimpleDetector.KeyedDetectable<AdapterItem> {
 
         @Nonnull
         private final String id;
@@ -416,6 +431,12 @@ public class MainPresenter {
             return equals(item);
         }
 
+        @Nonnull
+        @Override
+        public Object key() {
+            return id;
+        }
+
         @Nonnull
         public Observer<Object> clickObserver() {
             return Observers.create(new Action1<Object>() {
@@ -427,17 +448,17 @@ public class MainPresenter {
     }
 
     public static class ItemsWithScroll {
-        private final ImmutableList<AdapterItem> items;
+        private final AppendLog<AdapterItem> items;
         private final boolean shouldScroll;
         private final int scrollToPosition;
 
-        public ItemsWithScroll(ImmutableList<AdapterItem> items, boolean shouldScroll, int scrollToPosition) {
+        public ItemsWithScroll(AppendLog<AdapterItem> items, boolean shouldScroll, int scrollToPosition) {
             this.items = items;
             this.shouldScroll = shouldScroll;
             this.scrollToPosition = scrollToPosition;
         }
 
-        public ImmutableList<AdapterItem> items() {
+        public AppendLog<AdapterItem> items() {
             return items;
         }
 
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.object;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+
+import javax.annotation.Nonnull;
+
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.Okio;
+
+/**
+ * {@link GsonObjectSerializer} that also parses binary messages containing UTF-8 json.
+ *
+ * Binary messages are read by {@link JsonReader} directly from socket data, so json is never
+ * materialized as a String. They are parsed strictly, so malformed json or data after json
+ * is rejected. If created with binary flag, messages are also sent as UTF-8 json
+ * binary messages written by {@link JsonWriter} directly to outgoing buffer.
+ */
+public class GsonStreamingObjectSerializer extends GsonObjectSerializer
+        implements StreamingObjectSerializer, SinkObjectSerializer {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Nonnull
+    private final Gson gson;
+    @Nonnull
+    private final TypeAdapter<?> adapter;
+    private final boolean binary;
+
+    public GsonStreamingObjectSerializer(@Nonnull Gson gson, @Nonnull Type typeOfT) {
+        this(gson, typeOfT, false);
+    }
+
+    /**
+     * @param gson gson instance
+     * @param typeOfT type of messages returned by server
+     * @param binary true if messages should be sent as binary messages
+     */
+    public GsonStreamingObjectSerializer(@Nonnull Gson gson, @Nonnull Type typeOfT, boolean binary) {
+        super(gson, typeOfT);
+        this.gson = gson;
+        this.adapter = gson.getAdapter(TypeToken.get(typeOfT));
+        this.binary = binary;
+    }
+
+    @Nonnull
+    @Override
+    public Object serialize(@Nonnull BufferedSource source) throws ObjectParseException {
+        final JsonReader reader = new JsonReader(new InputStreamReader(source.inputStream(), UTF_8));
+        // Gson#fromJson(JsonReader, Type) is lenient and doesn't check if whole input was read
+        reader.setLenient(false);
+        final Object object;
+        try {
+            if (reader.peek() == JsonToken.END_DOCUMENT) {
+                throw new ObjectParseException("Empty message");
+            }
+            object = adapter.read(reader);
+            if (reader.peek() != JsonToken.END_DOCUMENT) {
+                throw new ObjectParseException("Unexpected data after json");
+            }
+        } catch (JsonParseException | IllegalStateException | IOException e) {
+            throw new ObjectParseException("Could not parse", e);
+        }
+        if (object == null) {
+            throw new ObjectParseException("Empty message");
+        }
+        return object;
+    }
+
+    @Nonnull
+    @Override
+    public Object serialize(@Nonnull byte[] message) throws ObjectParseException {
+        return serialize(Okio.buffer(Okio.source(new ByteArrayInputStream(message))));
+    }
+
+    @Override
+    public void deserializeBinary(@Nonnull Object message, @Nonnull BufferedSink sink) throws ObjectParseException {
+        final Writer writer = new OutputStreamWriter(sink.outputStream(), UTF_8);
+        try {
+            gson.toJson(message, message.getClass(), new JsonWriter(writer));
+            writer.flush();
+        } catch (JsonParseException | IOException e) {
+            throw new ObjectParseException("Could not serialize", e);
+        }
+    }
+
+    @Nonnull
+    @Override
+    public byte[] deserializeBinary(@Nonnull Object message) throws ObjectParseException {
+        final Buffer buffer = new Buffer();
+        deserializeBinary(message, buffer);
+        return buffer.readByteArray();
+    }
+
+    @Override
+    public boolean isBinary(@Nonnull Object message) {
+        return binary;
+    }
+}
@@ -22,31 +22,10 @@ import javax.annotation.Nonnull;
 
 import rx.Observable;
 import rx.Subscriber;
-import rx.functions.Func0;
 import rx.functions.Func1;
-import rx.internal.operators.OperatorMulticast;
-import rx.subjects.BehaviorSubject;
-import rx.subjects.Subject;
 
 public class MoreObservables {
 
-    @Nonnull
-    public static <T> Observable.Transformer<? super T, ? extends T> behaviorRefCount() {
-        return new Observable.Transformer<T, T>() {
-            @Override
-            public Observable<T> call(Observable<T> tObservable) {
-                return new OperatorMulticast<>(tObservable, new Func0<Subject<? super T, ? extends T>>() {
-
-                    @Override
-                    public Subject<? super T, ? extends T> call() {
-                        return BehaviorSubject.<T>create();
-                    }
-
-                }).refCount();
-            }
-        };
-    }
-
     @Nonnull
     public static <T> Observable.Transformer<Object, T> filterAndMap(@Nonnull final Class<T> clazz) {
         return new Observable.Transformer<Object, T>() {
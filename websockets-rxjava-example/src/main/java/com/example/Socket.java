@@ -17,13 +17,14 @@
 package com.example;
 
 import com.appunite.websocket.rx.*;
+import com.appunite.websocket.rx.object.ObjectMessageDispatcher;
+import com.appunite.websocket.rx.object.ObjectRequestCorrelator;
 import com.appunite.websocket.rx.object.messages.RxObjectEvent;
 import com.appunite.websocket.rx.object.messages.RxObjectEventConn;
 import com.appunite.websocket.rx.object.messages.RxObjectEventConnected;
 import com.appunite.websocket.rx.object.messages.RxObjectEventDisconnected;
 import com.appunite.websocket.rx.object.messages.RxObjectEventMessage;
 import com.example.model.DataMessage;
-import com.example.model.PingMessage;
 import com.example.model.RegisterMessage;
 import com.example.model.RegisteredMessage;
 
@@ -48,21 +49,30 @@ public class Socket {
     private final Observable<Object> connection;
     private final BehaviorSubject<RxObjectEventConn> connectedAndRegistered;
     @Nonnull
-    private final Scheduler scheduler;
+    private final ObjectRequestCorrelator responses;
 
     public Socket(@Nonnull SocketConnection socketConnection, @Nonnull Scheduler scheduler) {
-        this.scheduler = scheduler;
         final PublishSubject<RxObjectEvent>events = PublishSubject.create();
-        connection = socketConnection.connection()
-                .lift(new OperatorDoOnNext<>(events))
-                .lift(MoreObservables.ignoreNext())
-                .compose(MoreObservables.behaviorRefCount());
+        // Keep connection for a while after last subscriber leaves, i.e. during screen rotation
+        connection = SharedConnection.create(socketConnection.connection()
+                        .lift(new OperatorDoOnNext<>(events)), 1, TimeUnit.SECONDS, scheduler)
+                .events()
+                .lift(MoreObservables.ignoreNext());
         this.events = events;
 
+        responses = new ObjectRequestCorrelator(new Func1<Object, Object>() {
+            @Override
+            public Object call(Object message) {
+                return message instanceof DataMessage ? ((DataMessage) message).id() : null;
+            }
+        }, 5, TimeUnit.SECONDS, scheduler);
+        events.subscribe(responses);
 
-        final Observable<RxObjectEventMessage> registeredMessage = events
-                .compose(com.example.MoreObservables.filterAndMap(RxObjectEventMessage.class))
-                .filter(new FilterRegisterMessage());
+        final ObjectMessageDispatcher messages = new ObjectMessageDispatcher();
+        events.subscribe(messages);
+
+        final Observable<RxObjectEventMessage> registeredMessage = messages
+                .events(RegisteredMessage.class);
 
         final Observable<RxObjectEventDisconnected> disconnectedMessage = events
                 .compose(com.example.MoreObservables.filterAndMap(RxObjectEventDisconnected.class));
@@ -115,47 +125,6 @@ public class Socket {
         return connection;
     }
 
-    public void sendPingWhenConnected() {
-        Observable.combineLatest(
-                Observable.interval(5, TimeUnit.SECONDS, scheduler),
-                connectedAndRegistered,
-                new Func2<Long, RxObjectEventConn, RxObjectEventConn>() {
-                    @Override
-                    public RxObjectEventConn call(Long aLong, RxObjectEventConn rxEventConn) {
-                        return rxEventConn;
-                    }
-                })
-                .compose(isConnected())
-                .flatMap(new Func1<RxObjectEventConn, Observable<?>>() {
-                    @Override
-                    public Observable<?> call(RxObjectEventConn rxEventConn) {
-                        return RxMoreObservables.sendObjectMessage(rxEventConn.sender(), new PingMessage("send_only_when_connected"))
-                                .toObservable();
-                    }
-                })
-                .subscribe();
-    }
-
-    public void sendPingEvery5seconds() {
-        Observable.interval(5, TimeUnit.SECONDS, scheduler)
-                .flatMap(new Func1<Long, Observable<?>>() {
-                    @Override
-                    public Observable<?> call(Long aLong) {
-                        return connectedAndRegistered
-                                .compose(isConnected())
-                                .first()
-                                .flatMap(new Func1<RxObjectEventConn, Observable<?>>() {
-                                    @Override
-                                    public Observable<?> call(RxObjectEventConn rxEventConn) {
-                                        return RxMoreObservables.sendObjectMessage(rxEventConn.sender(), new PingMessage("be_sure_to_send"))
-                                                .toObservable();
-                                    }
-                                });
-                    }
-                })
-                .subscribe();
-    }
-
     private final Object lock = new Object();
     private int counter = 0;
     @Nonnull
@@ -204,17 +173,8 @@ public class Socket {
                                     }
                                 });
 
-                        final Observable<DataMessage> waitForResponseObservable = events
-                                .compose(com.example.MoreObservables.filterAndMap(RxObjectEventMessage.class))
-                                .compose(RxObjectEventMessage.filterAndMap(DataMessage.class))
-                                .filter(new Func1<DataMessage, Boolean>() {
-                                    @Override
-                                    public Boolean call(DataMessage dataMessage) {
-                                        return dataMessage.id().equals(messageId);
-                                    }
-                                })
-                                .first()
-                                .timeout(5, TimeUnit.SECONDS, scheduler);
+                        final Observable<DataMessage> waitForResponseObservable = responses
+                                .response(messageId);
                         return Observable.combineLatest(waitForResponseObservable, sendMessageObservable,
                                 new Func2<DataMessage, Object, DataMessage>() {
                                     @Override
@@ -242,12 +202,4 @@ public class Socket {
     }
 
 
-    private static class FilterRegisterMessage implements Func1<RxObjectEventMessage, Boolean> {
-        @Override
-        public Boolean call(RxObjectEventMessage rxEvent) {
-            return rxEvent.message() instanceof RegisteredMessage;
-        }
-    }
-
-
 }
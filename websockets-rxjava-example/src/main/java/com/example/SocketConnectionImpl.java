@@ -16,8 +16,12 @@
 
 package com.example;
 
+import com.appunite.websocket.rx.ReconnectPolicy;
+import com.appunite.websocket.rx.object.ObjectHeartbeat;
 import com.appunite.websocket.rx.object.RxObjectWebSockets;
 import com.appunite.websocket.rx.object.messages.RxObjectEvent;
+import com.example.model.PingMessage;
+import com.example.model.PongMessage;
 
 import java.util.concurrent.TimeUnit;
 
@@ -29,37 +33,49 @@ import rx.functions.Func1;
 
 public class SocketConnectionImpl implements SocketConnection {
 
+    private static final String HEARTBEAT_PREFIX = "heartbeat:";
+
     @Nonnull
     private final RxObjectWebSockets sockets;
     @Nonnull
     private final Scheduler scheduler;
+    @Nonnull
+    private final ObjectHeartbeat heartbeat;
 
     public SocketConnectionImpl(@Nonnull RxObjectWebSockets sockets, @Nonnull Scheduler scheduler) {
         this.sockets = sockets;
         this.scheduler = scheduler;
+        this.heartbeat = new ObjectHeartbeat(new Func1<Long, Object>() {
+            @Override
+            public Object call(Long id) {
+                return new PingMessage(HEARTBEAT_PREFIX + id);
+            }
+        }, new Func1<Object, Long>() {
+            @Override
+            public Long call(Object message) {
+                if (!(message instanceof PongMessage)) {
+                    return null;
+                }
+                final String response = ((PongMessage) message).response();
+                if (response == null || !response.startsWith(HEARTBEAT_PREFIX)) {
+                    return null;
+                }
+                try {
+                    return Long.parseLong(response.substring(HEARTBEAT_PREFIX.length()));
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+        }, 10, TimeUnit.SECONDS, 3, scheduler);
     }
 
     @Nonnull
     @Override
     public Observable<RxObjectEvent> connection() {
         return sockets.webSocketObservable()
-                .retryWhen(repeatDuration(1, TimeUnit.SECONDS));
-    }
-
-    @Nonnull
-    private Func1<Observable<? extends Throwable>, Observable<?>> repeatDuration(final long delay,
-                                                                                 @Nonnull final TimeUnit timeUnit) {
-        return new Func1<Observable<? extends Throwable>, Observable<?>>() {
-            @Override
-            public Observable<?> call(Observable<? extends Throwable> attemps) {
-                return attemps
-                        .flatMap(new Func1<Throwable, Observable<?>>() {
-                            @Override
-                            public Observable<?> call(Throwable aLong) {
-                                return Observable.timer(delay, timeUnit, scheduler);
-                            }
-                        });
-            }
-        };
+                .compose(heartbeat.heartbeat())
+                .compose(ReconnectPolicy.fullJitter(1, 30, TimeUnit.SECONDS, scheduler)
+                        .resetAfter(10, TimeUnit.SECONDS)
+                        .<RxObjectEvent>reconnect());
     }
 }
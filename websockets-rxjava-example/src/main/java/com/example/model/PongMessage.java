@@ -16,9 +16,13 @@
 
 package com.example.model;
 
+import com.google.gson.annotations.SerializedName;
+
 import javax.annotation.Nonnull;
 
 public class PongMessage extends Message {
+    // server answers ping with "message" field
+    @SerializedName(value = "response", alternate = {"message"})
     @Nonnull
     private final String response;
 
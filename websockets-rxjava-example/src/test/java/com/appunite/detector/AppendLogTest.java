@@ -0,0 +1,209 @@
+/*
+ * Copyright 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.appunite.detector;
+
+import com.google.common.collect.ImmutableList;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+public class AppendLogTest {
+
+    private final AtomicInteger mApplied = new AtomicInteger();
+    private ChangesDetector<String, String> mDetector;
+    private ChangesDetector.ChangesAdapter mAdapter;
+
+    @Before
+    public void setUp() throws Exception {
+        mDetector = new ChangesDetector<>(new ChangesDetector.Detector<String, String>() {
+            @Nonnull
+            @Override
+            public String apply(@Nonnull String item) {
+                mApplied.incrementAndGet();
+                return item;
+            }
+
+            @Override
+            public boolean matches(@Nonnull String item, @Nonnull String newOne) {
+                return item.equals(newOne);
+            }
+
+            @Override
+            public boolean same(@Nonnull String item, @Nonnull String newOne) {
+                return item.equals(newOne);
+            }
+        });
+        mAdapter = mock(ChangesDetector.ChangesAdapter.class);
+    }
+
+    @Nonnull
+    private static AppendLog<String> append(@Nonnull AppendLog<String> log, int from, int to) {
+        for (int i = from; i < to; i++) {
+            log = log.append("item" + i);
+        }
+        return log;
+    }
+
+    @Test
+    public void testAppend_doesNotChangeOlderVersion() throws Exception {
+        final AppendLog<String> first = AppendLog.<String>empty(10).append("one");
+        final AppendLog<String> second = first.append("two");
+
+        assertThat(first).containsExactly("one").inOrder();
+        assertThat(second).containsExactly("one", "two").inOrder();
+    }
+
+    @Test
+    public void testAppendToOlderVersion_doesNotChangeNewerVersion() throws Exception {
+        final AppendLog<String> first = AppendLog.<String>empty(10).append("one");
+        final AppendLog<String> second = first.append("two");
+        final AppendLog<String> branch = first.append("three");
+
+        assertThat(second).containsExactly("one", "two").inOrder();
+        assertThat(branch).containsExactly("one", "three").inOrder();
+    }
+
+    @Test
+    public void testMoreThanMaxSize_oldestItemsAreEvicted() throws Exception {
+        final AppendLog<String> log = append(AppendLog.<String>empty(3), 0, 5);
+
+        assertThat(log).containsExactly("item2", "item3", "item4").inOrder();
+        assertThat(log.evicted()).isEqualTo(2L);
+    }
+
+    @Test
+    public void testManyItems_allVersionsAreReadable() throws Exception {
+        final Random random = new Random(0);
+        final List<AppendLog<String>> versions = new ArrayList<>();
+        final List<List<String>> expected = new ArrayList<>();
+        versions.add(AppendLog.<String>empty(150));
+        expected.add(ImmutableList.<String>of());
+        for (int i = 0; i < 2000; i++) {
+            // Mostly append to the newest version, sometimes to older one
+            final int index = random.nextInt(10) == 0
+                    ? random.nextInt(versions.size())
+                    : versions.size() - 1;
+            final String item = "item" + i;
+            versions.add(versions.get(index).append(item));
+            final List<String> list = new ArrayList<>(expected.get(index));
+            list.add(item);
+            expected.add(list.size() > 150 ? list.subList(list.size() - 150, list.size()) : list);
+        }
+
+        for (int i = 0; i < versions.size(); i++) {
+            assertThat(versions.get(i)).containsExactlyElementsIn(expected.get(i)).inOrder();
+        }
+    }
+
+    @Test
+    public void testAppendedItems_onlyInsertedAreNotified() throws Exception {
+        final AppendLog<String> log = append(AppendLog.<String>empty(100), 0, 10);
+        mDetector.newData(mAdapter, log, false);
+        verify(mAdapter).notifyItemRangeInserted(0, 10);
+
+        mDetector.newData(mAdapter, append(log, 10, 12), false);
+
+        verify(mAdapter).notifyItemRangeInserted(10, 2);
+        verifyNoMoreInteractions(mAdapter);
+    }
+
+    @Test
+    public void testEvictedItems_removedAndInsertedAreNotified() throws Exception {
+        final AppendLog<String> log = append(AppendLog.<String>empty(10), 0, 10);
+        mDetector.newData(mAdapter, log, false);
+        verify(mAdapter).notifyItemRangeInserted(0, 10);
+
+        mDetector.newData(mAdapter, append(log, 10, 13), false);
+
+        verify(mAdapter).notifyItemRangeRemoved(0, 3);
+        verify(mAdapter).notifyItemRangeInserted(7, 3);
+        verifyNoMoreInteractions(mAdapter);
+    }
+
+    @Test
+    public void testAllItemsEvicted_allAreReplaced() throws Exception {
+        final AppendLog<String> log = append(AppendLog.<String>empty(3), 0, 3);
+        mDetector.newData(mAdapter, log, false);
+
+        mDetector.newData(mAdapter, append(log, 3, 10), false);
+
+        verify(mAdapter).notifyItemRangeRemoved(0, 3);
+        verify(mAdapter, times(2)).notifyItemRangeInserted(0, 3);
+        verifyNoMoreInteractions(mAdapter);
+    }
+
+    @Test
+    public void testOlderVersion_itemsAreCompared() throws Exception {
+        final AppendLog<String> log = append(AppendLog.<String>empty(100), 0, 5);
+        mDetector.newData(mAdapter, log.append("new"), false);
+        verify(mAdapter).notifyItemRangeInserted(0, 6);
+
+        mDetector.newData(mAdapter, log, false);
+
+        verify(mAdapter).notifyItemRangeRemoved(5, 1);
+        verifyNoMoreInteractions(mAdapter);
+    }
+
+    @Test
+    public void testForce_keptItemsAreChanged() throws Exception {
+        final AppendLog<String> log = append(AppendLog.<String>empty(100), 0, 5);
+        mDetector.newData(mAdapter, log, false);
+        verify(mAdapter).notifyItemRangeInserted(0, 5);
+
+        mDetector.newData(mAdapter, append(log, 5, 6), true);
+
+        verify(mAdapter).notifyItemRangeChanged(0, 5);
+        verify(mAdapter).notifyItemRangeInserted(5, 1);
+        verifyNoMoreInteractions(mAdapter);
+    }
+
+    @Test
+    public void testAppendedItems_areNotTransformed() throws Exception {
+        final AppendLog<String> log = append(AppendLog.<String>empty(100), 0, 10);
+        mDetector.newData(mAdapter, log, false);
+        mApplied.set(0);
+
+        mDetector.newData(mAdapter, append(log, 10, 20), false);
+
+        assertThat(mApplied.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void testComparedVersion_isTransformedOnce() throws Exception {
+        final AppendLog<String> log = append(AppendLog.<String>empty(100), 0, 10);
+        mDetector.newData(mAdapter, log, false);
+        // Items are not needed to notify inserted items
+        assertThat(mApplied.get()).isEqualTo(0);
+
+        mDetector.newData(mAdapter, append(AppendLog.<String>empty(100), 0, 11), false);
+
+        assertThat(mApplied.get()).isEqualTo(10 + 11);
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.appunite.detector;
+
+import com.google.common.collect.ImmutableList;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
+import rx.schedulers.TestScheduler;
+import rx.subjects.PublishSubject;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+public class AsyncChangesDetectorTest {
+
+    private final TestScheduler scheduler = Schedulers.test();
+    private final PublishSubject<List<KeyedChangesDetectorTest.Cat>> items = PublishSubject.create();
+    private final TestSubscriber<ChangesDetector.Changes<KeyedChangesDetectorTest.Cat, KeyedChangesDetectorTest.Cat>> changes =
+            new TestSubscriber<>();
+    private ChangesDetector<KeyedChangesDetectorTest.Cat, KeyedChangesDetectorTest.Cat> mDetector;
+    private ChangesDetector.MoveChangesAdapter mAdapter;
+
+    private static KeyedChangesDetectorTest.Cat cat(int id, String name) {
+        return new KeyedChangesDetectorTest.Cat(id, name);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        mDetector = new ChangesDetector<>(new SimpleKeyedDetector<KeyedChangesDetectorTest.Cat>());
+        mAdapter = mock(ChangesDetector.MoveChangesAdapter.class);
+        items.compose(mDetector.diffOn(mAdapter, scheduler)).subscribe(changes);
+    }
+
+    private void applyAll() {
+        for (ChangesDetector.Changes<KeyedChangesDetectorTest.Cat, KeyedChangesDetectorTest.Cat> change : changes.getOnNextEvents()) {
+            mDetector.apply(mAdapter, change);
+        }
+    }
+
+    @Test
+    public void testChanges_areComputedOnScheduler() throws Exception {
+        items.onNext(ImmutableList.of(cat(1, "one")));
+
+        changes.assertNoValues();
+        scheduler.triggerActions();
+        changes.assertValueCount(1);
+    }
+
+    @Test
+    public void testAdapter_isNotifiedOnlyWhenChangesAreApplied() throws Exception {
+        items.onNext(ImmutableList.of(cat(1, "one")));
+        scheduler.triggerActions();
+
+        verifyZeroInteractions(mAdapter);
+        applyAll();
+        verify(mAdapter).notifyItemRangeInserted(0, 1);
+    }
+
+    @Test
+    public void testDataArrivingBeforeComputation_onlyLatestIsCompared() throws Exception {
+        items.onNext(ImmutableList.of(cat(1, "one")));
+        scheduler.triggerActions();
+        items.onNext(ImmutableList.of(cat(1, "one"), cat(2, "two")));
+        items.onNext(ImmutableList.of(cat(1, "one"), cat(2, "two"), cat(3, "tree")));
+        scheduler.triggerActions();
+
+        changes.assertValueCount(2);
+        applyAll();
+        verify(mAdapter).notifyItemRangeInserted(0, 1);
+        verify(mAdapter).notifyItemRangeInserted(1, 2);
+        verifyNoMoreInteractions(mAdapter);
+    }
+
+    @Test
+    public void testMoves_areRecordedForMoveAdapter() throws Exception {
+        items.onNext(ImmutableList.of(cat(1, "one"), cat(2, "two"), cat(3, "tree")));
+        scheduler.triggerActions();
+        applyAll();
+        reset(mAdapter);
+
+        items.onNext(ImmutableList.of(cat(2, "two"), cat(3, "tree"), cat(1, "one")));
+        scheduler.triggerActions();
+        mDetector.apply(mAdapter, changes.getOnNextEvents().get(1));
+
+        verify(mAdapter).notifyItemMoved(0, 2);
+        verifyNoMoreInteractions(mAdapter);
+    }
+
+    @Test
+    public void testWithoutMoveAdapter_movesAreRecordedAsRemovedAndInserted() throws Exception {
+        final ChangesDetector.ChangesAdapter adapter = mock(ChangesDetector.ChangesAdapter.class);
+        final TestSubscriber<ChangesDetector.Changes<KeyedChangesDetectorTest.Cat, KeyedChangesDetectorTest.Cat>> changes =
+                new TestSubscriber<>();
+        mDetector.newData(adapter, ImmutableList.of(cat(1, "one"), cat(2, "two"), cat(3, "tree")), false);
+        reset(adapter);
+        final PublishSubject<List<KeyedChangesDetectorTest.Cat>> items = PublishSubject.create();
+        items.compose(mDetector.diffOn(adapter, scheduler)).subscribe(changes);
+
+        items.onNext(ImmutableList.of(cat(2, "two"), cat(3, "tree"), cat(1, "one")));
+        scheduler.triggerActions();
+        mDetector.apply(adapter, changes.getOnNextEvents().get(0));
+
+        verify(adapter).notifyItemRangeRemoved(0, 1);
+        verify(adapter).notifyItemRangeInserted(2, 1);
+        verifyNoMoreInteractions(adapter);
+    }
+
+    private void applyLast() {
+        final List<ChangesDetector.Changes<KeyedChangesDetectorTest.Cat, KeyedChangesDetectorTest.Cat>> events =
+                changes.getOnNextEvents();
+        mDetector.apply(mAdapter, events.get(events.size() - 1));
+    }
+
+    @Test
+    public void testWhenItemsChangedBeforeApply_changesAreComputedAgainOnScheduler() throws Exception {
+        items.onNext(ImmutableList.of(cat(1, "one"), cat(2, "two")));
+        scheduler.triggerActions();
+        mDetector.newData(mAdapter, ImmutableList.of(cat(1, "one")), false);
+        reset(mAdapter);
+
+        applyLast();
+
+        verifyZeroInteractions(mAdapter);
+        changes.assertValueCount(1);
+        scheduler.triggerActions();
+        changes.assertValueCount(2);
+        applyLast();
+        verify(mAdapter).notifyItemRangeInserted(1, 1);
+        verifyNoMoreInteractions(mAdapter);
+        assertThat(mDetector.mItems).hasSize(2);
+    }
+
+    @Test
+    public void testAfterItemsChangedBeforeApply_nextChangesAreStillComputedOnScheduler() throws Exception {
+        items.onNext(ImmutableList.of(cat(1, "one"), cat(2, "two")));
+        scheduler.triggerActions();
+        mDetector.newData(mAdapter, ImmutableList.of(cat(1, "one")), false);
+        applyLast();
+        scheduler.triggerActions();
+        applyLast();
+        reset(mAdapter);
+
+        items.onNext(ImmutableList.of(cat(1, "one"), cat(2, "two"), cat(3, "tree")));
+        changes.assertValueCount(2);
+        scheduler.triggerActions();
+        changes.assertValueCount(3);
+        applyLast();
+
+        verify(mAdapter).notifyItemRangeInserted(2, 1);
+        verifyNoMoreInteractions(mAdapter);
+        // Changes were applied without comparing again
+        scheduler.triggerActions();
+        changes.assertValueCount(3);
+    }
+
+    @Test
+    public void testWhenItemsChangedAfterCompletion_changesAreComputedOnCallingThread() throws Exception {
+        items.onNext(ImmutableList.of(cat(1, "one"), cat(2, "two")));
+        items.onCompleted();
+        scheduler.triggerActions();
+        mDetector.newData(mAdapter, ImmutableList.of(cat(1, "one")), false);
+        reset(mAdapter);
+
+        applyLast();
+
+        verify(mAdapter).notifyItemRangeInserted(1, 1);
+        verifyNoMoreInteractions(mAdapter);
+    }
+
+    @Test
+    public void testCompletion_isReturnedAfterPendingChanges() throws Exception {
+        items.onNext(ImmutableList.of(cat(1, "one")));
+        items.onCompleted();
+
+        changes.assertNotCompleted();
+        scheduler.triggerActions();
+        changes.assertValueCount(1);
+        changes.assertCompleted();
+    }
+
+    @Test
+    public void testAfterUnsubscribe_changesAreNotReturned() throws Exception {
+        items.onNext(ImmutableList.of(cat(1, "one")));
+        changes.unsubscribe();
+        scheduler.triggerActions();
+
+        changes.assertNoValues();
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.appunite.detector;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import javax.annotation.Nonnull;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+public class KeyedChangesDetectorTest {
+
+    private ChangesDetector<Cat, Cat> mDetector;
+    private ChangesDetector.MoveChangesAdapter mAdapter;
+
+    public static class Cat implements SimpleDetector.KeyedDetectable<Cat> {
+        private final int mId;
+        private final String mName;
+
+        public Cat(int id, String name) {
+            mId = id;
+            mName = name;
+        }
+
+        @Nonnull
+        @Override
+        public Object key() {
+            return mId;
+        }
+
+        @Override
+        public boolean matches(@Nonnull Cat item) {
+            return mId == item.mId;
+        }
+
+        @Override
+        public boolean same(@Nonnull Cat item) {
+            return mId == item.mId && Objects.equal(mName, item.mName);
+        }
+
+        @Override
+        public String toString() {
+            return mId + ":" + mName;
+        }
+    }
+
+    /**
+     * Applies notifications to list of items, so result can be compared with new data
+     */
+    private static class ListAdapter implements ChangesDetector.MoveChangesAdapter {
+        private final List<Object> items = new ArrayList<>();
+        private final boolean moves;
+
+        ListAdapter(boolean moves) {
+            this.moves = moves;
+        }
+
+        @Override
+        public void notifyItemRangeInserted(int start, int count) {
+            for (int i = 0; i < count; i++) {
+                items.add(start + i, "inserted");
+            }
+        }
+
+        @Override
+        public void notifyItemRangeChanged(int start, int count) {
+            for (int i = 0; i < count; i++) {
+                items.set(start + i, "changed");
+            }
+        }
+
+        @Override
+        public void notifyItemRangeRemoved(int start, int count) {
+            for (int i = 0; i < count; i++) {
+                items.remove(start);
+            }
+        }
+
+        @Override
+        public void notifyItemMoved(int fromPosition, int toPosition) {
+            if (!moves) {
+                throw new AssertionError("Moves are not supported");
+            }
+            items.add(toPosition, items.remove(fromPosition));
+        }
+
+        /**
+         * Marks items that were not notified as they were
+         */
+        void bind(@Nonnull List<Cat> cats) {
+            for (int i = 0; i < items.size(); i++) {
+                if (items.get(i) instanceof String) {
+                    items.set(i, cats.get(i));
+                }
+            }
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        mDetector = new ChangesDetector<>(new SimpleKeyedDetector<Cat>());
+        mAdapter = mock(ChangesDetector.MoveChangesAdapter.class);
+    }
+
+    @Test
+    public void testStart() throws Exception {
+        mDetector.newData(mAdapter, ImmutableList.of(new Cat(1, "one")), false);
+        verify(mAdapter).notifyItemRangeInserted(0, 1);
+    }
+
+    @Test
+    public void testItemChanged() throws Exception {
+        mDetector.newData(mAdapter, ImmutableList.of(new Cat(1, "one"), new Cat(3, "tree")), false);
+        reset(mAdapter);
+
+        mDetector.newData(mAdapter, ImmutableList.of(new Cat(1, "one1"), new Cat(3, "tree")), false);
+        verify(mAdapter).notifyItemRangeChanged(0, 1);
+        verifyNoMoreInteractions(mAdapter);
+    }
+
+    @Test
+    public void testForce_changedItemsAreCoalesced() throws Exception {
+        mDetector.newData(mAdapter, ImmutableList.of(new Cat(1, "one"), new Cat(2, "two")), false);
+        reset(mAdapter);
+
+        mDetector.newData(mAdapter, ImmutableList.of(new Cat(1, "one"), new Cat(2, "two")), true);
+        verify(mAdapter).notifyItemRangeChanged(0, 2);
+        verifyNoMoreInteractions(mAdapter);
+    }
+
+    @Test
+    public void testItemsRemovedAndInserted() throws Exception {
+        mDetector.newData(mAdapter, ImmutableList.of(new Cat(1, "one"), new Cat(2, "two"), new Cat(4, "four")), false);
+        reset(mAdapter);
+
+        mDetector.newData(mAdapter, ImmutableList.of(new Cat(1, "one"), new Cat(3, "tree"), new Cat(4, "four")), false);
+        verify(mAdapter).notifyItemRangeRemoved(1, 1);
+        verify(mAdapter).notifyItemRangeInserted(1, 1);
+        verifyNoMoreInteractions(mAdapter);
+    }
+
+    @Test
+    public void testItemMovedToTheEnd() throws Exception {
+        mDetector.newData(mAdapter, ImmutableList.of(new Cat(1, "one"), new Cat(2, "two"), new Cat(3, "tree")), false);
+        reset(mAdapter);
+
+        mDetector.newData(mAdapter, ImmutableList.of(new Cat(2, "two"), new Cat(3, "tree"), new Cat(1, "one")), false);
+        verify(mAdapter).notifyItemMoved(0, 2);
+        verifyNoMoreInteractions(mAdapter);
+    }
+
+    @Test
+    public void testItemMovedToTheBeginning() throws Exception {
+        mDetector.newData(mAdapter, ImmutableList.of(new Cat(1, "one"), new Cat(2, "two"), new Cat(3, "tree")), false);
+        reset(mAdapter);
+
+        mDetector.newData(mAdapter, ImmutableList.of(new Cat(3, "tree"), new Cat(1, "one"), new Cat(2, "two")), false);
+        verify(mAdapter).notifyItemMoved(2, 0);
+        verifyNoMoreInteractions(mAdapter);
+    }
+
+    @Test
+    public void testMovedAndChangedItem() throws Exception {
+        mDetector.newData(mAdapter, ImmutableList.of(new Cat(1, "one"), new Cat(2, "two"), new Cat(3, "tree")), false);
+        reset(mAdapter);
+
+        mDetector.newData(mAdapter, ImmutableList.of(new Cat(2, "two"), new Cat(3, "tree"), new Cat(1, "one1")), false);
+        verify(mAdapter).notifyItemMoved(0, 2);
+        verify(mAdapter).notifyItemRangeChanged(2, 1);
+        verifyNoMoreInteractions(mAdapter);
+    }
+
+    @Test
+    public void testWithoutMoveAdapter_movedItemIsRemovedAndInserted() throws Exception {
+        final ChangesDetector.ChangesAdapter adapter = mock(ChangesDetector.ChangesAdapter.class);
+        mDetector.newData(adapter, ImmutableList.of(new Cat(1, "one"), new Cat(2, "two"), new Cat(3, "tree")), false);
+        reset(adapter);
+
+        mDetector.newData(adapter, ImmutableList.of(new Cat(2, "two"), new Cat(3, "tree"), new Cat(1, "one")), false);
+        verify(adapter).notifyItemRangeRemoved(0, 1);
+        verify(adapter).notifyItemRangeInserted(2, 1);
+        verifyNoMoreInteractions(adapter);
+    }
+
+    @Test
+    public void testDuplicatedKeys_areRemovedAndInserted() throws Exception {
+        final ListAdapter adapter = new ListAdapter(true);
+        final ImmutableList<Cat> first = ImmutableList.of(new Cat(1, "one"), new Cat(1, "one"));
+        final ImmutableList<Cat> second = ImmutableList.of(new Cat(1, "one"), new Cat(2, "two"), new Cat(1, "one"));
+        mDetector.newData(adapter, first, false);
+        adapter.bind(first);
+
+        mDetector.newData(adapter, second, false);
+        adapter.bind(second);
+
+        assertThat(adapter.items).hasSize(3);
+    }
+
+    @Test
+    public void testRandomChanges_withMoves_resultInNewList() throws Exception {
+        checkRandomChanges(true);
+    }
+
+    @Test
+    public void testRandomChanges_withoutMoves_resultInNewList() throws Exception {
+        checkRandomChanges(false);
+    }
+
+    private void checkRandomChanges(boolean moves) {
+        final Random random = new Random(0);
+        final ListAdapter adapter = new ListAdapter(moves);
+        final ChangesDetector.ChangesAdapter notified = moves ? adapter : new ChangesDetector.ChangesAdapter() {
+            @Override
+            public void notifyItemRangeInserted(int start, int count) {
+                adapter.notifyItemRangeInserted(start, count);
+            }
+
+            @Override
+            public void notifyItemRangeChanged(int start, int count) {
+                adapter.notifyItemRangeChanged(start, count);
+            }
+
+            @Override
+            public void notifyItemRangeRemoved(int start, int count) {
+                adapter.notifyItemRangeRemoved(start, count);
+            }
+        };
+        for (int round = 0; round < 200; round++) {
+            final List<Cat> cats = randomCats(random);
+
+            mDetector.newData(notified, cats, false);
+            adapter.bind(cats);
+
+            // Items that were not notified are old instances, so compare them by value
+            assertThat(adapter.items.toString()).isEqualTo(cats.toString());
+        }
+    }
+
+    @Nonnull
+    private static List<Cat> randomCats(@Nonnull Random random) {
+        final List<Integer> ids = new ArrayList<>();
+        for (int id = 0; id < 30; id++) {
+            if (random.nextInt(3) != 0) {
+                ids.add(id);
+            }
+        }
+        if (random.nextBoolean()) {
+            Collections.shuffle(ids, random);
+        } else if (ids.size() > 1) {
+            ids.add(random.nextInt(ids.size()), ids.remove(random.nextInt(ids.size())));
+        }
+        final List<Cat> cats = new ArrayList<>();
+        for (int id : ids) {
+            cats.add(new Cat(id, "name" + random.nextInt(2)));
+        }
+        return cats;
+    }
+}
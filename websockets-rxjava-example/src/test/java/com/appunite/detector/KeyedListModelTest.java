@@ -0,0 +1,274 @@
+/*
+ * Copyright 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.appunite.detector;
+
+import com.appunite.websocket.rx.object.ObjectWebSocketSender;
+import com.appunite.websocket.rx.object.messages.RxObjectEventMessage;
+import com.google.common.collect.ImmutableList;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.annotation.Nonnull;
+
+import rx.functions.Func1;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+public class KeyedListModelTest {
+
+    private KeyedListModel<Integer, String> mModel;
+    private ChangesDetector.ChangesAdapter mAdapter;
+
+    @Before
+    public void setUp() throws Exception {
+        mModel = new KeyedListModel<>();
+        mAdapter = mock(ChangesDetector.ChangesAdapter.class);
+    }
+
+    @Nonnull
+    private static List<String> items(@Nonnull KeyedListModel<Integer, String> model) {
+        final List<String> items = new ArrayList<>();
+        for (int i = 0; i < model.size(); i++) {
+            items.add(model.get(i));
+        }
+        return items;
+    }
+
+    @Nonnull
+    private static KeyedListModel.Operation<Integer, String> append(int key) {
+        return KeyedListModel.Operation.append(key, "item" + key);
+    }
+
+    private void appendItems(int count) {
+        final List<KeyedListModel.Operation<Integer, String>> operations = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            operations.add(append(i));
+        }
+        mModel.apply(mAdapter, operations);
+        verify(mAdapter).notifyItemRangeInserted(0, count);
+    }
+
+    @Test
+    public void testAppendedItems_areNotifiedAsOneRange() throws Exception {
+        appendItems(3);
+
+        verifyNoMoreInteractions(mAdapter);
+        assertThat(items(mModel)).containsExactly("item0", "item1", "item2").inOrder();
+    }
+
+    @Test
+    public void testInsertAfter_itemIsInsertedAfterKey() throws Exception {
+        appendItems(3);
+
+        mModel.apply(mAdapter, ImmutableList.of(KeyedListModel.Operation.insert(10, "item10", 0)));
+
+        verify(mAdapter).notifyItemRangeInserted(1, 1);
+        assertThat(items(mModel)).containsExactly("item0", "item10", "item1", "item2").inOrder();
+        assertThat(mModel.indexOf(2)).isEqualTo(3);
+    }
+
+    @Test
+    public void testInsertWithoutAfter_itemIsInsertedAtBeginning() throws Exception {
+        appendItems(2);
+
+        mModel.apply(mAdapter, ImmutableList.of(KeyedListModel.Operation.insert(10, "item10", null)));
+
+        verify(mAdapter).notifyItemRangeInserted(0, 1);
+        assertThat(items(mModel)).containsExactly("item10", "item0", "item1").inOrder();
+    }
+
+    @Test
+    public void testAdjacentUpdates_areNotifiedAsOneRange() throws Exception {
+        appendItems(5);
+
+        mModel.apply(mAdapter, ImmutableList.of(
+                KeyedListModel.Operation.update(2, "new2"),
+                KeyedListModel.Operation.update(1, "new1"),
+                KeyedListModel.Operation.update(3, "new3")));
+
+        verify(mAdapter).notifyItemRangeChanged(1, 3);
+        verifyNoMoreInteractions(mAdapter);
+    }
+
+    @Test
+    public void testUpdateWithEqualItem_isNotNotified() throws Exception {
+        appendItems(2);
+
+        mModel.apply(mAdapter, ImmutableList.of(KeyedListModel.Operation.update(1, "item1")));
+
+        verifyNoMoreInteractions(mAdapter);
+    }
+
+    @Test
+    public void testAdjacentRemoves_areNotifiedAsOneRange() throws Exception {
+        appendItems(5);
+
+        mModel.apply(mAdapter, ImmutableList.<KeyedListModel.Operation<Integer, String>>of(
+                KeyedListModel.Operation.<Integer, String>remove(2),
+                KeyedListModel.Operation.<Integer, String>remove(1),
+                KeyedListModel.Operation.<Integer, String>remove(3)));
+
+        verify(mAdapter).notifyItemRangeRemoved(1, 3);
+        verifyNoMoreInteractions(mAdapter);
+        assertThat(items(mModel)).containsExactly("item0", "item4").inOrder();
+    }
+
+    @Test
+    public void testItemInsertedAndRemovedInOneFrame_isNotNotified() throws Exception {
+        appendItems(2);
+
+        mModel.apply(mAdapter, ImmutableList.of(
+                append(5),
+                KeyedListModel.Operation.<Integer, String>remove(5)));
+
+        verifyNoMoreInteractions(mAdapter);
+        assertThat(items(mModel)).containsExactly("item0", "item1").inOrder();
+    }
+
+    @Test
+    public void testUnknownKeys_areIgnored() throws Exception {
+        appendItems(2);
+
+        mModel.apply(mAdapter, ImmutableList.of(
+                KeyedListModel.Operation.update(5, "new5"),
+                KeyedListModel.Operation.<Integer, String>remove(6)));
+
+        verifyNoMoreInteractions(mAdapter);
+    }
+
+    @Test
+    public void testClear_allItemsAreRemoved() throws Exception {
+        appendItems(3);
+
+        mModel.clear(mAdapter);
+
+        verify(mAdapter).notifyItemRangeRemoved(0, 3);
+        assertThat(mModel.size()).isEqualTo(0);
+        assertThat(mModel.indexOf(1)).isEqualTo(-1);
+    }
+
+    @Test
+    public void testApplyTo_operationsFromMessagesAreApplied() throws Exception {
+        final Func1<Object, List<KeyedListModel.Operation<Integer, String>>> operations =
+                new Func1<Object, List<KeyedListModel.Operation<Integer, String>>>() {
+                    @Override
+                    public List<KeyedListModel.Operation<Integer, String>> call(Object message) {
+                        return message instanceof String
+                                ? ImmutableList.of(KeyedListModel.Operation.append(message.hashCode(), (String) message))
+                                : null;
+                    }
+                };
+
+        final ObjectWebSocketSender sender = mock(ObjectWebSocketSender.class);
+        mModel.applyTo(mAdapter, operations).call(new RxObjectEventMessage(sender, "one"));
+        mModel.applyTo(mAdapter, operations).call(new RxObjectEventMessage(sender, 5));
+
+        verify(mAdapter).notifyItemRangeInserted(0, 1);
+        verifyNoMoreInteractions(mAdapter);
+        assertThat(items(mModel)).containsExactly("one");
+    }
+
+    /**
+     * Replays notifications on copy of items, inserted items are unknown until frame ends
+     */
+    private static class ReplayAdapter implements ChangesDetector.ChangesAdapter {
+        private static final String UNKNOWN = "unknown";
+        final List<String> items = new ArrayList<>();
+
+        @Override
+        public void notifyItemRangeInserted(int start, int count) {
+            for (int i = 0; i < count; i++) {
+                items.add(start, UNKNOWN);
+            }
+        }
+
+        @Override
+        public void notifyItemRangeChanged(int start, int count) {
+            for (int i = start; i < start + count; i++) {
+                items.set(i, UNKNOWN);
+            }
+        }
+
+        @Override
+        public void notifyItemRangeRemoved(int start, int count) {
+            items.subList(start, start + count).clear();
+        }
+
+        void assertMatches(@Nonnull List<String> expected) {
+            assertThat(items.size()).isEqualTo(expected.size());
+            for (int i = 0; i < items.size(); i++) {
+                if (items.get(i).equals(UNKNOWN)) {
+                    items.set(i, expected.get(i));
+                }
+            }
+            assertThat(items).containsExactlyElementsIn(expected).inOrder();
+        }
+    }
+
+    @Test
+    public void testRandomOperations_adapterIsNotifiedAboutAllChanges() throws Exception {
+        final Random random = new Random(0);
+        final ReplayAdapter adapter = new ReplayAdapter();
+        final List<Integer> keys = new ArrayList<>();
+        final List<String> expected = new ArrayList<>();
+        int nextKey = 0;
+        for (int frame = 0; frame < 300; frame++) {
+            final List<KeyedListModel.Operation<Integer, String>> operations = new ArrayList<>();
+            for (int i = random.nextInt(10); i >= 0; i--) {
+                final int type = random.nextInt(4);
+                if (keys.isEmpty() || type == 0) {
+                    final int key = nextKey++;
+                    final int position = random.nextInt(keys.size() + 1);
+                    operations.add(KeyedListModel.Operation.insert(key, "item" + key,
+                            position == 0 ? null : keys.get(position - 1)));
+                    keys.add(position, key);
+                    expected.add(position, "item" + key);
+                } else if (type == 1) {
+                    final int key = nextKey++;
+                    operations.add(KeyedListModel.Operation.append(key, "item" + key));
+                    keys.add(key);
+                    expected.add("item" + key);
+                } else if (type == 2) {
+                    final int position = random.nextInt(keys.size());
+                    final String item = "item" + keys.get(position) + "v" + frame;
+                    operations.add(KeyedListModel.Operation.update(keys.get(position), item));
+                    expected.set(position, item);
+                } else {
+                    final int position = random.nextInt(keys.size());
+                    operations.add(KeyedListModel.Operation.<Integer, String>remove(keys.remove(position)));
+                    expected.remove(position);
+                }
+            }
+
+            mModel.apply(adapter, operations);
+
+            assertThat(items(mModel)).containsExactlyElementsIn(expected).inOrder();
+            adapter.assertMatches(expected);
+            for (int i = 0; i < keys.size(); i++) {
+                assertThat(mModel.indexOf(keys.get(i))).isEqualTo(i);
+            }
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.appunite.detector;
+
+import com.google.common.collect.ImmutableList;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+public class ParallelChangesDetectorTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final CountingDetector detector = new CountingDetector();
+    private final ChangesDetector.ChangesAdapter adapter = mock(ChangesDetector.ChangesAdapter.class);
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+    }
+
+    private static class CountingDetector implements ChangesDetector.Detector<KeyedChangesDetectorTest.Cat, KeyedChangesDetectorTest.Cat> {
+        private final SimpleDetector<KeyedChangesDetectorTest.Cat> detector = new SimpleDetector<>();
+        final AtomicInteger applied = new AtomicInteger();
+        final Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+        volatile boolean fail = false;
+
+        @Nonnull
+        @Override
+        public KeyedChangesDetectorTest.Cat apply(@Nonnull KeyedChangesDetectorTest.Cat item) {
+            if (fail) {
+                throw new IllegalStateException("detector failed");
+            }
+            applied.incrementAndGet();
+            threads.add(Thread.currentThread());
+            return detector.apply(item);
+        }
+
+        @Override
+        public boolean matches(@Nonnull KeyedChangesDetectorTest.Cat item, @Nonnull KeyedChangesDetectorTest.Cat newOne) {
+            return detector.matches(item, newOne);
+        }
+
+        @Override
+        public boolean same(@Nonnull KeyedChangesDetectorTest.Cat item, @Nonnull KeyedChangesDetectorTest.Cat newOne) {
+            return detector.same(item, newOne);
+        }
+    }
+
+    @Nonnull
+    private static List<KeyedChangesDetectorTest.Cat> cats(int from, int to) {
+        final List<KeyedChangesDetectorTest.Cat> cats = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            cats.add(new KeyedChangesDetectorTest.Cat(i, "cat" + i));
+        }
+        return cats;
+    }
+
+    @Test
+    public void testLargeList_isTransformedOnExecutor() throws Exception {
+        final ChangesDetector<KeyedChangesDetectorTest.Cat, KeyedChangesDetectorTest.Cat> changesDetector =
+                new ChangesDetector<>(detector, executor, 10, false);
+        final List<KeyedChangesDetectorTest.Cat> cats = cats(0, 1000);
+
+        changesDetector.newData(adapter, cats, false);
+
+        verify(adapter).notifyItemRangeInserted(0, 1000);
+        assertThat(changesDetector.mItems).containsExactlyElementsIn(cats).inOrder();
+        assertThat(detector.applied.get()).isEqualTo(1000);
+        if (Runtime.getRuntime().availableProcessors() > 1) {
+            assertThat(detector.threads.contains(Thread.currentThread())).isTrue();
+            assertThat(detector.threads.size()).isGreaterThan(1);
+        }
+    }
+
+    @Test
+    public void testSmallList_isTransformedOnCallingThread() throws Exception {
+        final ChangesDetector<KeyedChangesDetectorTest.Cat, KeyedChangesDetectorTest.Cat> changesDetector =
+                new ChangesDetector<>(detector, executor, 10, false);
+
+        changesDetector.newData(adapter, cats(0, 9), false);
+
+        assertThat(detector.threads.size()).isEqualTo(1);
+        assertThat(detector.threads.contains(Thread.currentThread())).isTrue();
+    }
+
+    @Test
+    public void testParallelChanges_areTheSameAsSequential() throws Exception {
+        final ChangesDetector<KeyedChangesDetectorTest.Cat, KeyedChangesDetectorTest.Cat> changesDetector =
+                new ChangesDetector<>(detector, executor, 10, true);
+        final List<KeyedChangesDetectorTest.Cat> first = cats(0, 500);
+        final List<KeyedChangesDetectorTest.Cat> second = new ArrayList<>(first);
+        second.subList(100, 200).clear();
+        second.set(300, new KeyedChangesDetectorTest.Cat(400, "changed"));
+        second.addAll(cats(500, 600));
+        changesDetector.newData(adapter, first, false);
+        verify(adapter).notifyItemRangeInserted(0, 500);
+
+        changesDetector.newData(adapter, second, false);
+
+        verify(adapter).notifyItemRangeRemoved(100, 100);
+        verify(adapter).notifyItemRangeChanged(300, 1);
+        verify(adapter).notifyItemRangeInserted(400, 100);
+        verifyNoMoreInteractions(adapter);
+    }
+
+    @Test
+    public void testMemoize_sameInstancesAreNotTransformedAgain() throws Exception {
+        final ChangesDetector<KeyedChangesDetectorTest.Cat, KeyedChangesDetectorTest.Cat> changesDetector =
+                new ChangesDetector<>(detector, null, Integer.MAX_VALUE, true);
+        final List<KeyedChangesDetectorTest.Cat> cats = cats(0, 10);
+        changesDetector.newData(adapter, cats, false);
+        assertThat(detector.applied.get()).isEqualTo(10);
+
+        changesDetector.newData(adapter, ImmutableList.<KeyedChangesDetectorTest.Cat>builder()
+                .addAll(cats)
+                .add(new KeyedChangesDetectorTest.Cat(10, "cat10"))
+                .build(), false);
+
+        assertThat(detector.applied.get()).isEqualTo(11);
+    }
+
+    @Test
+    public void testWithoutMemoize_allItemsAreTransformed() throws Exception {
+        final ChangesDetector<KeyedChangesDetectorTest.Cat, KeyedChangesDetectorTest.Cat> changesDetector =
+                new ChangesDetector<>(detector, executor, 10, false);
+        final List<KeyedChangesDetectorTest.Cat> cats = cats(0, 100);
+        changesDetector.newData(adapter, cats, false);
+
+        changesDetector.newData(adapter, cats, false);
+
+        assertThat(detector.applied.get()).isEqualTo(200);
+    }
+
+    @Test
+    public void testDetectorFailure_isThrownOnCallingThread() throws Exception {
+        final ChangesDetector<KeyedChangesDetectorTest.Cat, KeyedChangesDetectorTest.Cat> changesDetector =
+                new ChangesDetector<>(detector, executor, 10, false);
+        detector.fail = true;
+
+        try {
+            changesDetector.newData(adapter, cats(0, 1000), false);
+            fail();
+        } catch (RuntimeException e) {
+            assertThat(e.toString()).contains("detector failed");
+        }
+        verifyNoMoreInteractions(adapter);
+    }
+
+    @Test
+    public void testMemoize_removedInstancesAreEvicted() throws Exception {
+        final ChangesDetector<KeyedChangesDetectorTest.Cat, KeyedChangesDetectorTest.Cat> changesDetector =
+                new ChangesDetector<>(detector, null, Integer.MAX_VALUE, true);
+        final List<KeyedChangesDetectorTest.Cat> cats = cats(0, 10);
+        changesDetector.newData(adapter, cats, false);
+        changesDetector.newData(adapter, cats.subList(5, 10), false);
+        assertThat(detector.applied.get()).isEqualTo(10);
+
+        changesDetector.newData(adapter, cats, false);
+
+        assertThat(detector.applied.get()).isEqualTo(15);
+    }
+
+    @Test
+    public void testDetectorFailure_cancelsRemainingChunks() throws Exception {
+        final List<KeyedChangesDetectorTest.Cat> cats = cats(0, 100);
+        final KeyedChangesDetectorTest.Cat last = cats.get(99);
+        final ChangesDetector<KeyedChangesDetectorTest.Cat, KeyedChangesDetectorTest.Cat> changesDetector =
+                new ChangesDetector<>(new SimpleDetector<KeyedChangesDetectorTest.Cat>() {
+                    @Nonnull
+                    @Override
+                    public KeyedChangesDetectorTest.Cat apply(@Nonnull KeyedChangesDetectorTest.Cat item) {
+                        if (item == last) {
+                            throw new IllegalStateException("detector failed");
+                        }
+                        if (Thread.currentThread().getName().startsWith("pool")) {
+                            try {
+                                new CountDownLatch(1).await();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                        return item;
+                    }
+                }, executor, 10, false);
+
+        try {
+            changesDetector.newData(adapter, cats, false);
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage()).isEqualTo("detector failed");
+        }
+
+        executor.shutdown();
+        assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.object;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import okio.Buffer;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class GsonStreamingObjectSerializerTest {
+
+    private final GsonStreamingObjectSerializer serializer =
+            new GsonStreamingObjectSerializer(new Gson(), Message.class, true);
+
+    private static class Message {
+        String text;
+    }
+
+    @Test
+    public void testBinaryJson_isParsed() throws Exception {
+        final Message message = (Message) serializer.serialize("{\"text\":\"kitty\"}".getBytes("UTF-8"));
+
+        assertThat(message.text).isEqualTo("kitty");
+    }
+
+    @Test
+    public void testMessageWrittenToSink_isParsed() throws Exception {
+        final Message message = new Message();
+        message.text = "kitty";
+        final Buffer buffer = new Buffer();
+
+        serializer.deserializeBinary(message, buffer);
+
+        assertThat(((Message) serializer.serialize(buffer)).text).isEqualTo("kitty");
+    }
+
+    @Test(expected = ObjectParseException.class)
+    public void testDataAfterJson_throwsException() throws Exception {
+        serializer.serialize("{\"text\":\"kitty\"} garbage".getBytes("UTF-8"));
+    }
+
+    @Test(expected = ObjectParseException.class)
+    public void testEmptyMessage_throwsException() throws Exception {
+        serializer.serialize(new byte[0]);
+    }
+
+    @Test(expected = ObjectParseException.class)
+    public void testUnquotedName_throwsException() throws Exception {
+        serializer.serialize("{text:\"kitty\"}".getBytes("UTF-8"));
+    }
+
+    @Test(expected = ObjectParseException.class)
+    public void testSingleQuotedString_throwsException() throws Exception {
+        serializer.serialize("{\"text\":'kitty'}".getBytes("UTF-8"));
+    }
+
+    @Test(expected = ObjectParseException.class)
+    public void testTruncatedJson_throwsException() throws Exception {
+        serializer.serialize("{\"text\":".getBytes("UTF-8"));
+    }
+}
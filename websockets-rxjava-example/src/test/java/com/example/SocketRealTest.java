@@ -72,8 +72,6 @@ public class SocketRealTest {
         })
                 .subscribe(LoggingObservables.logging(Logger.getLogger("Rx"), "SendMessage"));
 
-        socket.sendPingWhenConnected();
-        socket.sendPingEvery5seconds();
         final Subscription subscribe = socket.connection()
                 .subscribeOn(Schedulers.io())
                 .subscribe();
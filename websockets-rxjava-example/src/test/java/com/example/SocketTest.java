@@ -22,7 +22,6 @@ import com.appunite.websocket.rx.object.messages.RxObjectEvent;
 import com.appunite.websocket.rx.object.messages.RxObjectEventConnected;
 import com.appunite.websocket.rx.object.messages.RxObjectEventMessage;
 import com.example.model.DataMessage;
-import com.example.model.PingMessage;
 import com.example.model.RegisterMessage;
 import com.example.model.RegisteredMessage;
 
@@ -43,7 +42,6 @@ import rx.schedulers.TestScheduler;
 import rx.subjects.TestSubject;
 
 import static org.mockito.Matchers.any;
-import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -183,34 +181,4 @@ public class SocketTest {
             subscribe.unsubscribe();
         }
     }
-
-    @Test
-    public void testWhenTimePassBeforeConnection_sendAllPings() throws Exception {
-        final Subscription subscribe = socket.connection().subscribe(observer);
-        socket.sendPingEvery5seconds();
-        try {
-            testScheduler.advanceTimeBy(30, TimeUnit.SECONDS);
-            register();
-
-
-            verify(sender, times(6)).sendObjectMessage(new PingMessage("be_sure_to_send"));
-        } finally {
-            subscribe.unsubscribe();
-        }
-    }
-
-    @Test
-    public void testWhenTimePassBeforeConnection_sendPingOnlyOnce() throws Exception {
-        final Subscription subscribe = socket.connection().subscribe(observer);
-        socket.sendPingWhenConnected();
-        try {
-            testScheduler.advanceTimeBy(30, TimeUnit.SECONDS);
-            register();
-
-
-            verify(sender).sendObjectMessage(new PingMessage("send_only_when_connected"));
-        } finally {
-            subscribe.unsubscribe();
-        }
-    }
-}
\ No newline at end of file
+}
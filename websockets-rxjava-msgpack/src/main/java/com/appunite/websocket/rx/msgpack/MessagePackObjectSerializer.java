@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.msgpack;
+
+import com.appunite.websocket.rx.object.ByteStringObjectSerializer;
+import com.appunite.websocket.rx.object.ObjectParseException;
+import com.appunite.websocket.rx.object.SinkObjectSerializer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ByteString;
+
+/**
+ * {@link com.appunite.websocket.rx.object.ObjectSerializer} that sends binary messages in
+ * MessagePack format
+ *
+ * Messages are converted from and to MessagePack values (maps, lists, strings, numbers...)
+ * by {@link Mapper}. Use it with
+ * {@link com.appunite.websocket.rx.object.ContentTypeObjectSerializer} to send only some
+ * messages in binary format.
+ *
+ * @see MessagePackWriter
+ * @see MessagePackReader
+ */
+public class MessagePackObjectSerializer implements ByteStringObjectSerializer, SinkObjectSerializer {
+
+    /**
+     * Converts messages from and to MessagePack values
+     */
+    public interface Mapper {
+
+        /**
+         * @param value value read from message
+         * @return message
+         * @throws ObjectParseException if value is not a valid message
+         */
+        @Nonnull
+        Object fromValue(@Nullable Object value) throws ObjectParseException;
+
+        /**
+         * @param message message to send
+         * @return value to write
+         * @throws ObjectParseException if message can't be converted
+         */
+        @Nullable
+        Object toValue(@Nonnull Object message) throws ObjectParseException;
+    }
+
+    /**
+     * Messages are MessagePack values
+     */
+    public static final Mapper VALUES = new Mapper() {
+        @Nonnull
+        @Override
+        public Object fromValue(@Nullable Object value) throws ObjectParseException {
+            if (value == null) {
+                throw new ObjectParseException("Message is nil");
+            }
+            return value;
+        }
+
+        @Nullable
+        @Override
+        public Object toValue(@Nonnull Object message) {
+            return message;
+        }
+    };
+
+    @Nonnull
+    private final Mapper mapper;
+
+    /**
+     * Creates serializer that returns messages as MessagePack values
+     */
+    public MessagePackObjectSerializer() {
+        this(VALUES);
+    }
+
+    public MessagePackObjectSerializer(@Nonnull Mapper mapper) {
+        this.mapper = mapper;
+    }
+
+    @Nonnull
+    @Override
+    public Object serialize(@Nonnull String message) throws ObjectParseException {
+        throw new ObjectParseException("Could not parse string messages");
+    }
+
+    @Nonnull
+    @Override
+    public Object serialize(@Nonnull byte[] message) throws ObjectParseException {
+        return serialize(ByteBuffer.wrap(message));
+    }
+
+    @Nonnull
+    @Override
+    public Object serialize(@Nonnull ByteString message) throws ObjectParseException {
+        return serialize(message.asByteBuffer());
+    }
+
+    @Nonnull
+    private Object serialize(@Nonnull ByteBuffer message) throws ObjectParseException {
+        // Values are read from the message itself, it is not copied to a buffer first
+        return mapper.fromValue(MessagePackReader.read(message));
+    }
+
+    @Nonnull
+    @Override
+    public byte[] deserializeBinary(@Nonnull Object message) throws ObjectParseException {
+        final Buffer buffer = new Buffer();
+        deserializeBinary(message, buffer);
+        return buffer.readByteArray();
+    }
+
+    @Override
+    public void deserializeBinary(@Nonnull Object message, @Nonnull BufferedSink sink) throws ObjectParseException {
+        final Object value = mapper.toValue(message);
+        try {
+            MessagePackWriter.write(value, sink);
+        } catch (IllegalArgumentException e) {
+            throw new ObjectParseException("Could not write message", e);
+        } catch (IOException e) {
+            throw new ObjectParseException("Could not write message", e);
+        }
+    }
+
+    @Nonnull
+    @Override
+    public String deserializeString(@Nonnull Object message) throws ObjectParseException {
+        throw new IllegalStateException("Only serialization to binary is available");
+    }
+
+    @Override
+    public boolean isBinary(@Nonnull Object message) {
+        return true;
+    }
+}
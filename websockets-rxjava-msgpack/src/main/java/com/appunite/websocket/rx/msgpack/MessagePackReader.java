@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.msgpack;
+
+import com.appunite.websocket.rx.object.ObjectParseException;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Reads values in MessagePack format
+ *
+ * Values are read directly from the buffer, so only strings and binaries are copied.
+ * Integers are returned as {@link Long}, float 32 as {@link Float}, float 64 as {@link Double},
+ * strings as {@link String}, binaries as byte[], arrays as {@link List} and maps as
+ * {@link LinkedHashMap}. Extension types are not supported.
+ */
+class MessagePackReader {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int MAX_DEPTH = 64;
+    // Don't trust declared sizes of collections, they are allocated as items arrive
+    private static final int MAX_INITIAL_CAPACITY = 1024;
+
+    private MessagePackReader() {
+    }
+
+    /**
+     * @param buffer big endian buffer with message, its position is moved to the end
+     */
+    @Nullable
+    static Object read(@Nonnull ByteBuffer buffer) throws ObjectParseException {
+        try {
+            final Object value = read(buffer, 0);
+            if (buffer.hasRemaining()) {
+                throw new ObjectParseException("Unexpected bytes after value");
+            }
+            return value;
+        } catch (BufferUnderflowException e) {
+            throw new ObjectParseException("Message is truncated", e);
+        }
+    }
+
+    @Nullable
+    private static Object read(@Nonnull ByteBuffer buffer, int depth) throws ObjectParseException {
+        if (depth > MAX_DEPTH) {
+            throw new ObjectParseException("Message is nested too deeply");
+        }
+        final int type = buffer.get() & 0xff;
+        if (type <= 0x7f) {
+            return (long) type;
+        } else if (type >= 0xe0) {
+            return (long) (byte) type;
+        } else if ((type & 0xe0) == 0xa0) {
+            return readString(buffer, type & 0x1f);
+        } else if ((type & 0xf0) == 0x90) {
+            return readArray(buffer, type & 0x0f, depth);
+        } else if ((type & 0xf0) == 0x80) {
+            return readMap(buffer, type & 0x0f, depth);
+        }
+        switch (type) {
+            case 0xc0:
+                return null;
+            case 0xc2:
+                return false;
+            case 0xc3:
+                return true;
+            case 0xcc:
+                return (long) (buffer.get() & 0xff);
+            case 0xcd:
+                return (long) (buffer.getShort() & 0xffff);
+            case 0xce:
+                return buffer.getInt() & 0xffffffffL;
+            case 0xcf: {
+                final long value = buffer.getLong();
+                if (value < 0) {
+                    throw new ObjectParseException("Unsigned integer is too big");
+                }
+                return value;
+            }
+            case 0xd0:
+                return (long) buffer.get();
+            case 0xd1:
+                return (long) buffer.getShort();
+            case 0xd2:
+                return (long) buffer.getInt();
+            case 0xd3:
+                return buffer.getLong();
+            case 0xca:
+                return Float.intBitsToFloat(buffer.getInt());
+            case 0xcb:
+                return Double.longBitsToDouble(buffer.getLong());
+            case 0xd9:
+                return readString(buffer, buffer.get() & 0xff);
+            case 0xda:
+                return readString(buffer, buffer.getShort() & 0xffff);
+            case 0xdb:
+                return readString(buffer, readSize(buffer));
+            case 0xc4:
+                return readBinary(buffer, buffer.get() & 0xff);
+            case 0xc5:
+                return readBinary(buffer, buffer.getShort() & 0xffff);
+            case 0xc6:
+                return readBinary(buffer, readSize(buffer));
+            case 0xdc:
+                return readArray(buffer, buffer.getShort() & 0xffff, depth);
+            case 0xdd:
+                return readArray(buffer, readSize(buffer), depth);
+            case 0xde:
+                return readMap(buffer, buffer.getShort() & 0xffff, depth);
+            case 0xdf:
+                return readMap(buffer, readSize(buffer), depth);
+            default:
+                throw new ObjectParseException("Unsupported type 0x" + Integer.toHexString(type));
+        }
+    }
+
+    @Nonnull
+    private static String readString(@Nonnull ByteBuffer buffer, int size) {
+        if (buffer.hasArray()) {
+            final int position = buffer.position();
+            require(buffer, size);
+            buffer.position(position + size);
+            return new String(buffer.array(), buffer.arrayOffset() + position, size, UTF_8);
+        }
+        return new String(readBinary(buffer, size), UTF_8);
+    }
+
+    @Nonnull
+    private static byte[] readBinary(@Nonnull ByteBuffer buffer, int size) {
+        require(buffer, size);
+        final byte[] bytes = new byte[size];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static void require(@Nonnull ByteBuffer buffer, int size) {
+        // Check before allocating, declared size can't be trusted
+        if (buffer.remaining() < size) {
+            throw new BufferUnderflowException();
+        }
+    }
+
+    private static int readSize(@Nonnull ByteBuffer buffer) throws ObjectParseException {
+        final int size = buffer.getInt();
+        if (size < 0) {
+            throw new ObjectParseException("Size is too big");
+        }
+        return size;
+    }
+
+    @Nonnull
+    private static List<Object> readArray(@Nonnull ByteBuffer buffer, int size, int depth)
+            throws ObjectParseException {
+        final List<Object> list = new ArrayList<>(Math.min(size, MAX_INITIAL_CAPACITY));
+        for (int i = 0; i < size; i++) {
+            list.add(read(buffer, depth + 1));
+        }
+        return list;
+    }
+
+    @Nonnull
+    private static Map<Object, Object> readMap(@Nonnull ByteBuffer buffer, int size, int depth)
+            throws ObjectParseException {
+        final Map<Object, Object> map = new LinkedHashMap<>(Math.min(size, MAX_INITIAL_CAPACITY) * 2);
+        for (int i = 0; i < size; i++) {
+            final Object key = read(buffer, depth + 1);
+            map.put(key, read(buffer, depth + 1));
+        }
+        return map;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.msgpack;
+
+import com.appunite.websocket.rx.object.ObjectParseException;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import okio.BufferedSink;
+import okio.ByteString;
+
+/**
+ * Writes values in MessagePack format using the shortest encoding
+ *
+ * Supported values: null, {@link Boolean}, {@link Byte}, {@link Short}, {@link Integer},
+ * {@link Long}, {@link Float}, {@link Double}, {@link String}, byte[], {@link ByteString},
+ * {@link List}, Object[] and {@link Map}. Values nested deeper than reader accepts, i.e.
+ * collections that contain themselves, are rejected.
+ */
+class MessagePackWriter {
+
+    private static final int MAX_DEPTH = 64;
+
+    private MessagePackWriter() {
+    }
+
+    static void write(@Nullable Object value, @Nonnull BufferedSink sink) throws IOException, ObjectParseException {
+        write(value, sink, 0);
+    }
+
+    private static void write(@Nullable Object value, @Nonnull BufferedSink sink, int depth)
+            throws IOException, ObjectParseException {
+        if (depth > MAX_DEPTH) {
+            throw new ObjectParseException("Message is nested too deeply");
+        }
+        if (value == null) {
+            sink.writeByte(0xc0);
+        } else if (value instanceof Boolean) {
+            sink.writeByte((Boolean) value ? 0xc3 : 0xc2);
+        } else if (value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte) {
+            writeLong(((Number) value).longValue(), sink);
+        } else if (value instanceof Float) {
+            sink.writeByte(0xca);
+            sink.writeInt(Float.floatToIntBits((Float) value));
+        } else if (value instanceof Double) {
+            sink.writeByte(0xcb);
+            sink.writeLong(Double.doubleToLongBits((Double) value));
+        } else if (value instanceof String) {
+            writeString((String) value, sink);
+        } else if (value instanceof byte[]) {
+            writeBinary(ByteString.of((byte[]) value), sink);
+        } else if (value instanceof ByteString) {
+            writeBinary((ByteString) value, sink);
+        } else if (value instanceof List) {
+            final List<?> list = (List<?>) value;
+            writeHeader(list.size(), 0x90, 15, 0xdc, 0xdd, sink);
+            for (Object item : list) {
+                write(item, sink, depth + 1);
+            }
+        } else if (value instanceof Object[]) {
+            final Object[] array = (Object[]) value;
+            writeHeader(array.length, 0x90, 15, 0xdc, 0xdd, sink);
+            for (Object item : array) {
+                write(item, sink, depth + 1);
+            }
+        } else if (value instanceof Map) {
+            final Map<?, ?> map = (Map<?, ?>) value;
+            writeHeader(map.size(), 0x80, 15, 0xde, 0xdf, sink);
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                write(entry.getKey(), sink, depth + 1);
+                write(entry.getValue(), sink, depth + 1);
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported type " + value.getClass());
+        }
+    }
+
+    private static void writeLong(long value, @Nonnull BufferedSink sink) throws IOException {
+        if (value >= 0) {
+            if (value <= 0x7f) {
+                sink.writeByte((int) value);
+            } else if (value <= 0xff) {
+                sink.writeByte(0xcc);
+                sink.writeByte((int) value);
+            } else if (value <= 0xffff) {
+                sink.writeByte(0xcd);
+                sink.writeShort((int) value);
+            } else if (value <= 0xffffffffL) {
+                sink.writeByte(0xce);
+                sink.writeInt((int) value);
+            } else {
+                sink.writeByte(0xcf);
+                sink.writeLong(value);
+            }
+        } else {
+            if (value >= -32) {
+                sink.writeByte((int) value);
+            } else if (value >= Byte.MIN_VALUE) {
+                sink.writeByte(0xd0);
+                sink.writeByte((int) value);
+            } else if (value >= Short.MIN_VALUE) {
+                sink.writeByte(0xd1);
+                sink.writeShort((int) value);
+            } else if (value >= Integer.MIN_VALUE) {
+                sink.writeByte(0xd2);
+                sink.writeInt((int) value);
+            } else {
+                sink.writeByte(0xd3);
+                sink.writeLong(value);
+            }
+        }
+    }
+
+    private static void writeString(@Nonnull String value, @Nonnull BufferedSink sink) throws IOException {
+        final ByteString bytes = ByteString.encodeUtf8(value);
+        final int size = bytes.size();
+        if (size <= 31) {
+            sink.writeByte(0xa0 | size);
+        } else if (size <= 0xff) {
+            sink.writeByte(0xd9);
+            sink.writeByte(size);
+        } else {
+            writeHeader(size, 0, -1, 0xda, 0xdb, sink);
+        }
+        sink.write(bytes);
+    }
+
+    private static void writeBinary(@Nonnull ByteString value, @Nonnull BufferedSink sink) throws IOException {
+        final int size = value.size();
+        if (size <= 0xff) {
+            sink.writeByte(0xc4);
+            sink.writeByte(size);
+        } else if (size <= 0xffff) {
+            sink.writeByte(0xc5);
+            sink.writeShort(size);
+        } else {
+            sink.writeByte(0xc6);
+            sink.writeInt(size);
+        }
+        sink.write(value);
+    }
+
+    private static void writeHeader(int size, int fixPrefix, int fixMax, int prefix16, int prefix32,
+                                    @Nonnull BufferedSink sink) throws IOException {
+        if (size <= fixMax) {
+            sink.writeByte(fixPrefix | size);
+        } else if (size <= 0xffff) {
+            sink.writeByte(prefix16);
+            sink.writeShort(size);
+        } else {
+            sink.writeByte(prefix32);
+            sink.writeInt(size);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.msgpack;
+
+import com.appunite.websocket.rx.object.ObjectParseException;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import okio.ByteString;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class MessagePackObjectSerializerTest {
+
+    private final MessagePackObjectSerializer serializer = new MessagePackObjectSerializer();
+
+    @Nonnull
+    private Object roundTrip(@Nonnull Object value) throws ObjectParseException {
+        return serializer.serialize(serializer.deserializeBinary(value));
+    }
+
+    @Test
+    public void testMap_isEncodedLikeSpecificationExample() throws Exception {
+        final Map<String, Object> map = new LinkedHashMap<>();
+        map.put("compact", true);
+        map.put("schema", 0);
+
+        final byte[] bytes = serializer.deserializeBinary(map);
+
+        assertThat(ByteString.of(bytes).hex()).isEqualTo("82a7636f6d70616374c3a6736368656d6100");
+    }
+
+    @Test
+    public void testIntegers_useShortestEncoding() throws Exception {
+        assertThat(ByteString.of(serializer.deserializeBinary(127)).hex()).isEqualTo("7f");
+        assertThat(ByteString.of(serializer.deserializeBinary(128)).hex()).isEqualTo("cc80");
+        assertThat(ByteString.of(serializer.deserializeBinary(-32)).hex()).isEqualTo("e0");
+        assertThat(ByteString.of(serializer.deserializeBinary(-33)).hex()).isEqualTo("d0df");
+        assertThat(ByteString.of(serializer.deserializeBinary(65536)).hex()).isEqualTo("ce00010000");
+    }
+
+    @Test
+    public void testIntegers_areReadAsLong() throws Exception {
+        final long[] values = {0, 1, 127, 128, 255, 256, 65535, 65536, 4294967295L, 4294967296L,
+                Long.MAX_VALUE, -1, -32, -33, -128, -129, -32768, -32769, Integer.MIN_VALUE,
+                Integer.MIN_VALUE - 1L, Long.MIN_VALUE};
+        for (long value : values) {
+            assertThat(roundTrip(value)).isEqualTo(value);
+        }
+    }
+
+    @Test
+    public void testFloatingPoint_isRestored() throws Exception {
+        assertThat(roundTrip(1.5f)).isEqualTo(1.5f);
+        assertThat(roundTrip(-2.25d)).isEqualTo(-2.25d);
+    }
+
+    @Test
+    public void testStrings_areRestored() throws Exception {
+        final StringBuilder longString = new StringBuilder();
+        for (int i = 0; i < 70000; i++) {
+            longString.append('x');
+        }
+        final String[] values = {"", "short", "\u017c\u00f3\u0142w", longString.substring(0, 32),
+                longString.substring(0, 256), longString.toString()};
+        for (String value : values) {
+            assertThat(roundTrip(value)).isEqualTo(value);
+        }
+    }
+
+    @Test
+    public void testBinary_isRestored() throws Exception {
+        final byte[] value = {1, 2, 3, -1};
+
+        final Object restored = roundTrip(ByteString.of(value));
+
+        assertThat(Arrays.equals((byte[]) restored, value)).isTrue();
+    }
+
+    @Test
+    public void testNestedCollections_areRestored() throws Exception {
+        final List<Object> list = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            list.add((long) i);
+        }
+        final Map<Object, Object> map = new LinkedHashMap<>();
+        map.put("list", list);
+        map.put("null", null);
+        map.put("flag", false);
+        map.put(1L, "one");
+
+        assertThat(roundTrip(map)).isEqualTo(map);
+    }
+
+    @Test
+    public void testMapper_convertsMessages() throws Exception {
+        final MessagePackObjectSerializer serializer = new MessagePackObjectSerializer(
+                new MessagePackObjectSerializer.Mapper() {
+                    @Nonnull
+                    @Override
+                    public Object fromValue(@Nullable Object value) {
+                        return new StringBuilder((String) value);
+                    }
+
+                    @Nullable
+                    @Override
+                    public Object toValue(@Nonnull Object message) {
+                        return message.toString();
+                    }
+                });
+
+        final Object restored = serializer.serialize(serializer.deserializeBinary(new StringBuilder("text")));
+
+        assertThat(restored.toString()).isEqualTo("text");
+    }
+
+    @Test
+    public void testByteStringMessage_isReadWithoutConsumingIt() throws Exception {
+        final ByteString message = ByteString.decodeHex("a56b69747479");
+
+        assertThat(serializer.serialize(message)).isEqualTo("kitty");
+        assertThat(serializer.serialize(message)).isEqualTo("kitty");
+    }
+
+    @Test(expected = ObjectParseException.class)
+    public void testTruncatedByteStringMessage_throwsException() throws Exception {
+        serializer.serialize(ByteString.decodeHex("a56162"));
+    }
+
+    @Test(expected = ObjectParseException.class)
+    public void testTruncatedMessage_throwsException() throws Exception {
+        serializer.serialize(new byte[]{(byte) 0xa5, 'a', 'b'});
+    }
+
+    @Test(expected = ObjectParseException.class)
+    public void testBytesAfterValue_throwsException() throws Exception {
+        serializer.serialize(new byte[]{1, 2});
+    }
+
+    @Test(expected = ObjectParseException.class)
+    public void testExtensionType_throwsException() throws Exception {
+        serializer.serialize(new byte[]{(byte) 0xd4, 1, 1});
+    }
+
+    @Test(expected = ObjectParseException.class)
+    public void testNilMessage_throwsException() throws Exception {
+        serializer.serialize(new byte[]{(byte) 0xc0});
+    }
+
+    @Test(expected = ObjectParseException.class)
+    public void testUnsupportedType_throwsException() throws Exception {
+        serializer.deserializeBinary(new Object());
+    }
+
+    @Test
+    public void testLongStringInByteStringMessage_isRestored() throws Exception {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            builder.append("kitty ");
+        }
+        final String value = builder.toString();
+
+        final Object restored = serializer.serialize(ByteString.of(serializer.deserializeBinary(value)));
+
+        assertThat(restored).isEqualTo(value);
+    }
+
+    @Test(expected = ObjectParseException.class)
+    public void testSelfReferencingMessage_throwsException() throws Exception {
+        final List<Object> list = new ArrayList<>();
+        list.add(list);
+
+        serializer.deserializeBinary(list);
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx;
+
+import com.appunite.websocket.rx.messages.RxEvent;
+import com.appunite.websocket.rx.messages.RxEventBinaryMessageAbs;
+import com.appunite.websocket.rx.messages.RxEventStringMessage;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import rx.Observable;
+import rx.functions.Func1;
+
+/**
+ * Strategy of buffering messages when subscriber of {@link RxWebSockets} can't keep up with
+ * the server
+ *
+ * Only messages ({@link RxEventStringMessage}, {@link RxEventBinaryMessageAbs}) are counted
+ * to capacity and can be dropped, connection events are always delivered.
+ *
+ * One instance can be used for many subscriptions, {@link #droppedFrames()} is summed up
+ * through all of them.
+ *
+ * @see RxWebSockets#webSocketObservable(InboundBackpressure)
+ */
+public class InboundBackpressure {
+
+    enum Overflow {
+        DROP_OLDEST, DROP_NEWEST, PAUSE_READING
+    }
+
+    @Nonnull
+    private final Overflow overflow;
+    private final int capacity;
+    @Nullable
+    private final Func1<? super RxEvent, ?> keySelector;
+    @Nonnull
+    private final AtomicLong droppedFrames = new AtomicLong();
+
+    InboundBackpressure(@Nonnull Overflow overflow,
+                        int capacity,
+                        @Nullable Func1<? super RxEvent, ?> keySelector) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity should be greater than 0");
+        }
+        this.overflow = overflow;
+        this.capacity = capacity;
+        this.keySelector = keySelector;
+    }
+
+    /**
+     * Buffer up to capacity messages and drop the oldest buffered message on overflow
+     *
+     * @param capacity max number of buffered messages
+     * @return strategy
+     */
+    @Nonnull
+    public static InboundBackpressure dropOldest(int capacity) {
+        return new InboundBackpressure(Overflow.DROP_OLDEST, capacity, null);
+    }
+
+    /**
+     * Buffer up to capacity messages and drop incoming messages on overflow
+     *
+     * @param capacity max number of buffered messages
+     * @return strategy
+     */
+    @Nonnull
+    public static InboundBackpressure dropNewest(int capacity) {
+        return new InboundBackpressure(Overflow.DROP_NEWEST, capacity, null);
+    }
+
+    /**
+     * Keep only the latest message for every key
+     *
+     * A new message replaces a buffered message with the same key (in its place in the queue).
+     * Messages with null key and messages with new keys that doesn't fit in capacity are
+     * handled as in {@link #dropOldest(int)}
+     *
+     * @param capacity max number of buffered messages
+     * @param keySelector returns key of a message or null if message shouldn't be replaced
+     * @return strategy
+     */
+    @Nonnull
+    public static InboundBackpressure latestByKey(int capacity,
+                                                  @Nonnull Func1<? super RxEvent, ?> keySelector) {
+        return new InboundBackpressure(Overflow.DROP_OLDEST, capacity, keySelector);
+    }
+
+    /**
+     * Buffer up to capacity messages and then stop reading from socket until subscriber
+     * requests more messages.
+     *
+     * Reading is paused by blocking OkHttp reader thread, so server will be slowed down by TCP
+     * flow control. Keep in mind that while reading is paused, pings are also not responded.
+     *
+     * @param capacity max number of buffered messages
+     * @return strategy
+     */
+    @Nonnull
+    public static InboundBackpressure pauseReading(int capacity) {
+        return new InboundBackpressure(Overflow.PAUSE_READING, capacity, null);
+    }
+
+    /**
+     * Number of messages that were dropped
+     *
+     * @return number of messages dropped since creation of this strategy
+     */
+    public long droppedFrames() {
+        return droppedFrames.get();
+    }
+
+    @Nonnull
+    Overflow overflow() {
+        return overflow;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    @Nullable
+    Object key(@Nonnull RxEvent event) {
+        return keySelector == null ? null : keySelector.call(event);
+    }
+
+    void onDropped() {
+        droppedFrames.incrementAndGet();
+    }
+
+    @Nonnull
+    Observable.Operator<RxEvent, RxEvent> operator() {
+        return new OperatorInboundBackpressure(this);
+    }
+
+    static boolean isMessage(@Nonnull RxEvent event) {
+        return event instanceof RxEventStringMessage || event instanceof RxEventBinaryMessageAbs;
+    }
+}
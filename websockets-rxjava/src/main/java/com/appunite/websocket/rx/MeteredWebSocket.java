@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx;
+
+import com.appunite.websocket.rx.metrics.WebSocketMetrics;
+
+import javax.annotation.Nonnull;
+
+import okhttp3.Request;
+import okhttp3.WebSocket;
+import okio.ByteString;
+
+/**
+ * {@link WebSocket} that reports sent frames to {@link WebSocketMetrics}
+ */
+class MeteredWebSocket implements WebSocket {
+
+    @Nonnull
+    private final WebSocket webSocket;
+    @Nonnull
+    private final WebSocketMetrics metrics;
+
+    MeteredWebSocket(@Nonnull WebSocket webSocket, @Nonnull WebSocketMetrics metrics) {
+        this.webSocket = webSocket;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Request request() {
+        return webSocket.request();
+    }
+
+    @Override
+    public long queueSize() {
+        return webSocket.queueSize();
+    }
+
+    @Override
+    public boolean send(String text) {
+        final boolean enqueued = webSocket.send(text);
+        metrics.onFrameSent(false, utf8Size(text), enqueued, webSocket.queueSize());
+        return enqueued;
+    }
+
+    @Override
+    public boolean send(ByteString bytes) {
+        final boolean enqueued = webSocket.send(bytes);
+        metrics.onFrameSent(true, bytes.size(), enqueued, webSocket.queueSize());
+        return enqueued;
+    }
+
+    @Override
+    public boolean close(int code, String reason) {
+        return webSocket.close(code, reason);
+    }
+
+    @Override
+    public void cancel() {
+        webSocket.cancel();
+    }
+
+    static long utf8Size(@Nonnull String text) {
+        long size = 0;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            final char c = text.charAt(i);
+            if (c < 0x80) {
+                size += 1;
+            } else if (c < 0x800) {
+                size += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                size += 4;
+                i += 1;
+            } else {
+                size += 3;
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx;
+
+import com.appunite.websocket.rx.object.ObjectParseException;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import rx.Observable;
+import rx.Producer;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.Subscription;
+import rx.functions.Action0;
+
+/**
+ * Operator that sends messages suspending when outbound queue is full
+ *
+ * @see OutboundFlowControl
+ */
+class OperatorFlowControlledSend<T> implements Observable.Operator<Boolean, T> {
+
+    interface Sender<T> {
+        long queueSize();
+
+        boolean send(@Nonnull T message) throws ObjectParseException;
+    }
+
+    @Nonnull
+    private final OutboundFlowControl flowControl;
+    @Nonnull
+    private final Sender<T> sender;
+
+    OperatorFlowControlledSend(@Nonnull OutboundFlowControl flowControl, @Nonnull Sender<T> sender) {
+        this.flowControl = flowControl;
+        this.sender = sender;
+    }
+
+    @Override
+    public Subscriber<? super T> call(final Subscriber<? super Boolean> child) {
+        final Scheduler.Worker worker = flowControl.scheduler().createWorker();
+        final SendSubscriber<T> parent = new SendSubscriber<>(child, worker, flowControl, sender);
+        child.add(worker);
+        child.add(parent);
+        child.setProducer(new Producer() {
+            @Override
+            public void request(long n) {
+                parent.requestMore(n);
+            }
+        });
+        return parent;
+    }
+
+    private static class SendSubscriber<T> extends Subscriber<T> {
+
+        @Nonnull
+        private final Subscriber<? super Boolean> child;
+        @Nonnull
+        private final Scheduler.Worker worker;
+        @Nonnull
+        private final OutboundFlowControl flowControl;
+        @Nonnull
+        private final Sender<T> sender;
+
+        private final ArrayDeque<T> queue = new ArrayDeque<>();
+        private final AtomicInteger wip = new AtomicInteger();
+        private final AtomicLong requested = new AtomicLong();
+        private boolean done = false;
+        @Nullable
+        private Throwable error;
+        private boolean paused = false;
+        @Nullable
+        private Subscription poll;
+
+        SendSubscriber(@Nonnull Subscriber<? super Boolean> child,
+                       @Nonnull Scheduler.Worker worker,
+                       @Nonnull OutboundFlowControl flowControl,
+                       @Nonnull Sender<T> sender) {
+            this.child = child;
+            this.worker = worker;
+            this.flowControl = flowControl;
+            this.sender = sender;
+        }
+
+        @Override
+        public void onStart() {
+            if (flowControl.overflow() == OutboundFlowControl.Overflow.PAUSE) {
+                request(flowControl.bufferSize());
+            } else {
+                request(Long.MAX_VALUE);
+            }
+        }
+
+        @Override
+        public void onNext(T message) {
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                if (queue.size() >= flowControl.bufferSize()) {
+                    error = new OutboundQueueFullException("Too many messages buffered", queue.size());
+                    done = true;
+                    queue.clear();
+                } else {
+                    queue.offer(message);
+                }
+            }
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                error = e;
+                done = true;
+            }
+            drain();
+        }
+
+        @Override
+        public void onCompleted() {
+            synchronized (this) {
+                done = true;
+            }
+            drain();
+        }
+
+        void requestMore(long n) {
+            if (n < 0) {
+                throw new IllegalArgumentException("n >= 0 required but it was " + n);
+            }
+            if (n == 0) {
+                return;
+            }
+            for (;;) {
+                final long current = requested.get();
+                long next = current + n;
+                if (next < 0) {
+                    next = Long.MAX_VALUE;
+                }
+                if (requested.compareAndSet(current, next)) {
+                    break;
+                }
+            }
+            drain();
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            for (;;) {
+                if (!drainLoop()) {
+                    return;
+                }
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * @return false if stream was terminated
+         */
+        private boolean drainLoop() {
+            for (;;) {
+                if (child.isUnsubscribed()) {
+                    return false;
+                }
+                // Result of every send is emitted, so messages wait in queue for downstream
+                final boolean demand = requested.get() != 0;
+                final T message;
+                final boolean terminate;
+                synchronized (this) {
+                    message = error != null || paused || !demand ? null : queue.peek();
+                    terminate = error != null || (done && queue.isEmpty());
+                    if (message == null && !terminate) {
+                        return true;
+                    }
+                }
+                if (terminate) {
+                    terminate();
+                    return false;
+                }
+
+                final long queueSize = sender.queueSize();
+                flowControl.onQueueSize(queueSize);
+                if (queueSize >= flowControl.highWatermark()) {
+                    if (flowControl.overflow() == OutboundFlowControl.Overflow.FAIL) {
+                        fail(new OutboundQueueFullException("Outbound queue is full", queueSize));
+                        return false;
+                    }
+                    pause();
+                    return true;
+                }
+
+                synchronized (this) {
+                    queue.poll();
+                }
+                final boolean sent;
+                try {
+                    sent = sender.send(message);
+                } catch (ObjectParseException e) {
+                    fail(e);
+                    return false;
+                }
+                flowControl.onSent();
+                child.onNext(sent);
+                if (requested.get() != Long.MAX_VALUE) {
+                    requested.decrementAndGet();
+                }
+                if (flowControl.overflow() == OutboundFlowControl.Overflow.PAUSE) {
+                    request(1);
+                }
+            }
+        }
+
+        private void terminate() {
+            unsubscribe();
+            final Throwable error;
+            synchronized (this) {
+                error = this.error;
+            }
+            if (error != null) {
+                child.onError(error);
+            } else {
+                child.onCompleted();
+            }
+        }
+
+        private void fail(@Nonnull Throwable e) {
+            synchronized (this) {
+                queue.clear();
+                done = true;
+            }
+            unsubscribe();
+            child.onError(e);
+        }
+
+        private void pause() {
+            flowControl.onPaused();
+            synchronized (this) {
+                paused = true;
+            }
+            final Subscription poll = worker.schedulePeriodically(new Action0() {
+                @Override
+                public void call() {
+                    final long queueSize = sender.queueSize();
+                    flowControl.onQueueSize(queueSize);
+                    if (queueSize > flowControl.lowWatermark()) {
+                        return;
+                    }
+                    resume();
+                }
+            }, OutboundFlowControl.POLL_INTERVAL_MS, OutboundFlowControl.POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            final boolean resumed;
+            synchronized (this) {
+                resumed = !paused;
+                if (!resumed) {
+                    this.poll = poll;
+                }
+            }
+            if (resumed) {
+                poll.unsubscribe();
+            }
+        }
+
+        private void resume() {
+            final Subscription poll;
+            synchronized (this) {
+                if (!paused) {
+                    return;
+                }
+                paused = false;
+                poll = this.poll;
+                this.poll = null;
+            }
+            if (poll != null) {
+                poll.unsubscribe();
+            }
+            drain();
+        }
+    }
+}
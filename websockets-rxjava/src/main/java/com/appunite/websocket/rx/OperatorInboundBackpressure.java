@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx;
+
+import com.appunite.websocket.rx.messages.RxEvent;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import rx.Observable;
+import rx.Producer;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.subscriptions.Subscriptions;
+
+/**
+ * Operator that buffers events until downstream requests them
+ *
+ * @see InboundBackpressure
+ */
+class OperatorInboundBackpressure implements Observable.Operator<RxEvent, RxEvent> {
+
+    @Nonnull
+    private final InboundBackpressure backpressure;
+
+    OperatorInboundBackpressure(@Nonnull InboundBackpressure backpressure) {
+        this.backpressure = backpressure;
+    }
+
+    @Override
+    public Subscriber<? super RxEvent> call(final Subscriber<? super RxEvent> child) {
+        final BufferSubscriber parent = new BufferSubscriber(child, backpressure);
+        child.add(parent);
+        child.add(Subscriptions.create(new Action0() {
+            @Override
+            public void call() {
+                parent.wakeUp();
+            }
+        }));
+        child.setProducer(new Producer() {
+            @Override
+            public void request(long n) {
+                parent.requestMore(n);
+            }
+        });
+        return parent;
+    }
+
+    private static class Slot {
+        @Nullable
+        final Object key;
+        final boolean message;
+        @Nonnull
+        RxEvent event;
+
+        Slot(@Nullable Object key, boolean message, @Nonnull RxEvent event) {
+            this.key = key;
+            this.message = message;
+            this.event = event;
+        }
+    }
+
+    private static class BufferSubscriber extends Subscriber<RxEvent> {
+
+        @Nonnull
+        private final Subscriber<? super RxEvent> child;
+        @Nonnull
+        private final InboundBackpressure backpressure;
+
+        private final Object lock = new Object();
+        private final ArrayDeque<Slot> queue = new ArrayDeque<>();
+        private final Map<Object, Slot> slotsByKey = new HashMap<>();
+        private int messages = 0;
+        private boolean done = false;
+        @Nullable
+        private Throwable error;
+
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+
+        BufferSubscriber(@Nonnull Subscriber<? super RxEvent> child,
+                         @Nonnull InboundBackpressure backpressure) {
+            this.child = child;
+            this.backpressure = backpressure;
+        }
+
+        @Override
+        public void onNext(RxEvent event) {
+            final boolean message = InboundBackpressure.isMessage(event);
+            final Object key = message ? backpressure.key(event) : null;
+            synchronized (lock) {
+                if (message && !offerMessage(key, event)) {
+                    return;
+                }
+                if (!message) {
+                    queue.offer(new Slot(null, false, event));
+                }
+            }
+            drain();
+        }
+
+        private boolean offerMessage(@Nullable Object key, @Nonnull RxEvent event) {
+            if (key != null) {
+                final Slot slot = slotsByKey.get(key);
+                if (slot != null) {
+                    slot.event = event;
+                    backpressure.onDropped();
+                    return true;
+                }
+            }
+            if (messages >= backpressure.capacity()) {
+                switch (backpressure.overflow()) {
+                    case DROP_NEWEST:
+                        backpressure.onDropped();
+                        return false;
+                    case DROP_OLDEST:
+                        removeOldestMessage();
+                        backpressure.onDropped();
+                        break;
+                    case PAUSE_READING:
+                        if (!waitForSpace()) {
+                            backpressure.onDropped();
+                            return false;
+                        }
+                        break;
+                    default:
+                        throw new IllegalStateException("Unknown overflow " + backpressure.overflow());
+                }
+            }
+            final Slot slot = new Slot(key, true, event);
+            queue.offer(slot);
+            messages += 1;
+            if (key != null) {
+                slotsByKey.put(key, slot);
+            }
+            return true;
+        }
+
+        private boolean waitForSpace() {
+            try {
+                while (messages >= backpressure.capacity()) {
+                    if (child.isUnsubscribed()) {
+                        return false;
+                    }
+                    lock.wait();
+                }
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        private void removeOldestMessage() {
+            for (Iterator<Slot> iterator = queue.iterator(); iterator.hasNext(); ) {
+                final Slot slot = iterator.next();
+                if (slot.message) {
+                    iterator.remove();
+                    forget(slot);
+                    return;
+                }
+            }
+        }
+
+        private void forget(@Nonnull Slot slot) {
+            if (slot.message) {
+                messages -= 1;
+                lock.notifyAll();
+            }
+            if (slot.key != null && slotsByKey.get(slot.key) == slot) {
+                slotsByKey.remove(slot.key);
+            }
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            synchronized (lock) {
+                error = e;
+                done = true;
+            }
+            drain();
+        }
+
+        @Override
+        public void onCompleted() {
+            synchronized (lock) {
+                done = true;
+            }
+            drain();
+        }
+
+        void wakeUp() {
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+        }
+
+        void requestMore(long n) {
+            if (n < 0) {
+                throw new IllegalArgumentException("n >= 0 required but it was " + n);
+            }
+            if (n == 0) {
+                return;
+            }
+            for (;;) {
+                final long current = requested.get();
+                long next = current + n;
+                if (next < 0) {
+                    next = Long.MAX_VALUE;
+                }
+                if (requested.compareAndSet(current, next)) {
+                    break;
+                }
+            }
+            drain();
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            for (;;) {
+                final long requested = this.requested.get();
+                long emitted = 0;
+                for (;;) {
+                    if (child.isUnsubscribed()) {
+                        return;
+                    }
+                    final RxEvent event;
+                    final boolean done;
+                    final Throwable error;
+                    synchronized (lock) {
+                        done = this.done;
+                        error = this.error;
+                        final Slot slot = emitted == requested ? null : queue.poll();
+                        if (slot != null) {
+                            forget(slot);
+                        }
+                        event = slot == null ? null : slot.event;
+                        if (event == null && done && !queue.isEmpty()) {
+                            break;
+                        }
+                    }
+                    if (event == null) {
+                        if (done) {
+                            if (error != null) {
+                                child.onError(error);
+                            } else {
+                                child.onCompleted();
+                            }
+                            return;
+                        }
+                        break;
+                    }
+                    child.onNext(event);
+                    emitted += 1;
+                }
+                if (emitted != 0 && requested != Long.MAX_VALUE) {
+                    this.requested.addAndGet(-emitted);
+                }
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    break;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx;
+
+import com.appunite.websocket.rx.object.ObjectParseException;
+import com.appunite.websocket.rx.object.ObjectWebSocketSender;
+import com.appunite.websocket.rx.object.QueueSizeAware;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+
+import okhttp3.WebSocket;
+import okio.ByteString;
+import rx.Observable;
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
+
+/**
+ * Sends stream of messages watching size of outbound queue ({@link WebSocket#queueSize()}).
+ *
+ * When OkHttp outbound buffer (16 MiB) is full, connection is closed, so when queue size
+ * reaches high watermark, sending is suspended until queue size drops to low watermark.
+ * Meanwhile messages are buffered and producers are slowed down via backpressure.
+ * Message is sent only when its result is requested by subscriber, so results that are not
+ * consumed hold messages in buffer too.
+ *
+ * One instance can be used for many streams, metrics are summed up through all of them.
+ *
+ * @see RxMoreObservables#sendMessage(WebSocket, String)
+ */
+public class OutboundFlowControl {
+
+    static final long POLL_INTERVAL_MS = 50;
+
+    enum Overflow {
+        PAUSE, BUFFER, FAIL
+    }
+
+    @Nonnull
+    private final Overflow overflow;
+    private final long highWatermark;
+    private final long lowWatermark;
+    private final int bufferSize;
+    @Nonnull
+    private final Scheduler scheduler;
+
+    @Nonnull
+    private final AtomicLong sentMessages = new AtomicLong();
+    @Nonnull
+    private final AtomicLong pauses = new AtomicLong();
+    @Nonnull
+    private final AtomicLong maxQueueSize = new AtomicLong();
+
+    OutboundFlowControl(@Nonnull Overflow overflow,
+                        long highWatermark,
+                        long lowWatermark,
+                        int bufferSize,
+                        @Nonnull Scheduler scheduler) {
+        if (lowWatermark < 0 || lowWatermark > highWatermark) {
+            throw new IllegalArgumentException("0 <= lowWatermark <= highWatermark required");
+        }
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize should be greater than 0");
+        }
+        this.overflow = overflow;
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+        this.bufferSize = bufferSize;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * When queue is full stop requesting messages from upstream
+     *
+     * Upstream has to support backpressure, otherwise
+     * {@link OutboundQueueFullException} is returned when more than bufferSize messages are
+     * waiting
+     *
+     * @param highWatermark queue size in bytes when sending is suspended
+     * @param lowWatermark queue size in bytes when sending is resumed
+     * @param bufferSize number of messages requested from upstream in advance
+     * @param scheduler scheduler used to check if queue size dropped
+     * @return flow control
+     */
+    @Nonnull
+    public static OutboundFlowControl pause(long highWatermark,
+                                            long lowWatermark,
+                                            int bufferSize,
+                                            @Nonnull Scheduler scheduler) {
+        return new OutboundFlowControl(Overflow.PAUSE, highWatermark, lowWatermark, bufferSize, scheduler);
+    }
+
+    /**
+     * When queue is full buffer messages, and if there is more than bufferSize buffered messages
+     * return {@link OutboundQueueFullException}
+     *
+     * @param highWatermark queue size in bytes when sending is suspended
+     * @param lowWatermark queue size in bytes when sending is resumed
+     * @param bufferSize max number of buffered messages
+     * @param scheduler scheduler used to check if queue size dropped
+     * @return flow control
+     */
+    @Nonnull
+    public static OutboundFlowControl buffer(long highWatermark,
+                                             long lowWatermark,
+                                             int bufferSize,
+                                             @Nonnull Scheduler scheduler) {
+        return new OutboundFlowControl(Overflow.BUFFER, highWatermark, lowWatermark, bufferSize, scheduler);
+    }
+
+    /**
+     * When queue is full return {@link OutboundQueueFullException}
+     *
+     * @param highWatermark queue size in bytes when error is returned
+     * @return flow control
+     */
+    @Nonnull
+    public static OutboundFlowControl failFast(long highWatermark) {
+        return new OutboundFlowControl(Overflow.FAIL, highWatermark, highWatermark, 1, Schedulers.immediate());
+    }
+
+    /**
+     * Send string messages
+     *
+     * @param sender connection event that is used to send messages
+     * @return Transformer that returns true for every message that was enqueued
+     */
+    @Nonnull
+    public Observable.Transformer<String, Boolean> sendMessages(@Nonnull final WebSocket sender) {
+        return transformer(new OperatorFlowControlledSend.Sender<String>() {
+            @Override
+            public long queueSize() {
+                return sender.queueSize();
+            }
+
+            @Override
+            public boolean send(@Nonnull String message) {
+                return sender.send(message);
+            }
+        });
+    }
+
+    /**
+     * Send binary messages
+     *
+     * @param sender connection event that is used to send messages
+     * @return Transformer that returns true for every message that was enqueued
+     */
+    @Nonnull
+    public Observable.Transformer<ByteString, Boolean> sendBinaryMessages(@Nonnull final WebSocket sender) {
+        return transformer(new OperatorFlowControlledSend.Sender<ByteString>() {
+            @Override
+            public long queueSize() {
+                return sender.queueSize();
+            }
+
+            @Override
+            public boolean send(@Nonnull ByteString message) {
+                return sender.send(message);
+            }
+        });
+    }
+
+    /**
+     * Send objects
+     *
+     * @param sender connection event that is used to send messages, has to implement
+     *               {@link QueueSizeAware} as sender returned by
+     *               {@link com.appunite.websocket.rx.object.RxObjectWebSockets}
+     * @param <T> type of messages
+     * @return Transformer that returns true for every message that was enqueued or
+     * ObjectParseException if couldn't serialize message
+     * @throws IllegalArgumentException if sender doesn't implement {@link QueueSizeAware}
+     */
+    @Nonnull
+    public <T> Observable.Transformer<T, Boolean> sendObjectMessages(@Nonnull final ObjectWebSocketSender sender) {
+        if (!(sender instanceof QueueSizeAware)) {
+            throw new IllegalArgumentException("Sender doesn't know size of its queue");
+        }
+        final QueueSizeAware queue = (QueueSizeAware) sender;
+        return transformer(new OperatorFlowControlledSend.Sender<T>() {
+            @Override
+            public long queueSize() {
+                return queue.queueSize();
+            }
+
+            @Override
+            public boolean send(@Nonnull T message) throws ObjectParseException {
+                return sender.sendObjectMessage(message);
+            }
+        });
+    }
+
+    @Nonnull
+    private <T> Observable.Transformer<T, Boolean> transformer(@Nonnull final OperatorFlowControlledSend.Sender<T> sender) {
+        return new Observable.Transformer<T, Boolean>() {
+            @Override
+            public Observable<Boolean> call(Observable<T> messages) {
+                return messages.lift(new OperatorFlowControlledSend<>(OutboundFlowControl.this, sender));
+            }
+        };
+    }
+
+    /**
+     * Number of messages passed to the socket
+     *
+     * @return number of sent messages
+     */
+    public long sentMessages() {
+        return sentMessages.get();
+    }
+
+    /**
+     * Number of times sending was suspended because queue reached high watermark
+     *
+     * @return number of pauses
+     */
+    public long pauses() {
+        return pauses.get();
+    }
+
+    /**
+     * Max observed size of outbound queue
+     *
+     * @return max queue size in bytes
+     */
+    public long maxQueueSize() {
+        return maxQueueSize.get();
+    }
+
+    @Nonnull
+    Overflow overflow() {
+        return overflow;
+    }
+
+    long highWatermark() {
+        return highWatermark;
+    }
+
+    long lowWatermark() {
+        return lowWatermark;
+    }
+
+    int bufferSize() {
+        return bufferSize;
+    }
+
+    @Nonnull
+    Scheduler scheduler() {
+        return scheduler;
+    }
+
+    void onSent() {
+        sentMessages.incrementAndGet();
+    }
+
+    void onPaused() {
+        pauses.incrementAndGet();
+    }
+
+    void onQueueSize(long queueSize) {
+        for (;;) {
+            final long max = maxQueueSize.get();
+            if (queueSize <= max || maxQueueSize.compareAndSet(max, queueSize)) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx;
+
+import java.io.IOException;
+
+/**
+ * Exception indicating that too many messages are waiting to be sent to the server
+ *
+ * @see OutboundFlowControl
+ */
+public class OutboundQueueFullException extends IOException {
+
+    private final long queueSize;
+
+    public OutboundQueueFullException(String message, long queueSize) {
+        super(message + ", queueSize=" + queueSize);
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * Size of outbound queue when exception occurred
+     * @return number of bytes waiting to be sent or number of buffered messages
+     */
+    public long queueSize() {
+        return queueSize;
+    }
+}
@@ -0,0 +1,378 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx;
+
+import com.appunite.websocket.rx.messages.RxEventConnected;
+import com.appunite.websocket.rx.object.messages.RxObjectEventConnected;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.functions.Action1;
+import rx.functions.Func0;
+import rx.functions.Func1;
+
+/**
+ * Reconnects websocket after failure with exponential backoff.
+ *
+ * Delay for n-th attempt grows as base * 2^n up to cap. Jitter spreads clients in time so
+ * they don't reconnect in lock-step after server restart.
+ *
+ * Server hints are honoured:
+ * <ul>
+ *     <li>Retry-After header of {@link ServerHttpError} is used as minimal delay</li>
+ *     <li>close code 1013 (try again later) delays reconnect by cap</li>
+ *     <li>close codes that mean that client is wrong (1002, 1003, 1007, 1008, 1009, 1010) and
+ *     http 4xx errors other than 408 and 429 are not retried</li>
+ * </ul>
+ *
+ * Usage:
+ * <pre>
+ * rxWebSockets.webSocketObservable()
+ *     .compose(ReconnectPolicy.fullJitter(1, 60, TimeUnit.SECONDS, Schedulers.io())
+ *         .resetAfter(30, TimeUnit.SECONDS)
+ *         .&lt;RxEvent&gt;reconnect())
+ * </pre>
+ */
+public class ReconnectPolicy {
+
+    static final int CLOSE_TRY_AGAIN_LATER = 1013;
+
+    enum Jitter {
+        NONE, FULL, DECORRELATED
+    }
+
+    /**
+     * Reconnects after every error except ones that server hints that are permanent
+     */
+    public static final Func1<Throwable, Boolean> RECONNECT_IF_NOT_PERMANENT = new Func1<Throwable, Boolean>() {
+        @Override
+        public Boolean call(Throwable throwable) {
+            return !isPermanent(throwable);
+        }
+    };
+
+    @Nonnull
+    private final Jitter jitter;
+    private final long baseMillis;
+    private final long capMillis;
+    private final long resetAfterMillis;
+    @Nonnull
+    private final Func1<Throwable, Boolean> reconnectIf;
+    @Nonnull
+    private final Scheduler scheduler;
+    @Nonnull
+    private final Random random;
+
+    @Nonnull
+    private final AtomicLong reconnects = new AtomicLong();
+
+    ReconnectPolicy(@Nonnull Jitter jitter,
+                    long baseMillis,
+                    long capMillis,
+                    long resetAfterMillis,
+                    @Nonnull Func1<Throwable, Boolean> reconnectIf,
+                    @Nonnull Scheduler scheduler,
+                    @Nonnull Random random) {
+        if (baseMillis <= 0 || capMillis < baseMillis) {
+            throw new IllegalArgumentException("0 < base <= cap required");
+        }
+        this.jitter = jitter;
+        this.baseMillis = baseMillis;
+        this.capMillis = capMillis;
+        this.resetAfterMillis = resetAfterMillis;
+        this.reconnectIf = reconnectIf;
+        this.scheduler = scheduler;
+        this.random = random;
+    }
+
+    /**
+     * Exponential backoff without jitter, delay = min(cap, base * 2^attempt)
+     *
+     * @param base delay of first reconnect
+     * @param cap maximal delay
+     * @param unit unit of base and cap
+     * @param scheduler scheduler used to wait
+     * @return reconnect policy
+     */
+    @Nonnull
+    public static ReconnectPolicy exponential(long base, long cap, @Nonnull TimeUnit unit,
+                                              @Nonnull Scheduler scheduler) {
+        return create(Jitter.NONE, base, cap, unit, scheduler);
+    }
+
+    /**
+     * Exponential backoff with full jitter, delay = random(0, min(cap, base * 2^attempt))
+     *
+     * @param base delay of first reconnect
+     * @param cap maximal delay
+     * @param unit unit of base and cap
+     * @param scheduler scheduler used to wait
+     * @return reconnect policy
+     */
+    @Nonnull
+    public static ReconnectPolicy fullJitter(long base, long cap, @Nonnull TimeUnit unit,
+                                             @Nonnull Scheduler scheduler) {
+        return create(Jitter.FULL, base, cap, unit, scheduler);
+    }
+
+    /**
+     * Decorrelated jitter, delay = min(cap, random(base, previousDelay * 3))
+     *
+     * @param base delay of first reconnect
+     * @param cap maximal delay
+     * @param unit unit of base and cap
+     * @param scheduler scheduler used to wait
+     * @return reconnect policy
+     */
+    @Nonnull
+    public static ReconnectPolicy decorrelatedJitter(long base, long cap, @Nonnull TimeUnit unit,
+                                                     @Nonnull Scheduler scheduler) {
+        return create(Jitter.DECORRELATED, base, cap, unit, scheduler);
+    }
+
+    @Nonnull
+    private static ReconnectPolicy create(@Nonnull Jitter jitter, long base, long cap,
+                                          @Nonnull TimeUnit unit, @Nonnull Scheduler scheduler) {
+        return new ReconnectPolicy(jitter, unit.toMillis(base), unit.toMillis(cap), Long.MAX_VALUE,
+                RECONNECT_IF_NOT_PERMANENT, scheduler, new Random());
+    }
+
+    /**
+     * Start counting attempts from beginning when connection was stable for given time
+     *
+     * @param stable time after which connection is considered stable
+     * @param unit unit of stable
+     * @return new reconnect policy
+     */
+    @Nonnull
+    public ReconnectPolicy resetAfter(long stable, @Nonnull TimeUnit unit) {
+        return new ReconnectPolicy(jitter, baseMillis, capMillis, unit.toMillis(stable),
+                reconnectIf, scheduler, random);
+    }
+
+    /**
+     * @param reconnectIf returns true if reconnect should be done after given error,
+     *                    default {@link #RECONNECT_IF_NOT_PERMANENT}
+     * @return new reconnect policy
+     */
+    @Nonnull
+    public ReconnectPolicy reconnectIf(@Nonnull Func1<Throwable, Boolean> reconnectIf) {
+        return new ReconnectPolicy(jitter, baseMillis, capMillis, resetAfterMillis,
+                reconnectIf, scheduler, random);
+    }
+
+    @Nonnull
+    ReconnectPolicy random(@Nonnull Random random) {
+        return new ReconnectPolicy(jitter, baseMillis, capMillis, resetAfterMillis,
+                reconnectIf, scheduler, random);
+    }
+
+    /**
+     * Number of reconnects scheduled by all streams using this policy
+     *
+     * @return number of reconnects
+     */
+    public long reconnects() {
+        return reconnects.get();
+    }
+
+    /**
+     * Resubscribe after error with delay given by policy
+     *
+     * {@link RxEventConnected} or {@link RxObjectEventConnected} marks start of
+     * connection, it's used to reset attempts after stable connection.
+     *
+     * @param <T> type of events, usually {@link com.appunite.websocket.rx.messages.RxEvent} or
+     *           {@link com.appunite.websocket.rx.object.messages.RxObjectEvent}
+     * @return transformer that reconnects
+     */
+    @Nonnull
+    public <T> Observable.Transformer<T, T> reconnect() {
+        return new Observable.Transformer<T, T>() {
+            @Override
+            public Observable<T> call(final Observable<T> observable) {
+                return Observable.defer(new Func0<Observable<T>>() {
+                    @Override
+                    public Observable<T> call() {
+                        final State state = new State();
+                        return observable
+                                .doOnNext(new Action1<T>() {
+                                    @Override
+                                    public void call(T event) {
+                                        if (event instanceof RxEventConnected
+                                                || event instanceof RxObjectEventConnected) {
+                                            state.connected(scheduler.now());
+                                        }
+                                    }
+                                })
+                                .retryWhen(new Func1<Observable<? extends Throwable>, Observable<?>>() {
+                                    @Override
+                                    public Observable<?> call(Observable<? extends Throwable> errors) {
+                                        return errors.flatMap(new Func1<Throwable, Observable<?>>() {
+                                            @Override
+                                            public Observable<?> call(Throwable throwable) {
+                                                if (!reconnectIf.call(throwable)) {
+                                                    return Observable.error(throwable);
+                                                }
+                                                reconnects.incrementAndGet();
+                                                final long delay = state.nextDelay(throwable, scheduler.now());
+                                                return Observable.timer(delay, TimeUnit.MILLISECONDS, scheduler);
+                                            }
+                                        });
+                                    }
+                                });
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Attempts of one subscription
+     */
+    class State {
+        private int attempt = 0;
+        private long previousDelay = baseMillis;
+        private long connectedAt = -1;
+
+        synchronized void connected(long now) {
+            connectedAt = now;
+        }
+
+        synchronized long nextDelay(@Nonnull Throwable throwable, long now) {
+            if (connectedAt >= 0 && now - connectedAt >= resetAfterMillis) {
+                attempt = 0;
+                previousDelay = baseMillis;
+            }
+            connectedAt = -1;
+            final long delay = Math.max(backoff(), serverDelayMillis(throwable, now));
+            attempt += 1;
+            return delay;
+        }
+
+        private long backoff() {
+            switch (jitter) {
+                case NONE:
+                    return backoffMillis(attempt);
+                case FULL:
+                    return randomBetween(0, backoffMillis(attempt));
+                case DECORRELATED:
+                    previousDelay = Math.min(capMillis, randomBetween(baseMillis, previousDelay * 3));
+                    return previousDelay;
+                default:
+                    throw new IllegalStateException("Unknown jitter " + jitter);
+            }
+        }
+
+        private long serverDelayMillis(@Nonnull Throwable throwable, long now) {
+            if (throwable instanceof ServerRequestedCloseException
+                    && ((ServerRequestedCloseException) throwable).code() == CLOSE_TRY_AGAIN_LATER) {
+                return capMillis;
+            }
+            if (throwable instanceof ServerHttpError) {
+                final Long retryAfter = retryAfterMillis(
+                        ((ServerHttpError) throwable).response().header("Retry-After"), now);
+                if (retryAfter != null) {
+                    return retryAfter;
+                }
+            }
+            return 0;
+        }
+    }
+
+    long backoffMillis(int attempt) {
+        if (attempt >= Long.numberOfLeadingZeros(baseMillis) - 1) {
+            return capMillis;
+        }
+        return Math.min(capMillis, baseMillis << attempt);
+    }
+
+    private long randomBetween(long min, long max) {
+        if (max <= min) {
+            return min;
+        }
+        final double value;
+        synchronized (random) {
+            value = random.nextDouble();
+        }
+        return min + (long) (value * (max - min));
+    }
+
+    /**
+     * Parses Retry-After header value
+     *
+     * @param retryAfter seconds or http date
+     * @param now current time in millis
+     * @return delay in millis or null if value is missing or wrong
+     */
+    @Nullable
+    static Long retryAfterMillis(@Nullable String retryAfter, long now) {
+        if (retryAfter == null) {
+            return null;
+        }
+        final String value = retryAfter.trim();
+        try {
+            return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(value)));
+        } catch (NumberFormatException ignore) {
+        }
+        final SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            final Date date = format.parse(value);
+            return Math.max(0, date.getTime() - now);
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param throwable error of connection
+     * @return true if server said that retrying will not help
+     */
+    static boolean isPermanent(@Nonnull Throwable throwable) {
+        if (throwable instanceof ServerRequestedCloseException) {
+            switch (((ServerRequestedCloseException) throwable).code()) {
+                case 1002:
+                case 1003:
+                case 1007:
+                case 1008:
+                case 1009:
+                case 1010:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+        if (throwable instanceof ServerHttpError) {
+            final int code = ((ServerHttpError) throwable).response().code();
+            return code >= 400 && code < 500 && code != 408 && code != 429;
+        }
+        return false;
+    }
+}
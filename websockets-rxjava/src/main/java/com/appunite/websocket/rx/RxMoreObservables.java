@@ -16,18 +16,25 @@
 
 package com.appunite.websocket.rx;
 
+import com.appunite.websocket.rx.object.ObjectEnvelope;
+import com.appunite.websocket.rx.object.ObjectParseException;
 import com.appunite.websocket.rx.object.ObjectSerializer;
 import com.appunite.websocket.rx.object.ObjectWebSocketSender;
+import com.appunite.websocket.rx.object.ObjectWebSocketSenders;
 import com.appunite.websocket.rx.object.RxObjectWebSockets;
 
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.annotation.Nonnull;
 
 import okhttp3.WebSocket;
+import rx.Observable;
 import rx.Single;
+import rx.Subscriber;
 
 public class RxMoreObservables {
 
@@ -43,6 +50,7 @@ public class RxMoreObservables {
      * @param message message to send
      * @return Single that returns true if message was enqueued
      * @see #sendObjectMessage(ObjectWebSocketSender, Object)
+     * @see OutboundFlowControl
      */
     @Nonnull
     public static Single<Boolean> sendMessage(final @Nonnull WebSocket sender, final @Nonnull String message) {
@@ -78,5 +86,119 @@ public class RxMoreObservables {
         });
     }
 
+    /**
+     * Send many objects as separate messages serialized in one pass
+     *
+     * @param sender connection event that is used to send messages
+     * @param messages messages to serialize and sent
+     * @return Single that returns number of enqueued messages or ObjectParseException if
+     * couldn't serialize any of messages
+     * @see ObjectWebSocketSenders#sendObjectMessages(ObjectWebSocketSender, Iterable)
+     */
+    @Nonnull
+    public static Single<Integer> sendObjectMessages(final @Nonnull ObjectWebSocketSender sender, final @Nonnull Iterable<?> messages) {
+        return Single.fromCallable(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                logger.log(Level.FINE, "sendObjectMessages: {0}", messages);
+                return ObjectWebSocketSenders.sendObjectMessages(sender, messages);
+            }
+        });
+    }
+
+    /**
+     * Send every batch of objects as separate messages serialized in one pass
+     * <p>
+     * Use it with {@link Observable#buffer(long, TimeUnit, int)} to send bursts of messages
+     *
+     * @param sender connection event that is used to send messages
+     * @param <T> type of messages
+     * @return Transformer that returns number of enqueued messages for every batch or
+     * ObjectParseException if couldn't serialize any of messages
+     * @see ObjectWebSocketSenders#sendObjectMessages(ObjectWebSocketSender, Iterable)
+     */
+    @Nonnull
+    public static <T> Observable.Transformer<List<T>, Integer> sendObjectMessageBatches(final @Nonnull ObjectWebSocketSender sender) {
+        return new Observable.Transformer<List<T>, Integer>() {
+            @Override
+            public Observable<Integer> call(Observable<List<T>> batches) {
+                return batches.lift(new SendBatchOperator<T>() {
+                    @Override
+                    int send(@Nonnull List<T> batch) throws ObjectParseException {
+                        return ObjectWebSocketSenders.sendObjectMessages(sender, batch);
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Send every batch of objects wrapped by envelope as a single message
+     *
+     * @param sender connection event that is used to send messages
+     * @param envelope envelope that wraps batch of messages into one object
+     * @param <T> type of messages
+     * @return Transformer that returns size of batch if it was enqueued or 0 if it wasn't, or
+     * ObjectParseException if couldn't serialize envelope, or exception thrown by envelope
+     * @see #sendObjectMessageBatches(ObjectWebSocketSender)
+     */
+    @Nonnull
+    public static <T> Observable.Transformer<List<T>, Integer> sendObjectMessageBatches(final @Nonnull ObjectWebSocketSender sender,
+                                                                                      final @Nonnull ObjectEnvelope envelope) {
+        return new Observable.Transformer<List<T>, Integer>() {
+            @Override
+            public Observable<Integer> call(Observable<List<T>> batches) {
+                return batches.lift(new SendBatchOperator<T>() {
+                    @Override
+                    int send(@Nonnull List<T> batch) throws ObjectParseException {
+                        return sender.sendObjectMessage(envelope.wrap(batch)) ? batch.size() : 0;
+                    }
+                });
+            }
+        };
+    }
+
+    private static abstract class SendBatchOperator<T> implements Observable.Operator<Integer, List<T>> {
+
+        abstract int send(@Nonnull List<T> batch) throws ObjectParseException;
+
+        @Override
+        public Subscriber<? super List<T>> call(final Subscriber<? super Integer> subscriber) {
+            return new Subscriber<List<T>>(subscriber) {
+                @Override
+                public void onCompleted() {
+                    subscriber.onCompleted();
+                }
+
+                @Override
+                public void onError(Throwable e) {
+                    subscriber.onError(e);
+                }
+
+                @Override
+                public void onNext(List<T> batch) {
+                    if (batch.isEmpty()) {
+                        subscriber.onNext(0);
+                        return;
+                    }
+                    logger.log(Level.FINE, "sendObjectMessageBatch: {0} messages", batch.size());
+                    final int sent;
+                    try {
+                        sent = send(batch);
+                    } catch (ObjectParseException e) {
+                        unsubscribe();
+                        subscriber.onError(e);
+                        return;
+                    } catch (RuntimeException e) {
+                        unsubscribe();
+                        subscriber.onError(e);
+                        return;
+                    }
+                    subscriber.onNext(sent);
+                }
+            };
+        }
+    }
+
 
 }
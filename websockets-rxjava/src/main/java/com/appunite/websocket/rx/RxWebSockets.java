@@ -21,6 +21,7 @@ import com.appunite.websocket.rx.messages.RxEventBinaryMessage;
 import com.appunite.websocket.rx.messages.RxEventConnected;
 import com.appunite.websocket.rx.messages.RxEventDisconnected;
 import com.appunite.websocket.rx.messages.RxEventStringMessage;
+import com.appunite.websocket.rx.metrics.WebSocketMetrics;
 import com.appunite.websocket.rx.object.messages.RxObjectEvent;
 
 import javax.annotation.Nonnull;
@@ -45,6 +46,8 @@ public class RxWebSockets {
     private final OkHttpClient client;
     @Nonnull
     private final Request request;
+    @Nonnull
+    private final WebSocketMetrics metrics;
 
     /**
      * Create instance of {@link RxWebSockets}
@@ -52,8 +55,37 @@ public class RxWebSockets {
      * @param request request to connect to websocket
      */
     public RxWebSockets(@Nonnull OkHttpClient client, @Nonnull Request request) {
+        this(client, request, WebSocketMetrics.NO_OP);
+    }
+
+    /**
+     * Create instance of {@link RxWebSockets} that reports connection metrics
+     * @param client {@link OkHttpClient} instance
+     * @param request request to connect to websocket
+     * @param metrics listener of connection events, i.e. {@link com.appunite.websocket.rx.metrics.InMemoryWebSocketMetrics}
+     */
+    public RxWebSockets(@Nonnull OkHttpClient client,
+                        @Nonnull Request request,
+                        @Nonnull WebSocketMetrics metrics) {
         this.client = client;
         this.request = request;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return metrics passed to constructor or {@link WebSocketMetrics#NO_OP}
+     */
+    @Nonnull
+    public WebSocketMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * @return request used to connect to websocket
+     */
+    @Nonnull
+    public Request request() {
+        return request;
     }
 
     /**
@@ -67,25 +99,68 @@ public class RxWebSockets {
 
             @Override
             public void call(final Subscriber<? super RxEvent> subscriber) {
+                final boolean metered = metrics != WebSocketMetrics.NO_OP;
+                if (metered) {
+                    metrics.onConnecting();
+                }
+                final long connectingNanos = metered ? System.nanoTime() : 0L;
                 final WebSocket webSocket = client.newWebSocket(request, new WebSocketListener() {
+                    private WebSocket sender;
+                    private long openedNanos;
+                    private boolean waitingForFirstMessage = true;
+                    private boolean closeReported = false;
+
                     @Override
                     public void onOpen(WebSocket webSocket, Response response) {
-                        subscriber.onNext(new RxEventConnected(webSocket));
+                        if (metered) {
+                            openedNanos = System.nanoTime();
+                            metrics.onConnected(openedNanos - connectingNanos);
+                        }
+                        subscriber.onNext(new RxEventConnected(sender(webSocket)));
                     }
 
                     @Override
                     public void onMessage(WebSocket webSocket, String text) {
-                        subscriber.onNext(new RxEventStringMessage(webSocket, text));
+                        if (metered) {
+                            onFrameReceived(false, MeteredWebSocket.utf8Size(text));
+                        }
+                        subscriber.onNext(new RxEventStringMessage(sender(webSocket), text));
                     }
 
                     @Override
                     public void onMessage(WebSocket webSocket, ByteString bytes) {
-                        subscriber.onNext(new RxEventBinaryMessage(webSocket, bytes.toByteArray()));
+                        if (metered) {
+                            onFrameReceived(true, bytes.size());
+                        }
+                        subscriber.onNext(new RxEventBinaryMessage(sender(webSocket), bytes));
+                    }
+
+                    private void onFrameReceived(boolean binary, long bytes) {
+                        if (waitingForFirstMessage) {
+                            waitingForFirstMessage = false;
+                            metrics.onFirstMessage(System.nanoTime() - openedNanos);
+                        }
+                        metrics.onFrameReceived(binary, bytes);
+                    }
+
+                    @Nonnull
+                    private WebSocket sender(@Nonnull WebSocket webSocket) {
+                        if (!metered) {
+                            return webSocket;
+                        }
+                        if (sender == null) {
+                            sender = new MeteredWebSocket(webSocket, metrics);
+                        }
+                        return sender;
                     }
 
                     @Override
                     public void onClosing(WebSocket webSocket, int code, String reason) {
                         super.onClosing(webSocket, code, reason);
+                        if (metered && !closeReported) {
+                            closeReported = true;
+                            metrics.onClosed(code);
+                        }
                         final ServerRequestedCloseException exception = new ServerRequestedCloseException(code, reason);
                         subscriber.onNext(new RxEventDisconnected(exception));
                         subscriber.onError(exception);
@@ -93,6 +168,10 @@ public class RxWebSockets {
 
                     @Override
                     public void onClosed(WebSocket webSocket, int code, String reason) {
+                        if (metered && !closeReported) {
+                            closeReported = true;
+                            metrics.onClosed(code);
+                        }
                         final ServerRequestedCloseException exception = new ServerRequestedCloseException(code, reason);
                         subscriber.onNext(new RxEventDisconnected(exception));
                         subscriber.onError(exception);
@@ -102,9 +181,15 @@ public class RxWebSockets {
                     public void onFailure(WebSocket webSocket, Throwable t, Response response) {
                         if (response != null) {
                             final ServerHttpError exception = new ServerHttpError(response);
+                            if (metered) {
+                                metrics.onFailure(exception);
+                            }
                             subscriber.onNext(new RxEventDisconnected(exception));
                             subscriber.onError(exception);
                         } else {
+                            if (metered) {
+                                metrics.onFailure(t);
+                            }
                             subscriber.onNext(new RxEventDisconnected(t));
                             subscriber.onError(t);
                         }
@@ -121,4 +206,18 @@ public class RxWebSockets {
         });
     }
 
+    /**
+     * Returns observable that connected to a websocket and returns {@link RxEvent}'s respecting
+     * backpressure of subscriber
+     *
+     * @param backpressure strategy of buffering messages that subscriber didn't request yet
+     * @return Observable that connects to websocket
+     * @see #webSocketObservable()
+     */
+    @Nonnull
+    public Observable<RxEvent> webSocketObservable(@Nonnull InboundBackpressure backpressure) {
+        return webSocketObservable()
+                .lift(backpressure.operator());
+    }
+
 }
@@ -0,0 +1,336 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx;
+
+import com.appunite.websocket.rx.messages.RxEvent;
+import com.appunite.websocket.rx.messages.RxEventConnected;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import rx.Observable;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.subscriptions.Subscriptions;
+
+/**
+ * Manages many websocket connections opened over one {@link OkHttpClient}
+ *
+ * Pool limits number of connections that are handshaking at the same time and number of
+ * live connections per host. Connections over the limit wait in FIFO queue until earlier
+ * connection is established or closed, so reconnecting thousands of upstreams doesn't
+ * create thousands of connecting threads at once.
+ *
+ * OkHttp 3.5 needs one reader thread per opened websocket, so limits are the way to bound
+ * number of threads.
+ *
+ * <pre>
+ * final RxWebSocketsPool pool = new RxWebSocketsPool(client, 16, 1000);
+ * pool.webSocketObservable(request)
+ *     .compose(reconnectPolicy.&lt;RxEvent&gt;reconnect())
+ *     .subscribe(...);
+ * </pre>
+ */
+public class RxWebSocketsPool {
+
+    private enum State {
+        QUEUED, CONNECTING, LIVE, DONE
+    }
+
+    @Nonnull
+    private final OkHttpClient client;
+    private final int maxConnecting;
+    private final int maxLivePerHost;
+
+    private final Object lock = new Object();
+    private final ArrayDeque<Attempt> queue = new ArrayDeque<>();
+    private final Map<String, Integer> connectionsPerHost = new HashMap<>();
+    private int connecting = 0;
+    private int live = 0;
+    private long connects = 0;
+    private long failures = 0;
+
+    /**
+     * @param client client used to open all connections
+     * @param maxConnecting max number of connections that are being established at the same time
+     * @param maxLivePerHost max number of connecting and opened connections to one host
+     */
+    public RxWebSocketsPool(@Nonnull OkHttpClient client, int maxConnecting, int maxLivePerHost) {
+        if (maxConnecting <= 0 || maxLivePerHost <= 0) {
+            throw new IllegalArgumentException("limits should be greater than 0");
+        }
+        this.client = client;
+        this.maxConnecting = maxConnecting;
+        this.maxLivePerHost = maxLivePerHost;
+    }
+
+    /**
+     * Returns observable that waits for free slot in pool and connects to websocket
+     *
+     * @param request request to connect to websocket
+     * @return observable like {@link RxWebSockets#webSocketObservable()}
+     */
+    @Nonnull
+    public Observable<RxEvent> webSocketObservable(@Nonnull Request request) {
+        return webSocketObservable(new RxWebSockets(client, request));
+    }
+
+    /**
+     * Returns observable that waits for free slot in pool and connects to websocket
+     *
+     * @param rxWebSockets websocket that should use client of this pool
+     * @return observable like {@link RxWebSockets#webSocketObservable()}
+     */
+    @Nonnull
+    public Observable<RxEvent> webSocketObservable(@Nonnull final RxWebSockets rxWebSockets) {
+        return Observable.create(new Observable.OnSubscribe<RxEvent>() {
+            @Override
+            public void call(final Subscriber<? super RxEvent> child) {
+                final Attempt attempt = new Attempt(rxWebSockets.request().url().host(),
+                        rxWebSockets.webSocketObservable(), child);
+                child.add(Subscriptions.create(new Action0() {
+                    @Override
+                    public void call() {
+                        attempt.finish(false);
+                    }
+                }));
+                synchronized (lock) {
+                    if (child.isUnsubscribed()) {
+                        return;
+                    }
+                    queue.offer(attempt);
+                }
+                drain();
+            }
+        });
+    }
+
+    /**
+     * @return snapshot of pool state
+     */
+    @Nonnull
+    public Stats stats() {
+        synchronized (lock) {
+            return new Stats(queue.size(), connecting, live, connects, failures,
+                    new HashMap<>(connectionsPerHost));
+        }
+    }
+
+    private void drain() {
+        final List<Attempt> toStart = new ArrayList<>();
+        synchronized (lock) {
+            for (Iterator<Attempt> iterator = queue.iterator(); iterator.hasNext()
+                    && connecting < maxConnecting; ) {
+                final Attempt attempt = iterator.next();
+                final Integer perHost = connectionsPerHost.get(attempt.host);
+                final int count = perHost == null ? 0 : perHost;
+                if (count >= maxLivePerHost) {
+                    continue;
+                }
+                iterator.remove();
+                connectionsPerHost.put(attempt.host, count + 1);
+                connecting += 1;
+                connects += 1;
+                attempt.state = State.CONNECTING;
+                toStart.add(attempt);
+            }
+        }
+        for (Attempt attempt : toStart) {
+            attempt.start();
+        }
+    }
+
+    private class Attempt extends Subscriber<RxEvent> {
+        @Nonnull
+        final String host;
+        @Nonnull
+        private final Observable<RxEvent> connection;
+        @Nonnull
+        private final Subscriber<? super RxEvent> child;
+        @Nonnull
+        State state = State.QUEUED;
+
+        Attempt(@Nonnull String host,
+                @Nonnull Observable<RxEvent> connection,
+                @Nonnull Subscriber<? super RxEvent> child) {
+            this.host = host;
+            this.connection = connection;
+            this.child = child;
+        }
+
+        void start() {
+            if (child.isUnsubscribed()) {
+                return;
+            }
+            child.add(this);
+            connection.unsafeSubscribe(this);
+        }
+
+        @Override
+        public void onNext(RxEvent event) {
+            if (event instanceof RxEventConnected) {
+                connected();
+            }
+            child.onNext(event);
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            finish(true);
+            child.onError(e);
+        }
+
+        @Override
+        public void onCompleted() {
+            finish(false);
+            child.onCompleted();
+        }
+
+        private void connected() {
+            synchronized (lock) {
+                if (state != State.CONNECTING) {
+                    return;
+                }
+                state = State.LIVE;
+                connecting -= 1;
+                live += 1;
+            }
+            drain();
+        }
+
+        void finish(boolean failed) {
+            synchronized (lock) {
+                switch (state) {
+                    case QUEUED:
+                        queue.remove(this);
+                        break;
+                    case CONNECTING:
+                        connecting -= 1;
+                        releaseHost();
+                        break;
+                    case LIVE:
+                        live -= 1;
+                        releaseHost();
+                        break;
+                    case DONE:
+                        return;
+                }
+                if (failed) {
+                    failures += 1;
+                }
+                state = State.DONE;
+            }
+            drain();
+        }
+
+        private void releaseHost() {
+            final int count = connectionsPerHost.get(host) - 1;
+            if (count == 0) {
+                connectionsPerHost.remove(host);
+            } else {
+                connectionsPerHost.put(host, count);
+            }
+        }
+    }
+
+    /**
+     * Snapshot of {@link RxWebSocketsPool} state
+     */
+    public static class Stats {
+        private final int queued;
+        private final int connecting;
+        private final int live;
+        private final long connects;
+        private final long failures;
+        @Nonnull
+        private final Map<String, Integer> connectionsPerHost;
+
+        Stats(int queued, int connecting, int live, long connects, long failures,
+              @Nonnull Map<String, Integer> connectionsPerHost) {
+            this.queued = queued;
+            this.connecting = connecting;
+            this.live = live;
+            this.connects = connects;
+            this.failures = failures;
+            this.connectionsPerHost = Collections.unmodifiableMap(connectionsPerHost);
+        }
+
+        /**
+         * @return number of connections waiting for free slot
+         */
+        public int queued() {
+            return queued;
+        }
+
+        /**
+         * @return number of connections during handshake
+         */
+        public int connecting() {
+            return connecting;
+        }
+
+        /**
+         * @return number of opened connections
+         */
+        public int live() {
+            return live;
+        }
+
+        /**
+         * @return number of connection attempts started by pool
+         */
+        public long connects() {
+            return connects;
+        }
+
+        /**
+         * @return number of connections that finished with error
+         */
+        public long failures() {
+            return failures;
+        }
+
+        /**
+         * @return number of connecting and opened connections per host
+         */
+        @Nonnull
+        public Map<String, Integer> connectionsPerHost() {
+            return connectionsPerHost;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                    "queued=" + queued +
+                    ", connecting=" + connecting +
+                    ", live=" + live +
+                    ", connects=" + connects +
+                    ", failures=" + failures +
+                    ", connectionsPerHost=" + connectionsPerHost +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,408 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx;
+
+import com.appunite.websocket.rx.messages.RxEventConnected;
+import com.appunite.websocket.rx.messages.RxEventDisconnected;
+import com.appunite.websocket.rx.object.messages.RxObjectEventConnected;
+import com.appunite.websocket.rx.object.messages.RxObjectEventDisconnected;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.Subscription;
+import rx.functions.Action0;
+import rx.functions.Func1;
+import rx.subscriptions.Subscriptions;
+
+/**
+ * Shares one websocket connection between many subscribers
+ *
+ * Connection is opened by first subscriber and closed after linger time when last
+ * subscriber unsubscribes, so i.e. screen rotation doesn't cause reconnect. Subscribers that
+ * join later receive last connection state event (i.e. {@link RxEventConnected} or
+ * {@link RxObjectEventConnected}) before next events.
+ *
+ * Keep one instance per {@link okhttp3.Request} (i.e. per {@link RxWebSockets}) to have one
+ * physical connection per server.
+ *
+ * <pre>
+ * final SharedConnection&lt;RxObjectEvent&gt; connection = SharedConnection.create(
+ *     rxObjectWebSockets.webSocketObservable(), 5, TimeUnit.SECONDS, Schedulers.io());
+ * connection.events().subscribe(...);
+ * </pre>
+ *
+ * @param <T> type of events, usually {@link com.appunite.websocket.rx.messages.RxEvent} or
+ *           {@link com.appunite.websocket.rx.object.messages.RxObjectEvent}
+ */
+public class SharedConnection<T> {
+
+    /**
+     * Treats connected and disconnected events of {@link RxWebSockets} and
+     * {@link com.appunite.websocket.rx.object.RxObjectWebSockets} as connection state
+     */
+    public static final Func1<Object, Boolean> CONNECTION_STATE = new Func1<Object, Boolean>() {
+        @Override
+        public Boolean call(Object event) {
+            return event instanceof RxEventConnected
+                    || event instanceof RxEventDisconnected
+                    || event instanceof RxObjectEventConnected
+                    || event instanceof RxObjectEventDisconnected;
+        }
+    };
+
+    @Nonnull
+    private final Observable<T> source;
+    @Nonnull
+    private final Func1<? super T, Boolean> isState;
+    private final long lingerMillis;
+    @Nonnull
+    private final Scheduler scheduler;
+
+    private final Object lock = new Object();
+    // Copy-on-write, replaced under lock and read without it when emitting
+    @Nonnull
+    private volatile List<Inner<T>> subscribers = Collections.emptyList();
+    // Read without lock by events of closed connection
+    @Nullable
+    private volatile Subscriber<T> upstream;
+    @Nullable
+    private Subscription linger;
+    @Nullable
+    private T state;
+
+    SharedConnection(@Nonnull Observable<T> source,
+                     @Nonnull Func1<? super T, Boolean> isState,
+                     long lingerMillis,
+                     @Nonnull Scheduler scheduler) {
+        if (lingerMillis < 0) {
+            throw new IllegalArgumentException("linger should not be negative");
+        }
+        this.source = source;
+        this.isState = isState;
+        this.lingerMillis = lingerMillis;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @param source connection to share, i.e. {@link RxWebSockets#webSocketObservable()}
+     * @param linger time to keep connection after last subscriber leaves
+     * @param unit unit of linger
+     * @param scheduler scheduler used to close connection after linger time
+     * @param <T> type of events
+     * @return shared connection
+     */
+    @Nonnull
+    public static <T> SharedConnection<T> create(@Nonnull Observable<T> source,
+                                                 long linger,
+                                                 @Nonnull TimeUnit unit,
+                                                 @Nonnull Scheduler scheduler) {
+        return new SharedConnection<>(source, CONNECTION_STATE, unit.toMillis(linger), scheduler);
+    }
+
+    /**
+     * @param source connection to share
+     * @param isState returns true for events that describe connection state and should be
+     *                replayed to late subscribers
+     * @param linger time to keep connection after last subscriber leaves
+     * @param unit unit of linger
+     * @param scheduler scheduler used to close connection after linger time
+     * @param <T> type of events
+     * @return shared connection
+     */
+    @Nonnull
+    public static <T> SharedConnection<T> create(@Nonnull Observable<T> source,
+                                                 @Nonnull Func1<? super T, Boolean> isState,
+                                                 long linger,
+                                                 @Nonnull TimeUnit unit,
+                                                 @Nonnull Scheduler scheduler) {
+        return new SharedConnection<>(source, isState, unit.toMillis(linger), scheduler);
+    }
+
+    /**
+     * Events of shared connection, connects if it's first subscriber
+     *
+     * When connection fails, error is returned to all current subscribers and next
+     * subscriber opens new connection.
+     *
+     * @return observable of events
+     */
+    @Nonnull
+    public Observable<T> events() {
+        return Observable.create(new Observable.OnSubscribe<T>() {
+            @Override
+            public void call(final Subscriber<? super T> child) {
+                child.add(Subscriptions.create(new Action0() {
+                    @Override
+                    public void call() {
+                        remove(child);
+                    }
+                }));
+                add(child);
+            }
+        });
+    }
+
+    /**
+     * @return number of current subscribers
+     */
+    public int subscribers() {
+        return subscribers.size();
+    }
+
+    /**
+     * @return true if connection is opened or lingering
+     */
+    public boolean isActive() {
+        synchronized (lock) {
+            return upstream != null;
+        }
+    }
+
+    private void add(@Nonnull Subscriber<? super T> child) {
+        final Subscriber<T> connect;
+        final Inner<T> inner = new Inner<>(child);
+        synchronized (lock) {
+            if (child.isUnsubscribed()) {
+                return;
+            }
+            if (upstream == null) {
+                upstream = connect = new UpstreamSubscriber();
+            } else {
+                connect = null;
+                if (state != null) {
+                    // Queued before inner is visible to upstream, so it's returned first
+                    inner.enqueue(state);
+                }
+            }
+            final List<Inner<T>> next = new ArrayList<>(subscribers);
+            next.add(inner);
+            subscribers = Collections.unmodifiableList(next);
+            if (linger != null) {
+                linger.unsubscribe();
+                linger = null;
+            }
+        }
+        inner.drain();
+        if (connect != null) {
+            source.unsafeSubscribe(connect);
+        }
+    }
+
+    private void remove(@Nonnull Subscriber<? super T> child) {
+        final Subscriber<T> disconnect;
+        synchronized (lock) {
+            final List<Inner<T>> next = new ArrayList<>(subscribers);
+            int index = -1;
+            for (int i = 0; i < next.size(); i++) {
+                if (next.get(i).child == child) {
+                    index = i;
+                    break;
+                }
+            }
+            if (index < 0) {
+                return;
+            }
+            next.remove(index);
+            subscribers = next.isEmpty()
+                    ? Collections.<Inner<T>>emptyList()
+                    : Collections.unmodifiableList(next);
+            if (!subscribers.isEmpty() || upstream == null) {
+                return;
+            }
+            if (lingerMillis > 0) {
+                final Subscriber<T> lingering = upstream;
+                final Scheduler.Worker worker = scheduler.createWorker();
+                worker.schedule(new Action0() {
+                    @Override
+                    public void call() {
+                        disconnect(lingering);
+                        worker.unsubscribe();
+                    }
+                }, lingerMillis, TimeUnit.MILLISECONDS);
+                linger = worker;
+                return;
+            }
+            disconnect = upstream;
+            upstream = null;
+            state = null;
+        }
+        disconnect.unsubscribe();
+    }
+
+    private void disconnect(@Nonnull Subscriber<T> lingering) {
+        synchronized (lock) {
+            if (upstream != lingering || !subscribers.isEmpty()) {
+                return;
+            }
+            upstream = null;
+            linger = null;
+            state = null;
+        }
+        lingering.unsubscribe();
+    }
+
+    private class UpstreamSubscriber extends Subscriber<T> {
+
+        @Override
+        public void onNext(T event) {
+            final List<Inner<T>> current;
+            if (SharedConnection.this.isState.call(event)) {
+                // State and subscribers that didn't get it replayed are taken together
+                synchronized (lock) {
+                    if (upstream != this) {
+                        return;
+                    }
+                    state = event;
+                    current = subscribers;
+                }
+            } else {
+                if (upstream != this) {
+                    return;
+                }
+                current = subscribers;
+            }
+            for (Inner<T> subscriber : current) {
+                subscriber.onNext(event);
+            }
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            final List<Inner<T>> current = terminate();
+            if (current != null) {
+                for (Inner<T> subscriber : current) {
+                    subscriber.onError(e);
+                }
+            }
+        }
+
+        @Override
+        public void onCompleted() {
+            final List<Inner<T>> current = terminate();
+            if (current != null) {
+                for (Inner<T> subscriber : current) {
+                    subscriber.onCompleted();
+                }
+            }
+        }
+
+        @Nullable
+        private List<Inner<T>> terminate() {
+            synchronized (lock) {
+                if (upstream != this) {
+                    return null;
+                }
+                final List<Inner<T>> current = subscribers;
+                subscribers = Collections.emptyList();
+                upstream = null;
+                state = null;
+                if (linger != null) {
+                    linger.unsubscribe();
+                    linger = null;
+                }
+                return current;
+            }
+        }
+    }
+
+    /**
+     * Subscriber with queue, so replayed state and events from upstream are returned one at a
+     * time without holding lock of connection
+     */
+    private static class Inner<T> {
+        @Nonnull
+        final Subscriber<? super T> child;
+
+        // Guarded by this
+        private final ArrayDeque<T> queue = new ArrayDeque<>();
+        private boolean emitting = false;
+        private boolean done = false;
+        @Nullable
+        private Throwable error;
+
+        Inner(@Nonnull Subscriber<? super T> child) {
+            this.child = child;
+        }
+
+        synchronized void enqueue(@Nonnull T event) {
+            queue.offer(event);
+        }
+
+        void onNext(@Nonnull T event) {
+            enqueue(event);
+            drain();
+        }
+
+        void onError(@Nonnull Throwable e) {
+            synchronized (this) {
+                error = e;
+                done = true;
+            }
+            drain();
+        }
+
+        void onCompleted() {
+            synchronized (this) {
+                done = true;
+            }
+            drain();
+        }
+
+        void drain() {
+            synchronized (this) {
+                if (emitting) {
+                    return;
+                }
+                emitting = true;
+            }
+            for (;;) {
+                final T event;
+                final boolean done;
+                final Throwable error;
+                synchronized (this) {
+                    event = queue.poll();
+                    done = this.done;
+                    error = this.error;
+                    if (event == null && !done) {
+                        emitting = false;
+                        return;
+                    }
+                }
+                if (event != null) {
+                    child.onNext(event);
+                    continue;
+                }
+                if (error != null) {
+                    child.onError(error);
+                } else {
+                    child.onCompleted();
+                }
+                return;
+            }
+        }
+    }
+}
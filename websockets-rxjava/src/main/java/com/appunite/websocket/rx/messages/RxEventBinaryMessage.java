@@ -22,6 +22,8 @@ import java.util.Arrays;
 
 import javax.annotation.Nonnull;
 
+import okio.ByteString;
+
 /**
  * Event indicating that binary was returned by server
  */
@@ -31,6 +33,10 @@ public class RxEventBinaryMessage extends RxEventBinaryMessageAbs {
         super(sender, message);
     }
 
+    public RxEventBinaryMessage(@Nonnull WebSocket sender, @Nonnull ByteString message) {
+        super(sender, message);
+    }
+
     @Override
     public String toString() {
         return "RxEventBinaryMessage{" +
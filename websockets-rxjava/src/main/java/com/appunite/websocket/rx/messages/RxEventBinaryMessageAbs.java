@@ -18,7 +18,12 @@ package com.appunite.websocket.rx.messages;
 
 import okhttp3.WebSocket;
 
+import java.nio.ByteBuffer;
+
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import okio.ByteString;
 
 /**
  * Abstract class for binary messages returned by server
@@ -29,9 +34,15 @@ import javax.annotation.Nonnull;
 public abstract class RxEventBinaryMessageAbs extends RxEventConn {
 
     @Nonnull
-    private final byte[] message;
+    private final ByteString message;
+    @Nullable
+    private volatile byte[] messageBytes;
 
     public RxEventBinaryMessageAbs(@Nonnull WebSocket sender, @Nonnull byte[] message) {
+        this(sender, ByteString.of(message));
+    }
+
+    public RxEventBinaryMessageAbs(@Nonnull WebSocket sender, @Nonnull ByteString message) {
         super(sender);
         this.message = message;
     }
@@ -39,11 +50,39 @@ public abstract class RxEventBinaryMessageAbs extends RxEventConn {
     /**
      * Binary message that was returned by server
      *
+     * Message is copied to array on first call and the same array is returned later, prefer
+     * {@link #messageByteString()} or {@link #messageByteBuffer()} to avoid the copy
+     *
      * @return binary message
      */
     @Nonnull
     public byte[] message() {
+        byte[] bytes = messageBytes;
+        if (bytes == null) {
+            bytes = message.toByteArray();
+            messageBytes = bytes;
+        }
+        return bytes;
+    }
+
+    /**
+     * Binary message that was returned by server, without copying
+     *
+     * @return binary message
+     */
+    @Nonnull
+    public ByteString messageByteString() {
         return message;
     }
 
+    /**
+     * Read-only view of binary message that was returned by server, without copying
+     *
+     * @return binary message
+     */
+    @Nonnull
+    public ByteBuffer messageByteBuffer() {
+        return message.asByteBuffer();
+    }
+
 }
@@ -22,8 +22,14 @@ import java.util.Arrays;
 
 import javax.annotation.Nonnull;
 
+import okio.ByteString;
+
 /**
  * Event indicate that server send pong response
+ *
+ * OkHttp 3.5 {@link okhttp3.WebSocketListener} doesn't expose control frames, so
+ * {@link com.appunite.websocket.rx.RxWebSockets} can't emit this event by itself. Use
+ * {@link com.appunite.websocket.rx.object.ObjectHeartbeat} to measure round trip time.
  */
 public class RxEventPong extends RxEventBinaryMessageAbs {
 
@@ -31,6 +37,10 @@ public class RxEventPong extends RxEventBinaryMessageAbs {
         super(sender, message);
     }
 
+    public RxEventPong(@Nonnull WebSocket sender, @Nonnull ByteString message) {
+        super(sender, message);
+    }
+
     @Override
     public String toString() {
         return "PongMessageRxEvent{" +
@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+
+/**
+ * {@link WebSocketMetrics} that keeps counters and {@link Histogram}'s in memory
+ *
+ * Useful in tests or as a source for periodic reporting to your metrics system. All
+ * times are in nanoseconds.
+ */
+public class InMemoryWebSocketMetrics implements WebSocketMetrics {
+
+    private final AtomicLong connects = new AtomicLong();
+    private final AtomicLong connected = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong framesReceived = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong framesSent = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong framesRejected = new AtomicLong();
+    private final AtomicLong parseFailures = new AtomicLong();
+    private final AtomicLong queueSize = new AtomicLong();
+    private final ConcurrentMap<Integer, AtomicLong> closeCodes = new ConcurrentHashMap<>();
+
+    private final Histogram connectTime = new Histogram();
+    private final Histogram firstMessageTime = new Histogram();
+    private final Histogram parseTime = new Histogram();
+    private final Histogram queueSizes = new Histogram();
+
+    @Override
+    public void onConnecting() {
+        connects.incrementAndGet();
+    }
+
+    @Override
+    public void onConnected(long connectNanos) {
+        connected.incrementAndGet();
+        connectTime.record(connectNanos);
+    }
+
+    @Override
+    public void onFirstMessage(long sinceConnectedNanos) {
+        firstMessageTime.record(sinceConnectedNanos);
+    }
+
+    @Override
+    public void onFrameReceived(boolean binary, long bytes) {
+        framesReceived.incrementAndGet();
+        bytesReceived.addAndGet(bytes);
+    }
+
+    @Override
+    public void onFrameSent(boolean binary, long bytes, boolean enqueued, long queueSize) {
+        if (enqueued) {
+            framesSent.incrementAndGet();
+            bytesSent.addAndGet(bytes);
+        } else {
+            framesRejected.incrementAndGet();
+        }
+        this.queueSize.set(queueSize);
+        queueSizes.record(queueSize);
+    }
+
+    @Override
+    public void onMessageParsed(long parseNanos, boolean parsed) {
+        if (!parsed) {
+            parseFailures.incrementAndGet();
+        }
+        parseTime.record(parseNanos);
+    }
+
+    @Override
+    public void onClosed(int code) {
+        AtomicLong counter = closeCodes.get(code);
+        if (counter == null) {
+            final AtomicLong newCounter = new AtomicLong();
+            counter = closeCodes.putIfAbsent(code, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+        counter.incrementAndGet();
+    }
+
+    @Override
+    public void onFailure(@Nonnull Throwable throwable) {
+        failures.incrementAndGet();
+    }
+
+    /**
+     * @return number of connection attempts
+     */
+    public long connects() {
+        return connects.get();
+    }
+
+    /**
+     * @return number of connection attempts after the first one
+     */
+    public long reconnects() {
+        return Math.max(0, connects.get() - 1);
+    }
+
+    /**
+     * @return number of successfully opened connections
+     */
+    public long connected() {
+        return connected.get();
+    }
+
+    public long failures() {
+        return failures.get();
+    }
+
+    public long framesReceived() {
+        return framesReceived.get();
+    }
+
+    public long bytesReceived() {
+        return bytesReceived.get();
+    }
+
+    public long framesSent() {
+        return framesSent.get();
+    }
+
+    public long bytesSent() {
+        return bytesSent.get();
+    }
+
+    /**
+     * @return number of frames that websocket refused to enqueue
+     */
+    public long framesRejected() {
+        return framesRejected.get();
+    }
+
+    public long parseFailures() {
+        return parseFailures.get();
+    }
+
+    /**
+     * @return outbound queue size reported after last sent frame
+     */
+    public long queueSize() {
+        return queueSize.get();
+    }
+
+    /**
+     * @return copy of close code to number of closes
+     */
+    @Nonnull
+    public Map<Integer, Long> closeCodes() {
+        final Map<Integer, Long> codes = new HashMap<>();
+        for (Map.Entry<Integer, AtomicLong> entry : closeCodes.entrySet()) {
+            codes.put(entry.getKey(), entry.getValue().get());
+        }
+        return codes;
+    }
+
+    @Nonnull
+    public Histogram connectTime() {
+        return connectTime;
+    }
+
+    @Nonnull
+    public Histogram firstMessageTime() {
+        return firstMessageTime;
+    }
+
+    @Nonnull
+    public Histogram parseTime() {
+        return parseTime;
+    }
+
+    @Nonnull
+    public Histogram queueSizes() {
+        return queueSizes;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.metrics;
+
+import com.appunite.websocket.rx.object.ObjectHeartbeat;
+import com.appunite.websocket.rx.object.messages.RxObjectEvent;
+import com.appunite.websocket.rx.object.messages.RxObjectEventHeartbeat;
+
+import java.util.Arrays;
+
+import rx.Observer;
+
+/**
+ * Rolling round trip time estimator
+ *
+ * Keeps smoothed RTT and RTT variance like TCP (RFC 6298, alpha = 1/8, beta = 1/4) and
+ * percentiles of last window samples.
+ *
+ * Subscribe it to stream with {@link ObjectHeartbeat} to get RTT of heartbeats, or feed
+ * samples by {@link #record(long)}.
+ */
+public class RttEstimator implements Observer<RxObjectEvent> {
+
+    private final long[] window;
+    private int position = 0;
+    private int size = 0;
+    private long count = 0;
+    private double smoothedRtt;
+    private double rttVariance;
+    private long minRtt = Long.MAX_VALUE;
+
+    /**
+     * @param windowSize number of last samples used to compute percentiles
+     */
+    public RttEstimator(int windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("windowSize should be greater than 0");
+        }
+        window = new long[windowSize];
+    }
+
+    /**
+     * @param rttMillis round trip time sample
+     */
+    public synchronized void record(long rttMillis) {
+        if (rttMillis < 0) {
+            throw new IllegalArgumentException("rtt should not be negative");
+        }
+        if (count == 0) {
+            smoothedRtt = rttMillis;
+            rttVariance = rttMillis / 2.0;
+        } else {
+            rttVariance = 0.75 * rttVariance + 0.25 * Math.abs(smoothedRtt - rttMillis);
+            smoothedRtt = 0.875 * smoothedRtt + 0.125 * rttMillis;
+        }
+        count += 1;
+        minRtt = Math.min(minRtt, rttMillis);
+        window[position] = rttMillis;
+        position = (position + 1) % window.length;
+        size = Math.min(size + 1, window.length);
+    }
+
+    /**
+     * @return number of recorded samples
+     */
+    public synchronized long count() {
+        return count;
+    }
+
+    /**
+     * @return smoothed round trip time or 0 if there are no samples
+     */
+    public synchronized double smoothedRttMillis() {
+        return smoothedRtt;
+    }
+
+    /**
+     * @return smoothed mean deviation of round trip time
+     */
+    public synchronized double rttVarianceMillis() {
+        return rttVariance;
+    }
+
+    /**
+     * @return smallest seen round trip time or 0 if there are no samples
+     */
+    public synchronized long minRttMillis() {
+        return count == 0 ? 0 : minRtt;
+    }
+
+    /**
+     * Timeout after which answer can be considered lost, srtt + 4 * rttvar like in TCP
+     *
+     * @return timeout or 0 if there are no samples
+     */
+    public synchronized long timeoutMillis() {
+        return (long) Math.ceil(smoothedRtt + 4 * rttVariance);
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return percentile of last window samples or 0 if there are no samples
+     */
+    public long percentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile should be between 0 and 100");
+        }
+        final long[] samples;
+        synchronized (this) {
+            samples = Arrays.copyOf(window, size);
+        }
+        if (samples.length == 0) {
+            return 0;
+        }
+        Arrays.sort(samples);
+        final int rank = (int) Math.ceil(samples.length * percentile / 100);
+        return samples[Math.max(0, rank - 1)];
+    }
+
+    @Override
+    public void onNext(RxObjectEvent event) {
+        if (event instanceof RxObjectEventHeartbeat) {
+            record(((RxObjectEventHeartbeat) event).rttMillis());
+        }
+    }
+
+    @Override
+    public void onCompleted() {
+    }
+
+    @Override
+    public void onError(Throwable e) {
+    }
+
+    @Override
+    public String toString() {
+        return "RttEstimator{" +
+                "srtt=" + smoothedRttMillis() +
+                ", rttvar=" + rttVarianceMillis() +
+                ", p50=" + percentile(50) +
+                ", p99=" + percentile(99) +
+                '}';
+    }
+}
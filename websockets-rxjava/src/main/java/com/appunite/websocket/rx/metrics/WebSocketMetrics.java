@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.metrics;
+
+import com.appunite.websocket.rx.RxWebSockets;
+import com.appunite.websocket.rx.object.RxObjectWebSockets;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Listener of connection level events used to collect metrics
+ *
+ * Pass implementation to {@link RxWebSockets#RxWebSockets(okhttp3.OkHttpClient, okhttp3.Request, WebSocketMetrics)}.
+ * {@link RxObjectWebSockets} reports parse times to metrics of {@link RxWebSockets} it wraps.
+ *
+ * Methods are called on OkHttp threads (or parse scheduler) so implementation has to be
+ * thread safe and fast. Rates (i.e. frames per second) should be computed by sampling
+ * counters.
+ *
+ * @see InMemoryWebSocketMetrics
+ * @see #NO_OP
+ */
+public interface WebSocketMetrics {
+
+    /**
+     * Metrics that ignore everything. When used, library does not measure anything.
+     */
+    WebSocketMetrics NO_OP = new Adapter();
+
+    /**
+     * Connection attempt started. Every attempt after first one is a reconnect.
+     */
+    void onConnecting();
+
+    /**
+     * @param connectNanos time from start of connection to opened websocket
+     */
+    void onConnected(long connectNanos);
+
+    /**
+     * @param sinceConnectedNanos time from opened websocket to first received frame
+     */
+    void onFirstMessage(long sinceConnectedNanos);
+
+    /**
+     * @param binary true if binary frame, false if text frame
+     * @param bytes size of payload, text frames are counted in UTF-8
+     */
+    void onFrameReceived(boolean binary, long bytes);
+
+    /**
+     * @param binary true if binary frame, false if text frame
+     * @param bytes size of payload, text frames are counted in UTF-8
+     * @param enqueued false if websocket rejected frame
+     * @param queueSize {@link okhttp3.WebSocket#queueSize()} after frame was enqueued
+     */
+    void onFrameSent(boolean binary, long bytes, boolean enqueued, long queueSize);
+
+    /**
+     * @param parseNanos time spent by {@link com.appunite.websocket.rx.object.ObjectSerializer}
+     * @param parsed false if frame had wrong format
+     */
+    void onMessageParsed(long parseNanos, boolean parsed);
+
+    /**
+     * @param code close code sent by server
+     */
+    void onClosed(int code);
+
+    /**
+     * @param throwable reason of connection failure
+     */
+    void onFailure(@Nonnull Throwable throwable);
+
+    /**
+     * Implementation that does nothing, extend it if you need only some events
+     */
+    class Adapter implements WebSocketMetrics {
+
+        @Override
+        public void onConnecting() {
+        }
+
+        @Override
+        public void onConnected(long connectNanos) {
+        }
+
+        @Override
+        public void onFirstMessage(long sinceConnectedNanos) {
+        }
+
+        @Override
+        public void onFrameReceived(boolean binary, long bytes) {
+        }
+
+        @Override
+        public void onFrameSent(boolean binary, long bytes, boolean enqueued, long queueSize) {
+        }
+
+        @Override
+        public void onMessageParsed(long parseNanos, boolean parsed) {
+        }
+
+        @Override
+        public void onClosed(int code) {
+        }
+
+        @Override
+        public void onFailure(@Nonnull Throwable throwable) {
+        }
+    }
+}
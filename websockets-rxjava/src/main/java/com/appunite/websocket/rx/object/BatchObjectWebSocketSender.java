@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.object;
+
+import javax.annotation.Nonnull;
+
+/**
+ * {@link ObjectWebSocketSender} that is able to serialize many objects in one pass
+ *
+ * Sender returned by {@link RxObjectWebSockets} implements this interface. Use
+ * {@link ObjectWebSocketSenders#sendObjectMessages(ObjectWebSocketSender, Iterable)} to send
+ * many objects with any sender.
+ */
+public interface BatchObjectWebSocketSender extends ObjectWebSocketSender {
+
+    /**
+     * Send many objects as separate messages (thread safe). All messages are serialized
+     * before first of them is scheduled, so if any of them can't be serialized nothing is sent.
+     *
+     * @param messages
+     *            messages to send
+     * @throws ObjectParseException
+     *             when could not serialize any of objects
+     * @return number of messages that were scheduled to send, if it is less than number of
+     *            messages, connection was closed and rest of messages were not scheduled
+     */
+    int sendObjectMessages(@Nonnull Iterable<?> messages) throws ObjectParseException;
+}
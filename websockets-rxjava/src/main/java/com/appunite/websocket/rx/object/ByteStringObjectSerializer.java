@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.object;
+
+import javax.annotation.Nonnull;
+
+import okio.ByteString;
+
+/**
+ * {@link ObjectSerializer} that is able to read binary messages without copying them to a byte
+ * array
+ *
+ * If serializer implements this interface {@link RxObjectWebSockets} will call
+ * {@link #serialize(ByteString)} instead of {@link #serialize(byte[])}
+ */
+public interface ByteStringObjectSerializer extends ObjectSerializer {
+
+    /**
+     * Serialize binary message
+     * @param message binary message from socket, use {@link ByteString#asByteBuffer()} to get
+     *                read-only view of bytes
+     * @return serialized object
+     * @throws ObjectParseException if serialization fail
+     */
+    @Nonnull Object serialize(@Nonnull ByteString message) throws ObjectParseException;
+}
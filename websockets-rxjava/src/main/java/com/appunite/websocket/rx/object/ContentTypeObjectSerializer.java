@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.object;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import okio.BufferedSink;
+import okio.ByteString;
+
+/**
+ * {@link ObjectSerializer} that routes binary messages to serializers by content type byte
+ *
+ * Binary frame starts with one byte of content type followed by message of serializer
+ * registered for this content type, that has to support binary messages. Outgoing messages
+ * are routed by their class, the first matching registration wins. String frames and
+ * messages of not registered classes are handled by text serializer, so i.e. json and binary
+ * channels can be used on one connection:
+ * <pre>
+ * ContentTypeObjectSerializer.text(gsonSerializer)
+ *     .withBinary(1, PositionUpdate.class, positionSerializer)
+ *     .withBinary(2, Frame.class, frameSerializer)
+ * </pre>
+ */
+public class ContentTypeObjectSerializer implements ByteStringObjectSerializer, SinkObjectSerializer {
+
+    private static class Route {
+        final int contentType;
+        @Nonnull
+        final Class<?> messageClass;
+        @Nonnull
+        final ObjectSerializer serializer;
+
+        Route(int contentType, @Nonnull Class<?> messageClass, @Nonnull ObjectSerializer serializer) {
+            this.contentType = contentType;
+            this.messageClass = messageClass;
+            this.serializer = serializer;
+        }
+    }
+
+    @Nonnull
+    private final ObjectSerializer textSerializer;
+    @Nonnull
+    private final List<Route> routes;
+    @Nonnull
+    private final ObjectSerializer[] byContentType;
+
+    private ContentTypeObjectSerializer(@Nonnull ObjectSerializer textSerializer,
+                                        @Nonnull List<Route> routes) {
+        this.textSerializer = textSerializer;
+        this.routes = routes;
+        this.byContentType = new ObjectSerializer[256];
+        for (Route route : routes) {
+            if (byContentType[route.contentType] == null) {
+                byContentType[route.contentType] = route.serializer;
+            }
+        }
+    }
+
+    /**
+     * @param textSerializer serializer of string frames
+     * @return serializer without binary content types
+     */
+    @Nonnull
+    public static ContentTypeObjectSerializer text(@Nonnull ObjectSerializer textSerializer) {
+        return new ContentTypeObjectSerializer(textSerializer, Collections.<Route>emptyList());
+    }
+
+    /**
+     * Returns copy of this serializer with binary content type
+     *
+     * One content type can be registered for many classes but then serializer has to be the same
+     *
+     * @param contentType content type byte from 0 to 255
+     * @param messageClass class of outgoing messages serialized by serializer
+     * @param serializer serializer of binary messages
+     * @return new serializer
+     */
+    @Nonnull
+    public ContentTypeObjectSerializer withBinary(int contentType,
+                                                  @Nonnull Class<?> messageClass,
+                                                  @Nonnull ObjectSerializer serializer) {
+        if (contentType < 0 || contentType > 255) {
+            throw new IllegalArgumentException("contentType should be between 0 and 255");
+        }
+        final ObjectSerializer registered = byContentType[contentType];
+        if (registered != null && registered != serializer) {
+            throw new IllegalArgumentException("contentType " + contentType + " already registered");
+        }
+        final List<Route> routes = new ArrayList<>(this.routes);
+        routes.add(new Route(contentType, messageClass, serializer));
+        return new ContentTypeObjectSerializer(textSerializer, Collections.unmodifiableList(routes));
+    }
+
+    @Nullable
+    private Route route(@Nonnull Object message) {
+        for (Route route : routes) {
+            if (route.messageClass.isInstance(message)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    @Nonnull
+    @Override
+    public Object serialize(@Nonnull String message) throws ObjectParseException {
+        return textSerializer.serialize(message);
+    }
+
+    @Nonnull
+    @Override
+    public Object serialize(@Nonnull byte[] message) throws ObjectParseException {
+        return serialize(ByteString.of(message));
+    }
+
+    @Nonnull
+    @Override
+    public Object serialize(@Nonnull ByteString message) throws ObjectParseException {
+        if (message.size() == 0) {
+            throw new ObjectParseException("Empty message");
+        }
+        final int contentType = message.getByte(0) & 0xff;
+        final ObjectSerializer serializer = byContentType[contentType];
+        if (serializer == null) {
+            throw new ObjectParseException("Unknown content type " + contentType);
+        }
+        final ByteString payload = message.substring(1);
+        if (serializer instanceof ByteStringObjectSerializer) {
+            return ((ByteStringObjectSerializer) serializer).serialize(payload);
+        }
+        return serializer.serialize(payload.toByteArray());
+    }
+
+    @Nonnull
+    @Override
+    public byte[] deserializeBinary(@Nonnull Object message) throws ObjectParseException {
+        final Route route = binaryRoute(message);
+        final byte[] payload = route.serializer.deserializeBinary(message);
+        final byte[] frame = new byte[payload.length + 1];
+        frame[0] = (byte) route.contentType;
+        System.arraycopy(payload, 0, frame, 1, payload.length);
+        return frame;
+    }
+
+    @Override
+    public void deserializeBinary(@Nonnull Object message, @Nonnull BufferedSink sink) throws ObjectParseException {
+        final Route route = binaryRoute(message);
+        try {
+            sink.writeByte(route.contentType);
+            if (route.serializer instanceof SinkObjectSerializer) {
+                ((SinkObjectSerializer) route.serializer).deserializeBinary(message, sink);
+            } else {
+                sink.write(route.serializer.deserializeBinary(message));
+            }
+        } catch (IOException e) {
+            throw new ObjectParseException("Could not write message", e);
+        }
+    }
+
+    @Nonnull
+    private Route binaryRoute(@Nonnull Object message) {
+        final Route route = route(message);
+        if (route == null) {
+            throw new IllegalStateException("No binary content type for " + message.getClass());
+        }
+        return route;
+    }
+
+    @Nonnull
+    @Override
+    public String deserializeString(@Nonnull Object message) throws ObjectParseException {
+        return textSerializer.deserializeString(message);
+    }
+
+    @Override
+    public boolean isBinary(@Nonnull Object message) {
+        return route(message) != null;
+    }
+}
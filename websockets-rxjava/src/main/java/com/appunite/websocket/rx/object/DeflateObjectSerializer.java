@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.object;
+
+import java.io.EOFException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import okio.Buffer;
+import okio.ByteString;
+
+/**
+ * {@link ObjectSerializer} that compresses messages of other serializer with deflate
+ *
+ * Every message is sent as binary frame that starts with one byte of flags followed by
+ * message of delegate, compressed if it is at least minSize bytes long. Like
+ * permessage-deflate (RFC 7692), compressed data is flushed with
+ * {@link Deflater#SYNC_FLUSH} and trailing 0x00 0x00 0xff 0xff is removed.
+ *
+ * With context takeover compression window is kept between messages, so repeated keys and
+ * values of json are sent only once per connection. Then messages have to be parsed in
+ * order in which they were received, so don't use it with parallel parsing of
+ * {@link RxObjectWebSockets}. Dictionary, i.e. json with common keys, helps to compress
+ * also first and short messages. Server has to use the same format, level can differ.
+ *
+ * String frames are passed to delegate without decompression.
+ */
+public class DeflateObjectSerializer implements ByteStringObjectSerializer, ResettableObjectSerializer {
+
+    static final int FLAG_BINARY = 1;
+    static final int FLAG_COMPRESSED = 2;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final byte[] TAIL = {0x00, 0x00, (byte) 0xff, (byte) 0xff};
+
+    @Nonnull
+    private final ObjectSerializer delegate;
+    private final boolean contextTakeover;
+    private final int minSize;
+    @Nullable
+    private final byte[] dictionary;
+
+    @Nonnull
+    private final Deflater deflater;
+    @Nonnull
+    private final Inflater inflater;
+    private final byte[] deflateBuffer = new byte[8192];
+    private final byte[] inflateBuffer = new byte[8192];
+
+    /**
+     * Creates serializer with context takeover that compresses messages of at least 64 bytes
+     *
+     * @param delegate serializer of uncompressed messages
+     */
+    public DeflateObjectSerializer(@Nonnull ObjectSerializer delegate) {
+        this(delegate, Deflater.DEFAULT_COMPRESSION, true, 64, null);
+    }
+
+    /**
+     * @param delegate serializer of uncompressed messages
+     * @param level compression level from {@link Deflater#BEST_SPEED} to
+     *              {@link Deflater#BEST_COMPRESSION}
+     * @param contextTakeover true if compression window should be kept between messages
+     * @param minSize smaller messages are sent without compression
+     * @param dictionary preset dictionary or null
+     */
+    public DeflateObjectSerializer(@Nonnull ObjectSerializer delegate,
+                                   int level,
+                                   boolean contextTakeover,
+                                   int minSize,
+                                   @Nullable byte[] dictionary) {
+        if (minSize < 0) {
+            throw new IllegalArgumentException("minSize should not be negative");
+        }
+        this.delegate = delegate;
+        this.contextTakeover = contextTakeover;
+        this.minSize = minSize;
+        this.dictionary = dictionary == null ? null : Arrays.copyOf(dictionary, dictionary.length);
+        this.deflater = new Deflater(level, true);
+        this.inflater = new Inflater(true);
+        reset();
+    }
+
+    @Override
+    public void reset() {
+        synchronized (deflater) {
+            resetDeflater();
+        }
+        synchronized (inflater) {
+            resetInflater();
+        }
+    }
+
+    private void resetDeflater() {
+        deflater.reset();
+        if (dictionary != null) {
+            deflater.setDictionary(dictionary);
+        }
+    }
+
+    private void resetInflater() {
+        inflater.reset();
+        if (dictionary != null) {
+            inflater.setDictionary(dictionary);
+        }
+    }
+
+    @Nonnull
+    @Override
+    public Object serialize(@Nonnull String message) throws ObjectParseException {
+        return delegate.serialize(message);
+    }
+
+    @Nonnull
+    @Override
+    public Object serialize(@Nonnull byte[] message) throws ObjectParseException {
+        return serialize(ByteString.of(message));
+    }
+
+    @Nonnull
+    @Override
+    public Object serialize(@Nonnull ByteString message) throws ObjectParseException {
+        if (message.size() == 0) {
+            throw new ObjectParseException("Empty message");
+        }
+        final int flags = message.getByte(0);
+        final ByteString body = message.substring(1);
+        final ByteString payload = (flags & FLAG_COMPRESSED) != 0 ? inflate(body) : body;
+        if ((flags & FLAG_BINARY) == 0) {
+            return delegate.serialize(payload.utf8());
+        }
+        if (delegate instanceof ByteStringObjectSerializer) {
+            return ((ByteStringObjectSerializer) delegate).serialize(payload);
+        }
+        return delegate.serialize(payload.toByteArray());
+    }
+
+    @Nonnull
+    private ByteString inflate(@Nonnull ByteString body) throws ObjectParseException {
+        final Buffer output = new Buffer();
+        synchronized (inflater) {
+            if (!contextTakeover) {
+                resetInflater();
+            }
+            try {
+                inflate(body.toByteArray(), output);
+                inflate(TAIL, output);
+            } catch (DataFormatException e) {
+                // Window is broken, next messages can't be read either
+                resetInflater();
+                throw new ObjectParseException("Could not decompress message", e);
+            }
+        }
+        return output.readByteString();
+    }
+
+    private void inflate(@Nonnull byte[] input, @Nonnull Buffer output) throws DataFormatException {
+        inflater.setInput(input);
+        while (!inflater.needsInput()) {
+            final int count = inflater.inflate(inflateBuffer);
+            if (count == 0 && (inflater.finished() || inflater.needsDictionary())) {
+                break;
+            }
+            output.write(inflateBuffer, 0, count);
+        }
+    }
+
+    @Nonnull
+    @Override
+    public byte[] deserializeBinary(@Nonnull Object message) throws ObjectParseException {
+        final boolean binary = delegate.isBinary(message);
+        final byte[] payload = binary
+                ? delegate.deserializeBinary(message)
+                : delegate.deserializeString(message).getBytes(UTF_8);
+        final int flags = binary ? FLAG_BINARY : 0;
+        final Buffer output = new Buffer();
+        if (payload.length < minSize) {
+            output.writeByte(flags);
+            output.write(payload);
+            return output.readByteArray();
+        }
+        output.writeByte(flags | FLAG_COMPRESSED);
+        synchronized (deflater) {
+            if (!contextTakeover) {
+                resetDeflater();
+            }
+            deflater.setInput(payload);
+            int count;
+            do {
+                count = deflater.deflate(deflateBuffer, 0, deflateBuffer.length, Deflater.SYNC_FLUSH);
+                output.write(deflateBuffer, 0, count);
+            } while (count == deflateBuffer.length);
+        }
+        // Sync flush always ends with empty stored block that is restored by receiver
+        try {
+            return output.readByteArray(output.size() - TAIL.length);
+        } catch (EOFException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Nonnull
+    @Override
+    public String deserializeString(@Nonnull Object message) throws ObjectParseException {
+        throw new ObjectParseException("Compressed messages are always binary");
+    }
+
+    @Override
+    public boolean isBinary(@Nonnull Object message) {
+        return true;
+    }
+}
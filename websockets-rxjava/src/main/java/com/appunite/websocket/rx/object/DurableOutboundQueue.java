@@ -0,0 +1,308 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.object;
+
+import com.appunite.websocket.rx.object.messages.RxObjectEvent;
+import com.appunite.websocket.rx.object.messages.RxObjectEventConnected;
+import com.appunite.websocket.rx.object.messages.RxObjectEventDisconnected;
+import com.appunite.websocket.rx.object.messages.RxObjectEventMessage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import okio.ByteString;
+import rx.Observer;
+import rx.functions.Func1;
+
+/**
+ * Outbound queue that keeps messages in a local journal until server acknowledges them
+ *
+ * Messages can be enqueued at any time. They are appended to memory-mapped journal, sent
+ * immediately when connected, and sent again in order after every
+ * {@link RxObjectEventConnected} until message acknowledging them arrives. When queue is
+ * created with existing journal, not acknowledged messages from previous process are
+ * restored. Delivery is at-least-once, so server should ignore duplicates by message id.
+ *
+ * Subscribe queue to connection events:
+ * <pre>
+ * final DurableOutboundQueue queue = new DurableOutboundQueue(file, codec, messageId, ackId);
+ * connection.subscribe(queue);
+ * queue.enqueue(new ChatMessage(...));
+ * </pre>
+ *
+ * Message that can't be serialized by sender is dropped and acknowledged in the journal.
+ */
+public class DurableOutboundQueue implements Observer<RxObjectEvent> {
+
+    private static final Logger LOGGER = Logger.getLogger("DurableOutboundQueue");
+    private static final int INITIAL_SIZE = 64 * 1024;
+    private static final int COMPACT_AFTER_ACKS = 256;
+
+    /**
+     * Converts messages to bytes stored in journal
+     */
+    public interface Codec {
+
+        @Nonnull
+        ByteString encode(@Nonnull Object message) throws ObjectParseException;
+
+        @Nonnull
+        Object decode(@Nonnull ByteString bytes) throws ObjectParseException;
+    }
+
+    @Nonnull
+    private final Codec codec;
+    @Nonnull
+    private final Func1<Object, String> messageId;
+    @Nonnull
+    private final Func1<Object, String> ackId;
+    @Nonnull
+    private final MappedJournal journal;
+
+    private final Map<String, Object> pending = new LinkedHashMap<>();
+    @Nullable
+    private ObjectWebSocketSender sender;
+    private int acks = 0;
+    // Messages waiting to be sent by drain loop to current sender
+    @Nonnull
+    private List<Object> outbox = new ArrayList<>();
+    // Outbox contains all pending messages that are sent again after connection
+    private boolean resend = false;
+    private boolean draining = false;
+
+    /**
+     * @param file journal file, created if doesn't exist
+     * @param codec converts messages to journal bytes
+     * @param messageId returns unique id of enqueued message
+     * @param ackId returns id of message acknowledged by received message or null
+     * @throws IOException when journal can't be opened
+     * @throws ObjectParseException when message from journal can't be decoded
+     */
+    public DurableOutboundQueue(@Nonnull File file,
+                                @Nonnull Codec codec,
+                                @Nonnull Func1<Object, String> messageId,
+                                @Nonnull Func1<Object, String> ackId) throws IOException, ObjectParseException {
+        this.codec = codec;
+        this.messageId = messageId;
+        this.ackId = ackId;
+        this.journal = new MappedJournal(file, INITIAL_SIZE);
+        restore();
+    }
+
+    private void restore() throws IOException, ObjectParseException {
+        final Map<String, ByteString> entries = new LinkedHashMap<>();
+        for (MappedJournal.Record record : journal.readAll()) {
+            if (record.type == MappedJournal.TYPE_ENTRY) {
+                entries.put(record.id, record.payload);
+            } else if (record.type == MappedJournal.TYPE_ACK) {
+                entries.remove(record.id);
+            }
+        }
+        for (Map.Entry<String, ByteString> entry : entries.entrySet()) {
+            pending.put(entry.getKey(), codec.decode(entry.getValue()));
+        }
+    }
+
+    /**
+     * Persists message and sends it if connected
+     *
+     * @param message message to send
+     * @throws IOException when message can't be written to journal
+     * @throws ObjectParseException when message can't be encoded
+     */
+    public void enqueue(@Nonnull Object message) throws IOException, ObjectParseException {
+        final String id = messageId.call(message);
+        final ByteString bytes = codec.encode(message);
+        synchronized (this) {
+            journal.append(MappedJournal.TYPE_ENTRY, id, bytes);
+            pending.put(id, message);
+            if (sender == null) {
+                return;
+            }
+            outbox.add(message);
+        }
+        drain();
+    }
+
+    /**
+     * @return number of messages that are not acknowledged yet
+     */
+    public synchronized int pending() {
+        return pending.size();
+    }
+
+    /**
+     * Flushes journal to disk, needed only if messages should survive power loss
+     */
+    public synchronized void force() {
+        journal.force();
+    }
+
+    @Override
+    public void onNext(RxObjectEvent event) {
+        if (event instanceof RxObjectEventConnected) {
+            connected(((RxObjectEventConnected) event).sender());
+        } else if (event instanceof RxObjectEventDisconnected) {
+            disconnected();
+        } else if (event instanceof RxObjectEventMessage) {
+            final String id = ackId.call(((RxObjectEventMessage) event).message());
+            if (id != null) {
+                ack(id);
+            }
+        }
+    }
+
+    private void connected(@Nonnull ObjectWebSocketSender sender) {
+        synchronized (this) {
+            this.sender = sender;
+            // Messages waiting for previous connection are included in pending ones
+            outbox = new ArrayList<>(pending.values());
+            resend = !outbox.isEmpty();
+        }
+        drain();
+    }
+
+    private synchronized void disconnected() {
+        sender = null;
+        outbox = new ArrayList<>();
+        resend = false;
+    }
+
+    /**
+     * Sends messages from outbox one batch at a time, so messages enqueued while pending
+     * messages are sent after connection go out after them and only once
+     */
+    private void drain() {
+        synchronized (this) {
+            if (draining) {
+                return;
+            }
+            draining = true;
+        }
+        for (;;) {
+            final ObjectWebSocketSender sender;
+            final List<Object> messages;
+            final boolean resend;
+            synchronized (this) {
+                if (this.sender == null || outbox.isEmpty()) {
+                    draining = false;
+                    return;
+                }
+                sender = this.sender;
+                messages = outbox;
+                resend = this.resend;
+                outbox = new ArrayList<>();
+                this.resend = false;
+            }
+            send(sender, messages, resend);
+        }
+    }
+
+    private void ack(@Nonnull String id) {
+        synchronized (this) {
+            if (pending.remove(id) == null) {
+                return;
+            }
+            try {
+                if (pending.isEmpty()) {
+                    journal.clear();
+                    acks = 0;
+                } else if (++acks >= COMPACT_AFTER_ACKS && acks > pending.size()) {
+                    compact();
+                } else {
+                    journal.append(MappedJournal.TYPE_ACK, id, ByteString.EMPTY);
+                }
+            } catch (IOException e) {
+                // Message will be sent again after restart, that is acceptable for at-least-once
+                LOGGER.log(Level.WARNING, "Could not write ack to journal", e);
+            }
+        }
+    }
+
+    private void compact() throws IOException {
+        final List<MappedJournal.Record> records = new ArrayList<>();
+        for (MappedJournal.Record record : journal.readAll()) {
+            if (record.type == MappedJournal.TYPE_ENTRY && pending.containsKey(record.id)) {
+                records.add(record);
+            }
+        }
+        journal.rewrite(records);
+        acks = 0;
+    }
+
+    /**
+     * Sends messages, message that sender can't serialize is dropped, otherwise it would be
+     * sent again after every connection and block messages after it
+     */
+    private void send(@Nonnull ObjectWebSocketSender sender,
+                      @Nonnull List<Object> messages,
+                      boolean resend) {
+        if (resend || messages.size() > 1) {
+            try {
+                ObjectWebSocketSenders.sendObjectMessages(sender, messages);
+                return;
+            } catch (ObjectParseException e) {
+                // Send one by one to find broken messages, messages sent before the broken
+                // one can be sent twice, that is acceptable for at-least-once
+            }
+        }
+        for (Object message : messages) {
+            try {
+                if (!sender.sendObjectMessage(message)) {
+                    return;
+                }
+            } catch (ObjectParseException e) {
+                final String id = messageId.call(message);
+                LOGGER.log(Level.WARNING, "Dropping message " + id + " that could not be sent", e);
+                ack(id);
+            }
+        }
+    }
+
+    /**
+     * Closes journal, queue can't be used after that
+     *
+     * Unsubscribe queue from connection before closing it. Messages that are not acknowledged
+     * stay in journal and are restored by next queue created with the same file.
+     */
+    public synchronized void close() {
+        pending.clear();
+        sender = null;
+        outbox = new ArrayList<>();
+        resend = false;
+        journal.close();
+    }
+
+    @Override
+    public void onCompleted() {
+        disconnected();
+    }
+
+    @Override
+    public void onError(Throwable e) {
+        disconnected();
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.object;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import okio.ByteString;
+
+/**
+ * Append-only journal stored in memory-mapped file
+ *
+ * Record layout: int length of rest of record, byte type, short id length, id in UTF-8 and
+ * payload. Length is written last, so record torn by process death has length 0 and ends
+ * the journal. Writes to mapped memory survive process death, {@link #force()} is needed to
+ * survive power loss.
+ */
+class MappedJournal {
+
+    static final byte TYPE_ENTRY = 1;
+    static final byte TYPE_ACK = 2;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int HEADER = 4 + 1 + 2;
+
+    static class Record {
+        final byte type;
+        @Nonnull
+        final String id;
+        @Nonnull
+        final ByteString payload;
+
+        Record(byte type, @Nonnull String id, @Nonnull ByteString payload) {
+            this.type = type;
+            this.id = id;
+            this.payload = payload;
+        }
+    }
+
+    @Nonnull
+    private final File file;
+    private final int initialSize;
+    // Null after journal is closed
+    @Nullable
+    private MappedByteBuffer buffer;
+
+    MappedJournal(@Nonnull File file, int initialSize) throws IOException {
+        this.file = file;
+        this.initialSize = initialSize;
+        // Compaction that didn't finish, the journal itself is still valid
+        final File compacted = compactedFile();
+        if (compacted.exists() && !compacted.delete()) {
+            throw new IOException("Could not delete " + compacted);
+        }
+        buffer = map(file, Math.max(initialSize, (int) file.length()));
+        skipToEnd();
+    }
+
+    @Nonnull
+    private static MappedByteBuffer map(@Nonnull File file, int size) throws IOException {
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            final FileChannel channel = randomAccessFile.getChannel();
+            // Mapping stays valid after channel is closed
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private void skipToEnd() {
+        buffer.position(0);
+        while (buffer.remaining() >= 4) {
+            final int length = buffer.getInt(buffer.position());
+            if (length <= 0 || length > buffer.remaining() - 4) {
+                break;
+            }
+            buffer.position(buffer.position() + 4 + length);
+        }
+    }
+
+    /**
+     * @return all records from beginning of the journal
+     */
+    @Nonnull
+    List<Record> readAll() throws IOException {
+        final MappedByteBuffer buffer = mapped();
+        final List<Record> records = new ArrayList<>();
+        final int end = buffer.position();
+        int position = 0;
+        while (position < end) {
+            final int length = buffer.getInt(position);
+            final byte type = buffer.get(position + 4);
+            final int idLength = buffer.getShort(position + 5) & 0xffff;
+            final byte[] id = new byte[idLength];
+            final byte[] payload = new byte[length - 1 - 2 - idLength];
+            final ByteBuffer view = buffer.duplicate();
+            view.position(position + HEADER);
+            view.get(id);
+            view.get(payload);
+            records.add(new Record(type, new String(id, UTF_8), ByteString.of(payload)));
+            position += 4 + length;
+        }
+        return records;
+    }
+
+    void append(byte type, @Nonnull String id, @Nonnull ByteString payload) throws IOException {
+        final byte[] idBytes = idBytes(id);
+        ensureCapacity(4 + length(idBytes, payload) + 4);
+        write(mapped(), type, idBytes, payload);
+    }
+
+    @Nonnull
+    private static byte[] idBytes(@Nonnull String id) throws IOException {
+        final byte[] idBytes = id.getBytes(UTF_8);
+        if (idBytes.length > 0xffff) {
+            throw new IOException("Id is too long");
+        }
+        return idBytes;
+    }
+
+    private static int length(@Nonnull byte[] idBytes, @Nonnull ByteString payload) {
+        return 1 + 2 + idBytes.length + payload.size();
+    }
+
+    private static void write(@Nonnull ByteBuffer buffer,
+                              byte type,
+                              @Nonnull byte[] idBytes,
+                              @Nonnull ByteString payload) {
+        final int start = buffer.position();
+        buffer.position(start + 4);
+        buffer.put(type);
+        buffer.putShort((short) idBytes.length);
+        buffer.put(idBytes);
+        buffer.put(payload.toByteArray());
+        // Terminate journal and then publish the record
+        buffer.putInt(buffer.position(), 0);
+        buffer.putInt(start, length(idBytes, payload));
+    }
+
+    /**
+     * @return bytes used by records
+     */
+    int size() throws IOException {
+        return mapped().position();
+    }
+
+    /**
+     * Removes all records
+     */
+    void clear() throws IOException {
+        if (mapped().capacity() > initialSize) {
+            buffer = truncate(initialSize);
+        }
+        buffer.putInt(0, 0);
+        buffer.position(0);
+    }
+
+    /**
+     * Replaces journal with given records
+     *
+     * Records are written to a separate file that is flushed to disk and renamed over the
+     * journal, so if process dies in the meantime the old journal stays valid.
+     *
+     * @param records records to keep
+     */
+    void rewrite(@Nonnull List<Record> records) throws IOException {
+        final MappedByteBuffer buffer = mapped();
+        final List<byte[]> ids = new ArrayList<>(records.size());
+        long size = 4;
+        for (Record record : records) {
+            final byte[] idBytes = idBytes(record.id);
+            ids.add(idBytes);
+            size += 4 + length(idBytes, record.payload);
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Journal is too big");
+        }
+        final ByteBuffer content = ByteBuffer.allocate(Math.max(initialSize, (int) size));
+        for (int i = 0; i < records.size(); i++) {
+            final Record record = records.get(i);
+            write(content, record.type, ids.get(i), record.payload);
+        }
+        content.clear();
+
+        final File compacted = compactedFile();
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(compacted, "rw");
+        try {
+            final FileChannel channel = randomAccessFile.getChannel();
+            channel.truncate(0);
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+            channel.force(true);
+        } finally {
+            randomAccessFile.close();
+        }
+        buffer.force();
+        if (!compacted.renameTo(file)) {
+            compacted.delete();
+            throw new IOException("Could not replace journal " + file);
+        }
+        this.buffer = map(file, content.capacity());
+        skipToEnd();
+    }
+
+    @Nonnull
+    private File compactedFile() {
+        return new File(file.getPath() + ".compact");
+    }
+
+    void force() {
+        if (buffer != null) {
+            buffer.force();
+        }
+    }
+
+    /**
+     * Flushes journal and releases mapped memory, journal can't be modified after that
+     *
+     * File channel is closed right after mapping, Java has no public API to unmap a buffer,
+     * so mapping is released when the buffer is garbage collected.
+     */
+    void close() {
+        force();
+        buffer = null;
+    }
+
+    @Nonnull
+    private MappedByteBuffer mapped() throws IOException {
+        if (buffer == null) {
+            throw new IOException("Journal is closed");
+        }
+        return buffer;
+    }
+
+    private void ensureCapacity(int bytes) throws IOException {
+        final MappedByteBuffer buffer = mapped();
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        final int position = buffer.position();
+        long size = buffer.capacity();
+        while (size - position < bytes) {
+            size *= 2;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Journal is too big");
+        }
+        buffer.force();
+        this.buffer = map(file, (int) size);
+        this.buffer.position(position);
+    }
+
+    @Nonnull
+    private MappedByteBuffer truncate(int size) throws IOException {
+        buffer.force();
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            final FileChannel channel = randomAccessFile.getChannel();
+            channel.truncate(size);
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.object;
+
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Wraps many objects into a single object, so they can be sent in one websocket frame
+ *
+ * @see com.appunite.websocket.rx.RxMoreObservables#sendObjectMessageBatches(ObjectWebSocketSender, ObjectEnvelope)
+ */
+public interface ObjectEnvelope {
+
+    /**
+     * Wrap messages into one object that will be serialized via {@link ObjectSerializer}
+     *
+     * @param messages messages to wrap, never empty
+     * @return object that contains all messages
+     */
+    @Nonnull
+    Object wrap(@Nonnull List<?> messages);
+}
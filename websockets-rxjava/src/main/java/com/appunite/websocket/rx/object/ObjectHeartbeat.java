@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.object;
+
+import com.appunite.websocket.rx.object.messages.RxObjectEvent;
+import com.appunite.websocket.rx.object.messages.RxObjectEventConnected;
+import com.appunite.websocket.rx.object.messages.RxObjectEventDisconnected;
+import com.appunite.websocket.rx.object.messages.RxObjectEventHeartbeat;
+import com.appunite.websocket.rx.object.messages.RxObjectEventMessage;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import rx.Observable;
+import rx.Producer;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.Subscription;
+import rx.functions.Action0;
+import rx.functions.Func1;
+import rx.observers.SerializedSubscriber;
+
+/**
+ * Application level heartbeat
+ *
+ * While connected, every interval a ping created by pingFactory is sent. Answer recognized
+ * by pongId is replaced by {@link RxObjectEventHeartbeat} with round trip time. When
+ * maxMissed pings are not answered, {@link HeartbeatTimeoutException} is returned, so
+ * connection is closed and can be reconnected, i.e. by
+ * {@link com.appunite.websocket.rx.ReconnectPolicy}.
+ *
+ * <pre>
+ * rxObjectWebSockets.webSocketObservable()
+ *     .compose(heartbeat.heartbeat())
+ *     .compose(reconnectPolicy.&lt;RxObjectEvent&gt;reconnect())
+ * </pre>
+ *
+ * One instance can be used for many connections, it can share one scheduler.
+ */
+public class ObjectHeartbeat {
+
+    @Nonnull
+    private final Func1<Long, Object> pingFactory;
+    @Nonnull
+    private final Func1<Object, Long> pongId;
+    private final long intervalMillis;
+    private final int maxMissed;
+    @Nonnull
+    private final Scheduler scheduler;
+
+    /**
+     * @param pingFactory creates ping message with given id
+     * @param pongId returns id of ping that message answers or null if message is not an answer
+     * @param interval time between pings
+     * @param unit unit of interval
+     * @param maxMissed number of unanswered pings after which connection is considered dead
+     * @param scheduler scheduler used to send pings
+     */
+    public ObjectHeartbeat(@Nonnull Func1<Long, Object> pingFactory,
+                           @Nonnull Func1<Object, Long> pongId,
+                           long interval,
+                           @Nonnull TimeUnit unit,
+                           int maxMissed,
+                           @Nonnull Scheduler scheduler) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("interval should be greater than 0");
+        }
+        if (maxMissed <= 0) {
+            throw new IllegalArgumentException("maxMissed should be greater than 0");
+        }
+        this.pingFactory = pingFactory;
+        this.pongId = pongId;
+        this.intervalMillis = unit.toMillis(interval);
+        this.maxMissed = maxMissed;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @return transformer that sends heartbeats on connection
+     */
+    @Nonnull
+    public Observable.Transformer<RxObjectEvent, RxObjectEvent> heartbeat() {
+        return new Observable.Transformer<RxObjectEvent, RxObjectEvent>() {
+            @Override
+            public Observable<RxObjectEvent> call(Observable<RxObjectEvent> observable) {
+                return observable.lift(new Observable.Operator<RxObjectEvent, RxObjectEvent>() {
+                    @Override
+                    public Subscriber<? super RxObjectEvent> call(Subscriber<? super RxObjectEvent> child) {
+                        final HeartbeatSubscriber parent = new HeartbeatSubscriber(
+                                new SerializedSubscriber<>(child), scheduler.createWorker());
+                        child.add(parent);
+                        child.setProducer(new Producer() {
+                            @Override
+                            public void request(long n) {
+                                parent.requestMore(n);
+                            }
+                        });
+                        return parent;
+                    }
+                });
+            }
+        };
+    }
+
+    private class HeartbeatSubscriber extends Subscriber<RxObjectEvent> {
+
+        @Nonnull
+        private final Subscriber<? super RxObjectEvent> child;
+        @Nonnull
+        private final Scheduler.Worker worker;
+
+        private final Object lock = new Object();
+        private final Map<Long, Long> pending = new LinkedHashMap<>();
+        private long nextId = 0;
+        @Nullable
+        private Subscription timer;
+
+        HeartbeatSubscriber(@Nonnull Subscriber<? super RxObjectEvent> child,
+                            @Nonnull Scheduler.Worker worker) {
+            this.child = child;
+            this.worker = worker;
+            add(worker);
+        }
+
+        @Override
+        public void onStart() {
+            request(0);
+        }
+
+        void requestMore(long n) {
+            request(n);
+        }
+
+        @Override
+        public void onNext(RxObjectEvent event) {
+            if (event instanceof RxObjectEventConnected) {
+                start(((RxObjectEventConnected) event).sender());
+            } else if (event instanceof RxObjectEventDisconnected) {
+                stop();
+            } else if (event instanceof RxObjectEventMessage) {
+                final RxObjectEventMessage message = (RxObjectEventMessage) event;
+                final Long id = pongId.call(message.message());
+                if (id != null) {
+                    if (!answered(message.sender(), id)) {
+                        // Pong was swallowed, so replace it to keep demand
+                        request(1);
+                    }
+                    return;
+                }
+            }
+            child.onNext(event);
+        }
+
+        private boolean answered(@Nonnull ObjectWebSocketSender sender, long id) {
+            final Long sentAt;
+            synchronized (lock) {
+                sentAt = pending.remove(id);
+                if (sentAt != null) {
+                    // Older pings won't be answered if newer was
+                    for (Iterator<Long> iterator = pending.keySet().iterator(); iterator.hasNext(); ) {
+                        if (iterator.next() < id) {
+                            iterator.remove();
+                        }
+                    }
+                }
+            }
+            if (sentAt == null) {
+                return false;
+            }
+            child.onNext(new RxObjectEventHeartbeat(sender, id, scheduler.now() - sentAt));
+            return true;
+        }
+
+        private void start(@Nonnull final ObjectWebSocketSender sender) {
+            final Subscription previous;
+            synchronized (lock) {
+                previous = timer;
+                pending.clear();
+                timer = worker.schedulePeriodically(new Action0() {
+                    @Override
+                    public void call() {
+                        tick(sender);
+                    }
+                }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+            }
+            if (previous != null) {
+                previous.unsubscribe();
+            }
+        }
+
+        private void stop() {
+            final Subscription previous;
+            synchronized (lock) {
+                previous = timer;
+                timer = null;
+                pending.clear();
+            }
+            if (previous != null) {
+                previous.unsubscribe();
+            }
+        }
+
+        private void tick(@Nonnull ObjectWebSocketSender sender) {
+            final int missed;
+            final long id;
+            synchronized (lock) {
+                missed = pending.size();
+                id = nextId;
+                if (missed < maxMissed) {
+                    nextId += 1;
+                    pending.put(id, scheduler.now());
+                }
+            }
+            if (missed >= maxMissed) {
+                fail(new HeartbeatTimeoutException(missed));
+                return;
+            }
+            try {
+                sender.sendObjectMessage(pingFactory.call(id));
+            } catch (ObjectParseException e) {
+                fail(e);
+            }
+        }
+
+        private void fail(@Nonnull Throwable throwable) {
+            stop();
+            child.onError(throwable);
+            unsubscribe();
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            stop();
+            child.onError(e);
+        }
+
+        @Override
+        public void onCompleted() {
+            stop();
+            child.onCompleted();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.object;
+
+import com.appunite.websocket.rx.object.messages.RxObjectEvent;
+import com.appunite.websocket.rx.object.messages.RxObjectEventMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import rx.Notification;
+import rx.Observable;
+import rx.Observer;
+import rx.functions.Func1;
+import rx.subjects.PublishSubject;
+import rx.subjects.SerializedSubject;
+import rx.subjects.Subject;
+
+/**
+ * Routes parsed messages to subscribers of their type
+ *
+ * Unlike {@link RxObjectEventMessage#filterAndMap(Class)}, where every subscriber checks
+ * every message, message is routed by its class to subscribers of this class and its
+ * supertypes. Subscribers for a class are found once per class and cached, so cost of
+ * dispatching a message doesn't depend on number of subscribed types.
+ *
+ * Dispatcher consumes upstream without backpressure, so messages without subscribers
+ * are dropped without losing demand. Termination of upstream is forwarded to every type,
+ * also to types subscribed after it.
+ *
+ * <pre>
+ * final ObjectMessageDispatcher dispatcher = new ObjectMessageDispatcher();
+ * events.subscribe(dispatcher);
+ * dispatcher.messages(DataMessage.class)
+ *     .subscribe(...)
+ * </pre>
+ */
+public class ObjectMessageDispatcher implements Observer<RxObjectEvent> {
+
+    @Nonnull
+    private final ConcurrentMap<Class<?>, Subject<RxObjectEventMessage, RxObjectEventMessage>> subjects
+            = new ConcurrentHashMap<>();
+    @Nonnull
+    private final ConcurrentMap<Class<?>, List<Subject<RxObjectEventMessage, RxObjectEventMessage>>> routes
+            = new ConcurrentHashMap<>();
+    @Nullable
+    private volatile Notification<RxObjectEventMessage> terminal;
+
+    /**
+     * Events with messages of given type (including subtypes)
+     *
+     * @param clazz type of message that you would like get
+     * @return Observable that returns events with given type of message
+     */
+    @Nonnull
+    public Observable<RxObjectEventMessage> events(@Nonnull Class<?> clazz) {
+        final Subject<RxObjectEventMessage, RxObjectEventMessage> subject = subjects.get(clazz);
+        if (subject != null) {
+            return subject;
+        }
+        final Subject<RxObjectEventMessage, RxObjectEventMessage> newSubject;
+        final Notification<RxObjectEventMessage> terminated;
+        synchronized (routes) {
+            final Subject<RxObjectEventMessage, RxObjectEventMessage> previous = subjects.get(clazz);
+            if (previous != null) {
+                return previous;
+            }
+            newSubject = new SerializedSubject<>(PublishSubject.<RxObjectEventMessage>create());
+            subjects.put(clazz, newSubject);
+            routes.clear();
+            terminated = terminal;
+        }
+        if (terminated != null) {
+            terminated.accept(newSubject);
+        }
+        return newSubject;
+    }
+
+    /**
+     * Messages of given type (including subtypes)
+     *
+     * @param clazz type of message that you would like get
+     * @param <T> type of message that you would like get
+     * @return Observable that returns given type of message
+     */
+    @Nonnull
+    public <T> Observable<T> messages(@Nonnull Class<T> clazz) {
+        return events(clazz)
+                .map(new Func1<RxObjectEventMessage, T>() {
+                    @Override
+                    public T call(RxObjectEventMessage event) {
+                        return event.message();
+                    }
+                });
+    }
+
+    /**
+     * Route event to subscribers of type of its message
+     *
+     * @param event event with parsed message
+     * @return true if message was delivered to at least one type
+     */
+    public boolean dispatch(@Nonnull RxObjectEventMessage event) {
+        final List<Subject<RxObjectEventMessage, RxObjectEventMessage>> subjects =
+                routes(event.message().getClass());
+        for (int i = 0, size = subjects.size(); i < size; i++) {
+            subjects.get(i).onNext(event);
+        }
+        return !subjects.isEmpty();
+    }
+
+    @Nonnull
+    private List<Subject<RxObjectEventMessage, RxObjectEventMessage>> routes(@Nonnull Class<?> clazz) {
+        final List<Subject<RxObjectEventMessage, RxObjectEventMessage>> cached = routes.get(clazz);
+        if (cached != null) {
+            return cached;
+        }
+        synchronized (routes) {
+            final List<Subject<RxObjectEventMessage, RxObjectEventMessage>> matching = new ArrayList<>();
+            for (Map.Entry<Class<?>, Subject<RxObjectEventMessage, RxObjectEventMessage>> entry : subjects.entrySet()) {
+                if (entry.getKey().isAssignableFrom(clazz)) {
+                    matching.add(entry.getValue());
+                }
+            }
+            routes.put(clazz, matching);
+            return matching;
+        }
+    }
+
+    @Override
+    public void onNext(RxObjectEvent event) {
+        if (event instanceof RxObjectEventMessage) {
+            dispatch((RxObjectEventMessage) event);
+        }
+    }
+
+    @Override
+    public void onError(Throwable e) {
+        terminate(Notification.<RxObjectEventMessage>createOnError(e));
+    }
+
+    @Override
+    public void onCompleted() {
+        terminate(Notification.<RxObjectEventMessage>createOnCompleted());
+    }
+
+    private void terminate(@Nonnull Notification<RxObjectEventMessage> notification) {
+        final List<Subject<RxObjectEventMessage, RxObjectEventMessage>> terminated;
+        synchronized (routes) {
+            if (terminal != null) {
+                return;
+            }
+            terminal = notification;
+            terminated = new ArrayList<>(subjects.values());
+        }
+        for (Subject<RxObjectEventMessage, RxObjectEventMessage> subject : terminated) {
+            notification.accept(subject);
+        }
+    }
+}
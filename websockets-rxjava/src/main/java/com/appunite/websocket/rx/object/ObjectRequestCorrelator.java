@@ -0,0 +1,300 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.object;
+
+import com.appunite.websocket.rx.object.messages.RxObjectEvent;
+import com.appunite.websocket.rx.object.messages.RxObjectEventMessage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import rx.Observable;
+import rx.Observer;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.functions.Func1;
+import rx.subscriptions.Subscriptions;
+
+/**
+ * Matches responses from server with requests waiting for them
+ *
+ * Every message returned by server is looked up in a map by its correlation id, so cost of
+ * dispatching a message doesn't depend on number of requests waiting for response.
+ * Timeouts of all requests are handled by a single timer wheel.
+ *
+ * <pre>
+ * final ObjectRequestCorrelator correlator = new ObjectRequestCorrelator(idOfResponse, 5, TimeUnit.SECONDS, scheduler);
+ * events.subscribe(correlator);
+ * correlator.&lt;DataMessage&gt;response(id)
+ *     .subscribe(...)
+ * </pre>
+ */
+public class ObjectRequestCorrelator implements Observer<RxObjectEvent> {
+
+    private static final int WHEEL_SIZE = 64;
+    private static final int TICKS_PER_TIMEOUT = 32;
+
+    @Nonnull
+    private final Func1<Object, ?> correlationId;
+    private final long timeoutMillis;
+    private final long tickMillis;
+    @Nonnull
+    private final Scheduler scheduler;
+
+    @Nonnull
+    private final ConcurrentMap<Object, Pending> pending = new ConcurrentHashMap<>();
+
+    private final Object wheelLock = new Object();
+    private final List<List<Pending>> wheel = new ArrayList<>(WHEEL_SIZE);
+    private long currentTick = 0;
+    private int scheduled = 0;
+    @Nullable
+    private Scheduler.Worker timer;
+    // Set when upstream finishes, so requests fail instead of waiting for timeout
+    private volatile boolean terminated = false;
+    @Nullable
+    private volatile Throwable error;
+
+    /**
+     * Create correlator
+     *
+     * @param correlationId returns correlation id of message returned by server or null if
+     *                      message is not a response
+     * @param timeout default time of waiting for response
+     * @param unit unit of timeout
+     * @param scheduler scheduler that is used to measure timeouts
+     */
+    public ObjectRequestCorrelator(@Nonnull Func1<Object, ?> correlationId,
+                                   long timeout,
+                                   @Nonnull TimeUnit unit,
+                                   @Nonnull Scheduler scheduler) {
+        this.correlationId = correlationId;
+        this.timeoutMillis = unit.toMillis(timeout);
+        this.tickMillis = Math.max(1, timeoutMillis / TICKS_PER_TIMEOUT);
+        this.scheduler = scheduler;
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel.add(new ArrayList<Pending>());
+        }
+    }
+
+    /**
+     * Wait for response with default timeout
+     *
+     * Subscribe before sending request, otherwise response can be missed
+     *
+     * @param id correlation id of response
+     * @param <T> type of response
+     * @return observable that returns response and completes, or returns
+     * {@link TimeoutException} if response didn't arrive on time, or error of events if
+     * they finished before response
+     */
+    @Nonnull
+    public <T> Observable<T> response(@Nonnull Object id) {
+        return response(id, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Wait for response
+     *
+     * Timeouts are accurate to 1/32 of default timeout given in constructor
+     *
+     * @param id correlation id of response
+     * @param timeout time of waiting for response
+     * @param unit unit of timeout
+     * @param <T> type of response
+     * @return observable that returns response and completes, or returns
+     * {@link TimeoutException} if response didn't arrive on time, or error of events if
+     * they finished before response
+     * @see #response(Object)
+     */
+    @Nonnull
+    public <T> Observable<T> response(@Nonnull final Object id, final long timeout, @Nonnull final TimeUnit unit) {
+        return Observable.create(new Observable.OnSubscribe<T>() {
+            @Override
+            public void call(Subscriber<? super T> subscriber) {
+                final Pending request = new Pending(id, subscriber);
+                if (pending.putIfAbsent(id, request) != null) {
+                    subscriber.onError(new IllegalStateException("Already waiting for response with id: " + id));
+                    return;
+                }
+                subscriber.add(Subscriptions.create(new Action0() {
+                    @Override
+                    public void call() {
+                        pending.remove(id, request);
+                    }
+                }));
+                if (terminated) {
+                    // Events finished while request was registered
+                    if (pending.remove(id, request)) {
+                        request.disconnected(error);
+                    }
+                    return;
+                }
+                schedule(request, unit.toMillis(timeout));
+            }
+        });
+    }
+
+    /**
+     * Pass message to request that waits for it
+     *
+     * @param message message returned by server
+     * @return true if there was request waiting for this message
+     */
+    public boolean dispatch(@Nonnull Object message) {
+        final Object id = correlationId.call(message);
+        if (id == null) {
+            return false;
+        }
+        final Pending request = pending.remove(id);
+        if (request == null) {
+            return false;
+        }
+        request.respond(message);
+        return true;
+    }
+
+    /**
+     * Number of requests waiting for response
+     *
+     * @return number of requests
+     */
+    public int pendingRequests() {
+        return pending.size();
+    }
+
+    @Override
+    public void onNext(RxObjectEvent event) {
+        if (event instanceof RxObjectEventMessage) {
+            dispatch(((RxObjectEventMessage) event).message());
+        }
+    }
+
+    @Override
+    public void onError(Throwable e) {
+        error = e;
+        terminate();
+    }
+
+    @Override
+    public void onCompleted() {
+        terminate();
+    }
+
+    private void terminate() {
+        terminated = true;
+        for (Pending request : pending.values()) {
+            if (pending.remove(request.id, request)) {
+                request.disconnected(error);
+            }
+        }
+    }
+
+    private void schedule(@Nonnull Pending request, long timeoutMillis) {
+        final long ticks = Math.max(1, (timeoutMillis + tickMillis - 1) / tickMillis);
+        synchronized (wheelLock) {
+            request.deadline = currentTick + ticks;
+            wheel.get((int) (request.deadline % WHEEL_SIZE)).add(request);
+            scheduled += 1;
+            if (timer == null) {
+                timer = scheduler.createWorker();
+                timer.schedulePeriodically(new Action0() {
+                    @Override
+                    public void call() {
+                        tick();
+                    }
+                }, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void tick() {
+        final List<Pending> expired = new ArrayList<>();
+        synchronized (wheelLock) {
+            currentTick += 1;
+            final List<Pending> bucket = wheel.get((int) (currentTick % WHEEL_SIZE));
+            for (Iterator<Pending> iterator = bucket.iterator(); iterator.hasNext(); ) {
+                final Pending request = iterator.next();
+                if (request.isFinished()) {
+                    iterator.remove();
+                    scheduled -= 1;
+                } else if (request.deadline <= currentTick) {
+                    iterator.remove();
+                    scheduled -= 1;
+                    expired.add(request);
+                }
+            }
+            if (scheduled == 0 && timer != null) {
+                timer.unsubscribe();
+                timer = null;
+            }
+        }
+        for (Pending request : expired) {
+            if (pending.remove(request.id, request)) {
+                request.timeout();
+            }
+        }
+    }
+
+    private static class Pending {
+        @Nonnull
+        private final Object id;
+        @Nonnull
+        private final Subscriber<?> subscriber;
+        private long deadline;
+        private volatile boolean finished = false;
+
+        Pending(@Nonnull Object id, @Nonnull Subscriber<?> subscriber) {
+            this.id = id;
+            this.subscriber = subscriber;
+        }
+
+        boolean isFinished() {
+            return finished || subscriber.isUnsubscribed();
+        }
+
+        @SuppressWarnings("unchecked")
+        void respond(@Nonnull Object message) {
+            finished = true;
+            final Subscriber<Object> subscriber = (Subscriber<Object>) this.subscriber;
+            subscriber.onNext(message);
+            subscriber.onCompleted();
+        }
+
+        void timeout() {
+            finished = true;
+            subscriber.onError(new TimeoutException("No response for request with id: " + id));
+        }
+
+        void disconnected(@Nullable Throwable error) {
+            finished = true;
+            subscriber.onError(error != null
+                    ? error
+                    : new IOException("Connection closed before response for request with id: " + id));
+        }
+    }
+}
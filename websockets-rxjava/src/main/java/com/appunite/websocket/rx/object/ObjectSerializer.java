@@ -20,6 +20,8 @@ import javax.annotation.Nonnull;
 
 /**
  * Serialize and deserialize objects from web socket
+ *
+ * @see ByteStringObjectSerializer
  */
 public interface ObjectSerializer {
 
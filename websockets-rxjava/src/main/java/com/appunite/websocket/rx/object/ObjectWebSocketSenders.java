@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.object;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Helpers for {@link ObjectWebSocketSender}
+ */
+public final class ObjectWebSocketSenders {
+
+    private ObjectWebSocketSenders() {
+    }
+
+    /**
+     * Send many objects as separate messages
+     *
+     * If sender is {@link BatchObjectWebSocketSender} all messages are serialized in one pass,
+     * otherwise they are sent one by one, so messages before the one that can't be
+     * serialized are already sent.
+     *
+     * @param sender sender of connection
+     * @param messages messages to send
+     * @return number of messages that were scheduled to send, if it is less than number of
+     * messages, connection was closed and rest of messages were not scheduled
+     * @throws ObjectParseException when could not serialize any of objects
+     */
+    public static int sendObjectMessages(@Nonnull ObjectWebSocketSender sender,
+                                         @Nonnull Iterable<?> messages) throws ObjectParseException {
+        if (sender instanceof BatchObjectWebSocketSender) {
+            return ((BatchObjectWebSocketSender) sender).sendObjectMessages(messages);
+        }
+        int sent = 0;
+        for (Object message : messages) {
+            if (!sender.sendObjectMessage(message)) {
+                break;
+            }
+            sent += 1;
+        }
+        return sent;
+    }
+}
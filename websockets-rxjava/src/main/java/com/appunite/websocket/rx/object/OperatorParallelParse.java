@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.object;
+
+import com.appunite.websocket.rx.messages.RxEvent;
+import com.appunite.websocket.rx.object.messages.RxObjectEvent;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import rx.Observable;
+import rx.Producer;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.functions.Func1;
+
+/**
+ * Operator that parses events on workers of given scheduler
+ *
+ * Every event gets sequence slot before it is scheduled so parsed events are returned in
+ * the same order as they were received even if parsing of later event finished first.
+ * At most parallelism events are requested from upstream before they are returned, so
+ * buffering is left to {@link com.appunite.websocket.rx.InboundBackpressure}.
+ */
+class OperatorParallelParse implements Observable.Operator<RxObjectEvent, RxEvent> {
+
+    @Nonnull
+    private final Func1<RxEvent, RxObjectEvent> parser;
+    @Nonnull
+    private final Scheduler scheduler;
+    private final int parallelism;
+
+    OperatorParallelParse(@Nonnull Func1<RxEvent, RxObjectEvent> parser,
+                          @Nonnull Scheduler scheduler,
+                          int parallelism) {
+        this.parser = parser;
+        this.scheduler = scheduler;
+        this.parallelism = parallelism;
+    }
+
+    @Override
+    public Subscriber<? super RxEvent> call(final Subscriber<? super RxObjectEvent> child) {
+        final Scheduler.Worker[] workers = new Scheduler.Worker[parallelism];
+        for (int i = 0; i < parallelism; i++) {
+            workers[i] = scheduler.createWorker();
+            child.add(workers[i]);
+        }
+        final ParseSubscriber parent = new ParseSubscriber(child, parser, workers);
+        child.add(parent);
+        child.setProducer(new Producer() {
+            @Override
+            public void request(long n) {
+                parent.requestMore(n);
+            }
+        });
+        return parent;
+    }
+
+    private static class Task {
+        @Nonnull
+        final RxEvent event;
+        boolean ready;
+        @Nullable
+        RxObjectEvent result;
+        @Nullable
+        Throwable error;
+
+        Task(@Nonnull RxEvent event) {
+            this.event = event;
+        }
+    }
+
+    private static class ParseSubscriber extends Subscriber<RxEvent> {
+
+        @Nonnull
+        private final Subscriber<? super RxObjectEvent> child;
+        @Nonnull
+        private final Func1<RxEvent, RxObjectEvent> parser;
+        @Nonnull
+        private final Scheduler.Worker[] workers;
+
+        private final Object lock = new Object();
+        private final ArrayDeque<Task> queue = new ArrayDeque<>();
+        private int nextWorker = 0;
+        private boolean done = false;
+        @Nullable
+        private Throwable error;
+
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+
+        ParseSubscriber(@Nonnull Subscriber<? super RxObjectEvent> child,
+                        @Nonnull Func1<RxEvent, RxObjectEvent> parser,
+                        @Nonnull Scheduler.Worker[] workers) {
+            this.child = child;
+            this.parser = parser;
+            this.workers = workers;
+        }
+
+        @Override
+        public void onStart() {
+            request(workers.length);
+        }
+
+        @Override
+        public void onNext(RxEvent event) {
+            final Task task = new Task(event);
+            final Scheduler.Worker worker;
+            synchronized (lock) {
+                queue.offer(task);
+                worker = workers[nextWorker];
+                nextWorker = (nextWorker + 1) % workers.length;
+            }
+            worker.schedule(new Action0() {
+                @Override
+                public void call() {
+                    parse(task);
+                }
+            });
+        }
+
+        private void parse(@Nonnull Task task) {
+            RxObjectEvent result = null;
+            Throwable error = null;
+            try {
+                result = parser.call(task.event);
+            } catch (Throwable e) {
+                error = e;
+            }
+            synchronized (lock) {
+                task.result = result;
+                task.error = error;
+                task.ready = true;
+            }
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            synchronized (lock) {
+                error = e;
+                done = true;
+            }
+            drain();
+        }
+
+        @Override
+        public void onCompleted() {
+            synchronized (lock) {
+                done = true;
+            }
+            drain();
+        }
+
+        void requestMore(long n) {
+            if (n < 0) {
+                throw new IllegalArgumentException("n >= 0 required but it was " + n);
+            }
+            if (n == 0) {
+                return;
+            }
+            for (;;) {
+                final long current = requested.get();
+                long next = current + n;
+                if (next < 0) {
+                    next = Long.MAX_VALUE;
+                }
+                if (requested.compareAndSet(current, next)) {
+                    break;
+                }
+            }
+            drain();
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            for (;;) {
+                final long requested = this.requested.get();
+                long emitted = 0;
+                for (;;) {
+                    if (child.isUnsubscribed()) {
+                        return;
+                    }
+                    final Task task;
+                    final boolean empty;
+                    final boolean done;
+                    final Throwable error;
+                    synchronized (lock) {
+                        final Task head = queue.peek();
+                        empty = head == null;
+                        task = head != null && head.ready && emitted != requested ? queue.poll() : null;
+                        done = this.done;
+                        error = this.error;
+                    }
+                    if (task == null) {
+                        if (done && empty) {
+                            if (error != null) {
+                                child.onError(error);
+                            } else {
+                                child.onCompleted();
+                            }
+                            return;
+                        }
+                        break;
+                    }
+                    if (task.error != null) {
+                        unsubscribe();
+                        child.onError(task.error);
+                        return;
+                    }
+                    child.onNext(task.result);
+                    emitted += 1;
+                }
+                if (emitted != 0) {
+                    if (requested != Long.MAX_VALUE) {
+                        this.requested.addAndGet(-emitted);
+                    }
+                    // Replace returned events
+                    request(emitted);
+                }
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    break;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.object;
+
+/**
+ * Sender that knows size of its outbound queue
+ *
+ * Sender returned by {@link RxObjectWebSockets} implements this interface, so it can be used
+ * with {@link com.appunite.websocket.rx.OutboundFlowControl}.
+ */
+public interface QueueSizeAware {
+
+    /**
+     * Size in bytes of all messages enqueued to be transmitted to the server
+     *
+     * @return number of bytes waiting to be sent
+     * @see okhttp3.WebSocket#queueSize()
+     */
+    long queueSize();
+}
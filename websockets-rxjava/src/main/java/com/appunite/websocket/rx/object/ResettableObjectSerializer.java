@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.object;
+
+/**
+ * {@link ObjectSerializer} that keeps state shared by messages of one connection
+ *
+ * If serializer implements this interface {@link RxObjectWebSockets} will call
+ * {@link #reset()} when new connection is established, and messages sent by
+ * {@link ObjectWebSocketSender} are serialized and enqueued atomically, so they reach the
+ * server in order in which they were serialized. Received messages have to be parsed in
+ * order too, so it can't be used with parse parallelism greater than 1.
+ *
+ * @see DeflateObjectSerializer
+ */
+public interface ResettableObjectSerializer extends ObjectSerializer {
+
+    /**
+     * Forget state of previous connection
+     */
+    void reset();
+}
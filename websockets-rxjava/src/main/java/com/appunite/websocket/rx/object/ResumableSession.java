@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.object;
+
+import com.appunite.websocket.rx.object.messages.RxObjectEvent;
+import com.appunite.websocket.rx.object.messages.RxObjectEventConnected;
+import com.appunite.websocket.rx.object.messages.RxObjectEventGap;
+import com.appunite.websocket.rx.object.messages.RxObjectEventMessage;
+
+import javax.annotation.Nonnull;
+
+import rx.Observable;
+import rx.Subscriber;
+import rx.functions.Func1;
+
+/**
+ * Session that survives reconnects by resuming from last processed sequence number
+ *
+ * Server is expected to number messages and to replay messages newer than sequence number
+ * passed by {@link Handshake} after every connect. Handshake passes the last sequence number
+ * up to which all messages were processed, so messages missing before a reconnect are
+ * replayed. Replayed messages that were already processed are removed, and when sequence
+ * number skips ahead {@link RxObjectEventGap} is returned before the message, so app can
+ * re-fetch state only if the gap is never filled.
+ *
+ * Session state is kept by this instance, so transformer has to be composed inside reconnect:
+ * <pre>
+ * rxObjectWebSockets.webSocketObservable()
+ *     .compose(session.session())
+ *     .compose(reconnectPolicy.&lt;RxObjectEvent&gt;reconnect())
+ * </pre>
+ */
+public class ResumableSession {
+
+    /**
+     * Tells server from which point messages should be sent
+     */
+    public interface Handshake {
+        /**
+         * Called after every connect before {@link RxObjectEventConnected} is returned
+         *
+         * @param sender sender of current connection
+         * @param lastSequence last sequence number up to which all messages were processed,
+         *                     or first sequence - 1 if first message wasn't processed
+         * @throws ObjectParseException when handshake message can't be sent
+         */
+        void resume(@Nonnull ObjectWebSocketSender sender, long lastSequence) throws ObjectParseException;
+    }
+
+    @Nonnull
+    private final Func1<Object, Long> sequence;
+    @Nonnull
+    private final Handshake handshake;
+    @Nonnull
+    private final SequenceWindow window;
+    private long duplicates = 0;
+
+    /**
+     * Creates session that expects first message with sequence number 0
+     *
+     * @param sequence returns sequence number of message or null if message is not numbered
+     * @param handshake sends last processed sequence number after connect
+     * @param windowSize number of recent sequence numbers remembered to remove duplicates
+     */
+    public ResumableSession(@Nonnull Func1<Object, Long> sequence,
+                            @Nonnull Handshake handshake,
+                            int windowSize) {
+        this(sequence, handshake, windowSize, 0);
+    }
+
+    /**
+     * Creates session that expects first message with given sequence number
+     *
+     * If first numbered message has greater sequence number, gap is returned before it.
+     * To restore session, pass {@link #lastSequence()} + 1 of the previous one.
+     *
+     * @param sequence returns sequence number of message or null if message is not numbered
+     * @param handshake sends last processed sequence number after connect
+     * @param windowSize number of recent sequence numbers remembered to remove duplicates
+     * @param firstSequence sequence number of first expected message
+     */
+    public ResumableSession(@Nonnull Func1<Object, Long> sequence,
+                            @Nonnull Handshake handshake,
+                            int windowSize,
+                            long firstSequence) {
+        this.sequence = sequence;
+        this.handshake = handshake;
+        this.window = new SequenceWindow(windowSize, firstSequence);
+    }
+
+    /**
+     * Messages after a gap are not counted, so server replays missing messages on resume.
+     * Gaps older than window size are given up.
+     *
+     * @return last sequence number up to which all messages were processed, or first
+     * sequence - 1 if first message wasn't processed
+     */
+    public synchronized long lastSequence() {
+        return window.contiguous();
+    }
+
+    /**
+     * @return number of removed messages that were already processed
+     */
+    public synchronized long duplicates() {
+        return duplicates;
+    }
+
+    /**
+     * @return transformer that resumes session on connect and removes duplicated messages
+     */
+    @Nonnull
+    public Observable.Transformer<RxObjectEvent, RxObjectEvent> session() {
+        return new Observable.Transformer<RxObjectEvent, RxObjectEvent>() {
+            @Override
+            public Observable<RxObjectEvent> call(Observable<RxObjectEvent> observable) {
+                return observable.lift(new Observable.Operator<RxObjectEvent, RxObjectEvent>() {
+                    @Override
+                    public Subscriber<? super RxObjectEvent> call(final Subscriber<? super RxObjectEvent> child) {
+                        return new Subscriber<RxObjectEvent>(child) {
+                            @Override
+                            public void onNext(RxObjectEvent event) {
+                                if (event instanceof RxObjectEventConnected) {
+                                    try {
+                                        handshake.resume(((RxObjectEventConnected) event).sender(), lastSequence());
+                                    } catch (ObjectParseException e) {
+                                        child.onError(e);
+                                        unsubscribe();
+                                        return;
+                                    }
+                                } else if (event instanceof RxObjectEventMessage) {
+                                    if (!onMessage(child, (RxObjectEventMessage) event)) {
+                                        // Replace dropped duplicate, so demand is not lost
+                                        request(1);
+                                    }
+                                    return;
+                                }
+                                child.onNext(event);
+                            }
+
+                            @Override
+                            public void onError(Throwable e) {
+                                child.onError(e);
+                            }
+
+                            @Override
+                            public void onCompleted() {
+                                child.onCompleted();
+                            }
+                        };
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * @return false if message was dropped as duplicate
+     */
+    private boolean onMessage(@Nonnull Subscriber<? super RxObjectEvent> child,
+                              @Nonnull RxObjectEventMessage message) {
+        final Long sequence = this.sequence.call(message.message());
+        if (sequence == null) {
+            child.onNext(message);
+            return true;
+        }
+        final long highest;
+        synchronized (this) {
+            highest = window.highest();
+            if (!window.accept(sequence)) {
+                duplicates += 1;
+                return false;
+            }
+        }
+        if (sequence > highest + 1) {
+            child.onNext(new RxObjectEventGap(message.sender(), highest + 1, sequence - 1));
+        }
+        child.onNext(message);
+        return true;
+    }
+}
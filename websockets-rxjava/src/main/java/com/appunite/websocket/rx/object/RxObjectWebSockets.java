@@ -16,8 +16,10 @@
 
 package com.appunite.websocket.rx.object;
 
+import com.appunite.websocket.rx.InboundBackpressure;
 import com.appunite.websocket.rx.RxWebSockets;
 import com.appunite.websocket.rx.messages.RxEventBinaryMessage;
+import com.appunite.websocket.rx.metrics.WebSocketMetrics;
 import com.appunite.websocket.rx.object.messages.RxObjectEvent;
 import com.appunite.websocket.rx.object.messages.RxObjectEventMessage;
 import com.appunite.websocket.rx.messages.RxEvent;
@@ -31,11 +33,21 @@ import com.appunite.websocket.rx.object.messages.RxObjectEventDisconnected;
 
 import okhttp3.WebSocket;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
+import okio.Buffer;
+import okio.BufferedSource;
 import okio.ByteString;
+import okio.Okio;
 import rx.Observable;
+import rx.Scheduler;
 import rx.Subscriber;
+import rx.functions.Func1;
 
 /**
  * This class allows to retrieve json messages from websocket
@@ -45,6 +57,11 @@ public class RxObjectWebSockets {
     private final RxWebSockets rxWebSockets;
     @Nonnull
     private final ObjectSerializer objectSerializer;
+    @Nullable
+    private final Scheduler parseScheduler;
+    private final int parallelism;
+    @Nonnull
+    private final WebSocketMetrics metrics;
 
     /**
      * Creates {@link RxObjectWebSockets}
@@ -54,6 +71,42 @@ public class RxObjectWebSockets {
     public RxObjectWebSockets(@Nonnull RxWebSockets rxWebSockets, @Nonnull ObjectSerializer objectSerializer) {
         this.rxWebSockets = rxWebSockets;
         this.objectSerializer = objectSerializer;
+        this.parseScheduler = null;
+        this.parallelism = 1;
+        this.metrics = rxWebSockets.metrics();
+    }
+
+    /**
+     * Creates {@link RxObjectWebSockets} that parses messages outside of OkHttp reader thread
+     *
+     * Messages are parsed by up to parallelism workers of parseScheduler at the same time but
+     * events are still returned in order in which they were received. Use
+     * {@link rx.schedulers.Schedulers#computation()} or {@link rx.schedulers.Schedulers#from(java.util.concurrent.Executor)}
+     * for your own thread pool.
+     *
+     * @param rxWebSockets socket that is used to connect to server
+     * @param objectSerializer that is used to parse messages, has to be thread safe if
+     *                         parallelism is greater than 1, {@link ResettableObjectSerializer}
+     *                         keeps state of connection so it can be used only with
+     *                         parallelism 1
+     * @param parseScheduler scheduler on which messages are parsed
+     * @param parallelism number of messages parsed at the same time
+     */
+    public RxObjectWebSockets(@Nonnull RxWebSockets rxWebSockets,
+                              @Nonnull ObjectSerializer objectSerializer,
+                              @Nonnull Scheduler parseScheduler,
+                              int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism should be greater than 0");
+        }
+        if (parallelism > 1 && objectSerializer instanceof ResettableObjectSerializer) {
+            throw new IllegalArgumentException("ResettableObjectSerializer requires parallelism 1");
+        }
+        this.rxWebSockets = rxWebSockets;
+        this.objectSerializer = objectSerializer;
+        this.parseScheduler = parseScheduler;
+        this.parallelism = parallelism;
+        this.metrics = rxWebSockets.metrics();
     }
 
     /**
@@ -65,75 +118,210 @@ public class RxObjectWebSockets {
     @Nonnull
     public Observable<RxObjectEvent> webSocketObservable() {
         return rxWebSockets.webSocketObservable()
-                .lift(new Observable.Operator<RxObjectEvent, RxEvent>() {
+                .lift(parseOperator());
+    }
+
+    /**
+     * Returns observable that connected to a websocket and returns {@link RxObjectEvent}s
+     * respecting backpressure of subscriber
+     *
+     * @param backpressure strategy of buffering messages that subscriber didn't request yet
+     * @return Observable that connects to websocket
+     * @see RxWebSockets#webSocketObservable(InboundBackpressure)
+     */
+    @Nonnull
+    public Observable<RxObjectEvent> webSocketObservable(@Nonnull InboundBackpressure backpressure) {
+        return rxWebSockets.webSocketObservable(backpressure)
+                .lift(parseOperator());
+    }
+
+    @Nonnull
+    private Observable.Operator<RxObjectEvent, RxEvent> parseOperator() {
+        final Func1<RxEvent, RxObjectEvent> parser = new Func1<RxEvent, RxObjectEvent>() {
+            @Override
+            public RxObjectEvent call(RxEvent rxEvent) {
+                return parseEvent(rxEvent);
+            }
+        };
+        if (parseScheduler != null) {
+            return new OperatorParallelParse(parser, parseScheduler, parallelism);
+        }
+        return new Observable.Operator<RxObjectEvent, RxEvent>() {
+            @Override
+            public Subscriber<? super RxEvent> call(final Subscriber<? super RxObjectEvent> subscriber) {
+                return new Subscriber<RxEvent>(subscriber) {
+
+                    @Override
+                    public void onCompleted() {
+                        subscriber.onCompleted();
+                    }
+
+                    @Override
+                    public void onError(Throwable e) {
+                        subscriber.onError(e);
+                    }
+
                     @Override
-                    public Subscriber<? super RxEvent> call(final Subscriber<? super RxObjectEvent> subscriber) {
-                        return new Subscriber<RxEvent>(subscriber) {
-
-                            @Override
-                            public void onCompleted() {
-                                subscriber.onCompleted();
-                            }
-
-                            @Override
-                            public void onError(Throwable e) {
-                                subscriber.onError(e);
-                            }
-
-                            @Override
-                            public void onNext(RxEvent rxEvent) {
-                                if (rxEvent instanceof RxEventConnected) {
-                                    subscriber.onNext(new RxObjectEventConnected(jsonSocketSender(((RxEventConnected) rxEvent).sender())));
-                                } else if (rxEvent instanceof RxEventDisconnected) {
-                                    subscriber.onNext(new RxObjectEventDisconnected(((RxEventDisconnected) rxEvent).exception()));
-                                } else if (rxEvent instanceof RxEventStringMessage) {
-                                    final RxEventStringMessage stringMessage = (RxEventStringMessage) rxEvent;
-                                    subscriber.onNext(parseMessage(stringMessage));
-                                } else if (rxEvent instanceof RxEventBinaryMessage) {
-                                    final RxEventBinaryMessage binaryMessage = (RxEventBinaryMessage) rxEvent;
-                                    subscriber.onNext(parseMessage(binaryMessage));
-                                } else {
-                                    throw new RuntimeException("Unknown message type");
-                                }
-                            }
-
-                            private RxObjectEvent parseMessage(RxEventStringMessage stringMessage) {
-                                final String message = stringMessage.message();
-                                final Object object;
-                                try {
-                                    object = objectSerializer.serialize(message);
-                                } catch (ObjectParseException e) {
-                                    return new RxObjectEventWrongStringMessageFormat(jsonSocketSender(stringMessage.sender()), message, e);
-                                }
-                                return new RxObjectEventMessage(jsonSocketSender(stringMessage.sender()), object);
-                            }
-
-                            private RxObjectEvent parseMessage(RxEventBinaryMessage binaryMessage) {
-                                final byte[] message = binaryMessage.message();
-                                final Object object;
-                                try {
-                                    object = objectSerializer.serialize(message);
-                                } catch (ObjectParseException e) {
-                                    return new RxObjectEventWrongBinaryMessageFormat(jsonSocketSender(binaryMessage.sender()), message, e);
-                                }
-                                return new RxObjectEventMessage(jsonSocketSender(binaryMessage.sender()), object);
-                            }
-                        };
+                    public void onNext(RxEvent rxEvent) {
+                        subscriber.onNext(parser.call(rxEvent));
                     }
-                });
+                };
+            }
+        };
     }
 
     @Nonnull
-    private ObjectWebSocketSender jsonSocketSender(@Nonnull final WebSocket sender) {
-        return new ObjectWebSocketSender() {
-            @Override
-            public boolean sendObjectMessage(@Nonnull Object message) throws ObjectParseException {
-                if (objectSerializer.isBinary(message)) {
-                    return sender.send(ByteString.of(objectSerializer.deserializeBinary(message)));
-                } else {
-                    return sender.send(objectSerializer.deserializeString(message));
+    private RxObjectEvent parseEvent(@Nonnull RxEvent rxEvent) {
+        if (rxEvent instanceof RxEventConnected) {
+            if (objectSerializer instanceof ResettableObjectSerializer) {
+                ((ResettableObjectSerializer) objectSerializer).reset();
+            }
+            return new RxObjectEventConnected(jsonSocketSender(((RxEventConnected) rxEvent).sender()));
+        } else if (rxEvent instanceof RxEventDisconnected) {
+            return new RxObjectEventDisconnected(((RxEventDisconnected) rxEvent).exception());
+        } else if (rxEvent instanceof RxEventStringMessage) {
+            return parseMessage((RxEventStringMessage) rxEvent);
+        } else if (rxEvent instanceof RxEventBinaryMessage) {
+            return parseMessage((RxEventBinaryMessage) rxEvent);
+        } else {
+            throw new RuntimeException("Unknown message type");
+        }
+    }
+
+    @Nonnull
+    private RxObjectEvent parseMessage(@Nonnull RxEventStringMessage stringMessage) {
+        final String message = stringMessage.message();
+        final long startNanos = startParse();
+        final Object object;
+        try {
+            object = objectSerializer.serialize(message);
+        } catch (ObjectParseException e) {
+            finishParse(startNanos, false);
+            return new RxObjectEventWrongStringMessageFormat(jsonSocketSender(stringMessage.sender()), message, e);
+        }
+        finishParse(startNanos, true);
+        return new RxObjectEventMessage(jsonSocketSender(stringMessage.sender()), object);
+    }
+
+    @Nonnull
+    private RxObjectEvent parseMessage(@Nonnull RxEventBinaryMessage binaryMessage) {
+        final ByteString message = binaryMessage.messageByteString();
+        final long startNanos = startParse();
+        final Object object;
+        try {
+            if (objectSerializer instanceof ByteStringObjectSerializer) {
+                object = ((ByteStringObjectSerializer) objectSerializer).serialize(message);
+            } else if (objectSerializer instanceof StreamingObjectSerializer) {
+                object = parseStreaming((StreamingObjectSerializer) objectSerializer, message);
+            } else {
+                object = objectSerializer.serialize(binaryMessage.message());
+            }
+        } catch (ObjectParseException e) {
+            finishParse(startNanos, false);
+            return new RxObjectEventWrongBinaryMessageFormat(jsonSocketSender(binaryMessage.sender()), message, e);
+        }
+        finishParse(startNanos, true);
+        return new RxObjectEventMessage(jsonSocketSender(binaryMessage.sender()), object);
+    }
+
+    private long startParse() {
+        return metrics == WebSocketMetrics.NO_OP ? 0L : System.nanoTime();
+    }
+
+    private void finishParse(long startNanos, boolean parsed) {
+        if (metrics != WebSocketMetrics.NO_OP) {
+            metrics.onMessageParsed(System.nanoTime() - startNanos, parsed);
+        }
+    }
+
+    @Nonnull
+    private static Object parseStreaming(@Nonnull StreamingObjectSerializer serializer,
+                                         @Nonnull ByteString message) throws ObjectParseException {
+        final BufferedSource source = Okio.buffer(Okio.source(new ByteBufferInputStream(message.asByteBuffer())));
+        try {
+            return serializer.serialize(source);
+        } finally {
+            try {
+                source.close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
+    /**
+     * @return {@link ByteString} for binary message or {@link String} for string message
+     */
+    @Nonnull
+    private Object serializeFrame(@Nonnull Object message) throws ObjectParseException {
+        if (!objectSerializer.isBinary(message)) {
+            return objectSerializer.deserializeString(message);
+        }
+        if (objectSerializer instanceof SinkObjectSerializer) {
+            // Segments of the buffer are taken from and returned to okio pool, so they are reused
+            final Buffer buffer = new Buffer();
+            ((SinkObjectSerializer) objectSerializer).deserializeBinary(message, buffer);
+            return buffer.readByteString();
+        }
+        return ByteString.of(objectSerializer.deserializeBinary(message));
+    }
+
+    @Nonnull
+    private ObjectWebSocketSender jsonSocketSender(@Nonnull WebSocket sender) {
+        return new WebSocketObjectSender(sender);
+    }
+
+    private class WebSocketObjectSender implements BatchObjectWebSocketSender, QueueSizeAware {
+        @Nonnull
+        private final WebSocket sender;
+
+        WebSocketObjectSender(@Nonnull WebSocket sender) {
+            this.sender = sender;
+        }
+
+        @Override
+        public boolean sendObjectMessage(@Nonnull Object message) throws ObjectParseException {
+            if (objectSerializer instanceof ResettableObjectSerializer) {
+                synchronized (objectSerializer) {
+                    return send(serializeFrame(message));
                 }
             }
-        };
+            return send(serializeFrame(message));
+        }
+
+        @Override
+        public int sendObjectMessages(@Nonnull Iterable<?> messages) throws ObjectParseException {
+            if (objectSerializer instanceof ResettableObjectSerializer) {
+                synchronized (objectSerializer) {
+                    return sendFrames(messages);
+                }
+            }
+            return sendFrames(messages);
+        }
+
+        private int sendFrames(@Nonnull Iterable<?> messages) throws ObjectParseException {
+            final List<Object> frames = new ArrayList<>();
+            for (Object message : messages) {
+                frames.add(serializeFrame(message));
+            }
+            int sent = 0;
+            for (Object frame : frames) {
+                if (!send(frame)) {
+                    break;
+                }
+                sent += 1;
+            }
+            return sent;
+        }
+
+        private boolean send(@Nonnull Object frame) {
+            return frame instanceof ByteString
+                    ? sender.send((ByteString) frame)
+                    : sender.send((String) frame);
+        }
+
+        @Override
+        public long queueSize() {
+            return sender.queueSize();
+        }
     }
 }
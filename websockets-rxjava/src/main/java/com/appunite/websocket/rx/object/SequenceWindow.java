@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.object;
+
+/**
+ * Sliding window of recently seen sequence numbers
+ *
+ * Bit for sequence number is stored at position sequence modulo size, so only sequence
+ * numbers newer than highest - size can be checked. Older are treated as already seen, so
+ * contiguous edge never falls behind the window.
+ */
+class SequenceWindow {
+
+    private final long[] words;
+    private final int size;
+    private long highest;
+    private long contiguous;
+
+    /**
+     * @param size number of remembered sequence numbers
+     * @param first sequence number of first expected message
+     */
+    SequenceWindow(int size, long first) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size should be greater than 0");
+        }
+        if (first < 0) {
+            throw new IllegalArgumentException("first should not be negative");
+        }
+        this.words = new long[(size + 63) / 64];
+        this.size = words.length * 64;
+        this.highest = first - 1;
+        this.contiguous = first - 1;
+    }
+
+    /**
+     * @return highest seen sequence number or first - 1 if nothing was seen
+     */
+    long highest() {
+        return highest;
+    }
+
+    /**
+     * @return highest sequence number that all sequence numbers up to were seen, or
+     * first - 1 if first wasn't seen
+     */
+    long contiguous() {
+        return contiguous;
+    }
+
+    /**
+     * Marks sequence number as seen
+     *
+     * @param sequence non negative sequence number
+     * @return true if sequence number wasn't seen before
+     */
+    boolean accept(long sequence) {
+        if (sequence < 0) {
+            throw new IllegalArgumentException("sequence should not be negative");
+        }
+        if (sequence > highest) {
+            if (sequence - highest >= size) {
+                clearAll();
+            } else {
+                for (long position = highest + 1; position < sequence; position++) {
+                    clear(position);
+                }
+            }
+            highest = sequence;
+            set(sequence);
+            advanceContiguous();
+            return true;
+        }
+        if (sequence <= contiguous || isSet(sequence)) {
+            return false;
+        }
+        set(sequence);
+        advanceContiguous();
+        return true;
+    }
+
+    private void advanceContiguous() {
+        // Bits older than window are lost, so gaps there can't be filled anymore
+        contiguous = Math.max(contiguous, highest - size);
+        while (contiguous < highest && isSet(contiguous + 1)) {
+            contiguous += 1;
+        }
+    }
+
+    private void clearAll() {
+        for (int i = 0; i < words.length; i++) {
+            words[i] = 0L;
+        }
+    }
+
+    private boolean isSet(long sequence) {
+        final int bit = (int) (sequence % size);
+        return (words[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    private void set(long sequence) {
+        final int bit = (int) (sequence % size);
+        words[bit >>> 6] |= 1L << bit;
+    }
+
+    private void clear(long sequence) {
+        final int bit = (int) (sequence % size);
+        words[bit >>> 6] &= ~(1L << bit);
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.object;
+
+import javax.annotation.Nonnull;
+
+import okio.BufferedSink;
+
+/**
+ * {@link ObjectSerializer} that is able to write binary messages directly to a sink
+ *
+ * If serializer implements this interface, {@link ObjectWebSocketSender} returned by
+ * {@link RxObjectWebSockets} will call {@link #deserializeBinary(Object, BufferedSink)} instead of
+ * {@link #deserializeBinary(Object)}, and message is sent to the server with single copy.
+ */
+public interface SinkObjectSerializer extends ObjectSerializer {
+
+    /**
+     * Deserialize to binary message (is called only if {@link #isBinary(Object)} return true)
+     * @param message object to deserialize
+     * @param sink sink where de-serialized object should be written, do not close it
+     * @throws ObjectParseException if serialization fail
+     */
+    void deserializeBinary(@Nonnull Object message, @Nonnull BufferedSink sink) throws ObjectParseException;
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.object;
+
+import javax.annotation.Nonnull;
+
+import okio.BufferedSource;
+
+/**
+ * {@link ObjectSerializer} that is able to parse binary messages while reading them, without
+ * converting whole message to a byte array or String first
+ *
+ * If serializer implements this interface {@link RxObjectWebSockets} will call
+ * {@link #serialize(BufferedSource)} for binary messages instead of {@link #serialize(byte[])}.
+ * String messages are already decoded by OkHttp so they are still passed to
+ * {@link #serialize(String)}.
+ */
+public interface StreamingObjectSerializer extends ObjectSerializer {
+
+    /**
+     * Serialize binary message
+     * @param source source of binary message from socket, it is valid only during this call
+     * @return serialized object
+     * @throws ObjectParseException if serialization fail
+     */
+    @Nonnull Object serialize(@Nonnull BufferedSource source) throws ObjectParseException;
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.object.messages;
+
+import com.appunite.websocket.rx.object.ObjectWebSocketSender;
+import com.appunite.websocket.rx.object.ResumableSession;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Event indicating that messages with some sequence numbers were not received
+ *
+ * Missing messages can still arrive later, i.e. replayed by server after reconnect. If they
+ * don't, state should be re-fetched.
+ *
+ * @see ResumableSession
+ */
+public class RxObjectEventGap extends RxObjectEventConn {
+    private final long fromSequence;
+    private final long toSequence;
+
+    public RxObjectEventGap(@Nonnull ObjectWebSocketSender sender, long fromSequence, long toSequence) {
+        super(sender);
+        this.fromSequence = fromSequence;
+        this.toSequence = toSequence;
+    }
+
+    /**
+     * @return first missing sequence number
+     */
+    public long fromSequence() {
+        return fromSequence;
+    }
+
+    /**
+     * @return last missing sequence number, inclusive
+     */
+    public long toSequence() {
+        return toSequence;
+    }
+
+    /**
+     * @return number of missing messages
+     */
+    public long count() {
+        return toSequence - fromSequence + 1;
+    }
+
+    @Override
+    public String toString() {
+        return "RxObjectEventGap{" +
+                "fromSequence=" + fromSequence +
+                ", toSequence=" + toSequence +
+                '}';
+    }
+}
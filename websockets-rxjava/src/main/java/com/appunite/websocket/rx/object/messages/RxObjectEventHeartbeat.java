@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.object.messages;
+
+import com.appunite.websocket.rx.object.ObjectHeartbeat;
+import com.appunite.websocket.rx.object.ObjectWebSocketSender;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Event indicating that server answered heartbeat
+ *
+ * @see ObjectHeartbeat
+ */
+public class RxObjectEventHeartbeat extends RxObjectEventConn {
+    private final long id;
+    private final long rttMillis;
+
+    public RxObjectEventHeartbeat(@Nonnull ObjectWebSocketSender sender, long id, long rttMillis) {
+        super(sender);
+        this.id = id;
+        this.rttMillis = rttMillis;
+    }
+
+    /**
+     * @return id of answered heartbeat
+     */
+    public long id() {
+        return id;
+    }
+
+    /**
+     * @return round trip time measured from sending heartbeat to receiving answer
+     */
+    public long rttMillis() {
+        return rttMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "RxObjectEventHeartbeat{" +
+                "id=" + id +
+                ", rttMillis=" + rttMillis +
+                '}';
+    }
+}
@@ -65,6 +65,10 @@ public class RxObjectEventMessage extends RxObjectEventConn {
     /**
      * Transform one observable to observable of given type filtering by a type
      *
+     * If you subscribe for many types of messages use
+     * {@link com.appunite.websocket.rx.object.ObjectMessageDispatcher}
+     * that doesn't check every message for every subscriber
+     *
      * @param clazz type of message that you would like get
      * @param <T> type of message that you would like get
      * @return Observable that returns given type of message
@@ -24,6 +24,8 @@ import java.util.Arrays;
 
 import javax.annotation.Nonnull;
 
+import okio.ByteString;
+
 /**
  * Event indicating that binary data returned by server was not correctly parsed
  *
@@ -32,24 +34,46 @@ import javax.annotation.Nonnull;
  */
 public class RxObjectEventWrongBinaryMessageFormat extends RxObjectEventWrongMessageFormat {
     @Nonnull
-    private final byte[] message;
+    private final ByteString message;
 
     public RxObjectEventWrongBinaryMessageFormat(@Nonnull ObjectWebSocketSender sender,
                                                  @Nonnull byte[] message,
                                                  @Nonnull ObjectParseException exception) {
+        this(sender, ByteString.of(message), exception);
+    }
+
+    public RxObjectEventWrongBinaryMessageFormat(@Nonnull ObjectWebSocketSender sender,
+                                                 @Nonnull ByteString message,
+                                                 @Nonnull ObjectParseException exception) {
         super(sender, exception);
         this.message = message;
     }
 
+    /**
+     * Copy of binary message that couldn't be parsed
+     *
+     * @return binary message
+     * @see #messageByteString()
+     */
     @Nonnull
     public byte[] message() {
+        return message.toByteArray();
+    }
+
+    /**
+     * Binary message that couldn't be parsed, without copying
+     *
+     * @return binary message
+     */
+    @Nonnull
+    public ByteString messageByteString() {
         return message;
     }
 
     @Override
     public String toString() {
         return "RxJsonEventWrongBinaryMessageFormat{" +
-                "message='" + Arrays.toString(message) + '\'' +
+                "message='" + Arrays.toString(message()) + '\'' +
                 '}';
     }
 }
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx;
+
+import com.appunite.websocket.rx.messages.RxEvent;
+import com.appunite.websocket.rx.messages.RxEventConnected;
+import com.appunite.websocket.rx.messages.RxEventStringMessage;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+
+import okhttp3.WebSocket;
+import rx.functions.Func1;
+import rx.observers.TestSubscriber;
+import rx.subjects.PublishSubject;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class InboundBackpressureTest {
+
+    @Mock
+    WebSocket webSocket;
+
+    private final PublishSubject<RxEvent> events = PublishSubject.create();
+    private final TestSubscriber<RxEvent> subscriber = new TestSubscriber<>(0);
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Test
+    public void testWhenRequested_messagesAreDelivered() throws Exception {
+        events.lift(InboundBackpressure.dropOldest(2).operator()).subscribe(subscriber);
+
+        final RxEventStringMessage message = message("1");
+        events.onNext(message);
+        subscriber.assertNoValues();
+
+        subscriber.requestMore(1);
+        subscriber.assertValues(message);
+    }
+
+    @Test
+    public void testDropOldest_keepsNewestMessages() throws Exception {
+        final InboundBackpressure backpressure = InboundBackpressure.dropOldest(2);
+        events.lift(backpressure.operator()).subscribe(subscriber);
+
+        final RxEventStringMessage second = message("2");
+        final RxEventStringMessage third = message("3");
+        events.onNext(message("1"));
+        events.onNext(second);
+        events.onNext(third);
+        subscriber.requestMore(10);
+
+        subscriber.assertValues(second, third);
+        assertThat(backpressure.droppedFrames()).isEqualTo(1L);
+    }
+
+    @Test
+    public void testDropNewest_keepsOldestMessages() throws Exception {
+        final InboundBackpressure backpressure = InboundBackpressure.dropNewest(2);
+        events.lift(backpressure.operator()).subscribe(subscriber);
+
+        final RxEventStringMessage first = message("1");
+        final RxEventStringMessage second = message("2");
+        events.onNext(first);
+        events.onNext(second);
+        events.onNext(message("3"));
+        subscriber.requestMore(10);
+
+        subscriber.assertValues(first, second);
+        assertThat(backpressure.droppedFrames()).isEqualTo(1L);
+    }
+
+    @Test
+    public void testLatestByKey_replacesMessageWithTheSameKey() throws Exception {
+        final InboundBackpressure backpressure = InboundBackpressure.latestByKey(10, new Func1<RxEvent, Object>() {
+            @Override
+            public Object call(RxEvent rxEvent) {
+                return ((RxEventStringMessage) rxEvent).message().substring(0, 1);
+            }
+        });
+        events.lift(backpressure.operator()).subscribe(subscriber);
+
+        final RxEventStringMessage a2 = message("a2");
+        final RxEventStringMessage b1 = message("b1");
+        events.onNext(message("a1"));
+        events.onNext(b1);
+        events.onNext(a2);
+        subscriber.requestMore(10);
+
+        subscriber.assertValues(a2, b1);
+        assertThat(backpressure.droppedFrames()).isEqualTo(1L);
+    }
+
+    @Test
+    public void testConnectionEvents_areNeverDropped() throws Exception {
+        events.lift(InboundBackpressure.dropNewest(1).operator()).subscribe(subscriber);
+
+        final RxEventStringMessage first = message("1");
+        final RxEventConnected connected = new RxEventConnected(webSocket);
+        events.onNext(first);
+        events.onNext(connected);
+        events.onNext(message("2"));
+        subscriber.requestMore(10);
+
+        subscriber.assertValues(first, connected);
+    }
+
+    @Test
+    public void testError_isDeliveredAfterBufferedMessages() throws Exception {
+        events.lift(InboundBackpressure.dropOldest(2).operator()).subscribe(subscriber);
+
+        final RxEventStringMessage message = message("1");
+        events.onNext(message);
+        events.onError(new IOException());
+        subscriber.assertNoTerminalEvent();
+
+        subscriber.requestMore(1);
+        subscriber.assertValues(message);
+        subscriber.assertError(IOException.class);
+    }
+
+    @Test
+    public void testPauseReading_blocksUntilRequested() throws Exception {
+        final InboundBackpressure backpressure = InboundBackpressure.pauseReading(1);
+        events.lift(backpressure.operator()).subscribe(subscriber);
+
+        final Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                events.onNext(message("1"));
+                events.onNext(message("2"));
+            }
+        });
+        reader.start();
+        reader.join(100);
+        assertThat(reader.isAlive()).isTrue();
+
+        subscriber.requestMore(1);
+        reader.join(1000);
+        assertThat(reader.isAlive()).isFalse();
+
+        subscriber.requestMore(1);
+        subscriber.assertValueCount(2);
+        assertThat(backpressure.droppedFrames()).isEqualTo(0L);
+    }
+
+    private RxEventStringMessage message(String message) {
+        return new RxEventStringMessage(webSocket, message);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx;
+
+import com.appunite.websocket.rx.metrics.InMemoryWebSocketMetrics;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import okhttp3.WebSocket;
+import okio.ByteString;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.when;
+
+public class MeteredWebSocketTest {
+
+    @Mock
+    WebSocket webSocket;
+
+    private final InMemoryWebSocketMetrics metrics = new InMemoryWebSocketMetrics();
+    private MeteredWebSocket meteredWebSocket;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        meteredWebSocket = new MeteredWebSocket(webSocket, metrics);
+    }
+
+    @Test
+    public void testSentFrames_areCountedWithQueueSize() throws Exception {
+        when(webSocket.send(anyString())).thenReturn(true);
+        when(webSocket.send(any(ByteString.class))).thenReturn(true);
+        when(webSocket.queueSize()).thenReturn(3L, 7L);
+
+        assertThat(meteredWebSocket.send("abc")).isTrue();
+        assertThat(meteredWebSocket.send(ByteString.of(new byte[10]))).isTrue();
+
+        assertThat(metrics.framesSent()).isEqualTo(2L);
+        assertThat(metrics.bytesSent()).isEqualTo(13L);
+        assertThat(metrics.queueSize()).isEqualTo(7L);
+        assertThat(metrics.queueSizes().max()).isEqualTo(7L);
+    }
+
+    @Test
+    public void testRejectedFrame_isNotCountedAsSent() throws Exception {
+        when(webSocket.send(anyString())).thenReturn(false);
+
+        assertThat(meteredWebSocket.send("abc")).isFalse();
+
+        assertThat(metrics.framesSent()).isEqualTo(0L);
+        assertThat(metrics.framesRejected()).isEqualTo(1L);
+    }
+
+    @Test
+    public void testUtf8Size() throws Exception {
+        assertThat(MeteredWebSocket.utf8Size("abc")).isEqualTo(3L);
+        assertThat(MeteredWebSocket.utf8Size("\u0105")).isEqualTo(2L);
+        assertThat(MeteredWebSocket.utf8Size("\u20ac")).isEqualTo(3L);
+        assertThat(MeteredWebSocket.utf8Size("\ud83d\ude00")).isEqualTo(4L);
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx;
+
+import com.appunite.websocket.rx.object.ObjectWebSocketSender;
+import com.appunite.websocket.rx.object.QueueSizeAware;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.WebSocket;
+import rx.Observable;
+import rx.functions.Action1;
+import rx.functions.Func1;
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
+import rx.schedulers.TestScheduler;
+import rx.subjects.PublishSubject;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+public class OutboundFlowControlTest {
+
+    @Mock
+    WebSocket webSocket;
+
+    private final TestScheduler testScheduler = Schedulers.test();
+    private final TestSubscriber<Boolean> subscriber = new TestSubscriber<>();
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        when(webSocket.send(anyString())).thenReturn(true);
+    }
+
+    @Test
+    public void testWhenQueueIsEmpty_sendAllMessages() throws Exception {
+        final OutboundFlowControl flowControl = OutboundFlowControl.pause(100, 50, 10, testScheduler);
+
+        Observable.just("1", "2", "3")
+                .compose(flowControl.sendMessages(webSocket))
+                .subscribe(subscriber);
+
+        subscriber.assertValues(true, true, true);
+        subscriber.assertCompleted();
+        assertThat(flowControl.sentMessages()).isEqualTo(3L);
+    }
+
+    @Test
+    public void testMessages_areSentOnlyWhenResultIsRequested() throws Exception {
+        final OutboundFlowControl flowControl = OutboundFlowControl.pause(100, 50, 10, testScheduler);
+        final TestSubscriber<Boolean> bounded = new TestSubscriber<>(1);
+
+        Observable.just("1", "2", "3")
+                .compose(flowControl.sendMessages(webSocket))
+                .subscribe(bounded);
+        verify(webSocket).send("1");
+        verify(webSocket, never()).send("2");
+
+        bounded.requestMore(2);
+        verify(webSocket).send("3");
+        bounded.assertValues(true, true, true);
+        bounded.assertCompleted();
+    }
+
+    @Test
+    public void testWhenQueueIsFull_waitUntilItDropsToLowWatermark() throws Exception {
+        final OutboundFlowControl flowControl = OutboundFlowControl.pause(100, 50, 10, testScheduler);
+        when(webSocket.queueSize()).thenReturn(100L);
+
+        Observable.just("1", "2")
+                .compose(flowControl.sendMessages(webSocket))
+                .subscribe(subscriber);
+        verify(webSocket, never()).send(anyString());
+        assertThat(flowControl.pauses()).isEqualTo(1L);
+
+        when(webSocket.queueSize()).thenReturn(70L);
+        testScheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        verify(webSocket, never()).send(anyString());
+
+        when(webSocket.queueSize()).thenReturn(50L);
+        testScheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        verify(webSocket, times(2)).send(anyString());
+        subscriber.assertCompleted();
+        assertThat(flowControl.maxQueueSize()).isEqualTo(100L);
+    }
+
+    @Test
+    public void testPause_requestsOnlyBufferSizeFromUpstream() throws Exception {
+        final OutboundFlowControl flowControl = OutboundFlowControl.pause(100, 50, 2, testScheduler);
+        when(webSocket.queueSize()).thenReturn(100L);
+        final AtomicLong requested = new AtomicLong();
+
+        Observable.range(0, 10)
+                .map(new Func1<Integer, String>() {
+                    @Override
+                    public String call(Integer integer) {
+                        return String.valueOf(integer);
+                    }
+                })
+                .doOnRequest(new Action1<Long>() {
+                    @Override
+                    public void call(Long n) {
+                        requested.addAndGet(n);
+                    }
+                })
+                .compose(flowControl.sendMessages(webSocket))
+                .subscribe(subscriber);
+
+        subscriber.assertNoErrors();
+        subscriber.assertNotCompleted();
+        assertThat(requested.get()).isEqualTo(2L);
+    }
+
+    @Test
+    public void testBufferOverflow_returnsError() throws Exception {
+        final OutboundFlowControl flowControl = OutboundFlowControl.buffer(100, 50, 2, testScheduler);
+        when(webSocket.queueSize()).thenReturn(100L);
+        final PublishSubject<String> messages = PublishSubject.create();
+
+        messages.compose(flowControl.sendMessages(webSocket))
+                .subscribe(subscriber);
+        messages.onNext("1");
+        messages.onNext("2");
+        subscriber.assertNoErrors();
+
+        messages.onNext("3");
+        subscriber.assertError(OutboundQueueFullException.class);
+        verify(webSocket, never()).send(anyString());
+    }
+
+    @Test
+    public void testFailFast_whenQueueIsFull_returnsError() throws Exception {
+        final OutboundFlowControl flowControl = OutboundFlowControl.failFast(100);
+        when(webSocket.queueSize()).thenReturn(0L, 100L);
+
+        Observable.just("1", "2")
+                .compose(flowControl.sendMessages(webSocket))
+                .subscribe(subscriber);
+
+        subscriber.assertValues(true);
+        subscriber.assertError(OutboundQueueFullException.class);
+    }
+
+    @Test
+    public void testObjectMessages_waitUntilSenderQueueDropsToLowWatermark() throws Exception {
+        final OutboundFlowControl flowControl = OutboundFlowControl.pause(100, 50, 10, testScheduler);
+        final ObjectWebSocketSender sender = mock(ObjectWebSocketSender.class,
+                withSettings().extraInterfaces(QueueSizeAware.class));
+        when(((QueueSizeAware) sender).queueSize()).thenReturn(100L, 50L);
+        when(sender.sendObjectMessage("1")).thenReturn(true);
+
+        Observable.just("1")
+                .compose(flowControl.<String>sendObjectMessages(sender))
+                .subscribe(subscriber);
+        verify(sender, never()).sendObjectMessage("1");
+        testScheduler.advanceTimeBy(OutboundFlowControl.POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+
+        verify(sender).sendObjectMessage("1");
+        subscriber.assertValues(true);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testObjectSenderWithoutQueueSize_isRejected() throws Exception {
+        OutboundFlowControl.failFast(100).sendObjectMessages(mock(ObjectWebSocketSender.class));
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx;
+
+import com.appunite.websocket.rx.messages.RxEvent;
+import com.appunite.websocket.rx.messages.RxEventConnected;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import rx.Observable;
+import rx.functions.Func0;
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
+import rx.schedulers.TestScheduler;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class ReconnectPolicyTest {
+
+    @Mock
+    WebSocket webSocket;
+
+    private final TestScheduler testScheduler = Schedulers.test();
+    private final TestSubscriber<RxEvent> subscriber = new TestSubscriber<>();
+    private final AtomicInteger subscriptions = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Test
+    public void testExponential_delayDoublesUpToCap() throws Exception {
+        final ReconnectPolicy policy = ReconnectPolicy.exponential(1, 4, TimeUnit.SECONDS, testScheduler);
+
+        failing(new IOException()).compose(policy.<RxEvent>reconnect()).subscribe(subscriber);
+        assertThat(subscriptions.get()).isEqualTo(1);
+
+        testScheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        assertThat(subscriptions.get()).isEqualTo(2);
+        testScheduler.advanceTimeBy(1999, TimeUnit.MILLISECONDS);
+        assertThat(subscriptions.get()).isEqualTo(2);
+        testScheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+        assertThat(subscriptions.get()).isEqualTo(3);
+        testScheduler.advanceTimeBy(4, TimeUnit.SECONDS);
+        assertThat(subscriptions.get()).isEqualTo(4);
+        testScheduler.advanceTimeBy(4, TimeUnit.SECONDS);
+        assertThat(subscriptions.get()).isEqualTo(5);
+        assertThat(policy.reconnects()).isEqualTo(5L);
+        subscriber.assertNoErrors();
+    }
+
+    @Test
+    public void testFullJitter_delayIsRandomPartOfExponential() throws Exception {
+        final ReconnectPolicy policy = ReconnectPolicy.fullJitter(1, 60, TimeUnit.SECONDS, testScheduler)
+                .random(new HalfRandom());
+
+        failing(new IOException()).compose(policy.<RxEvent>reconnect()).subscribe(subscriber);
+
+        assertNextReconnectAfter(500);
+        assertNextReconnectAfter(1000);
+        assertNextReconnectAfter(2000);
+        assertNextReconnectAfter(4000);
+    }
+
+    @Test
+    public void testDecorrelatedJitter_delayDependsOnPreviousDelay() throws Exception {
+        final ReconnectPolicy policy = ReconnectPolicy.decorrelatedJitter(1, 10, TimeUnit.SECONDS, testScheduler)
+                .random(new HalfRandom());
+
+        failing(new IOException()).compose(policy.<RxEvent>reconnect()).subscribe(subscriber);
+
+        assertNextReconnectAfter(2000);
+        assertNextReconnectAfter(3500);
+        assertNextReconnectAfter(5750);
+        assertNextReconnectAfter(9125);
+        assertNextReconnectAfter(10000);
+    }
+
+    private void assertNextReconnectAfter(long millis) {
+        final int before = subscriptions.get();
+        testScheduler.advanceTimeBy(millis - 1, TimeUnit.MILLISECONDS);
+        assertThat(subscriptions.get()).isEqualTo(before);
+        testScheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+        assertThat(subscriptions.get()).isEqualTo(before + 1);
+    }
+
+    @Test
+    public void testStableConnection_resetsAttempts() throws Exception {
+        final ReconnectPolicy policy = ReconnectPolicy.exponential(1, 60, TimeUnit.SECONDS, testScheduler)
+                .resetAfter(10, TimeUnit.SECONDS);
+
+        Observable.defer(new Func0<Observable<RxEvent>>() {
+            @Override
+            public Observable<RxEvent> call() {
+                subscriptions.incrementAndGet();
+                final Observable<RxEvent> error = Observable.error(new IOException());
+                if (subscriptions.get() == 3) {
+                    // third connection is stable
+                    return Observable.<RxEvent>just(new RxEventConnected(webSocket))
+                            .concatWith(error.delaySubscription(10, TimeUnit.SECONDS, testScheduler));
+                }
+                return Observable.<RxEvent>just(new RxEventConnected(webSocket)).concatWith(error);
+            }
+        }).compose(policy.<RxEvent>reconnect()).subscribe(subscriber);
+
+        testScheduler.advanceTimeBy(1 + 2, TimeUnit.SECONDS);
+        assertThat(subscriptions.get()).isEqualTo(3);
+        testScheduler.advanceTimeBy(10, TimeUnit.SECONDS);
+        assertThat(subscriptions.get()).isEqualTo(3);
+
+        testScheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        assertThat(subscriptions.get()).isEqualTo(4);
+    }
+
+    @Test
+    public void testPermanentError_isNotRetried() throws Exception {
+        final ReconnectPolicy policy = ReconnectPolicy.exponential(1, 60, TimeUnit.SECONDS, testScheduler);
+        final ServerRequestedCloseException exception = new ServerRequestedCloseException(1008, "policy");
+
+        failing(exception).compose(policy.<RxEvent>reconnect()).subscribe(subscriber);
+
+        subscriber.assertError(exception);
+        assertThat(subscriptions.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testRetryAfterHeader_delaysReconnect() throws Exception {
+        final ReconnectPolicy policy = ReconnectPolicy.exponential(1, 60, TimeUnit.SECONDS, testScheduler);
+        final Response response = new Response.Builder()
+                .request(new Request.Builder().url("http://localhost/").build())
+                .protocol(Protocol.HTTP_1_1)
+                .code(503)
+                .message("Service Unavailable")
+                .header("Retry-After", "120")
+                .build();
+
+        failing(new ServerHttpError(response)).compose(policy.<RxEvent>reconnect()).subscribe(subscriber);
+
+        testScheduler.advanceTimeBy(119, TimeUnit.SECONDS);
+        assertThat(subscriptions.get()).isEqualTo(1);
+        testScheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        assertThat(subscriptions.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testRetryAfterHttpDate() throws Exception {
+        assertThat(ReconnectPolicy.retryAfterMillis("Thu, 01 Jan 1970 00:01:00 GMT", 0))
+                .isEqualTo(60000L);
+        assertThat(ReconnectPolicy.retryAfterMillis("wrong", 0)).isNull();
+    }
+
+    private static class HalfRandom extends Random {
+        @Override
+        public double nextDouble() {
+            return 0.5;
+        }
+    }
+
+    private Observable<RxEvent> failing(final Throwable throwable) {
+        return Observable.defer(new Func0<Observable<RxEvent>>() {
+            @Override
+            public Observable<RxEvent> call() {
+                subscriptions.incrementAndGet();
+                return Observable.error(throwable);
+            }
+        });
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx;
+
+import com.appunite.websocket.rx.object.BatchObjectWebSocketSender;
+import com.appunite.websocket.rx.object.ObjectEnvelope;
+import com.appunite.websocket.rx.object.ObjectWebSocketSender;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
+import rx.schedulers.TestScheduler;
+import rx.subjects.PublishSubject;
+
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RxMoreObservablesTest {
+
+    @Mock
+    BatchObjectWebSocketSender sender;
+    @Mock
+    ObjectWebSocketSender simpleSender;
+
+    private final TestScheduler testScheduler = Schedulers.test();
+    private final PublishSubject<String> messages = PublishSubject.create();
+    private final TestSubscriber<Integer> subscriber = new TestSubscriber<>();
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    private void sendBatches(@Nonnull ObjectWebSocketSender sender) {
+        messages.buffer(1, TimeUnit.SECONDS, 3, testScheduler)
+                .compose(RxMoreObservables.<String>sendObjectMessageBatches(sender))
+                .subscribe(subscriber);
+    }
+
+    @Test
+    public void testFullBatch_isSentAtOnce() throws Exception {
+        when(sender.sendObjectMessages(Arrays.asList("1", "2", "3"))).thenReturn(3);
+        sendBatches(sender);
+
+        messages.onNext("1");
+        messages.onNext("2");
+        messages.onNext("3");
+
+        verify(sender).sendObjectMessages(Arrays.asList("1", "2", "3"));
+        subscriber.assertValues(3);
+    }
+
+    @Test
+    public void testPartialBatch_isSentAfterTimeout() throws Exception {
+        when(sender.sendObjectMessages(Arrays.asList("1"))).thenReturn(1);
+        sendBatches(sender);
+
+        messages.onNext("1");
+        subscriber.assertNoValues();
+        testScheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+
+        verify(sender).sendObjectMessages(Arrays.asList("1"));
+        subscriber.assertValues(1);
+    }
+
+    @Test
+    public void testWhenConnectionIsClosedDuringBatch_returnsNumberOfSentMessages() throws Exception {
+        when(sender.sendObjectMessages(Arrays.asList("1", "2", "3"))).thenReturn(1);
+        sendBatches(sender);
+
+        messages.onNext("1");
+        messages.onNext("2");
+        messages.onNext("3");
+
+        subscriber.assertValues(1);
+        subscriber.assertNoErrors();
+    }
+
+    @Test
+    public void testSenderWithoutBatches_sendsMessagesOneByOne() throws Exception {
+        when(simpleSender.sendObjectMessage("1")).thenReturn(true);
+        when(simpleSender.sendObjectMessage("2")).thenReturn(false);
+        sendBatches(simpleSender);
+
+        messages.onNext("1");
+        messages.onNext("2");
+        messages.onNext("3");
+
+        verify(simpleSender).sendObjectMessage("1");
+        verify(simpleSender).sendObjectMessage("2");
+        subscriber.assertValues(1);
+    }
+
+    @Test
+    public void testEnvelope_sendsBatchAsSingleMessage() throws Exception {
+        when(sender.sendObjectMessage("[1, 2, 3]")).thenReturn(true);
+        messages.buffer(1, TimeUnit.SECONDS, 3, testScheduler)
+                .compose(RxMoreObservables.<String>sendObjectMessageBatches(sender, new ObjectEnvelope() {
+                    @Nonnull
+                    @Override
+                    public Object wrap(@Nonnull List<?> messages) {
+                        return messages.toString();
+                    }
+                }))
+                .subscribe(subscriber);
+
+        messages.onNext("1");
+        messages.onNext("2");
+        messages.onNext("3");
+
+        subscriber.assertValues(3);
+    }
+
+    @Test
+    public void testWhenEnvelopeFails_returnsError() throws Exception {
+        final IllegalStateException exception = new IllegalStateException("envelope");
+        final PublishSubject<List<String>> batches = PublishSubject.create();
+        batches.compose(RxMoreObservables.<String>sendObjectMessageBatches(sender, new ObjectEnvelope() {
+                    @Nonnull
+                    @Override
+                    public Object wrap(@Nonnull List<?> messages) {
+                        throw exception;
+                    }
+                }))
+                .subscribe(subscriber);
+
+        batches.onNext(Arrays.asList("1"));
+
+        subscriber.assertError(exception);
+        subscriber.assertNoValues();
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx;
+
+import com.appunite.websocket.rx.messages.RxEvent;
+import com.appunite.websocket.rx.messages.RxEventConnected;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+
+import javax.annotation.Nonnull;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.WebSocket;
+import rx.Observable;
+import rx.Subscription;
+import rx.observers.TestSubscriber;
+import rx.subjects.PublishSubject;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class RxWebSocketsPoolTest {
+
+    @Mock
+    WebSocket webSocket;
+
+    private final OkHttpClient client = new OkHttpClient();
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Test
+    public void testConnectingLimit_nextConnectionWaitsForHandshake() throws Exception {
+        final RxWebSocketsPool pool = new RxWebSocketsPool(client, 1, 10);
+        final FakeRxWebSockets first = new FakeRxWebSockets("http://host1/");
+        final FakeRxWebSockets second = new FakeRxWebSockets("http://host2/");
+
+        pool.webSocketObservable(first).subscribe(new TestSubscriber<RxEvent>());
+        pool.webSocketObservable(second).subscribe(new TestSubscriber<RxEvent>());
+
+        assertThat(first.events.hasObservers()).isTrue();
+        assertThat(second.events.hasObservers()).isFalse();
+        assertThat(pool.stats().queued()).isEqualTo(1);
+
+        first.events.onNext(new RxEventConnected(webSocket));
+
+        assertThat(second.events.hasObservers()).isTrue();
+        assertThat(pool.stats().live()).isEqualTo(1);
+        assertThat(pool.stats().connecting()).isEqualTo(1);
+    }
+
+    @Test
+    public void testPerHostLimit_nextConnectionWaitsForClose() throws Exception {
+        final RxWebSocketsPool pool = new RxWebSocketsPool(client, 10, 1);
+        final FakeRxWebSockets first = new FakeRxWebSockets("http://host/1");
+        final FakeRxWebSockets second = new FakeRxWebSockets("http://host/2");
+        final FakeRxWebSockets other = new FakeRxWebSockets("http://other/");
+
+        final Subscription subscription = pool.webSocketObservable(first).subscribe(new TestSubscriber<RxEvent>());
+        pool.webSocketObservable(second).subscribe(new TestSubscriber<RxEvent>());
+        pool.webSocketObservable(other).subscribe(new TestSubscriber<RxEvent>());
+        first.events.onNext(new RxEventConnected(webSocket));
+
+        assertThat(second.events.hasObservers()).isFalse();
+        assertThat(other.events.hasObservers()).isTrue();
+        assertThat(pool.stats().connectionsPerHost()).containsEntry("host", 1);
+
+        subscription.unsubscribe();
+
+        assertThat(second.events.hasObservers()).isTrue();
+    }
+
+    @Test
+    public void testQueuedConnectionUnsubscribed_isRemovedFromQueue() throws Exception {
+        final RxWebSocketsPool pool = new RxWebSocketsPool(client, 1, 10);
+        final FakeRxWebSockets first = new FakeRxWebSockets("http://host1/");
+        final FakeRxWebSockets second = new FakeRxWebSockets("http://host2/");
+        pool.webSocketObservable(first).subscribe(new TestSubscriber<RxEvent>());
+
+        pool.webSocketObservable(second).subscribe(new TestSubscriber<RxEvent>()).unsubscribe();
+        first.events.onError(new IOException());
+
+        assertThat(second.events.hasObservers()).isFalse();
+        final RxWebSocketsPool.Stats stats = pool.stats();
+        assertThat(stats.queued()).isEqualTo(0);
+        assertThat(stats.connecting()).isEqualTo(0);
+        assertThat(stats.failures()).isEqualTo(1L);
+        assertThat(stats.connectionsPerHost()).isEmpty();
+    }
+
+    private class FakeRxWebSockets extends RxWebSockets {
+        final PublishSubject<RxEvent> events = PublishSubject.create();
+
+        FakeRxWebSockets(@Nonnull String url) {
+            super(client, new Request.Builder().url(url).build());
+        }
+
+        @Nonnull
+        @Override
+        public Observable<RxEvent> webSocketObservable() {
+            return events;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx;
+
+import com.appunite.websocket.rx.messages.RxEvent;
+import com.appunite.websocket.rx.messages.RxEventConnected;
+import com.appunite.websocket.rx.messages.RxEventStringMessage;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.WebSocket;
+import rx.Observable;
+import rx.Subscriber;
+import rx.Subscription;
+import rx.functions.Action0;
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
+import rx.schedulers.TestScheduler;
+import rx.subjects.PublishSubject;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class SharedConnectionTest {
+
+    @Mock
+    WebSocket webSocket;
+
+    private final TestScheduler testScheduler = Schedulers.test();
+    private final PublishSubject<RxEvent> source = PublishSubject.create();
+    private final AtomicInteger connects = new AtomicInteger();
+    private final AtomicInteger disconnects = new AtomicInteger();
+    private SharedConnection<RxEvent> sharedConnection;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        final Observable<RxEvent> connection = source
+                .doOnSubscribe(new Action0() {
+                    @Override
+                    public void call() {
+                        connects.incrementAndGet();
+                    }
+                })
+                .doOnUnsubscribe(new Action0() {
+                    @Override
+                    public void call() {
+                        disconnects.incrementAndGet();
+                    }
+                });
+        sharedConnection = SharedConnection.create(connection, 5, TimeUnit.SECONDS, testScheduler);
+    }
+
+    @Test
+    public void testManySubscribers_shareOneConnection() throws Exception {
+        final TestSubscriber<RxEvent> first = new TestSubscriber<>();
+        final TestSubscriber<RxEvent> second = new TestSubscriber<>();
+        sharedConnection.events().subscribe(first);
+        sharedConnection.events().subscribe(second);
+
+        final RxEventStringMessage message = new RxEventStringMessage(webSocket, "text");
+        source.onNext(message);
+
+        assertThat(connects.get()).isEqualTo(1);
+        assertThat(sharedConnection.subscribers()).isEqualTo(2);
+        first.assertValues((RxEvent) message);
+        second.assertValues((RxEvent) message);
+    }
+
+    @Test
+    public void testLateSubscriber_receivesConnectionState() throws Exception {
+        sharedConnection.events().subscribe(new TestSubscriber<RxEvent>());
+        final RxEventConnected connected = new RxEventConnected(webSocket);
+        source.onNext(connected);
+        source.onNext(new RxEventStringMessage(webSocket, "text"));
+
+        final TestSubscriber<RxEvent> late = new TestSubscriber<>();
+        sharedConnection.events().subscribe(late);
+
+        late.assertValues((RxEvent) connected);
+    }
+
+    @Test
+    public void testLastSubscriberLeaves_connectionIsClosedAfterLinger() throws Exception {
+        final Subscription subscription = sharedConnection.events().subscribe(new TestSubscriber<RxEvent>());
+
+        subscription.unsubscribe();
+        testScheduler.advanceTimeBy(4, TimeUnit.SECONDS);
+        assertThat(disconnects.get()).isEqualTo(0);
+        assertThat(sharedConnection.isActive()).isTrue();
+
+        testScheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        assertThat(disconnects.get()).isEqualTo(1);
+        assertThat(sharedConnection.isActive()).isFalse();
+    }
+
+    @Test
+    public void testSubscriberReturnsDuringLinger_connectionIsReused() throws Exception {
+        sharedConnection.events().subscribe(new TestSubscriber<RxEvent>()).unsubscribe();
+        testScheduler.advanceTimeBy(2, TimeUnit.SECONDS);
+
+        sharedConnection.events().subscribe(new TestSubscriber<RxEvent>());
+        testScheduler.advanceTimeBy(10, TimeUnit.SECONDS);
+
+        assertThat(connects.get()).isEqualTo(1);
+        assertThat(disconnects.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void testConnectionError_isDeliveredToSubscribers() throws Exception {
+        final TestSubscriber<RxEvent> first = new TestSubscriber<>();
+        sharedConnection.events().subscribe(first);
+        final IOException exception = new IOException();
+
+        source.onError(exception);
+        first.assertError(exception);
+        assertThat(sharedConnection.isActive()).isFalse();
+    }
+
+    @Test(timeout = 5000)
+    public void testSubscriberBlockedInOnNext_doesNotBlockOtherSubscribers() throws Exception {
+        final TestSubscriber<RxEvent> second = new TestSubscriber<>();
+        final CountDownLatch subscribed = new CountDownLatch(1);
+        sharedConnection.events().subscribe(new Subscriber<RxEvent>() {
+            @Override
+            public void onNext(RxEvent event) {
+                // Waits for subscriber that subscribes on other thread
+                final Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        sharedConnection.events().subscribe(second);
+                        subscribed.countDown();
+                    }
+                });
+                thread.start();
+                try {
+                    subscribed.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+
+            @Override
+            public void onError(Throwable e) {
+            }
+        });
+
+        final RxEventConnected connected = new RxEventConnected(webSocket);
+        source.onNext(connected);
+
+        assertThat(sharedConnection.subscribers()).isEqualTo(2);
+        second.assertValues((RxEvent) connected);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.messages;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+
+import okhttp3.WebSocket;
+import okio.ByteString;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class RxEventBinaryMessageTest {
+
+    @Mock
+    WebSocket webSocket;
+
+    private final ByteString bytes = ByteString.encodeUtf8("binary message");
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Test
+    public void testMessageByteString_isNotCopied() throws Exception {
+        final RxEventBinaryMessage event = new RxEventBinaryMessage(webSocket, bytes);
+
+        assertThat(event.messageByteString()).isSameAs(bytes);
+    }
+
+    @Test
+    public void testMessageFromArray_isReturnedAsByteString() throws Exception {
+        final RxEventBinaryMessage event = new RxEventBinaryMessage(webSocket, bytes.toByteArray());
+
+        assertThat(event.messageByteString()).isEqualTo(bytes);
+    }
+
+    @Test
+    public void testMessageByteBuffer_containsMessage() throws Exception {
+        final ByteBuffer buffer = new RxEventBinaryMessage(webSocket, bytes).messageByteBuffer();
+
+        final byte[] read = new byte[buffer.remaining()];
+        buffer.get(read);
+
+        assertThat(ByteString.of(read)).isEqualTo(bytes);
+    }
+
+    @Test(expected = ReadOnlyBufferException.class)
+    public void testMessageByteBuffer_isReadOnly() throws Exception {
+        new RxEventBinaryMessage(webSocket, bytes).messageByteBuffer().put(0, (byte) 1);
+    }
+
+    @Test
+    public void testReadingMessageByteBuffer_doesNotConsumeMessage() throws Exception {
+        final RxEventBinaryMessage event = new RxEventBinaryMessage(webSocket, bytes);
+        event.messageByteBuffer().get(new byte[bytes.size()]);
+
+        assertThat(event.messageByteBuffer().remaining()).isEqualTo(bytes.size());
+    }
+
+    @Test
+    public void testMessage_isCopiedOnce() throws Exception {
+        final RxEventBinaryMessage event = new RxEventBinaryMessage(webSocket, bytes);
+
+        final byte[] first = event.message();
+
+        assertThat(ByteString.of(first)).isEqualTo(bytes);
+        assertThat(event.message()).isSameAs(first);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.metrics;
+
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class HistogramTest {
+
+    private final Histogram histogram = new Histogram();
+
+    @Test
+    public void testEmptyHistogram_returnsZeros() throws Exception {
+        assertThat(histogram.count()).isEqualTo(0L);
+        assertThat(histogram.min()).isEqualTo(0L);
+        assertThat(histogram.max()).isEqualTo(0L);
+        assertThat(histogram.percentile(99)).isEqualTo(0L);
+    }
+
+    @Test
+    public void testSmallValues_areExact() throws Exception {
+        for (long i = 1; i <= 20; i++) {
+            histogram.record(i);
+        }
+
+        assertThat(histogram.count()).isEqualTo(20L);
+        assertThat(histogram.min()).isEqualTo(1L);
+        assertThat(histogram.max()).isEqualTo(20L);
+        assertThat(histogram.percentile(50)).isEqualTo(10L);
+        assertThat(histogram.mean()).isEqualTo(10.5);
+    }
+
+    @Test
+    public void testBigValues_haveBoundedError() throws Exception {
+        for (long i = 1; i <= 100000; i++) {
+            histogram.record(i * 1000);
+        }
+
+        assertThat(histogram.percentile(50)).isAtLeast(50000000L);
+        assertThat(histogram.percentile(50)).isAtMost(53500000L);
+        assertThat(histogram.percentile(99)).isAtLeast(99000000L);
+        assertThat(histogram.percentile(99)).isAtMost(100000000L);
+        assertThat(histogram.percentile(100)).isEqualTo(100000000L);
+    }
+
+    @Test
+    public void testIndexes_areMonotonic() throws Exception {
+        int previous = -1;
+        for (long value = 0; value > 0 || value == 0; value = value * 3 / 2 + 1) {
+            final int index = Histogram.index(value);
+            assertThat(index).isAtLeast(previous);
+            assertThat(Histogram.highestValue(index)).isAtLeast(value);
+            previous = index;
+        }
+        assertThat(Histogram.index(Long.MAX_VALUE)).isAtLeast(previous);
+    }
+
+    @Test
+    public void testReset_clearsValues() throws Exception {
+        histogram.record(10);
+
+        histogram.reset();
+
+        assertThat(histogram.count()).isEqualTo(0L);
+        assertThat(histogram.max()).isEqualTo(0L);
+    }
+}
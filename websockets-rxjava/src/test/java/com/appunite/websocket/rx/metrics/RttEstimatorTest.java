@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.metrics;
+
+import com.appunite.websocket.rx.object.ObjectWebSocketSender;
+import com.appunite.websocket.rx.object.messages.RxObjectEventHeartbeat;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class RttEstimatorTest {
+
+    private final RttEstimator estimator = new RttEstimator(4);
+
+    @Test
+    public void testFirstSample_initializesEstimate() throws Exception {
+        estimator.record(100);
+
+        assertThat(estimator.smoothedRttMillis()).isEqualTo(100.0);
+        assertThat(estimator.rttVarianceMillis()).isEqualTo(50.0);
+        assertThat(estimator.timeoutMillis()).isEqualTo(300L);
+    }
+
+    @Test
+    public void testNextSamples_areSmoothed() throws Exception {
+        estimator.record(100);
+        estimator.record(200);
+
+        assertThat(estimator.smoothedRttMillis()).isEqualTo(112.5);
+        assertThat(estimator.rttVarianceMillis()).isEqualTo(62.5);
+        assertThat(estimator.minRttMillis()).isEqualTo(100L);
+    }
+
+    @Test
+    public void testPercentiles_useOnlyLastWindow() throws Exception {
+        estimator.record(1000);
+        estimator.record(10);
+        estimator.record(20);
+        estimator.record(30);
+        estimator.record(40);
+
+        assertThat(estimator.percentile(50)).isEqualTo(20L);
+        assertThat(estimator.percentile(100)).isEqualTo(40L);
+        assertThat(estimator.count()).isEqualTo(5L);
+    }
+
+    @Test
+    public void testHeartbeatEvent_isRecorded() throws Exception {
+        estimator.onNext(new RxObjectEventHeartbeat(Mockito.mock(ObjectWebSocketSender.class), 0, 42));
+
+        assertThat(estimator.percentile(50)).isEqualTo(42L);
+    }
+}
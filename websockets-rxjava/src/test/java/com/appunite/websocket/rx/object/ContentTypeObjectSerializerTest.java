@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.object;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+
+import okio.Buffer;
+import okio.ByteString;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class ContentTypeObjectSerializerTest {
+
+    private static class Text {
+        final String text;
+
+        Text(String text) {
+            this.text = text;
+        }
+    }
+
+    private static class Position {
+        final int x;
+
+        Position(int x) {
+            this.x = x;
+        }
+    }
+
+    private static class TextSerializer implements ObjectSerializer {
+        @Nonnull
+        @Override
+        public Object serialize(@Nonnull String message) {
+            return new Text(message);
+        }
+
+        @Nonnull
+        @Override
+        public Object serialize(@Nonnull byte[] message) throws ObjectParseException {
+            throw new ObjectParseException("Could not parse binary messages");
+        }
+
+        @Nonnull
+        @Override
+        public byte[] deserializeBinary(@Nonnull Object message) {
+            throw new IllegalStateException("Only serialization to string is available");
+        }
+
+        @Nonnull
+        @Override
+        public String deserializeString(@Nonnull Object message) {
+            return ((Text) message).text;
+        }
+
+        @Override
+        public boolean isBinary(@Nonnull Object message) {
+            return false;
+        }
+    }
+
+    private static class PositionSerializer implements ObjectSerializer {
+        @Nonnull
+        @Override
+        public Object serialize(@Nonnull String message) throws ObjectParseException {
+            throw new ObjectParseException("Could not parse string messages");
+        }
+
+        @Nonnull
+        @Override
+        public Object serialize(@Nonnull byte[] message) {
+            return new Position(message[0]);
+        }
+
+        @Nonnull
+        @Override
+        public byte[] deserializeBinary(@Nonnull Object message) {
+            return new byte[]{(byte) ((Position) message).x};
+        }
+
+        @Nonnull
+        @Override
+        public String deserializeString(@Nonnull Object message) {
+            throw new IllegalStateException("Only serialization to binary is available");
+        }
+
+        @Override
+        public boolean isBinary(@Nonnull Object message) {
+            return true;
+        }
+    }
+
+    private final ContentTypeObjectSerializer serializer = ContentTypeObjectSerializer.text(new TextSerializer())
+            .withBinary(7, Position.class, new PositionSerializer());
+
+    @Test
+    public void testNotRegisteredMessage_isSentAsString() throws Exception {
+        final Text message = new Text("hello");
+
+        assertThat(serializer.isBinary(message)).isFalse();
+        assertThat(serializer.deserializeString(message)).isEqualTo("hello");
+    }
+
+    @Test
+    public void testStringFrame_isParsedByTextSerializer() throws Exception {
+        assertThat(((Text) serializer.serialize("hello")).text).isEqualTo("hello");
+    }
+
+    @Test
+    public void testRegisteredMessage_startsWithContentType() throws Exception {
+        final Position message = new Position(5);
+
+        assertThat(serializer.isBinary(message)).isTrue();
+        assertThat(Arrays.equals(serializer.deserializeBinary(message), new byte[]{7, 5})).isTrue();
+    }
+
+    @Test
+    public void testRegisteredMessageWrittenToSink_startsWithContentType() throws Exception {
+        final Buffer buffer = new Buffer();
+
+        serializer.deserializeBinary(new Position(5), buffer);
+
+        assertThat(buffer.readByteString()).isEqualTo(ByteString.of((byte) 7, (byte) 5));
+    }
+
+    @Test
+    public void testBinaryFrame_isParsedBySerializerOfContentType() throws Exception {
+        final Object message = serializer.serialize(ByteString.of((byte) 7, (byte) 3));
+
+        assertThat(((Position) message).x).isEqualTo(3);
+    }
+
+    @Test
+    public void testContentTypeAbove127_isRouted() throws Exception {
+        final ContentTypeObjectSerializer serializer = ContentTypeObjectSerializer.text(new TextSerializer())
+                .withBinary(200, Position.class, new PositionSerializer());
+
+        final Object message = serializer.serialize(serializer.deserializeBinary(new Position(1)));
+
+        assertThat(((Position) message).x).isEqualTo(1);
+    }
+
+    @Test(expected = ObjectParseException.class)
+    public void testUnknownContentType_throwsException() throws Exception {
+        serializer.serialize(new byte[]{8, 1});
+    }
+
+    @Test(expected = ObjectParseException.class)
+    public void testEmptyBinaryFrame_throwsException() throws Exception {
+        serializer.serialize(new byte[0]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testContentTypeRegisteredForOtherSerializer_throwsException() throws Exception {
+        serializer.withBinary(7, Text.class, new TextSerializer());
+    }
+
+    @Test
+    public void testWithBinary_doesNotChangeOriginal() throws Exception {
+        final ContentTypeObjectSerializer original = ContentTypeObjectSerializer.text(new TextSerializer());
+
+        original.withBinary(7, Position.class, new PositionSerializer());
+
+        assertThat(original.isBinary(new Position(1))).isFalse();
+    }
+}
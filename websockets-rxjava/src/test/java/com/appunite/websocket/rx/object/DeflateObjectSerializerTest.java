@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.object;
+
+import com.appunite.websocket.rx.RxWebSockets;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+import javax.annotation.Nonnull;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okio.ByteString;
+import rx.schedulers.Schedulers;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class DeflateObjectSerializerTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Strings are sent as string frames and byte arrays as binary
+     */
+    private static class PlainSerializer implements ObjectSerializer {
+        @Nonnull
+        @Override
+        public Object serialize(@Nonnull String message) {
+            return message;
+        }
+
+        @Nonnull
+        @Override
+        public Object serialize(@Nonnull byte[] message) {
+            return message;
+        }
+
+        @Nonnull
+        @Override
+        public byte[] deserializeBinary(@Nonnull Object message) {
+            return (byte[]) message;
+        }
+
+        @Nonnull
+        @Override
+        public String deserializeString(@Nonnull Object message) {
+            return (String) message;
+        }
+
+        @Override
+        public boolean isBinary(@Nonnull Object message) {
+            return message instanceof byte[];
+        }
+    }
+
+    @Nonnull
+    private static String json(int id) {
+        return "{\"type\":\"chat\",\"from\":\"user" + id + "\",\"message\":\"hello everybody in this chat room\"}";
+    }
+
+    @Nonnull
+    private static DeflateObjectSerializer serializer(boolean contextTakeover, byte[] dictionary) {
+        return new DeflateObjectSerializer(new PlainSerializer(), Deflater.DEFAULT_COMPRESSION,
+                contextTakeover, 16, dictionary);
+    }
+
+    @Test
+    public void testStringMessage_isRestored() throws Exception {
+        final DeflateObjectSerializer sender = new DeflateObjectSerializer(new PlainSerializer());
+        final DeflateObjectSerializer receiver = new DeflateObjectSerializer(new PlainSerializer());
+
+        final byte[] frame = sender.deserializeBinary(json(1));
+
+        assertThat(sender.isBinary(json(1))).isTrue();
+        assertThat(receiver.serialize(frame)).isEqualTo(json(1));
+    }
+
+    @Test
+    public void testBinaryMessage_isRestored() throws Exception {
+        final DeflateObjectSerializer sender = serializer(true, null);
+        final DeflateObjectSerializer receiver = serializer(true, null);
+        final byte[] message = json(1).getBytes(UTF_8);
+
+        final Object restored = receiver.serialize(ByteString.of(sender.deserializeBinary(message)));
+
+        assertThat(Arrays.equals((byte[]) restored, message)).isTrue();
+    }
+
+    @Test
+    public void testSmallMessage_isNotCompressed() throws Exception {
+        final DeflateObjectSerializer sender = serializer(true, null);
+        final DeflateObjectSerializer receiver = serializer(true, null);
+
+        final byte[] frame = sender.deserializeBinary("short");
+
+        assertThat(frame.length).isEqualTo(1 + 5);
+        assertThat(receiver.serialize(frame)).isEqualTo("short");
+    }
+
+    @Test
+    public void testLargeMessage_isCompressed() throws Exception {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            builder.append(json(i));
+        }
+        final String message = builder.toString();
+
+        final byte[] frame = serializer(true, null).deserializeBinary(message);
+
+        assertThat(frame.length).isLessThan(message.length() / 4);
+        assertThat(serializer(true, null).serialize(frame)).isEqualTo(message);
+    }
+
+    @Test
+    public void testWithContextTakeover_nextMessagesAreSmaller() throws Exception {
+        final DeflateObjectSerializer sender = serializer(true, null);
+        final DeflateObjectSerializer receiver = serializer(true, null);
+
+        final byte[] first = sender.deserializeBinary(json(1));
+        final byte[] second = sender.deserializeBinary(json(2));
+
+        assertThat(second.length).isLessThan(first.length / 2);
+        assertThat(receiver.serialize(first)).isEqualTo(json(1));
+        assertThat(receiver.serialize(second)).isEqualTo(json(2));
+    }
+
+    @Test
+    public void testWithoutContextTakeover_messagesAreIndependent() throws Exception {
+        final DeflateObjectSerializer sender = serializer(false, null);
+
+        sender.deserializeBinary(json(1));
+        final byte[] second = sender.deserializeBinary(json(2));
+
+        assertThat(serializer(false, null).serialize(second)).isEqualTo(json(2));
+    }
+
+    @Test
+    public void testWithDictionary_firstMessageIsSmaller() throws Exception {
+        final byte[] dictionary = json(0).getBytes(UTF_8);
+        final DeflateObjectSerializer sender = serializer(false, dictionary);
+
+        final byte[] withDictionary = sender.deserializeBinary(json(1));
+        final byte[] withoutDictionary = serializer(false, null).deserializeBinary(json(1));
+
+        assertThat(withDictionary.length).isLessThan(withoutDictionary.length / 2);
+        assertThat(serializer(false, dictionary).serialize(withDictionary)).isEqualTo(json(1));
+    }
+
+    @Test
+    public void testAfterReset_newConnectionCanBeRead() throws Exception {
+        final DeflateObjectSerializer sender = serializer(true, null);
+        final DeflateObjectSerializer receiver = serializer(true, null);
+        receiver.serialize(sender.deserializeBinary(json(1)));
+
+        sender.reset();
+        receiver.reset();
+
+        assertThat(receiver.serialize(sender.deserializeBinary(json(2)))).isEqualTo(json(2));
+    }
+
+    @Test
+    public void testStringFrame_isPassedToDelegate() throws Exception {
+        assertThat(serializer(true, null).serialize("plain")).isEqualTo("plain");
+    }
+
+    @Test(expected = ObjectParseException.class)
+    public void testBrokenMessage_throwsException() throws Exception {
+        serializer(true, null).serialize(new byte[]{DeflateObjectSerializer.FLAG_COMPRESSED, -1, -1, -1, -1});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParallelParsing_isRejected() throws Exception {
+        final RxWebSockets rxWebSockets = new RxWebSockets(new OkHttpClient(),
+                new Request.Builder().url("ws://localhost/ws").build());
+
+        new RxObjectWebSockets(rxWebSockets, serializer(true, null), Schedulers.immediate(), 2);
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.object;
+
+import com.appunite.websocket.rx.object.messages.RxObjectEventConnected;
+import com.appunite.websocket.rx.object.messages.RxObjectEventDisconnected;
+import com.appunite.websocket.rx.object.messages.RxObjectEventMessage;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+
+import okio.BufferedSink;
+import okio.ByteString;
+import okio.Okio;
+import rx.functions.Func1;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyObject;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DurableOutboundQueueTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Mock
+    BatchObjectWebSocketSender sender;
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        file = folder.newFile("outbound.journal");
+    }
+
+    @Nonnull
+    private DurableOutboundQueue open() throws Exception {
+        return new DurableOutboundQueue(file, new DurableOutboundQueue.Codec() {
+            @Nonnull
+            @Override
+            public ByteString encode(@Nonnull Object message) {
+                return ByteString.encodeUtf8((String) message);
+            }
+
+            @Nonnull
+            @Override
+            public Object decode(@Nonnull ByteString bytes) {
+                return bytes.utf8();
+            }
+        }, new Func1<Object, String>() {
+            @Override
+            public String call(Object message) {
+                return ((String) message).split(":")[1];
+            }
+        }, new Func1<Object, String>() {
+            @Override
+            public String call(Object message) {
+                final String text = (String) message;
+                return text.startsWith("ack:") ? text.substring(4) : null;
+            }
+        });
+    }
+
+    @Test
+    public void testWhenNotConnected_messageIsNotSent() throws Exception {
+        final DurableOutboundQueue queue = open();
+
+        queue.enqueue("msg:1");
+
+        verify(sender, never()).sendObjectMessage(anyObject());
+        assertThat(queue.pending()).isEqualTo(1);
+    }
+
+    @Test
+    public void testWhenConnected_pendingMessagesAreSentInOrder() throws Exception {
+        final DurableOutboundQueue queue = open();
+        queue.enqueue("msg:1");
+        queue.enqueue("msg:2");
+
+        queue.onNext(new RxObjectEventConnected(sender));
+
+        verify(sender).sendObjectMessages(Arrays.asList("msg:1", "msg:2"));
+    }
+
+    @Test
+    public void testWhenConnected_enqueuedMessageIsSentImmediately() throws Exception {
+        final DurableOutboundQueue queue = open();
+        queue.onNext(new RxObjectEventConnected(sender));
+
+        queue.enqueue("msg:1");
+
+        verify(sender).sendObjectMessage("msg:1");
+    }
+
+    @Test
+    public void testAfterDisconnect_messageIsNotSent() throws Exception {
+        final DurableOutboundQueue queue = open();
+        queue.onNext(new RxObjectEventConnected(sender));
+        queue.onNext(new RxObjectEventDisconnected(new Exception()));
+
+        queue.enqueue("msg:1");
+
+        verify(sender, never()).sendObjectMessage(anyObject());
+    }
+
+    @Test
+    public void testAfterAck_messageIsNotResent() throws Exception {
+        final DurableOutboundQueue queue = open();
+        queue.enqueue("msg:1");
+        queue.enqueue("msg:2");
+        queue.onNext(new RxObjectEventMessage(sender, "ack:1"));
+
+        queue.onNext(new RxObjectEventConnected(sender));
+
+        verify(sender).sendObjectMessages(Arrays.asList("msg:2"));
+        assertThat(queue.pending()).isEqualTo(1);
+    }
+
+    @Test
+    public void testAfterReopen_notAcknowledgedMessagesAreRestored() throws Exception {
+        final DurableOutboundQueue queue = open();
+        queue.enqueue("msg:1");
+        queue.enqueue("msg:2");
+        queue.enqueue("msg:3");
+        queue.onNext(new RxObjectEventMessage(sender, "ack:2"));
+
+        final DurableOutboundQueue reopened = open();
+        reopened.onNext(new RxObjectEventConnected(sender));
+
+        verify(sender).sendObjectMessages(Arrays.asList("msg:1", "msg:3"));
+    }
+
+    @Test
+    public void testAfterAllAcknowledged_reopenedQueueIsEmpty() throws Exception {
+        final DurableOutboundQueue queue = open();
+        queue.enqueue("msg:1");
+        queue.onNext(new RxObjectEventMessage(sender, "ack:1"));
+        queue.enqueue("msg:2");
+        queue.onNext(new RxObjectEventMessage(sender, "ack:2"));
+
+        assertThat(open().pending()).isEqualTo(0);
+    }
+
+    @Test
+    public void testManyMessages_journalGrowsAndCompacts() throws Exception {
+        final DurableOutboundQueue queue = open();
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            text.append("0123456789");
+        }
+        queue.enqueue("msg:first");
+        for (int i = 0; i < 1000; i++) {
+            queue.enqueue("msg:" + i + ":" + text);
+            queue.onNext(new RxObjectEventMessage(sender, "ack:" + i));
+        }
+        queue.enqueue("msg:last");
+
+        final DurableOutboundQueue reopened = open();
+        reset(sender);
+        reopened.onNext(new RxObjectEventConnected(sender));
+
+        verify(sender).sendObjectMessages(Arrays.asList("msg:first", "msg:last"));
+        assertThat(file.length()).isLessThan(1024L * 1024L);
+    }
+
+    @Test
+    public void testCompactionInterrupted_journalIsRestored() throws Exception {
+        final DurableOutboundQueue queue = open();
+        queue.enqueue("msg:1");
+        queue.enqueue("msg:2");
+        // Process died while compacted journal was written
+        final File compacted = new File(file.getPath() + ".compact");
+        final BufferedSink sink = Okio.buffer(Okio.sink(compacted));
+        sink.write(new byte[]{1, 2, 3});
+        sink.close();
+
+        final DurableOutboundQueue reopened = open();
+        reopened.onNext(new RxObjectEventConnected(sender));
+
+        verify(sender).sendObjectMessages(Arrays.asList("msg:1", "msg:2"));
+        assertThat(compacted.exists()).isFalse();
+    }
+
+    @Test
+    public void testMessageEnqueuedWhileResending_isSentAfterPendingOnce() throws Exception {
+        final DurableOutboundQueue queue = open();
+        queue.enqueue("msg:1");
+        queue.enqueue("msg:2");
+        when(sender.sendObjectMessages(Arrays.asList("msg:1", "msg:2"))).thenAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) throws Throwable {
+                queue.enqueue("msg:3");
+                return 2;
+            }
+        });
+
+        queue.onNext(new RxObjectEventConnected(sender));
+
+        final InOrder inOrder = inOrder(sender);
+        inOrder.verify(sender).sendObjectMessages(Arrays.asList("msg:1", "msg:2"));
+        inOrder.verify(sender).sendObjectMessage("msg:3");
+        verify(sender, never()).sendObjectMessages(Arrays.asList("msg:1", "msg:2", "msg:3"));
+        verify(sender, times(1)).sendObjectMessage("msg:3");
+    }
+
+    @Test
+    public void testMessageThatCannotBeSent_isDroppedAndAcknowledged() throws Exception {
+        final DurableOutboundQueue queue = open();
+        when(sender.sendObjectMessage("msg:1")).thenThrow(new ObjectParseException("broken"));
+        queue.onNext(new RxObjectEventConnected(sender));
+
+        queue.enqueue("msg:1");
+
+        assertThat(queue.pending()).isEqualTo(0);
+        assertThat(open().pending()).isEqualTo(0);
+    }
+
+    @Test
+    public void testBrokenMessageInBatch_otherMessagesAreSent() throws Exception {
+        final DurableOutboundQueue queue = open();
+        queue.enqueue("msg:1");
+        queue.enqueue("msg:2");
+        queue.enqueue("msg:3");
+        when(sender.sendObjectMessages(Arrays.asList("msg:1", "msg:2", "msg:3")))
+                .thenThrow(new ObjectParseException("broken"));
+        when(sender.sendObjectMessage("msg:1")).thenReturn(true);
+        when(sender.sendObjectMessage("msg:2")).thenThrow(new ObjectParseException("broken"));
+        when(sender.sendObjectMessage("msg:3")).thenReturn(true);
+
+        queue.onNext(new RxObjectEventConnected(sender));
+
+        verify(sender).sendObjectMessage("msg:1");
+        verify(sender).sendObjectMessage("msg:3");
+        assertThat(queue.pending()).isEqualTo(2);
+
+        final DurableOutboundQueue reopened = open();
+        reset(sender);
+        reopened.onNext(new RxObjectEventConnected(sender));
+
+        verify(sender).sendObjectMessages(Arrays.asList("msg:1", "msg:3"));
+    }
+
+    @Test
+    public void testWhenSocketRefusesMessage_restIsSentAfterReconnect() throws Exception {
+        final DurableOutboundQueue queue = open();
+        queue.enqueue("msg:1");
+        queue.enqueue("msg:2");
+        when(sender.sendObjectMessages(Arrays.asList("msg:1", "msg:2")))
+                .thenThrow(new ObjectParseException("broken"));
+        when(sender.sendObjectMessage("msg:1")).thenReturn(false);
+
+        queue.onNext(new RxObjectEventConnected(sender));
+
+        verify(sender, never()).sendObjectMessage("msg:2");
+        assertThat(queue.pending()).isEqualTo(2);
+    }
+
+    @Test(expected = IOException.class)
+    public void testAfterClose_enqueueFails() throws Exception {
+        final DurableOutboundQueue queue = open();
+        queue.close();
+
+        queue.enqueue("msg:1");
+    }
+
+    @Test
+    public void testAfterClose_messagesAreNotSent() throws Exception {
+        final DurableOutboundQueue queue = open();
+        queue.enqueue("msg:1");
+        queue.close();
+
+        queue.onNext(new RxObjectEventConnected(sender));
+
+        verify(sender, never()).sendObjectMessages(any(Iterable.class));
+        verify(sender, never()).sendObjectMessage(anyObject());
+    }
+
+    @Test
+    public void testAfterClose_messagesAreRestoredByNewQueue() throws Exception {
+        final DurableOutboundQueue queue = open();
+        queue.enqueue("msg:1");
+        queue.enqueue("msg:2");
+        queue.onNext(new RxObjectEventMessage(sender, "ack:1"));
+        queue.close();
+
+        final DurableOutboundQueue reopened = open();
+        reopened.onNext(new RxObjectEventConnected(sender));
+
+        verify(sender).sendObjectMessages(Arrays.asList("msg:2"));
+    }
+}
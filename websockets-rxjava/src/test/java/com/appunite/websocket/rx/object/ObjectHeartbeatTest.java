@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.object;
+
+import com.appunite.websocket.rx.object.messages.RxObjectEvent;
+import com.appunite.websocket.rx.object.messages.RxObjectEventConnected;
+import com.appunite.websocket.rx.object.messages.RxObjectEventDisconnected;
+import com.appunite.websocket.rx.object.messages.RxObjectEventHeartbeat;
+import com.appunite.websocket.rx.object.messages.RxObjectEventMessage;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import rx.Observable;
+import rx.functions.Func1;
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
+import rx.schedulers.TestScheduler;
+import rx.subjects.PublishSubject;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class ObjectHeartbeatTest {
+
+    @Mock
+    ObjectWebSocketSender sender;
+
+    private final TestScheduler testScheduler = Schedulers.test();
+    private final PublishSubject<RxObjectEvent> events = PublishSubject.create();
+    private final TestSubscriber<RxObjectEvent> subscriber = new TestSubscriber<>();
+    private ObjectHeartbeat heartbeat;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        heartbeat = new ObjectHeartbeat(new Func1<Long, Object>() {
+            @Override
+            public Object call(Long id) {
+                return "ping:" + id;
+            }
+        }, new Func1<Object, Long>() {
+            @Override
+            public Long call(Object message) {
+                final String text = (String) message;
+                return text.startsWith("pong:") ? Long.parseLong(text.substring(5)) : null;
+            }
+        }, 5, TimeUnit.SECONDS, 2, testScheduler);
+        events.compose(heartbeat.heartbeat()).subscribe(subscriber);
+    }
+
+    @Test
+    public void testWhenConnected_pingsAreSent() throws Exception {
+        events.onNext(new RxObjectEventConnected(sender));
+
+        testScheduler.advanceTimeBy(5, TimeUnit.SECONDS);
+        verify(sender).sendObjectMessage("ping:0");
+        events.onNext(new RxObjectEventMessage(sender, "pong:0"));
+        testScheduler.advanceTimeBy(5, TimeUnit.SECONDS);
+        verify(sender).sendObjectMessage("ping:1");
+    }
+
+    @Test
+    public void testAnswer_isReplacedWithRtt() throws Exception {
+        events.onNext(new RxObjectEventConnected(sender));
+        testScheduler.advanceTimeBy(5, TimeUnit.SECONDS);
+
+        testScheduler.advanceTimeBy(120, TimeUnit.MILLISECONDS);
+        events.onNext(new RxObjectEventMessage(sender, "pong:0"));
+        events.onNext(new RxObjectEventMessage(sender, "other"));
+
+        assertThat(subscriber.getOnNextEvents()).hasSize(3);
+        final RxObjectEventHeartbeat heartbeat = (RxObjectEventHeartbeat) subscriber.getOnNextEvents().get(1);
+        assertThat(heartbeat.id()).isEqualTo(0L);
+        assertThat(heartbeat.rttMillis()).isEqualTo(120L);
+        assertThat(subscriber.getOnNextEvents().get(2)).isInstanceOf(RxObjectEventMessage.class);
+    }
+
+    @Test
+    public void testMissedHeartbeats_returnsError() throws Exception {
+        events.onNext(new RxObjectEventConnected(sender));
+
+        testScheduler.advanceTimeBy(10, TimeUnit.SECONDS);
+        subscriber.assertNoErrors();
+        testScheduler.advanceTimeBy(5, TimeUnit.SECONDS);
+
+        subscriber.assertError(HeartbeatTimeoutException.class);
+        assertThat(events.hasObservers()).isFalse();
+    }
+
+    @Test
+    public void testWhenDisconnected_pingsAreNotSent() throws Exception {
+        events.onNext(new RxObjectEventConnected(sender));
+        events.onNext(new RxObjectEventDisconnected(new IOException()));
+
+        testScheduler.advanceTimeBy(30, TimeUnit.SECONDS);
+
+        verify(sender, never()).sendObjectMessage("ping:0");
+        subscriber.assertNoErrors();
+    }
+
+    @Test
+    public void testUnexpectedPong_isReplacedByNextEvent() throws Exception {
+        final TestSubscriber<RxObjectEvent> bounded = new TestSubscriber<>(2);
+        Observable.<RxObjectEvent>just(
+                new RxObjectEventConnected(sender),
+                new RxObjectEventMessage(sender, "pong:7"),
+                new RxObjectEventMessage(sender, "other"))
+                .compose(heartbeat.heartbeat())
+                .subscribe(bounded);
+
+        bounded.assertValueCount(2);
+        final Object message = ((RxObjectEventMessage) bounded.getOnNextEvents().get(1)).message();
+        assertThat(message).isEqualTo("other");
+    }
+
+    @Test
+    public void testDownstreamRequest_isRespected() throws Exception {
+        final TestSubscriber<RxObjectEvent> bounded = new TestSubscriber<>(1);
+        Observable.<RxObjectEvent>just(
+                new RxObjectEventConnected(sender),
+                new RxObjectEventMessage(sender, "other"))
+                .compose(heartbeat.heartbeat())
+                .subscribe(bounded);
+
+        bounded.assertValueCount(1);
+        bounded.requestMore(1);
+        bounded.assertValueCount(2);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.object;
+
+import com.appunite.websocket.rx.object.messages.RxObjectEvent;
+import com.appunite.websocket.rx.object.messages.RxObjectEventMessage;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+
+import rx.Observable;
+import rx.observers.TestSubscriber;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class ObjectMessageDispatcherTest {
+
+    @Mock
+    ObjectWebSocketSender sender;
+
+    private final ObjectMessageDispatcher dispatcher = new ObjectMessageDispatcher();
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Test
+    public void testMessage_isDeliveredOnlyToItsType() throws Exception {
+        final TestSubscriber<String> strings = new TestSubscriber<>();
+        final TestSubscriber<Integer> integers = new TestSubscriber<>();
+        dispatcher.messages(String.class).subscribe(strings);
+        dispatcher.messages(Integer.class).subscribe(integers);
+
+        dispatcher.onNext(new RxObjectEventMessage(sender, "text"));
+        dispatcher.onNext(new RxObjectEventMessage(sender, 1));
+
+        strings.assertValues("text");
+        integers.assertValues(1);
+    }
+
+    @Test
+    public void testMessage_isDeliveredToSupertypes() throws Exception {
+        final TestSubscriber<Number> numbers = new TestSubscriber<>();
+        final TestSubscriber<Object> objects = new TestSubscriber<>();
+        dispatcher.messages(Number.class).subscribe(numbers);
+        dispatcher.messages(Object.class).subscribe(objects);
+
+        dispatcher.onNext(new RxObjectEventMessage(sender, 1));
+        dispatcher.onNext(new RxObjectEventMessage(sender, 2L));
+
+        numbers.assertValues(1, 2L);
+        objects.assertValues(1, 2L);
+    }
+
+    @Test
+    public void testTypeSubscribedAfterDispatch_receivesNextMessages() throws Exception {
+        assertThat(dispatcher.dispatch(new RxObjectEventMessage(sender, 1))).isFalse();
+
+        final TestSubscriber<Integer> integers = new TestSubscriber<>();
+        dispatcher.messages(Integer.class).subscribe(integers);
+
+        assertThat(dispatcher.dispatch(new RxObjectEventMessage(sender, 2))).isTrue();
+        integers.assertValues(2);
+    }
+
+    @Test
+    public void testUnroutedMessages_doNotStopDispatching() throws Exception {
+        final TestSubscriber<Integer> integers = new TestSubscriber<>();
+        dispatcher.messages(Integer.class).subscribe(integers);
+
+        Observable.<RxObjectEvent>just(
+                new RxObjectEventMessage(sender, "text"),
+                new RxObjectEventMessage(sender, 1),
+                new RxObjectEventMessage(sender, "text"),
+                new RxObjectEventMessage(sender, 2))
+                .subscribe(dispatcher);
+
+        integers.assertValues(1, 2);
+    }
+
+    @Test
+    public void testUpstreamError_isForwardedToEveryType() throws Exception {
+        final TestSubscriber<String> strings = new TestSubscriber<>();
+        final TestSubscriber<Integer> integers = new TestSubscriber<>();
+        dispatcher.messages(String.class).subscribe(strings);
+        final IOException error = new IOException();
+
+        dispatcher.onError(error);
+        dispatcher.messages(Integer.class).subscribe(integers);
+
+        strings.assertError(error);
+        integers.assertError(error);
+    }
+
+    @Test
+    public void testUpstreamCompletion_isForwardedToEveryType() throws Exception {
+        final TestSubscriber<String> strings = new TestSubscriber<>();
+        dispatcher.messages(String.class).subscribe(strings);
+
+        dispatcher.onCompleted();
+
+        strings.assertCompleted();
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.object;
+
+import com.appunite.websocket.rx.object.messages.RxObjectEventMessage;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import rx.Subscription;
+import rx.functions.Func1;
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
+import rx.schedulers.TestScheduler;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class ObjectRequestCorrelatorTest {
+
+    @Mock
+    ObjectWebSocketSender sender;
+
+    private final TestScheduler testScheduler = Schedulers.test();
+    private ObjectRequestCorrelator correlator;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        correlator = new ObjectRequestCorrelator(new Func1<Object, Object>() {
+            @Override
+            public Object call(Object o) {
+                return o instanceof Response ? ((Response) o).id : null;
+            }
+        }, 5, TimeUnit.SECONDS, testScheduler);
+    }
+
+    @Test
+    public void testWhenResponseArrives_returnIt() throws Exception {
+        final TestSubscriber<Response> subscriber = new TestSubscriber<>();
+        correlator.<Response>response("1").subscribe(subscriber);
+
+        final Response response = new Response("1");
+        correlator.onNext(new RxObjectEventMessage(sender, response));
+
+        subscriber.assertValues(response);
+        subscriber.assertCompleted();
+        assertThat(correlator.pendingRequests()).isEqualTo(0);
+    }
+
+    @Test
+    public void testResponseWithDifferentId_isIgnored() throws Exception {
+        final TestSubscriber<Response> subscriber = new TestSubscriber<>();
+        correlator.<Response>response("1").subscribe(subscriber);
+
+        assertThat(correlator.dispatch(new Response("2"))).isFalse();
+        assertThat(correlator.dispatch("not a response")).isFalse();
+
+        subscriber.assertNoValues();
+        assertThat(correlator.pendingRequests()).isEqualTo(1);
+    }
+
+    @Test
+    public void testWhenNoResponse_timeout() throws Exception {
+        final TestSubscriber<Response> subscriber = new TestSubscriber<>();
+        correlator.<Response>response("1").subscribe(subscriber);
+
+        testScheduler.advanceTimeBy(4, TimeUnit.SECONDS);
+        subscriber.assertNoTerminalEvent();
+
+        testScheduler.advanceTimeBy(2, TimeUnit.SECONDS);
+        subscriber.assertError(TimeoutException.class);
+        assertThat(correlator.pendingRequests()).isEqualTo(0);
+    }
+
+    @Test
+    public void testCustomTimeout_longerThanWheel() throws Exception {
+        final TestSubscriber<Response> subscriber = new TestSubscriber<>();
+        correlator.<Response>response("1", 60, TimeUnit.SECONDS).subscribe(subscriber);
+
+        testScheduler.advanceTimeBy(59, TimeUnit.SECONDS);
+        subscriber.assertNoTerminalEvent();
+
+        testScheduler.advanceTimeBy(2, TimeUnit.SECONDS);
+        subscriber.assertError(TimeoutException.class);
+    }
+
+    @Test
+    public void testUnsubscribe_removesRequest() throws Exception {
+        final Subscription subscription = correlator.response("1").subscribe(new TestSubscriber<>());
+
+        subscription.unsubscribe();
+
+        assertThat(correlator.pendingRequests()).isEqualTo(0);
+        assertThat(correlator.dispatch(new Response("1"))).isFalse();
+    }
+
+    @Test
+    public void testTwoRequestsWithTheSameId_secondFails() throws Exception {
+        final TestSubscriber<Object> subscriber = new TestSubscriber<>();
+        correlator.response("1").subscribe(new TestSubscriber<>());
+        correlator.response("1").subscribe(subscriber);
+
+        subscriber.assertError(IllegalStateException.class);
+    }
+
+    @Test
+    public void testWhenEventsFail_pendingRequestsFailWithTheSameError() throws Exception {
+        final TestSubscriber<Response> subscriber = new TestSubscriber<>();
+        correlator.<Response>response("1").subscribe(subscriber);
+        final IOException error = new IOException();
+
+        correlator.onError(error);
+
+        subscriber.assertError(error);
+        assertThat(correlator.pendingRequests()).isEqualTo(0);
+    }
+
+    @Test
+    public void testWhenEventsComplete_pendingRequestsFail() throws Exception {
+        final TestSubscriber<Response> subscriber = new TestSubscriber<>();
+        correlator.<Response>response("1").subscribe(subscriber);
+
+        correlator.onCompleted();
+
+        subscriber.assertError(IOException.class);
+    }
+
+    @Test
+    public void testRequestAfterEventsFinished_failsImmediately() throws Exception {
+        final TestSubscriber<Response> subscriber = new TestSubscriber<>();
+        correlator.onCompleted();
+
+        correlator.<Response>response("1").subscribe(subscriber);
+
+        subscriber.assertError(IOException.class);
+        assertThat(correlator.pendingRequests()).isEqualTo(0);
+    }
+
+    private static class Response {
+        private final String id;
+
+        Response(String id) {
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.object;
+
+import com.appunite.websocket.rx.messages.RxEvent;
+import com.appunite.websocket.rx.messages.RxEventStringMessage;
+import com.appunite.websocket.rx.object.messages.RxObjectEvent;
+import com.appunite.websocket.rx.object.messages.RxObjectEventMessage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.WebSocket;
+import rx.Observable;
+import rx.functions.Action1;
+import rx.functions.Func1;
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class OperatorParallelParseTest {
+
+    @Mock
+    WebSocket webSocket;
+    @Mock
+    ObjectWebSocketSender sender;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testSlowParsing_eventsAreReturnedInReceiveOrder() throws Exception {
+        final List<RxEvent> events = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            events.add(new RxEventStringMessage(webSocket, String.valueOf(i)));
+        }
+        final TestSubscriber<Object> subscriber = new TestSubscriber<>();
+
+        Observable.from(events)
+                .lift(new OperatorParallelParse(sleepingParser(), Schedulers.from(executor), 4))
+                .map(new Func1<RxObjectEvent, Object>() {
+                    @Override
+                    public Object call(RxObjectEvent event) {
+                        return ((RxObjectEventMessage) event).message();
+                    }
+                })
+                .subscribe(subscriber);
+
+        subscriber.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        subscriber.assertNoErrors();
+        subscriber.assertCompleted();
+        final List<Object> expected = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            expected.add(String.valueOf(i));
+        }
+        assertThat(subscriber.getOnNextEvents()).containsExactlyElementsIn(expected).inOrder();
+    }
+
+    @Test
+    public void testParserFailure_isDeliveredAfterPreviousEvents() throws Exception {
+        final TestSubscriber<RxObjectEvent> subscriber = new TestSubscriber<>();
+        final RxObjectEvent first = new RxObjectEventMessage(sender, "first");
+        final RxEvent ok = new RxEventStringMessage(webSocket, "ok");
+        final RxEvent wrong = new RxEventStringMessage(webSocket, "wrong");
+
+        Observable.just(ok, wrong)
+                .lift(new OperatorParallelParse(new Func1<RxEvent, RxObjectEvent>() {
+                    @Override
+                    public RxObjectEvent call(RxEvent event) {
+                        if (event == ok) {
+                            return first;
+                        }
+                        throw new RuntimeException("Unknown message type");
+                    }
+                }, Schedulers.from(executor), 2))
+                .subscribe(subscriber);
+
+        subscriber.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        subscriber.assertValues(first);
+        subscriber.assertError(RuntimeException.class);
+    }
+
+    @Test
+    public void testRequestedEvents_areNotExceeded() throws Exception {
+        final TestSubscriber<RxObjectEvent> subscriber = new TestSubscriber<>(1);
+
+        Observable.just((RxEvent) new RxEventStringMessage(webSocket, "1"),
+                new RxEventStringMessage(webSocket, "2"))
+                .lift(new OperatorParallelParse(sleepingParser(), Schedulers.from(executor), 2))
+                .subscribe(subscriber);
+
+        Thread.sleep(100);
+        assertThat(subscriber.getOnNextEvents()).hasSize(1);
+
+        subscriber.requestMore(1);
+        subscriber.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        assertThat(subscriber.getOnNextEvents()).hasSize(2);
+    }
+
+    @Test
+    public void testUpstream_isRequestedOnlyForParallelism() throws Exception {
+        final List<Long> requests = Collections.synchronizedList(new ArrayList<Long>());
+        final List<RxEvent> events = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            events.add(new RxEventStringMessage(webSocket, String.valueOf(i)));
+        }
+        final TestSubscriber<RxObjectEvent> subscriber = new TestSubscriber<>(1);
+
+        Observable.from(events)
+                .doOnRequest(new Action1<Long>() {
+                    @Override
+                    public void call(Long n) {
+                        requests.add(n);
+                    }
+                })
+                .lift(new OperatorParallelParse(sleepingParser(), Schedulers.from(executor), 2))
+                .subscribe(subscriber);
+
+        Thread.sleep(100);
+        assertThat(subscriber.getOnNextEvents()).hasSize(1);
+        // Initial request and replacement of returned event
+        assertThat(requests).containsExactly(2L, 1L).inOrder();
+
+        subscriber.requestMore(Long.MAX_VALUE);
+        subscriber.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        assertThat(subscriber.getOnNextEvents()).hasSize(20);
+        for (Long request : requests) {
+            assertThat(request).isAtMost(2L);
+        }
+    }
+
+    private Func1<RxEvent, RxObjectEvent> sleepingParser() {
+        return new Func1<RxEvent, RxObjectEvent>() {
+            @Override
+            public RxObjectEvent call(RxEvent event) {
+                final String message = ((RxEventStringMessage) event).message();
+                try {
+                    // earlier messages are parsed slower so workers finish out of order
+                    Thread.sleep(20 - Integer.parseInt(message) % 20);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                return new RxObjectEventMessage(sender, message);
+            }
+        };
+    }
+}
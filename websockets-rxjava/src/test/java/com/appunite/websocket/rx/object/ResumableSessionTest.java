@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.object;
+
+import com.appunite.websocket.rx.object.messages.RxObjectEvent;
+import com.appunite.websocket.rx.object.messages.RxObjectEventConnected;
+import com.appunite.websocket.rx.object.messages.RxObjectEventGap;
+import com.appunite.websocket.rx.object.messages.RxObjectEventMessage;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import rx.Observable;
+import rx.functions.Func1;
+import rx.observers.TestSubscriber;
+import rx.subjects.PublishSubject;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+
+public class ResumableSessionTest {
+
+    @Mock
+    ObjectWebSocketSender sender;
+    @Mock
+    ResumableSession.Handshake handshake;
+
+    private ResumableSession session;
+    private PublishSubject<RxObjectEvent> events;
+    private TestSubscriber<RxObjectEvent> subscriber;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        session = new ResumableSession(new Func1<Object, Long>() {
+            @Override
+            public Long call(Object message) {
+                final String text = (String) message;
+                return text.startsWith("seq:") ? Long.parseLong(text.substring(4)) : null;
+            }
+        }, handshake, 64);
+        connect();
+    }
+
+    private void connect() {
+        events = PublishSubject.create();
+        subscriber = new TestSubscriber<>();
+        events.compose(session.session()).subscribe(subscriber);
+        events.onNext(new RxObjectEventConnected(sender));
+    }
+
+    private void receive(long... sequences) {
+        for (long sequence : sequences) {
+            events.onNext(new RxObjectEventMessage(sender, "seq:" + sequence));
+        }
+    }
+
+    @Nonnull
+    private List<Object> receivedMessages() {
+        final List<Object> messages = new ArrayList<>();
+        for (RxObjectEvent event : subscriber.getOnNextEvents()) {
+            if (event instanceof RxObjectEventMessage) {
+                messages.add(((RxObjectEventMessage) event).message());
+            }
+        }
+        return messages;
+    }
+
+    @Nonnull
+    private List<RxObjectEventGap> gaps() {
+        final List<RxObjectEventGap> gaps = new ArrayList<>();
+        for (RxObjectEvent event : subscriber.getOnNextEvents()) {
+            if (event instanceof RxObjectEventGap) {
+                gaps.add((RxObjectEventGap) event);
+            }
+        }
+        return gaps;
+    }
+
+    @Test
+    public void testFirstConnect_handshakeWithoutSequence() throws Exception {
+        verify(handshake).resume(sender, -1);
+    }
+
+    @Test
+    public void testAfterReconnect_handshakeWithLastSequence() throws Exception {
+        receive(0, 1, 2);
+
+        connect();
+
+        verify(handshake).resume(sender, 2);
+    }
+
+    @Test
+    public void testAfterReconnect_handshakeWithSequenceBeforeGap() throws Exception {
+        receive(0, 1, 2, 5);
+
+        connect();
+
+        verify(handshake).resume(sender, 2);
+    }
+
+    @Test
+    public void testGap_isFilledByReplayAfterReconnect() throws Exception {
+        receive(0, 1, 2, 5);
+        connect();
+
+        receive(3, 4, 5, 6);
+
+        assertThat(receivedMessages()).containsExactly("seq:3", "seq:4", "seq:6").inOrder();
+        assertThat(gaps().isEmpty()).isTrue();
+        assertThat(session.lastSequence()).isEqualTo(6L);
+    }
+
+    @Test
+    public void testFirstMessageAfterExpectedStart_returnsGap() throws Exception {
+        receive(3);
+
+        final List<RxObjectEventGap> gaps = gaps();
+        assertThat(gaps).hasSize(1);
+        assertThat(gaps.get(0).fromSequence()).isEqualTo(0L);
+        assertThat(gaps.get(0).toSequence()).isEqualTo(2L);
+        assertThat(session.lastSequence()).isEqualTo(-1L);
+    }
+
+    @Test
+    public void testRestoredSession_resumesFromFirstSequence() throws Exception {
+        session = new ResumableSession(new Func1<Object, Long>() {
+            @Override
+            public Long call(Object message) {
+                return Long.parseLong(((String) message).substring(4));
+            }
+        }, handshake, 64, 10);
+        connect();
+        verify(handshake).resume(sender, 9);
+
+        receive(9, 12);
+
+        assertThat(receivedMessages()).containsExactly("seq:12");
+        final List<RxObjectEventGap> gaps = gaps();
+        assertThat(gaps).hasSize(1);
+        assertThat(gaps.get(0).fromSequence()).isEqualTo(10L);
+        assertThat(gaps.get(0).toSequence()).isEqualTo(11L);
+    }
+
+    @Test
+    public void testReplayedMessages_areRemoved() throws Exception {
+        receive(0, 1, 2);
+        connect();
+
+        receive(1, 2, 3);
+
+        assertThat(receivedMessages()).containsExactly("seq:3");
+        assertThat(session.duplicates()).isEqualTo(2L);
+    }
+
+    @Test
+    public void testMessageWithoutSequence_isPassed() throws Exception {
+        events.onNext(new RxObjectEventMessage(sender, "hello"));
+        events.onNext(new RxObjectEventMessage(sender, "hello"));
+
+        assertThat(receivedMessages()).containsExactly("hello", "hello");
+    }
+
+    @Test
+    public void testSkippedSequence_returnsGap() throws Exception {
+        receive(0, 1, 5);
+
+        final List<RxObjectEventGap> gaps = gaps();
+        assertThat(gaps).hasSize(1);
+        assertThat(gaps.get(0).fromSequence()).isEqualTo(2L);
+        assertThat(gaps.get(0).toSequence()).isEqualTo(4L);
+        assertThat(gaps.get(0).count()).isEqualTo(3L);
+    }
+
+    @Test
+    public void testMissingMessageArrivingLater_isAccepted() throws Exception {
+        receive(0, 2, 1, 1);
+
+        assertThat(receivedMessages()).containsExactly("seq:0", "seq:2", "seq:1");
+    }
+
+    @Test
+    public void testMessageOlderThanWindow_isRemoved() throws Exception {
+        receive(0, 100, 30, 37);
+
+        assertThat(receivedMessages()).containsExactly("seq:0", "seq:100", "seq:37");
+    }
+
+    @Test
+    public void testAfterWindowMovedFurther_sequencesAreNotConfused() throws Exception {
+        receive(0, 64, 128, 65);
+
+        assertThat(receivedMessages()).containsExactly("seq:0", "seq:64", "seq:128", "seq:65");
+    }
+
+    @Test
+    public void testWhenHandshakeFails_returnsError() throws Exception {
+        final ObjectParseException exception = new ObjectParseException("error");
+        doThrow(exception).when(handshake).resume(eq(sender), anyLong());
+
+        connect();
+
+        subscriber.assertError(exception);
+    }
+
+    @Test
+    public void testDroppedDuplicate_isReplacedByNextEvent() throws Exception {
+        final TestSubscriber<RxObjectEvent> subscriber = new TestSubscriber<>(3);
+
+        Observable.just(new RxObjectEventConnected(sender),
+                new RxObjectEventMessage(sender, "seq:0"),
+                new RxObjectEventMessage(sender, "seq:0"),
+                new RxObjectEventMessage(sender, "seq:1"))
+                .compose(new ResumableSession(new Func1<Object, Long>() {
+                    @Override
+                    public Long call(Object message) {
+                        return Long.parseLong(((String) message).substring(4));
+                    }
+                }, handshake, 64).session())
+                .subscribe(subscriber);
+
+        subscriber.assertValueCount(3);
+        final Object message = ((RxObjectEventMessage) subscriber.getOnNextEvents().get(2)).message();
+        assertThat(message).isEqualTo("seq:1");
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2015 Jacek Marchwicki <jacek.marchwicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.appunite.websocket.rx.object;
+
+import com.appunite.websocket.rx.RxWebSockets;
+import com.appunite.websocket.rx.messages.RxEvent;
+import com.appunite.websocket.rx.messages.RxEventConnected;
+import com.appunite.websocket.rx.metrics.WebSocketMetrics;
+import com.appunite.websocket.rx.object.messages.RxObjectEventConnected;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+
+import okhttp3.WebSocket;
+import okio.BufferedSink;
+import okio.ByteString;
+import rx.Observable;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RxObjectWebSocketsTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Strings are sent as string frames and byte arrays as binary
+     */
+    private static class PlainSerializer implements ObjectSerializer {
+        @Nonnull
+        @Override
+        public Object serialize(@Nonnull String message) {
+            return message;
+        }
+
+        @Nonnull
+        @Override
+        public Object serialize(@Nonnull byte[] message) {
+            return message;
+        }
+
+        @Nonnull
+        @Override
+        public byte[] deserializeBinary(@Nonnull Object message) {
+            return (byte[]) message;
+        }
+
+        @Nonnull
+        @Override
+        public String deserializeString(@Nonnull Object message) {
+            return (String) message;
+        }
+
+        @Override
+        public boolean isBinary(@Nonnull Object message) {
+            return message instanceof byte[];
+        }
+    }
+
+    /**
+     * Writes binary messages only to sink
+     */
+    private static class SinkOnlySerializer extends PlainSerializer implements SinkObjectSerializer {
+        int sinkWrites;
+
+        @Nonnull
+        @Override
+        public byte[] deserializeBinary(@Nonnull Object message) {
+            throw new IllegalStateException("Sink should be used");
+        }
+
+        @Override
+        public void deserializeBinary(@Nonnull Object message, @Nonnull BufferedSink sink) throws ObjectParseException {
+            sinkWrites += 1;
+            try {
+                sink.write((byte[]) message);
+            } catch (IOException e) {
+                throw new ObjectParseException("Could not write", e);
+            }
+        }
+    }
+
+    @Mock
+    RxWebSockets rxWebSockets;
+    @Mock
+    WebSocket webSocket;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        when(rxWebSockets.metrics()).thenReturn(WebSocketMetrics.NO_OP);
+        when(rxWebSockets.webSocketObservable())
+                .thenReturn(Observable.<RxEvent>just(new RxEventConnected(webSocket)));
+        when(webSocket.send(any(String.class))).thenReturn(true);
+        when(webSocket.send(any(ByteString.class))).thenReturn(true);
+    }
+
+    @Nonnull
+    private ObjectWebSocketSender connect(@Nonnull ObjectSerializer serializer) {
+        final RxObjectEventConnected connected = (RxObjectEventConnected) new RxObjectWebSockets(rxWebSockets, serializer)
+                .webSocketObservable()
+                .toBlocking()
+                .first();
+        return connected.sender();
+    }
+
+    @Test
+    public void testBinaryMessageFromSink_sendsSameBytesAsDeserializeBinary() throws Exception {
+        final ContentTypeObjectSerializer serializer = ContentTypeObjectSerializer.text(new PlainSerializer())
+                .withBinary(3, byte[].class, new PlainSerializer());
+        final byte[] message = "binary message".getBytes(UTF_8);
+
+        assertThat(connect(serializer).sendObjectMessage(message)).isTrue();
+
+        final ArgumentCaptor<ByteString> frame = ArgumentCaptor.forClass(ByteString.class);
+        verify(webSocket).send(frame.capture());
+        assertThat(frame.getValue()).isEqualTo(ByteString.of(serializer.deserializeBinary(message)));
+    }
+
+    @Test
+    public void testBinaryMessage_isWrittenToSink() throws Exception {
+        final SinkOnlySerializer serializer = new SinkOnlySerializer();
+        final byte[] message = "binary message".getBytes(UTF_8);
+
+        connect(serializer).sendObjectMessage(message);
+
+        assertThat(serializer.sinkWrites).isEqualTo(1);
+        verify(webSocket).send(ByteString.of(message));
+    }
+
+    @Test
+    public void testBinaryMessageWithoutSink_isSentAsByteString() throws Exception {
+        final byte[] message = "binary message".getBytes(UTF_8);
+
+        connect(new PlainSerializer()).sendObjectMessage(message);
+
+        verify(webSocket).send(ByteString.of(message));
+        verify(webSocket, never()).send(any(String.class));
+    }
+
+    @Test
+    public void testStringMessage_isSentAsString() throws Exception {
+        connect(new SinkOnlySerializer()).sendObjectMessage("text message");
+
+        verify(webSocket).send("text message");
+        verify(webSocket, never()).send(any(ByteString.class));
+    }
+
+    @Test
+    public void testBatch_sendsEachMessageAsItsFrameType() throws Exception {
+        final SinkOnlySerializer serializer = new SinkOnlySerializer();
+        final byte[] binary = "binary message".getBytes(UTF_8);
+        final BatchObjectWebSocketSender sender = (BatchObjectWebSocketSender) connect(serializer);
+
+        final int sent = sender.sendObjectMessages(Arrays.asList("first", binary, "last"));
+
+        assertThat(sent).isEqualTo(3);
+        assertThat(serializer.sinkWrites).isEqualTo(1);
+        final InOrder inOrder = inOrder(webSocket);
+        inOrder.verify(webSocket).send("first");
+        inOrder.verify(webSocket).send(ByteString.of(binary));
+        inOrder.verify(webSocket).send("last");
+    }
+
+    @Test
+    public void testSocketRefusesFrame_returnsFalse() throws Exception {
+        when(webSocket.send(any(ByteString.class))).thenReturn(false);
+
+        final boolean sent = connect(new SinkOnlySerializer()).sendObjectMessage("binary".getBytes(UTF_8));
+
+        assertThat(sent).isFalse();
+    }
+}